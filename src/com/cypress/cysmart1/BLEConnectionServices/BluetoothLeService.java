@@ -50,16 +50,8 @@ import android.os.Bundle;
 import android.os.IBinder;
 import android.util.Log;
 
-import com.cypress.cysmart1.BLEProfileDataParserClasses.BloodPressureParser;
-import com.cypress.cysmart1.BLEProfileDataParserClasses.CSCParser;
-import com.cypress.cysmart1.BLEProfileDataParserClasses.CapSenseParser;
+import com.cypress.cysmart1.BLEProfileDataParserClasses.CharacteristicDecoderRegistry;
 import com.cypress.cysmart1.BLEProfileDataParserClasses.DescriptorParser;
-import com.cypress.cysmart1.BLEProfileDataParserClasses.GlucoseParser;
-import com.cypress.cysmart1.BLEProfileDataParserClasses.HRMParser;
-import com.cypress.cysmart1.BLEProfileDataParserClasses.HTMParser;
-import com.cypress.cysmart1.BLEProfileDataParserClasses.RGBParser;
-import com.cypress.cysmart1.BLEProfileDataParserClasses.RSCParser;
-import com.cypress.cysmart1.BLEProfileDataParserClasses.SensorHubParser;
 import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.GattAttributes;
 import com.cypress.cysmart1.CommonUtils.LogUtil;
@@ -73,10 +65,14 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for managing connection and data communication with a GATT server
  * hosted on a given BlueTooth LE device.
+ * Several devices can be connected at once, each through its own
+ * {@link DeviceSession}. Methods taking a device address act on that session;
+ * the others act on the selected device, see {@link #selectDevice(String)}.
  */
 public class BluetoothLeService extends Service {
 
@@ -97,6 +93,12 @@ public class BluetoothLeService extends Service {
             "com.example.bluetooth.le.ACTION_DATA_AVAILABLE";
     public final static String ACTION_OTA_DATA_AVAILABLE =
             "com.cysmart.bluetooth.le.ACTION_OTA_DATA_AVAILABLE";
+    /**
+     * Write of the exit bootloader command completed, with its status in
+     * {@link Constants#EXTRA_OTA_WRITE_STATUS}
+     */
+    public final static String ACTION_OTA_EXIT_BOOTLOADER_WRITTEN =
+            "com.cysmart.bluetooth.le.ACTION_OTA_EXIT_BOOTLOADER_WRITTEN";
     public final static String ACTION_GATT_DISCONNECTED_OTA =
             "com.example.bluetooth.le.ACTION_GATT_DISCONNECTED_OTA";
     public final static String ACTION_GATT_CONNECT_OTA =
@@ -115,6 +117,8 @@ public class BluetoothLeService extends Service {
             "android.bluetooth.device.action.ACTION_WRITE_FAILED";
     public final static String ACTION_WRITE_SUCCESS =
             "android.bluetooth.device.action.ACTION_WRITE_SUCCESS";
+    public final static String ACTION_SESSION_STATE_CHANGED =
+            "com.example.bluetooth.le.ACTION_SESSION_STATE_CHANGED";
     /**
      * Connection status Constants
      */
@@ -131,30 +135,27 @@ public class BluetoothLeService extends Service {
      * BluetoothAdapter for handling connections
      */
     public static BluetoothAdapter mBluetoothAdapter;
-    public static BluetoothGatt mBluetoothGatt;
     /**
      * Disable?enable notification
      */
-    public static ArrayList<BluetoothGattCharacteristic> mEnabledCharacteristics =
-            new ArrayList<BluetoothGattCharacteristic>();
-    public static ArrayList<BluetoothGattCharacteristic> mRDKCharacteristics =
-            new ArrayList<BluetoothGattCharacteristic>();
-    public static ArrayList<BluetoothGattCharacteristic> mGlucoseCharacteristics =
-            new ArrayList<BluetoothGattCharacteristic>();
     public static boolean mDisableNotificationFlag = false;
     public static boolean mEnableRDKNotificationFlag = false;
 
     public static boolean mEnableGlucoseFlag = false;
 
 
-    private static int mConnectionState = STATE_DISCONNECTED;
-    private static boolean mOtaExitBootloaderCmdInProgress = false;
     /**
-     * Device address
+     * Selected device, the one the address-less methods and the legacy
+     * broadcasts refer to
      */
     private static String mBluetoothDeviceAddress;
     private static String mBluetoothDeviceName;
     private static Context mContext;
+    /**
+     * Connection sessions keyed by device address
+     */
+    private static final ConcurrentHashMap<String, DeviceSession> mSessions =
+            new ConcurrentHashMap<String, DeviceSession>();
 
     /**
      * Implements callback methods for GATT events that the app cares about. For
@@ -166,75 +167,77 @@ public class BluetoothLeService extends Service {
                                             int newState) {
 
             LogUtil.e("BluetoothLeService", "onConnectionStateChange()");
+            DeviceSession session = getSession(gatt);
+            if (session == null) {
+                return;
+            }
             String intentAction;
             // GATT Server connected
             if (newState == BluetoothProfile.STATE_CONNECTED) {
                 intentAction = ACTION_GATT_CONNECTED;
-                synchronized (mGattCallback) {
-                    mConnectionState = STATE_CONNECTED;
-                }
-                broadcastConnectionUpdate(intentAction);
+                session.setConnectionState(STATE_CONNECTED);
+                broadcastConnectionUpdate(session, intentAction);
                 String dataLog = mContext.getResources().getString(R.string.dl_commaseparator)
-                        + "[" + mBluetoothDeviceName + "|" + mBluetoothDeviceAddress + "] " +
+                        + "[" + session.getName() + "|" + session.getAddress() + "] " +
                         mContext.getResources().getString(R.string.dl_connection_established);
                 Logger.datalog(dataLog);
             }
             // GATT Server disconnected
             else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
                 intentAction = ACTION_GATT_DISCONNECTED;
-                synchronized (mGattCallback) {
-                    mConnectionState = STATE_DISCONNECTED;
-                }
-                broadcastConnectionUpdate(intentAction);
+                session.setConnectionState(STATE_DISCONNECTED);
+                //Requests of the lost connection would only time out
+                session.getOperationQueue().cancelAll();
+                broadcastConnectionUpdate(session, intentAction);
                 String dataLog = mContext.getResources().getString(R.string.dl_commaseparator)
-                        + "[" + mBluetoothDeviceName + "|" + mBluetoothDeviceAddress + "] " +
+                        + "[" + session.getName() + "|" + session.getAddress() + "] " +
                         mContext.getResources().getString(R.string.dl_connection_disconnected);
                 Logger.datalog(dataLog);
             }
             // GATT Server Connecting
             if (newState == BluetoothProfile.STATE_CONNECTING) {
                 intentAction = ACTION_GATT_CONNECTING;
-                synchronized (mGattCallback) {
-                    mConnectionState = STATE_CONNECTING;
-                }
-                broadcastConnectionUpdate(intentAction);
+                session.setConnectionState(STATE_CONNECTING);
+                broadcastConnectionUpdate(session, intentAction);
                 String dataLog = mContext.getResources().getString(R.string.dl_commaseparator)
-                        + "[" + mBluetoothDeviceName + "|" + mBluetoothDeviceAddress + "] " +
+                        + "[" + session.getName() + "|" + session.getAddress() + "] " +
                         mContext.getResources().getString(R.string.dl_connection_establishing);
                 Logger.datalog(dataLog);
             }
             // GATT Server disconnected
             else if (newState == BluetoothProfile.STATE_DISCONNECTING) {
                 intentAction = ACTION_GATT_DISCONNECTING;
-                synchronized (mGattCallback) {
-                    mConnectionState = STATE_DISCONNECTING;
-                }
-                broadcastConnectionUpdate(intentAction);
+                session.setConnectionState(STATE_DISCONNECTING);
+                broadcastConnectionUpdate(session, intentAction);
             }
         }
 
         @Override
         public void onServicesDiscovered(BluetoothGatt gatt, int status) {
             LogUtil.e("BluetoothLeService", "onServicesDiscovered()");
+            DeviceSession session = getSession(gatt);
+            if (session == null) {
+                return;
+            }
             // GATT Services discovered
             if (status == BluetoothGatt.GATT_SUCCESS) {
                 String dataLog2 = mContext.getResources().getString(R.string.dl_commaseparator)
-                        + "[" + mBluetoothDeviceName + "|" + mBluetoothDeviceAddress + "] " +
+                        + "[" + session.getName() + "|" + session.getAddress() + "] " +
                         mContext.getResources().getString(R.string.dl_service_discovery_status) +
                         mContext.getResources().getString(R.string.dl_status_success);
                 Logger.datalog(dataLog2);
-                broadcastConnectionUpdate(ACTION_GATT_SERVICES_DISCOVERED);
+                broadcastConnectionUpdate(session, ACTION_GATT_SERVICES_DISCOVERED);
             } else if (status == BluetoothGatt.GATT_INSUFFICIENT_AUTHENTICATION ||
                     status == BluetoothGatt.GATT_INSUFFICIENT_ENCRYPTION) {
-                bondDevice();
-                broadcastConnectionUpdate(ACTION_GATT_SERVICE_DISCOVERY_UNSUCCESSFUL);
+                bondDevice(gatt);
+                broadcastConnectionUpdate(session, ACTION_GATT_SERVICE_DISCOVERY_UNSUCCESSFUL);
             } else {
                 String dataLog2 = mContext.getResources().getString(R.string.dl_commaseparator)
-                        + "[" + mBluetoothDeviceName + "|" + mBluetoothDeviceAddress + "] " +
+                        + "[" + session.getName() + "|" + session.getAddress() + "] " +
                         mContext.getResources().getString(R.string.dl_service_discovery_status) +
                         mContext.getResources().getString(R.string.dl_status_failure) + status;
                 Logger.datalog(dataLog2);
-                broadcastConnectionUpdate(ACTION_GATT_SERVICE_DISCOVERY_UNSUCCESSFUL);
+                broadcastConnectionUpdate(session, ACTION_GATT_SERVICE_DISCOVERY_UNSUCCESSFUL);
             }
         }
 
@@ -242,6 +245,10 @@ public class BluetoothLeService extends Service {
         public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor,
                                       int status) {
             LogUtil.e("BluetoothLeService", "onDescriptorWrite()");
+            DeviceSession session = getSession(gatt);
+            if (session == null) {
+                return;
+            }
             String serviceUUID = descriptor.getCharacteristic().getService().getUuid().toString();
             String serviceName = GattAttributes.lookupUUID(descriptor.getCharacteristic().
                     getService().getUuid(), serviceUUID);
@@ -261,30 +268,15 @@ public class BluetoothLeService extends Service {
                         + mContext.getResources().getString(R.string.dl_commaseparator) +
                         "[00]";
                 Intent intent = new Intent(ACTION_WRITE_SUCCESS);
-                mContext.sendBroadcast(intent);
+                sendSessionBroadcast(session, intent);
                 Logger.datalog(dataLog);
                 if (descriptor.getValue() != null)
-                    addRemoveData(descriptor);
-                if (mDisableNotificationFlag) {
-                    disableAllEnabledCharacteristics();
-                } else if (mEnableRDKNotificationFlag) {
-                    if (mRDKCharacteristics.size() > 0) {
-                        mRDKCharacteristics.remove(0);
-                        enableAllRDKCharacteristics();
-                    }
-
-                } else if (mEnableGlucoseFlag) {
-                    if (mGlucoseCharacteristics.size() > 0) {
-                        mGlucoseCharacteristics.remove(0);
-                        enableAllGlucoseCharacteristics();
-                    }
-
-                }
+                    addRemoveData(session, descriptor);
             } else if (status == BluetoothGatt.GATT_INSUFFICIENT_AUTHENTICATION
                     || status == BluetoothGatt.GATT_INSUFFICIENT_ENCRYPTION) {
-                bondDevice();
+                bondDevice(gatt);
                 Intent intent = new Intent(ACTION_WRITE_FAILED);
-                mContext.sendBroadcast(intent);
+                sendSessionBroadcast(session, intent);
             } else {
                 String dataLog = mContext.getResources().getString(R.string.dl_commaseparator) +
                         "[" + serviceName + "|" + characteristicName + "|" + descriptorName + "] " +
@@ -292,12 +284,16 @@ public class BluetoothLeService extends Service {
                         + mContext.getResources().getString(R.string.dl_status_failure) +
                         +status;
                 Logger.datalog(dataLog);
-                mDisableNotificationFlag = false;
-                mEnableRDKNotificationFlag = false;
-                mEnableGlucoseFlag = false;
+                if (isSelected(session)) {
+                    mDisableNotificationFlag = false;
+                    mEnableRDKNotificationFlag = false;
+                    mEnableGlucoseFlag = false;
+                }
                 Intent intent = new Intent(ACTION_WRITE_FAILED);
-                mContext.sendBroadcast(intent);
+                sendSessionBroadcast(session, intent);
             }
+            session.getOperationQueue().onOperationComplete(GattOperation.TYPE_WRITE_DESCRIPTOR,
+                    descriptor.getCharacteristic(), descriptor.getUuid(), status);
         }
 
 
@@ -305,6 +301,10 @@ public class BluetoothLeService extends Service {
         public void onDescriptorRead(BluetoothGatt gatt, BluetoothGattDescriptor descriptor,
                                      int status) {
             LogUtil.e("BluetoothLeService", "onDescriptorRead()");
+            DeviceSession session = getSession(gatt);
+            if (session == null) {
+                return;
+            }
             String serviceUUID = descriptor.getCharacteristic().getService().getUuid().toString();
             String serviceName = GattAttributes.lookupUUID(descriptor.getCharacteristic().getService().getUuid(), serviceUUID);
 
@@ -377,22 +377,27 @@ public class BluetoothLeService extends Service {
                  * registered receivers
                  */
 
-                mContext.sendBroadcast(intent);
+                sendSessionBroadcast(session, intent);
             } else {
                 String dataLog = mContext.getResources().getString(R.string.dl_commaseparator)
-                        + "[" + mBluetoothDeviceName + "|" + mBluetoothDeviceAddress + "] " +
+                        + "[" + session.getName() + "|" + session.getAddress() + "] " +
                         mContext.getResources().getString(R.string.dl_characteristic_read_request_status) +
                         mContext.getResources().
                                 getString(R.string.dl_status_failure) + status;
                 Logger.datalog(dataLog);
             }
-
+            session.getOperationQueue().onOperationComplete(GattOperation.TYPE_READ_DESCRIPTOR,
+                    descriptor.getCharacteristic(), descriptor.getUuid(), status);
         }
 
         @Override
         public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic
                 characteristic, int status) {
             LogUtil.e("BluetoothLeService", "onCharacteristicWrite()");
+            DeviceSession session = getSession(gatt);
+            if (session == null) {
+                return;
+            }
             String serviceUUID = characteristic.getService().getUuid().toString();
             String serviceName = GattAttributes.lookupUUID(characteristic.getService().getUuid(), serviceUUID);
 
@@ -417,26 +422,23 @@ public class BluetoothLeService extends Service {
                                 getString(R.string.dl_status_failure) + status;
                 Intent intent = new Intent(ACTION_GATT_CHARACTERISTIC_ERROR);
                 intent.putExtra(Constants.EXTRA_CHARACTERISTIC_ERROR_MESSAGE, "" + status);
-                mContext.sendBroadcast(intent);
+                sendSessionBroadcast(session, intent);
                 Logger.datalog(dataLog);
             }
 
             Logger.d("CYSMART", dataLog);
-            boolean isExitBootloaderCmd = false;
-            synchronized (mGattCallback) {
-                isExitBootloaderCmd = mOtaExitBootloaderCmdInProgress;
-                if (mOtaExitBootloaderCmdInProgress)
-                    mOtaExitBootloaderCmdInProgress = false;
-            }
-
-            if (isExitBootloaderCmd)
-                onOtaExitBootloaderComplete(status);
+            session.getOperationQueue().onOperationComplete(GattOperation.TYPE_WRITE_CHARACTERISTIC,
+                    characteristic, null, status);
         }
 
         @Override
         public void onCharacteristicRead(BluetoothGatt gatt,
                                          BluetoothGattCharacteristic characteristic, int status) {
             LogUtil.e("BluetoothLeService", "onCharacteristicRead()");
+            DeviceSession session = getSession(gatt);
+            if (session == null) {
+                return;
+            }
             String serviceUUID = characteristic.getService().getUuid().toString();
             String serviceName = GattAttributes.lookupUUID(characteristic.getService().getUuid(), serviceUUID);
 
@@ -452,25 +454,31 @@ public class BluetoothLeService extends Service {
                         mContext.getResources().getString(R.string.dl_commaseparator) +
                         "[" + characteristicValue + "]";
                 Logger.datalog(dataLog);
-                broadcastNotifyUpdate(characteristic);
+                dispatchCharacteristicUpdate(session, characteristic, false);
             } else {
                 String dataLog = mContext.getResources().getString(R.string.dl_commaseparator)
-                        + "[" + mBluetoothDeviceName + "|" + mBluetoothDeviceAddress + "] " +
+                        + "[" + session.getName() + "|" + session.getAddress() + "] " +
                         mContext.getResources().getString(R.string.dl_characteristic_read_request_status) +
                         mContext.getResources().
                                 getString(R.string.dl_status_failure) + status;
                 Logger.datalog(dataLog);
                 if (status == BluetoothGatt.GATT_INSUFFICIENT_AUTHENTICATION
                         || status == BluetoothGatt.GATT_INSUFFICIENT_ENCRYPTION) {
-                    bondDevice();
+                    bondDevice(gatt);
                 }
             }
+            session.getOperationQueue().onOperationComplete(GattOperation.TYPE_READ_CHARACTERISTIC,
+                    characteristic, null, status);
         }
 
         @Override
         public void onCharacteristicChanged(BluetoothGatt gatt,
                                             BluetoothGattCharacteristic characteristic) {
             LogUtil.e("BluetoothLeService", "onCharacteristicChanged()");
+            DeviceSession session = getSession(gatt);
+            if (session == null) {
+                return;
+            }
             String serviceUUID = characteristic.getService().getUuid().toString();
             String serviceName = GattAttributes.lookupUUID(characteristic.getService().getUuid(), serviceUUID);
 
@@ -485,46 +493,111 @@ public class BluetoothLeService extends Service {
                     mContext.getResources().getString(R.string.dl_commaseparator) +
                     "[ " + characteristicValue + " ]";
             Logger.datalog(dataLog);
-            broadcastNotifyUpdate(characteristic);
+            dispatchCharacteristicUpdate(session, characteristic, true);
         }
 
         @Override
         public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
             LogUtil.e("BluetoothLeService", "onMtuChanged()");
+            DeviceSession session = getSession(gatt);
+            if (session == null) {
+                return;
+            }
             Resources res = mContext.getResources();
             String dataLog = String.format(
                     res.getString(R.string.exchange_mtu_rsp),
-                    mBluetoothDeviceName,
-                    mBluetoothDeviceAddress,
+                    session.getName(),
+                    session.getAddress(),
                     res.getString(R.string.exchange_mtu),
                     mtu,
                     status);
 
             Logger.datalog(dataLog);
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                session.setMtu(mtu);
+            }
+            session.getOperationQueue().onOperationComplete(GattOperation.TYPE_REQUEST_MTU, null, null, status);
         }
     };
 
-    public static void exchangeGattMtu(int mtu) {
+    public static void exchangeGattMtu(final int mtu) {
+        exchangeGattMtu(mBluetoothDeviceAddress, mtu);
+    }
+
+    public static void exchangeGattMtu(String address, final int mtu) {
         LogUtil.e("BluetoothLeService", "exchangeGattMtu()");
-        int retry = 5;
-        boolean status = false;
-        while (!status && retry > 0) {
-            status = mBluetoothGatt.requestMtu(mtu);
-            retry--;
+        final DeviceSession session = getSession(address);
+        if (session == null) {
+            return;
         }
+        session.getOperationQueue().enqueue(GattOperation.requestMtu(mtu).setListener(
+                new GattOperation.OnGattOperationCompleteListener() {
+                    @Override
+                    public void onGattOperationComplete(GattOperation operation, int status) {
+                        if (status == GattOperation.STATUS_NOT_ISSUED) {
+                            logMtuRequest(session, mtu, 0x01);
+                        }
+                    }
+                }));
+        logMtuRequest(session, mtu, 0x00);
+    }
+
+    /**
+     * ATT MTU negotiated with the selected device
+     *
+     * @return the MTU, {@link DeviceSession#DEFAULT_MTU} until an exchange succeeds
+     */
+    public static int getMtu() {
+        return getMtu(mBluetoothDeviceAddress);
+    }
 
+    public static int getMtu(String address) {
+        DeviceSession session = getSession(address);
+        return session != null ? session.getMtu() : DeviceSession.DEFAULT_MTU;
+    }
+
+    private static void logMtuRequest(DeviceSession session, int mtu, int status) {
         Resources res = mContext.getResources();
         String dataLog = String.format(
                 res.getString(R.string.exchange_mtu_request),
-                mBluetoothDeviceName,
-                mBluetoothDeviceAddress,
+                session.getName(),
+                session.getAddress(),
                 res.getString(R.string.exchange_mtu),
                 mtu,
-                status ? 0x00 : 0x01);
+                status);
 
         Logger.datalog(dataLog);
     }
 
+    /**
+     * Adds a request to the GATT operation queue of the selected device.
+     * The returned operation can be used to wait for or listen to its completion.
+     *
+     * @param operation
+     * @return GattOperation
+     */
+    public static GattOperation enqueueOperation(GattOperation operation) {
+        return enqueueOperation(mBluetoothDeviceAddress, operation);
+    }
+
+    /**
+     * Adds a request to the GATT operation queue of the given device. Without
+     * a session the operation completes at once with STATUS_NOT_ISSUED.
+     *
+     * @param address
+     * @param operation
+     * @return GattOperation
+     */
+    public static GattOperation enqueueOperation(String address, GattOperation operation) {
+        LogUtil.e("BluetoothLeService", "enqueueOperation()");
+        DeviceSession session = getSession(address);
+        if (session == null) {
+            operation.complete(GattOperation.STATUS_NOT_ISSUED);
+            return operation;
+        }
+        return session.getOperationQueue().enqueue(operation);
+    }
+
 
 //    private static void timeStamp(String log) {
 //        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
@@ -554,11 +627,102 @@ public class BluetoothLeService extends Service {
         return mBluetoothDeviceName;
     }
 
-    private static void broadcastConnectionUpdate(final String action) {
+    /**
+     * Returns the session of a device, null if it was never connected
+     *
+     * @param address
+     * @return DeviceSession
+     */
+    public static DeviceSession getSession(String address) {
+        if (address == null) {
+            return null;
+        }
+        return mSessions.get(address);
+    }
+
+    /**
+     * Session of a GATT callback. A callback arriving before connectGatt has
+     * returned binds its GATT instance to the session of the device.
+     *
+     * @param gatt
+     * @return null if the session was closed or reconnected through another
+     * GATT instance since, the callback is then stale
+     */
+    private static DeviceSession getSession(BluetoothGatt gatt) {
+        DeviceSession session = getSession(gatt.getDevice().getAddress());
+        if (session == null || !session.adoptBluetoothGatt(gatt)) {
+            return null;
+        }
+        return session;
+    }
+
+    /**
+     * @return the sessions of all devices connected since the service started
+     */
+    public static List<DeviceSession> getSessions() {
+        return new ArrayList<DeviceSession>(mSessions.values());
+    }
+
+    private static DeviceSession obtainSession(String address, String devicename) {
+        DeviceSession session = mSessions.get(address);
+        if (session == null) {
+            session = new DeviceSession(address, devicename);
+            DeviceSession existing = mSessions.putIfAbsent(address, session);
+            if (existing != null) {
+                session.quit();
+                session = existing;
+            }
+        }
+        session.setName(devicename);
+        return session;
+    }
+
+    /**
+     * Makes the device the target of the address-less methods and of the
+     * legacy broadcasts. The other sessions stay connected.
+     *
+     * @param address
+     * @return false if the device has no session
+     */
+    public static boolean selectDevice(String address) {
+        LogUtil.e("BluetoothLeService", "selectDevice()");
+        DeviceSession session = getSession(address);
+        if (session == null) {
+            return false;
+        }
+        mBluetoothDeviceAddress = session.getAddress();
+        mBluetoothDeviceName = session.getName();
+        return true;
+    }
+
+    private static boolean isSelected(DeviceSession session) {
+        return session.getAddress().equals(mBluetoothDeviceAddress);
+    }
+
+    /**
+     * Sends a broadcast on behalf of a session. Only the selected device reaches
+     * the broadcast receivers; the other sessions report through the
+     * GattEventBus and ACTION_SESSION_STATE_CHANGED.
+     *
+     * @param session
+     * @param intent
+     */
+    private static void sendSessionBroadcast(DeviceSession session, Intent intent) {
+        if (isSelected(session)) {
+            intent.putExtra(Constants.EXTRA_DEVICE_ADDRESS, session.getAddress());
+            mContext.sendBroadcast(intent);
+        }
+    }
+
+    private static void broadcastConnectionUpdate(DeviceSession session, final String action) {
         LogUtil.e("BluetoothLeService", "broadcastConnectionUpdate()");
         Logger.i("action :" + action);
-        final Intent intent = new Intent(action);
-        mContext.sendBroadcast(intent);
+        final Intent stateIntent = new Intent(ACTION_SESSION_STATE_CHANGED);
+        stateIntent.putExtra(Constants.EXTRA_DEVICE_ADDRESS, session.getAddress());
+        stateIntent.putExtra(Constants.EXTRA_CONNECTION_STATE, session.getConnectionState());
+        stateIntent.putExtra(Constants.EXTRA_SESSION_ACTION, action);
+        mContext.sendBroadcast(stateIntent);
+        sendSessionBroadcast(session, new Intent(action));
     }
 
     private static void broadcastWritwStatusUpdate(final String action) {
@@ -567,7 +731,46 @@ public class BluetoothLeService extends Service {
         mContext.sendBroadcast(intent);
     }
 
-    private static void broadcastNotifyUpdate(final BluetoothGattCharacteristic characteristic) {
+    /**
+     * Hands a received value to the GattEventBus subscribers and, for the
+     * selected device's characteristics no subscriber replaced the broadcast
+     * of, to the broadcast receivers.
+     * The value is decoded at most once, and only when a subscriber asked for
+     * decoded values or the broadcast is sent.
+     *
+     * @param session
+     * @param characteristic
+     * @param notification
+     */
+    private static void dispatchCharacteristicUpdate(DeviceSession session,
+                                                     BluetoothGattCharacteristic characteristic,
+                                                     boolean notification) {
+        UUID characteristicUuid = characteristic.getUuid();
+        String address = session.getAddress();
+        boolean broadcast = isSelected(session)
+                && !GattEventBus.replacesBroadcast(characteristicUuid, address);
+        Bundle decodedValues = null;
+        if (broadcast || GattEventBus.wantsDecodedValues(characteristicUuid, address)) {
+            decodedValues = new Bundle();
+            CharacteristicDecoderRegistry.decode(characteristic, mContext, decodedValues);
+        }
+        if (GattEventBus.isObserved(characteristicUuid, address)) {
+            GattEventBus.publish(new GattNotificationEvent(address,
+                    characteristic, notification, decodedValues));
+        }
+        if (broadcast) {
+            broadcastNotifyUpdate(characteristic, decodedValues);
+        }
+    }
+
+    /**
+     * Sends the ACTION_DATA_AVAILABLE broadcast for the characteristic
+     *
+     * @param characteristic
+     * @param decodedValues  values already decoded by the CharacteristicDecoderRegistry
+     */
+    private static void broadcastNotifyUpdate(final BluetoothGattCharacteristic characteristic,
+                                              Bundle decodedValues) {
         LogUtil.e("BluetoothLeService", "broadcastNotifyUpdate()");
         final Intent intent = new Intent(BluetoothLeService.ACTION_DATA_AVAILABLE);
         Bundle mBundle = new Bundle();
@@ -582,292 +785,18 @@ public class BluetoothLeService extends Service {
                 characteristic.getService().getUuid().toString());
         mBundle.putInt(Constants.EXTRA_BYTE_SERVICE_INSTANCE_VALUE,
                 characteristic.getService().getInstanceId());
-        // Heart rate Measurement notify value
-        if (characteristic.getUuid().equals(UUIDDatabase.UUID_HEART_RATE_MEASUREMENT)) {
-            String heart_rate = HRMParser.getHeartRate(characteristic);
-            String energy_expended = HRMParser
-                    .getEnergyExpended(characteristic);
-            ArrayList<Integer> rrintervel = HRMParser
-                    .getRRInterval(characteristic);
-            mBundle.putString(Constants.EXTRA_HRM_VALUE, heart_rate);
-            mBundle.putString(Constants.EXTRA_HRM_EEVALUE, energy_expended);
-            mBundle.putIntegerArrayList(Constants.EXTRA_HRM_RRVALUE, rrintervel);
-        }
-        // Health thermometer notify value
-        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_HEALTH_THERMOMETER)) {
-            ArrayList<String> health_temp = HTMParser.getHealthThermo(characteristic, mContext);
-            mBundle.putStringArrayList(Constants.EXTRA_HTM_VALUE, health_temp);
-        }
-        // Blood pressure measurement notify value
-        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_BLOOD_PRESSURE_MEASUREMENT)) {
-            String blood_pressure_systolic = BloodPressureParser
-                    .getSystolicBloodPressure(characteristic);
-            String blood_pressure_diastolic = BloodPressureParser
-                    .getDiaStolicBloodPressure(characteristic);
-            String blood_pressure_systolic_unit = BloodPressureParser
-                    .getSystolicBloodPressureUnit(characteristic, mContext);
-            String blood_pressure_diastolic_unit = BloodPressureParser
-                    .getDiaStolicBloodPressureUnit(characteristic, mContext);
-            mBundle.putString(
-                    Constants.EXTRA_PRESURE_SYSTOLIC_UNIT_VALUE,
-                    blood_pressure_systolic_unit);
-            mBundle.putString(
-                    Constants.EXTRA_PRESURE_DIASTOLIC_UNIT_VALUE,
-                    blood_pressure_diastolic_unit);
-            mBundle.putString(
-                    Constants.EXTRA_PRESURE_SYSTOLIC_VALUE,
-                    blood_pressure_systolic);
-            mBundle.putString(
-                    Constants.EXTRA_PRESURE_DIASTOLIC_VALUE,
-                    blood_pressure_diastolic);
-
-        }
-        // Cycling speed Measurement notify value
-        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_CSC_MEASURE)) {
-            ArrayList<String> csc_values = CSCParser
-                    .getCyclingSpeednCadence(characteristic);
-            mBundle.putStringArrayList(Constants.EXTRA_CSC_VALUE, csc_values);
-
-        }
-        //RDK characteristic
-        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_REP0RT)) {
-            BluetoothGattDescriptor descriptor = characteristic.getDescriptor
-                    (UUIDDatabase.UUID_REPORT_REFERENCE);
-            if (descriptor != null) {
-                BluetoothLeService.readDescriptor(characteristic.getDescriptor(
-                        UUIDDatabase.UUID_REPORT_REFERENCE));
-                ArrayList<String> reportReferenceValues = DescriptorParser.getReportReference(characteristic.
-                        getDescriptor(UUIDDatabase.UUID_REPORT_REFERENCE));
-                if (reportReferenceValues.size() == 2) {
-                    mBundle.putString(Constants.EXTRA_DESCRIPTOR_REPORT_REFERENCE_ID,
-                            reportReferenceValues.get(0));
-                    mBundle.putString(Constants.EXTRA_DESCRIPTOR_REPORT_REFERENCE_TYPE,
-                            reportReferenceValues.get(1));
-                }
-            }
-        }
 
         //case for OTA characteristic received
-        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_OTA_UPDATE_CHARACTERISTIC)) {
+        if (characteristic.getUuid().equals(UUIDDatabase.UUID_OTA_UPDATE_CHARACTERISTIC)) {
             Intent mIntentOTA = new Intent(BluetoothLeService.ACTION_OTA_DATA_AVAILABLE);
             mIntentOTA.putExtras(mBundle);
             mContext.sendBroadcast(mIntentOTA);
         }
-
-        // Body sensor location read value
-        if (characteristic.getUuid().equals(UUIDDatabase.UUID_BODY_SENSOR_LOCATION)) {
-            mBundle.putString(Constants.EXTRA_BSL_VALUE,
-                    HRMParser.getBodySensorLocation(characteristic, mContext));
-        }
-        // Manufacture name read value
-        else if (characteristic.getUuid()
-                .equals(UUIDDatabase.UUID_MANUFACTURE_NAME_STRING)) {
-            mBundle.putString(Constants.EXTRA_MNS_VALUE,
-                    Utils.getManufacturerNameString(characteristic));
-        }
-        // Model number read value
-        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_MODEL_NUMBER_STRING)) {
-            mBundle.putString(Constants.EXTRA_MONS_VALUE,
-                    Utils.getModelNumberString(characteristic));
-        }
-        // Serial number read value
-        else if (characteristic.getUuid()
-                .equals(UUIDDatabase.UUID_SERIAL_NUMBER_STRING)) {
-            mBundle.putString(Constants.EXTRA_SNS_VALUE,
-                    Utils.getSerialNumberString(characteristic));
-        }
-        // Hardware revision read value
-        else if (characteristic.getUuid()
-                .equals(UUIDDatabase.UUID_HARDWARE_REVISION_STRING)) {
-            mBundle.putString(Constants.EXTRA_HRS_VALUE,
-                    Utils.getHardwareRevisionString(characteristic));
-        }
-        // Firmware revision read value
-        else if (characteristic.getUuid()
-                .equals(UUIDDatabase.UUID_FIRMWARE_REVISION_STRING)) {
-            mBundle.putString(Constants.EXTRA_FRS_VALUE,
-                    Utils.getFirmwareRevisionString(characteristic));
-        }
-        // Software revision read value
-        else if (characteristic.getUuid()
-                .equals(UUIDDatabase.UUID_SOFTWARE_REVISION_STRING)) {
-            mBundle.putString(Constants.EXTRA_SRS_VALUE,
-                    Utils.getSoftwareRevisionString(characteristic));
-        }
-        // Battery level read value
-        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_BATTERY_LEVEL)) {
-            mBundle.putString(Constants.EXTRA_BTL_VALUE,
-                    Utils.getBatteryLevel(characteristic));
-        }
-        // PNP ID read value
-        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_PNP_ID)) {
-            mBundle.putString(Constants.EXTRA_PNP_VALUE,
-                    Utils.getPNPID(characteristic));
-        }
-        // System ID read value
-        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_SYSTEM_ID)) {
-            mBundle.putString(Constants.EXTRA_SID_VALUE,
-                    Utils.getSYSID(characteristic));
-        }
-        // Regulatory data read value
-        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_IEEE)) {
-            mBundle.putString(Constants.EXTRA_RCDL_VALUE,
-                    Utils.ByteArraytoHex(characteristic.getValue()));
-        }
-        // Health thermometer sensor location read value
-        else if (characteristic.getUuid()
-                .equals(UUIDDatabase.UUID_HEALTH_THERMOMETER_SENSOR_LOCATION)) {
-            mBundle.putString(Constants.EXTRA_HSL_VALUE, HTMParser
-                    .getHealthThermoSensorLocation(characteristic, mContext));
-        }
-        // CapSense proximity read value
-        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_CAPSENSE_PROXIMITY) ||
-                characteristic.getUuid().equals(UUIDDatabase.UUID_CAPSENSE_PROXIMITY_CUSTOM)) {
-            mBundle.putInt(Constants.EXTRA_CAPPROX_VALUE,
-                    CapSenseParser.getCapSenseProximity(characteristic));
-        }
-        // CapSense slider read value
-        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_CAPSENSE_SLIDER) ||
-                characteristic.getUuid().equals(UUIDDatabase.UUID_CAPSENSE_SLIDER_CUSTOM)) {
-            mBundle.putInt(Constants.EXTRA_CAPSLIDER_VALUE,
-                    CapSenseParser.getCapSenseSlider(characteristic));
-        }
-        // CapSense buttons read value
-        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_CAPSENSE_BUTTONS) ||
-                characteristic.getUuid().equals(UUIDDatabase.UUID_CAPSENSE_BUTTONS_CUSTOM)) {
-            mBundle.putIntegerArrayList(
-                    Constants.EXTRA_CAPBUTTONS_VALUE,
-                    CapSenseParser.getCapSenseButtons(characteristic));
-        }
-        // Alert level read value
-        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_ALERT_LEVEL)) {
-            mBundle.putString(Constants.EXTRA_ALERT_VALUE,
-                    Utils.getAlertLevel(characteristic));
-        }
-        // Transmission power level read value
-        else if (characteristic.getUuid()
-                .equals(UUIDDatabase.UUID_TRANSMISSION_POWER_LEVEL)) {
-            mBundle.putInt(Constants.EXTRA_POWER_VALUE,
-                    Utils.getTransmissionPower(characteristic));
-        }
-        // RGB Led read value
-        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_RGB_LED) ||
-                characteristic.getUuid().equals(UUIDDatabase.UUID_RGB_LED_CUSTOM)) {
-            mBundle.putString(Constants.EXTRA_RGB_VALUE,
-                    RGBParser.getRGBValue(characteristic));
-        }
-        // Glucose Measurement value
-        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_GLUCOSE_MEASUREMENT)
-                || characteristic.getUuid().equals(UUIDDatabase.UUID_GLUCOSE_MEASUREMENT_CONTEXT)) {
-            mBundle.putSparseParcelableArray(Constants.EXTRA_GLUCOSE_MEASUREMENT,
-                    GlucoseParser.getGlucoseMeasurement(characteristic));
-            //Logger.e("ON glucose Measurement received..." + Utils.ByteArraytoHex(characteristic.getValue()));
-        }
-//        // Glucose Measurement Context value
-//        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_GLUCOSE_MEASUREMENT_CONTEXT)) {
-//            mBundle.putSparseParcelableArray(Constants.EXTRA_GLUCOSE_MEASUREMENT_CONTEXT,
-//                    GlucoseParser.getGlucoseMeasurement(characteristic));
-//            Logger.e("ON glucose Measurement context received..." + Utils.ByteArraytoHex(characteristic.getValue()));
-//        }
-        // Glucose RACP
-        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_RECORD_ACCESS_CONTROL_POINT)) {
-            GlucoseParser.onCharacteristicIndicated(characteristic);
-            Logger.e("ON RACP received..." + Utils.ByteArraytoHex(characteristic.getValue()));
-        }
-        // Running speed read value
-        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_RSC_MEASURE)) {
-            mBundle.putStringArrayList(Constants.EXTRA_RSC_VALUE,
-                    RSCParser.getRunningSpeednCadence(characteristic));
-        }
-        // Accelerometer X read value
-        else if (characteristic.getUuid()
-                .equals(UUIDDatabase.UUID_ACCELEROMETER_READING_X)) {
-            mBundle.putInt(Constants.EXTRA_ACCX_VALUE, SensorHubParser
-                    .getAcceleroMeterXYZReading(characteristic));
-        }
-        // Accelerometer Y read value
-        else if (characteristic.getUuid()
-                .equals(UUIDDatabase.UUID_ACCELEROMETER_READING_Y)) {
-            mBundle.putInt(Constants.EXTRA_ACCY_VALUE, SensorHubParser
-                    .getAcceleroMeterXYZReading(characteristic));
-        }
-        // Accelerometer Z read value
-        else if (characteristic.getUuid()
-                .equals(UUIDDatabase.UUID_ACCELEROMETER_READING_Z)) {
-            mBundle.putInt(Constants.EXTRA_ACCZ_VALUE, SensorHubParser
-                    .getAcceleroMeterXYZReading(characteristic));
-        }
-        // Temperature read value
-        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_TEMPERATURE_READING)) {
-            mBundle.putFloat(Constants.EXTRA_STEMP_VALUE,
-                    SensorHubParser
-                            .getThermometerReading(characteristic));
-        }
-        // Barometer read value
-        else if (characteristic.getUuid().equals(UUIDDatabase.UUID_BAROMETER_READING)) {
-            mBundle.putInt(Constants.EXTRA_SPRESSURE_VALUE,
-                    SensorHubParser.getBarometerReading(characteristic));
-        }
-        // Accelerometer scan interval read value
-        else if (characteristic.getUuid()
-                .equals(UUIDDatabase.UUID_ACCELEROMETER_SENSOR_SCAN_INTERVAL)) {
-            mBundle.putInt(
-                    Constants.EXTRA_ACC_SENSOR_SCAN_VALUE,
-                    SensorHubParser
-                            .getSensorScanIntervalReading(characteristic));
-        }
-        // Accelerometer analog sensor read value
-        else if (characteristic.getUuid()
-                .equals(UUIDDatabase.UUID_ACCELEROMETER_ANALOG_SENSOR)) {
-            mBundle.putInt(Constants.EXTRA_ACC_SENSOR_TYPE_VALUE,
-                    SensorHubParser
-                            .getSensorTypeReading(characteristic));
-        }
-        // Accelerometer data accumulation read value
-        else if (characteristic.getUuid()
-                .equals(UUIDDatabase.UUID_ACCELEROMETER_DATA_ACCUMULATION)) {
-            mBundle.putInt(Constants.EXTRA_ACC_FILTER_VALUE,
-                    SensorHubParser
-                            .getFilterConfiguration(characteristic));
-        }
-        // Temperature sensor scan read value
-        else if (characteristic.getUuid()
-                .equals(UUIDDatabase.UUID_TEMPERATURE_SENSOR_SCAN_INTERVAL)) {
-            mBundle.putInt(
-                    Constants.EXTRA_STEMP_SENSOR_SCAN_VALUE,
-                    SensorHubParser
-                            .getSensorScanIntervalReading(characteristic));
-        }
-        // Temperature analog sensor read value
-        else if (characteristic.getUuid()
-                .equals(UUIDDatabase.UUID_TEMPERATURE_ANALOG_SENSOR)) {
-            mBundle.putInt(Constants.EXTRA_STEMP_SENSOR_TYPE_VALUE,
-                    SensorHubParser
-                            .getSensorTypeReading(characteristic));
-        }
-        // Barometer sensor scan interval read value
-        else if (characteristic.getUuid()
-                .equals(UUIDDatabase.UUID_BAROMETER_SENSOR_SCAN_INTERVAL)) {
-            mBundle.putInt(
-                    Constants.EXTRA_SPRESSURE_SENSOR_SCAN_VALUE,
-                    SensorHubParser
-                            .getSensorScanIntervalReading(characteristic));
-        }
-        // Barometer digital sensor
-        else if (characteristic.getUuid()
-                .equals(UUIDDatabase.UUID_BAROMETER_DIGITAL_SENSOR)) {
-            mBundle.putInt(Constants.EXTRA_SPRESSURE_SENSOR_TYPE_VALUE,
-                    SensorHubParser
-                            .getSensorTypeReading(characteristic));
-        }
-        // Barometer threshold for indication read value
-        else if (characteristic.getUuid()
-                .equals(UUIDDatabase.UUID_BAROMETER_THRESHOLD_FOR_INDICATION)) {
-            mBundle.putInt(Constants.EXTRA_SPRESSURE_THRESHOLD_VALUE,
-                    SensorHubParser.getThresholdValue(characteristic));
+        // Profile specific values, see CharacteristicDecoderRegistry
+        if (decodedValues != null) {
+            mBundle.putAll(decodedValues);
         }
 
-
         intent.putExtras(mBundle);
         /**
          * Sending the broad cast so that it can be received on registered
@@ -877,17 +806,22 @@ public class BluetoothLeService extends Service {
         mContext.sendBroadcast(intent);
     }
 
+    /**
+     * @param status GATT status of the write, or one of the GattOperation
+     *               statuses
+     */
     private static void onOtaExitBootloaderComplete(int status) {
         LogUtil.e("BluetoothLeService", "onOtaExitBootloaderComplete()");
         Bundle bundle = new Bundle();
-        bundle.putByteArray(Constants.EXTRA_BYTE_VALUE, new byte[]{(byte) status});
-        Intent intentOTA = new Intent(BluetoothLeService.ACTION_OTA_DATA_AVAILABLE);
+        bundle.putInt(Constants.EXTRA_OTA_WRITE_STATUS, status);
+        Intent intentOTA = new Intent(BluetoothLeService.ACTION_OTA_EXIT_BOOTLOADER_WRITTEN);
         intentOTA.putExtras(bundle);
         mContext.sendBroadcast(intentOTA);
     }
 
     /**
-     * Connects to the GATT server hosted on the BlueTooth LE device.
+     * Connects to the GATT server hosted on the BlueTooth LE device and makes it
+     * the selected device. Sessions of other devices are left connected.
      *
      * @param address The device address of the destination device.
      * @return Return true if the connection is initiated successfully. The
@@ -896,6 +830,20 @@ public class BluetoothLeService extends Service {
      * callback.
      */
     public static void connect(final String address, final String devicename, Context context) {
+        connect(address, devicename, context, true);
+    }
+
+    /**
+     * Connects to the device, see {@link #connect(String, String, Context)}
+     *
+     * @param address
+     * @param devicename
+     * @param context
+     * @param select     false to leave the selected device unchanged, the session
+     *                   then reports through ACTION_SESSION_STATE_CHANGED only
+     */
+    public static void connect(final String address, final String devicename, Context context,
+                               boolean select) {
         LogUtil.e("BluetoothLeService", "connect()");
         mContext = context;
         if (mBluetoothAdapter == null || address == null) {
@@ -907,17 +855,20 @@ public class BluetoothLeService extends Service {
         if (device == null) {
             return;
         }
+        DeviceSession session = obtainSession(address, devicename);
         // We want to directly connect to the device, so we are setting the
         // autoConnect
         // parameter to false.
-        mBluetoothGatt = device.connectGatt(context, false, mGattCallback);
+        session.startConnecting();
+        session.finishConnecting(device.connectGatt(context, false, mGattCallback));
         //Clearing Bluetooth cache before disconnecting to the device
         if (Utils.getBooleanSharedPreference(mContext, Constants.PREF_PAIR_CACHE_STATUS)) {
             //Logger.e(getActivity().getClass().getName() + "Cache cleared on disconnect!");
-            BluetoothLeService.refreshDeviceCache(BluetoothLeService.mBluetoothGatt);
+            BluetoothLeService.refreshDeviceCache(session.getBluetoothGatt());
+        }
+        if (select) {
+            selectDevice(address);
         }
-        mBluetoothDeviceAddress = address;
-        mBluetoothDeviceName = devicename;
         /**
          * Adding data to the data logger
          */
@@ -932,13 +883,18 @@ public class BluetoothLeService extends Service {
      */
     public static void reconnect() {
         LogUtil.e("BluetoothLeService", "reconnect()");
+        DeviceSession session = getSession(mBluetoothDeviceAddress);
+        if (session == null) {
+            return;
+        }
         BluetoothDevice device = mBluetoothAdapter
                 .getRemoteDevice(mBluetoothDeviceAddress);
         if (device == null) {
             return;
         }
-        mBluetoothGatt = null;//Creating a new instance of GATT before connect
-        mBluetoothGatt = device.connectGatt(mContext, false, mGattCallback);
+        //Creating a new instance of GATT before connect
+        session.startConnecting();
+        session.finishConnecting(device.connectGatt(mContext, false, mGattCallback));
         /**
          * Adding data to the data logger
          */
@@ -953,6 +909,10 @@ public class BluetoothLeService extends Service {
      */
     public static void reDiscoverServices() {
         LogUtil.e("BluetoothLeService", "reDiscoverServices()");
+        DeviceSession session = getSession(mBluetoothDeviceAddress);
+        if (session == null) {
+            return;
+        }
         BluetoothDevice device = mBluetoothAdapter
                 .getRemoteDevice(mBluetoothDeviceAddress);
         if (device == null) {
@@ -961,10 +921,11 @@ public class BluetoothLeService extends Service {
         /**
          * Disconnecting the device
          */
-        if (mBluetoothGatt != null)
-            mBluetoothGatt.disconnect();
+        if (session.getBluetoothGatt() != null)
+            session.getBluetoothGatt().disconnect();
 
-        mBluetoothGatt = device.connectGatt(mContext, false, mGattCallback);
+        session.startConnecting();
+        session.finishConnecting(device.connectGatt(mContext, false, mGattCallback));
         /**
          * Adding data to the data logger
          */
@@ -1001,33 +962,49 @@ public class BluetoothLeService extends Service {
      * callback.
      */
     public static void disconnect() {
+        disconnect(mBluetoothDeviceAddress);
+    }
+
+    /**
+     * Disconnects the given device, see {@link #disconnect()}
+     *
+     * @param address
+     */
+    public static void disconnect(String address) {
         LogUtil.e("BluetoothLeService", "disconnect()");
-        if (mBluetoothAdapter == null || mBluetoothGatt == null) {
+        DeviceSession session = getSession(address);
+        if (mBluetoothAdapter == null || session == null || session.getBluetoothGatt() == null) {
             return;
         } else {
             //Clearing Bluetooth cache before disconnecting to the device
             if (Utils.getBooleanSharedPreference(mContext, Constants.PREF_PAIR_CACHE_STATUS)) {
                 //Logger.e(getActivity().getClass().getName() + "Cache cleared on disconnect!");
-                BluetoothLeService.refreshDeviceCache(BluetoothLeService.mBluetoothGatt);
+                BluetoothLeService.refreshDeviceCache(session.getBluetoothGatt());
             }
-            mBluetoothGatt.disconnect();
+            session.getBluetoothGatt().disconnect();
             String dataLog = mContext.getResources().getString(R.string.dl_commaseparator)
-                    + "[" + mBluetoothDeviceName + "|" + mBluetoothDeviceAddress + "] " +
+                    + "[" + session.getName() + "|" + session.getAddress() + "] " +
                     mContext.getResources().getString(R.string.dl_disconnection_request);
             Logger.datalog(dataLog);
-            close();
+            Logger.flushDataLog();
+            close(address);
         }
 
     }
 
     public static void discoverServices() {
+        discoverServices(mBluetoothDeviceAddress);
+    }
+
+    public static void discoverServices(String address) {
         LogUtil.e("BluetoothLeService", "discoverServices()");
-        if (mBluetoothAdapter == null || mBluetoothGatt == null) {
+        DeviceSession session = getSession(address);
+        if (mBluetoothAdapter == null || session == null || session.getBluetoothGatt() == null) {
             return;
         } else {
-            mBluetoothGatt.discoverServices();
+            session.getBluetoothGatt().discoverServices();
             String dataLog = mContext.getResources().getString(R.string.dl_commaseparator)
-                    + "[" + mBluetoothDeviceName + "|" + mBluetoothDeviceAddress + "] " +
+                    + "[" + session.getName() + "|" + session.getAddress() + "] " +
                     mContext.getResources().getString(R.string.dl_service_discovery_request);
             Logger.datalog(dataLog);
         }
@@ -1044,16 +1021,29 @@ public class BluetoothLeService extends Service {
      */
     public static void readCharacteristic(
             BluetoothGattCharacteristic characteristic) {
+        readCharacteristic(mBluetoothDeviceAddress, characteristic);
+    }
+
+    /**
+     * Same as {@link #readCharacteristic(BluetoothGattCharacteristic)}
+     * on the device with the given address
+     *
+     * @param address
+     */
+    public static void readCharacteristic(String address,
+            BluetoothGattCharacteristic characteristic) {
         LogUtil.e("BluetoothLeService", "readCharacteristic()");
         String serviceUUID = characteristic.getService().getUuid().toString();
         String serviceName = GattAttributes.lookupUUID(characteristic.getService().getUuid(), serviceUUID);
 
         String characteristicUUID = characteristic.getUuid().toString();
         String characteristicName = GattAttributes.lookupUUID(characteristic.getUuid(), characteristicUUID);
-        if (mBluetoothAdapter == null || mBluetoothGatt == null) {
+        DeviceSession session = getSession(address);
+        if (mBluetoothAdapter == null || session == null
+                || session.getBluetoothGatt() == null) {
             return;
         }
-        mBluetoothGatt.readCharacteristic(characteristic);
+        session.getOperationQueue().enqueue(GattOperation.readCharacteristic(characteristic));
         String dataLog = mContext.getResources().getString(R.string.dl_commaseparator) +
                 "[" + serviceName + "|" + characteristicName + "] " +
                 mContext.getResources().getString(R.string.dl_characteristic_read_request);
@@ -1067,17 +1057,30 @@ public class BluetoothLeService extends Service {
      */
     public static void readDescriptor(
             BluetoothGattDescriptor descriptor) {
+        readDescriptor(mBluetoothDeviceAddress, descriptor);
+    }
+
+    /**
+     * Same as {@link #readDescriptor(BluetoothGattDescriptor)}
+     * on the device with the given address
+     *
+     * @param address
+     */
+    public static void readDescriptor(String address,
+            BluetoothGattDescriptor descriptor) {
         LogUtil.e("BluetoothLeService", "readDescriptor()");
         String serviceUUID = descriptor.getCharacteristic().getService().getUuid().toString();
         String serviceName = GattAttributes.lookupUUID(descriptor.getCharacteristic().getService().getUuid(), serviceUUID);
 
         String characteristicUUID = descriptor.getCharacteristic().getUuid().toString();
         String characteristicName = GattAttributes.lookupUUID(descriptor.getCharacteristic().getUuid(), characteristicUUID);
-        if (mBluetoothAdapter == null || mBluetoothGatt == null) {
+        DeviceSession session = getSession(address);
+        if (mBluetoothAdapter == null || session == null
+                || session.getBluetoothGatt() == null) {
             return;
         }
         //Logger.datalog(mContext.getResources().getString(R.string.dl_descriptor_read_request));
-        mBluetoothGatt.readDescriptor(descriptor);
+        session.getOperationQueue().enqueue(GattOperation.readDescriptor(descriptor));
         String dataLog = mContext.getResources().getString(R.string.dl_commaseparator) +
                 "[" + serviceName + "|" + characteristicName + "] " +
                 mContext.getResources().getString(R.string.dl_characteristic_read_request);
@@ -1093,6 +1096,17 @@ public class BluetoothLeService extends Service {
      */
     public static void writeCharacteristicNoresponse(
             BluetoothGattCharacteristic characteristic, byte[] byteArray) {
+        writeCharacteristicNoresponse(mBluetoothDeviceAddress, characteristic, byteArray);
+    }
+
+    /**
+     * Same as {@link #writeCharacteristicNoresponse(BluetoothGattCharacteristic, byte[])}
+     * on the device with the given address
+     *
+     * @param address
+     */
+    public static void writeCharacteristicNoresponse(String address,
+            BluetoothGattCharacteristic characteristic, byte[] byteArray) {
         LogUtil.e("BluetoothLeService", "writeCharacteristicNoresponse()");
         String serviceUUID = characteristic.getService().getUuid().toString();
         String serviceName = GattAttributes.lookupUUID(characteristic.getService().getUuid(), serviceUUID);
@@ -1101,12 +1115,13 @@ public class BluetoothLeService extends Service {
         String characteristicName = GattAttributes.lookupUUID(characteristic.getUuid(), characteristicUUID);
 
         String characteristicValue = Utils.ByteArraytoHex(byteArray);
-        if (mBluetoothAdapter == null || mBluetoothGatt == null) {
+        DeviceSession session = getSession(address);
+        if (mBluetoothAdapter == null || session == null
+                || session.getBluetoothGatt() == null) {
             return;
         } else {
-            byte[] valueByte = byteArray;
-            characteristic.setValue(valueByte);
-            mBluetoothGatt.writeCharacteristic(characteristic);
+            session.getOperationQueue().enqueue(GattOperation.writeCharacteristic(characteristic,
+                    byteArray, characteristic.getWriteType()));
             String dataLog = mContext.getResources().getString(R.string.dl_commaseparator) +
                     "[" + serviceName + "|" + characteristicName + "] " +
                     mContext.getResources().getString(R.string.dl_characteristic_write_request) +
@@ -1120,17 +1135,51 @@ public class BluetoothLeService extends Service {
     public static void writeOTABootLoaderCommand(
             BluetoothGattCharacteristic characteristic,
             byte[] value,
-            boolean isExitBootloaderCmd) {
+            final boolean isExitBootloaderCmd) {
         LogUtil.e("BluetoothLeService", "writeOTABootLoaderCommand()");
-        synchronized (mGattCallback) {
-            writeOTABootLoaderCommand(characteristic, value);
-            if (isExitBootloaderCmd)
-                mOtaExitBootloaderCmdInProgress = true;
+        GattOperation.OnGattOperationCompleteListener listener = null;
+        if (isExitBootloaderCmd) {
+            listener = new GattOperation.OnGattOperationCompleteListener() {
+                @Override
+                public void onGattOperationComplete(GattOperation operation, int status) {
+                    //Cancelled too, the device resetting disconnects
+                    onOtaExitBootloaderComplete(status);
+                }
+            };
         }
+        writeOTABootLoaderCommand(characteristic, value, listener);
     }
 
     public static void writeOTABootLoaderCommand(
             BluetoothGattCharacteristic characteristic, byte[] value) {
+        writeOTABootLoaderCommand(characteristic, value,
+                (GattOperation.OnGattOperationCompleteListener) null);
+    }
+
+    /**
+     * Queues a bootloader command ahead of all non OTA requests. The write is
+     * retried by the queue while the stack is busy, without blocking the caller.
+     *
+     * @param characteristic
+     * @param value
+     * @param listener       notified when the write response arrives
+     * @return GattOperation
+     */
+    public static GattOperation writeOTABootLoaderCommand(
+            BluetoothGattCharacteristic characteristic, byte[] value,
+            GattOperation.OnGattOperationCompleteListener listener) {
+        return writeOTABootLoaderCommand(mBluetoothDeviceAddress, characteristic, value, listener);
+    }
+
+    /**
+     * Same as {@link #writeOTABootLoaderCommand(BluetoothGattCharacteristic, byte[], GattOperation.OnGattOperationCompleteListener)}
+     * on the device with the given address
+     *
+     * @param address
+     */
+    public static GattOperation writeOTABootLoaderCommand(String address,
+            BluetoothGattCharacteristic characteristic, byte[] value,
+            GattOperation.OnGattOperationCompleteListener listener) {
         LogUtil.e("BluetoothLeService", "writeOTABootLoaderCommand()");
         String serviceUUID = characteristic.getService().getUuid().toString();
         String serviceName = GattAttributes.lookupUUID(characteristic.getService().getUuid(), serviceUUID);
@@ -1139,46 +1188,24 @@ public class BluetoothLeService extends Service {
         String characteristicName = GattAttributes.lookupUUID(characteristic.getUuid(), characteristicUUID);
 
         String characteristicValue = Utils.ByteArraytoHex(value);
-        if (mBluetoothAdapter == null || mBluetoothGatt == null) {
-            return;
-        } else {
-            byte[] valueByte = value;
-            characteristic.setValue(valueByte);
-            int counter = 20;
-            boolean status;
-            do {
-                int i = 0;
-                characteristic.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
-                status = mBluetoothGatt.writeCharacteristic(characteristic);
-                if (!status) {
-                    Log.v("CYSMART", "writeCharacteristic() status: False");
-                    try {
-                        Log.v("CYSMART OTA SLEEP>>>>", "" + i);
-                        i++;
-                        Thread.sleep(100, 0);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
-            } while (!status && (counter-- > 0));
-
-
-            if (status) {
-                String dataLog = mContext.getResources().getString(R.string.dl_commaseparator) +
-                        "[" + serviceName + "|" + characteristicName + "] " +
-                        mContext.getResources().getString(R.string.dl_characteristic_write_request) +
-                        mContext.getResources().getString(R.string.dl_commaseparator) +
-                        "[ " + characteristicValue + " ]";
-                Logger.datalog(dataLog);
-                Log.v("CYSMART", dataLog);
-
-                //timeStamp("OTA WRITE TIMESTAMP ");
-
-            } else {
-                Log.v("CYSMART", "writeOTABootLoaderCommand failed!");
-            }
+        DeviceSession session = getSession(address);
+        if (mBluetoothAdapter == null || session == null
+                || session.getBluetoothGatt() == null) {
+            return null;
         }
-
+        GattOperation operation = session.getOperationQueue().enqueue(GattOperation
+                .writeCharacteristic(characteristic, value,
+                        BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT)
+                .setPriority(GattOperation.PRIORITY_OTA)
+                .setListener(listener));
+        String dataLog = mContext.getResources().getString(R.string.dl_commaseparator) +
+                "[" + serviceName + "|" + characteristicName + "] " +
+                mContext.getResources().getString(R.string.dl_characteristic_write_request) +
+                mContext.getResources().getString(R.string.dl_commaseparator) +
+                "[ " + characteristicValue + " ]";
+        Logger.datalog(dataLog);
+        Log.v("CYSMART", dataLog);
+        return operation;
     }
 
     private static String getHexValue(byte[] array) {
@@ -1199,6 +1226,17 @@ public class BluetoothLeService extends Service {
 
     public static void writeCharacteristicGattDb(
             BluetoothGattCharacteristic characteristic, byte[] byteArray) {
+        writeCharacteristicGattDb(mBluetoothDeviceAddress, characteristic, byteArray);
+    }
+
+    /**
+     * Same as {@link #writeCharacteristicGattDb(BluetoothGattCharacteristic, byte[])}
+     * on the device with the given address
+     *
+     * @param address
+     */
+    public static void writeCharacteristicGattDb(String address,
+            BluetoothGattCharacteristic characteristic, byte[] byteArray) {
         LogUtil.e("BluetoothLeService", "writeCharacteristicGattDb()");
         String serviceUUID = characteristic.getService().getUuid().toString();
         String serviceName = GattAttributes.lookupUUID(characteristic.getService().getUuid(), serviceUUID);
@@ -1207,12 +1245,13 @@ public class BluetoothLeService extends Service {
         String characteristicName = GattAttributes.lookupUUID(characteristic.getUuid(), characteristicUUID);
 
         String characteristicValue = Utils.ByteArraytoHex(byteArray);
-        if (mBluetoothAdapter == null || mBluetoothGatt == null) {
+        DeviceSession session = getSession(address);
+        if (mBluetoothAdapter == null || session == null
+                || session.getBluetoothGatt() == null) {
             return;
         } else {
-            byte[] valueByte = byteArray;
-            characteristic.setValue(valueByte);
-            mBluetoothGatt.writeCharacteristic(characteristic);
+            session.getOperationQueue().enqueue(GattOperation.writeCharacteristic(characteristic,
+                    byteArray, characteristic.getWriteType()));
             String dataLog = mContext.getResources().getString(R.string.dl_commaseparator) +
                     "[" + serviceName + "|" + characteristicName + "] " +
                     mContext.getResources().getString(R.string.dl_characteristic_write_request) +
@@ -1227,12 +1266,23 @@ public class BluetoothLeService extends Service {
      * Writes the characteristic value to the given characteristic.
      *
      * @param characteristic the characteristic to write to
-     * @return true if request has been sent
+     * @return true if request has been queued
      */
     public static final boolean writeCharacteristic(final BluetoothGattCharacteristic characteristic) {
+        return writeCharacteristic(mBluetoothDeviceAddress, characteristic);
+    }
+
+    /**
+     * Same as {@link #writeCharacteristic(BluetoothGattCharacteristic)}
+     * on the device with the given address
+     *
+     * @param address
+     */
+    public static final boolean writeCharacteristic(String address,
+            final BluetoothGattCharacteristic characteristic) {
         LogUtil.e("BluetoothLeService", "writeCharacteristic()");
-        final BluetoothGatt gatt = mBluetoothGatt;
-        if (gatt == null || characteristic == null)
+        DeviceSession session = getSession(address);
+        if (session == null || session.getBluetoothGatt() == null || characteristic == null)
             return false;
 
         // Check characteristic property
@@ -1242,7 +1292,9 @@ public class BluetoothLeService extends Service {
 
         Logger.v("Writing characteristic " + characteristic.getUuid());
         Logger.d("gatt.writeCharacteristic(" + characteristic.getUuid() + ")");
-        return gatt.writeCharacteristic(characteristic);
+        session.getOperationQueue().enqueue(GattOperation.writeCharacteristic(characteristic,
+                characteristic.getValue(), characteristic.getWriteType()));
+        return true;
     }
 
 
@@ -1258,13 +1310,27 @@ public class BluetoothLeService extends Service {
     public static void writeCharacteristicRGB(
             BluetoothGattCharacteristic characteristic, int red, int green,
             int blue, int intensity) {
+        writeCharacteristicRGB(mBluetoothDeviceAddress, characteristic, red, green, blue, intensity);
+    }
+
+    /**
+     * Same as {@link #writeCharacteristicRGB(BluetoothGattCharacteristic, int, int, int, int)}
+     * on the device with the given address
+     *
+     * @param address
+     */
+    public static void writeCharacteristicRGB(String address,
+            BluetoothGattCharacteristic characteristic, int red, int green,
+            int blue, int intensity) {
         LogUtil.e("BluetoothLeService", "writeCharacteristicRGB()");
         String serviceUUID = characteristic.getService().getUuid().toString();
         String serviceName = GattAttributes.lookupUUID(characteristic.getService().getUuid(), serviceUUID);
 
         String characteristicUUID = characteristic.getUuid().toString();
         String characteristicName = GattAttributes.lookupUUID(characteristic.getUuid(), characteristicUUID);
-        if (mBluetoothAdapter == null || mBluetoothGatt == null) {
+        DeviceSession session = getSession(address);
+        if (mBluetoothAdapter == null || session == null
+                || session.getBluetoothGatt() == null) {
             return;
         } else {
             byte[] valueByte = new byte[4];
@@ -1272,9 +1338,9 @@ public class BluetoothLeService extends Service {
             valueByte[1] = (byte) green;
             valueByte[2] = (byte) blue;
             valueByte[3] = (byte) intensity;
-            characteristic.setValue(valueByte);
             String characteristicValue = Utils.ByteArraytoHex(valueByte);
-            mBluetoothGatt.writeCharacteristic(characteristic);
+            session.getOperationQueue().enqueue(GattOperation.writeCharacteristic(characteristic,
+                    valueByte, characteristic.getWriteType()));
             String dataLog = mContext.getResources().getString(R.string.dl_commaseparator) +
                     "[" + serviceName + "|" + characteristicName + "] " +
                     mContext.getResources().getString(R.string.dl_characteristic_write_request) +
@@ -1294,6 +1360,32 @@ public class BluetoothLeService extends Service {
      */
     public static void setCharacteristicNotification(
             BluetoothGattCharacteristic characteristic, boolean enabled) {
+        setCharacteristicNotification(characteristic, enabled, null);
+    }
+
+    /**
+     * Enables or disables notification on a give characteristic.
+     *
+     * @param characteristic Characteristic to act on.
+     * @param enabled        If true, enable notification. False otherwise.
+     * @param listener       notified when the descriptor write completes
+     * @return the queued descriptor write, or null if there is no CCCD
+     */
+    public static GattOperation setCharacteristicNotification(
+            BluetoothGattCharacteristic characteristic, boolean enabled,
+            GattOperation.OnGattOperationCompleteListener listener) {
+        return setCharacteristicNotification(mBluetoothDeviceAddress, characteristic, enabled, listener);
+    }
+
+    /**
+     * Same as {@link #setCharacteristicNotification(BluetoothGattCharacteristic, boolean, GattOperation.OnGattOperationCompleteListener)}
+     * on the device with the given address
+     *
+     * @param address
+     */
+    public static GattOperation setCharacteristicNotification(String address,
+            BluetoothGattCharacteristic characteristic, boolean enabled,
+            GattOperation.OnGattOperationCompleteListener listener) {
         LogUtil.e("BluetoothLeService", "setCharacteristicNotification()");
         String serviceUUID = characteristic.getService().getUuid().toString();
         String serviceName = GattAttributes.lookupUUID(characteristic.getService().getUuid(), serviceUUID);
@@ -1304,18 +1396,20 @@ public class BluetoothLeService extends Service {
         String descriptorUUID = GattAttributes.CLIENT_CHARACTERISTIC_CONFIG;
         String descriptorName = GattAttributes.lookupUUID(UUIDDatabase.
                 UUID_CLIENT_CHARACTERISTIC_CONFIG, descriptorUUID);
-        if (mBluetoothAdapter == null || mBluetoothGatt == null) {
-            return;
+        DeviceSession session = getSession(address);
+        if (mBluetoothAdapter == null || session == null
+                || session.getBluetoothGatt() == null) {
+            return null;
         }
+        GattOperation operation = null;
         if (characteristic.getDescriptor(UUID
                 .fromString(GattAttributes.CLIENT_CHARACTERISTIC_CONFIG)) != null) {
             if (enabled == true) {
                 BluetoothGattDescriptor descriptor = characteristic
                         .getDescriptor(UUID
                                 .fromString(GattAttributes.CLIENT_CHARACTERISTIC_CONFIG));
-                descriptor
-                        .setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
-                mBluetoothGatt.writeDescriptor(descriptor);
+                operation = session.getOperationQueue().enqueue(GattOperation.writeDescriptor(descriptor,
+                        BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE).setListener(listener));
                 String dataLog = mContext.getResources().getString(R.string.dl_commaseparator) +
                         "[" + serviceName + "|" + characteristicName + "|" + descriptorName + "] " +
                         mContext.getResources().getString(R.string.dl_characteristic_write_request)
@@ -1327,9 +1421,8 @@ public class BluetoothLeService extends Service {
                 BluetoothGattDescriptor descriptor = characteristic
                         .getDescriptor(UUID
                                 .fromString(GattAttributes.CLIENT_CHARACTERISTIC_CONFIG));
-                descriptor
-                        .setValue(BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE);
-                mBluetoothGatt.writeDescriptor(descriptor);
+                operation = session.getOperationQueue().enqueue(GattOperation.writeDescriptor(descriptor,
+                        BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE).setListener(listener));
                 String dataLog = mContext.getResources().getString(R.string.dl_commaseparator) +
                         "[" + serviceName + "|" + characteristicName + "|" + descriptorName + "] " +
                         mContext.getResources().getString(R.string.dl_characteristic_write_request)
@@ -1338,7 +1431,7 @@ public class BluetoothLeService extends Service {
                 Logger.datalog(dataLog);
             }
         }
-        mBluetoothGatt.setCharacteristicNotification(characteristic, enabled);
+        session.getBluetoothGatt().setCharacteristicNotification(characteristic, enabled);
         if (enabled) {
             String dataLog = mContext.getResources().getString(R.string.dl_commaseparator) +
                     "[" + serviceName + "|" + characteristicName + "] " +
@@ -1350,7 +1443,7 @@ public class BluetoothLeService extends Service {
                     mContext.getResources().getString(R.string.dl_characteristic_stop_notification);
             Logger.datalog(dataLog);
         }
-
+        return operation;
     }
 
     /**
@@ -1361,6 +1454,32 @@ public class BluetoothLeService extends Service {
      */
     public static void setCharacteristicIndication(
             BluetoothGattCharacteristic characteristic, boolean enabled) {
+        setCharacteristicIndication(characteristic, enabled, null);
+    }
+
+    /**
+     * Enables or disables indications on a give characteristic.
+     *
+     * @param characteristic Characteristic to act on.
+     * @param enabled        If true, enable indications. False otherwise.
+     * @param listener       notified when the descriptor write completes
+     * @return the queued descriptor write, or null if there is no CCCD
+     */
+    public static GattOperation setCharacteristicIndication(
+            BluetoothGattCharacteristic characteristic, boolean enabled,
+            GattOperation.OnGattOperationCompleteListener listener) {
+        return setCharacteristicIndication(mBluetoothDeviceAddress, characteristic, enabled, listener);
+    }
+
+    /**
+     * Same as {@link #setCharacteristicIndication(BluetoothGattCharacteristic, boolean, GattOperation.OnGattOperationCompleteListener)}
+     * on the device with the given address
+     *
+     * @param address
+     */
+    public static GattOperation setCharacteristicIndication(String address,
+            BluetoothGattCharacteristic characteristic, boolean enabled,
+            GattOperation.OnGattOperationCompleteListener listener) {
         LogUtil.e("BluetoothLeService", "setCharacteristicIndication()");
         String serviceUUID = characteristic.getService().getUuid().toString();
         String serviceName = GattAttributes.lookupUUID(characteristic.getService().getUuid(),
@@ -1373,19 +1492,20 @@ public class BluetoothLeService extends Service {
         String descriptorUUID = GattAttributes.CLIENT_CHARACTERISTIC_CONFIG;
         String descriptorName = GattAttributes.lookupUUID(UUIDDatabase.
                 UUID_CLIENT_CHARACTERISTIC_CONFIG, descriptorUUID);
-        if (mBluetoothAdapter == null || mBluetoothGatt == null) {
-            return;
+        DeviceSession session = getSession(address);
+        if (mBluetoothAdapter == null || session == null
+                || session.getBluetoothGatt() == null) {
+            return null;
         }
-
+        GattOperation operation = null;
         if (characteristic.getDescriptor(UUID
                 .fromString(GattAttributes.CLIENT_CHARACTERISTIC_CONFIG)) != null) {
             if (enabled == true) {
                 BluetoothGattDescriptor descriptor = characteristic
                         .getDescriptor(UUID
                                 .fromString(GattAttributes.CLIENT_CHARACTERISTIC_CONFIG));
-                descriptor
-                        .setValue(BluetoothGattDescriptor.ENABLE_INDICATION_VALUE);
-                mBluetoothGatt.writeDescriptor(descriptor);
+                operation = session.getOperationQueue().enqueue(GattOperation.writeDescriptor(descriptor,
+                        BluetoothGattDescriptor.ENABLE_INDICATION_VALUE).setListener(listener));
                 String dataLog = mContext.getResources().getString(R.string.dl_commaseparator) +
                         "[" + serviceName + "|" + characteristicName + "|" +
                         descriptorName + "] " +
@@ -1398,9 +1518,8 @@ public class BluetoothLeService extends Service {
                 BluetoothGattDescriptor descriptor = characteristic
                         .getDescriptor(UUID
                                 .fromString(GattAttributes.CLIENT_CHARACTERISTIC_CONFIG));
-                descriptor
-                        .setValue(BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE);
-                mBluetoothGatt.writeDescriptor(descriptor);
+                operation = session.getOperationQueue().enqueue(GattOperation.writeDescriptor(descriptor,
+                        BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE).setListener(listener));
                 String dataLog = mContext.getResources().getString(R.string.dl_commaseparator) +
                         "[" + serviceName + "|" + characteristicName + "|" + descriptorName + "] " +
                         mContext.getResources().getString(R.string.dl_characteristic_write_request)
@@ -1410,7 +1529,7 @@ public class BluetoothLeService extends Service {
                 Logger.datalog(dataLog);
             }
         }
-        mBluetoothGatt.setCharacteristicNotification(characteristic, enabled);
+        session.getBluetoothGatt().setCharacteristicNotification(characteristic, enabled);
         if (enabled) {
             String dataLog = mContext.getResources().getString(R.string.dl_commaseparator) +
                     "[" + serviceName + "|" + characteristicName + "] " +
@@ -1422,6 +1541,7 @@ public class BluetoothLeService extends Service {
                     mContext.getResources().getString(R.string.dl_characteristic_stop_indication);
             Logger.datalog(dataLog);
         }
+        return operation;
     }
 
     /**
@@ -1432,18 +1552,29 @@ public class BluetoothLeService extends Service {
      * @return A {@code List} of supported services.
      */
     public static List<BluetoothGattService> getSupportedGattServices() {
+        return getSupportedGattServices(mBluetoothDeviceAddress);
+    }
+
+    public static List<BluetoothGattService> getSupportedGattServices(String address) {
         LogUtil.e("BluetoothLeService", "getSupportedGattServices()");
-        if (mBluetoothGatt == null)
+        DeviceSession session = getSession(address);
+        if (session == null || session.getBluetoothGatt() == null)
             return null;
 
-        return mBluetoothGatt.getServices();
+        return session.getBluetoothGatt().getServices();
     }
 
     public static int getConnectionState() {
+        return getConnectionState(mBluetoothDeviceAddress);
+    }
+
+    public static int getConnectionState(String address) {
         LogUtil.e("BluetoothLeService", "getConnectionState()");
-        synchronized (mGattCallback) {
-            return mConnectionState;
+        DeviceSession session = getSession(address);
+        if (session == null) {
+            return STATE_DISCONNECTED;
         }
+        return session.getConnectionState();
     }
 
     public static boolean getBondedState() {
@@ -1456,11 +1587,65 @@ public class BluetoothLeService extends Service {
     }
 
     public static void bondDevice() {
+        DeviceSession session = getSession(mBluetoothDeviceAddress);
+        if (session != null && session.getBluetoothGatt() != null) {
+            bondDevice(session.getBluetoothGatt());
+        }
+    }
+
+    /**
+     * Clears the GATT cache of the selected device
+     *
+     * @return false if the device is not connected or the cache was not cleared
+     */
+    public static boolean refreshDeviceCache() {
+        DeviceSession session = getSession(mBluetoothDeviceAddress);
+        return session != null && session.getBluetoothGatt() != null
+                && refreshDeviceCache(session.getBluetoothGatt());
+    }
+
+    /**
+     * Queues a characteristic of the selected device for
+     * {@link #enableAllRDKCharacteristics()}
+     *
+     * @param characteristic
+     */
+    public static void addRDKCharacteristic(BluetoothGattCharacteristic characteristic) {
+        DeviceSession session = getSession(mBluetoothDeviceAddress);
+        if (session != null) {
+            session.addPendingRDKCharacteristic(characteristic);
+        }
+    }
+
+    /**
+     * Forgets the RDK characteristics of the selected device not enabled yet
+     */
+    public static void clearRDKCharacteristics() {
+        DeviceSession session = getSession(mBluetoothDeviceAddress);
+        if (session != null) {
+            session.takePendingRDKCharacteristics();
+        }
+    }
+
+    /**
+     * Queues a characteristic of the selected device for
+     * {@link #enableAllGlucoseCharacteristics()}
+     *
+     * @param characteristic
+     */
+    public static void addGlucoseCharacteristic(BluetoothGattCharacteristic characteristic) {
+        DeviceSession session = getSession(mBluetoothDeviceAddress);
+        if (session != null) {
+            session.addPendingGlucoseCharacteristic(characteristic);
+        }
+    }
+
+    private static void bondDevice(BluetoothGatt gatt) {
         LogUtil.e("BluetoothLeService", "bondDevice()");
         try {
             Class class1 = Class.forName("android.bluetooth.BluetoothDevice");
             Method createBondMethod = class1.getMethod("createBond");
-            Boolean returnValue = (Boolean) createBondMethod.invoke(mBluetoothGatt.getDevice());
+            Boolean returnValue = (Boolean) createBondMethod.invoke(gatt.getDevice());
             Logger.e("Pair initates status-->" + returnValue);
         } catch (Exception e) {
             Logger.e("Exception Pair" + e.getMessage());
@@ -1468,49 +1653,75 @@ public class BluetoothLeService extends Service {
 
     }
 
-    public static void addRemoveData(BluetoothGattDescriptor descriptor) {
+    public static void addRemoveData(DeviceSession session, BluetoothGattDescriptor descriptor) {
         LogUtil.e("BluetoothLeService", "addRemoveData()");
         switch (descriptor.getValue()[0]) {
             case 0:
                 //Disabled notification and indication
-                removeEnabledCharacteristic(descriptor.getCharacteristic());
+                session.removeEnabledCharacteristic(descriptor.getCharacteristic());
                 Logger.e("Removed characteristic");
                 break;
             case 1:
                 //Enabled notification
                 Logger.e("added notify characteristic");
-                addEnabledCharacteristic(descriptor.getCharacteristic());
+                session.addEnabledCharacteristic(descriptor.getCharacteristic());
                 break;
             case 2:
                 //Enabled indication
                 Logger.e("added indicate characteristic");
-                addEnabledCharacteristic(descriptor.getCharacteristic());
+                session.addEnabledCharacteristic(descriptor.getCharacteristic());
                 break;
         }
     }
 
-    public static void addEnabledCharacteristic(BluetoothGattCharacteristic
-                                                        bluetoothGattCharacteristic) {
-        LogUtil.e("BluetoothLeService", "addEnabledCharacteristic()");
-        if (!mEnabledCharacteristics.contains(bluetoothGattCharacteristic))
-            mEnabledCharacteristics.add(bluetoothGattCharacteristic);
+    /**
+     * @return the characteristics with notifications or indications enabled on
+     * the selected device
+     */
+    public static ArrayList<BluetoothGattCharacteristic> getEnabledCharacteristics() {
+        LogUtil.e("BluetoothLeService", "getEnabledCharacteristics()");
+        DeviceSession session = getSession(mBluetoothDeviceAddress);
+        if (session == null) {
+            return new ArrayList<BluetoothGattCharacteristic>();
+        }
+        return session.getEnabledCharacteristics();
     }
 
-    public static void removeEnabledCharacteristic(BluetoothGattCharacteristic
-                                                           bluetoothGattCharacteristic) {
-        LogUtil.e("BluetoothLeService", "removeEnabledCharacteristic()");
-        if (mEnabledCharacteristics.contains(bluetoothGattCharacteristic))
-            mEnabledCharacteristics.remove(bluetoothGattCharacteristic);
+    public static void clearEnabledCharacteristics() {
+        LogUtil.e("BluetoothLeService", "clearEnabledCharacteristics()");
+        DeviceSession session = getSession(mBluetoothDeviceAddress);
+        if (session != null) {
+            session.clearEnabledCharacteristics();
+        }
     }
 
+    /**
+     * Queues a CCCD write for every enabled characteristic. The writes are issued
+     * back to back by the operation queue; mDisableNotificationFlag is cleared
+     * once the last one completes.
+     */
     public static void disableAllEnabledCharacteristics() {
         LogUtil.e("BluetoothLeService", "disableAllEnabledCharacteristics()");
-        if (mEnabledCharacteristics.size() > 0) {
+        ArrayList<BluetoothGattCharacteristic> characteristics = getEnabledCharacteristics();
+        if (characteristics.size() > 0) {
             mDisableNotificationFlag = true;
-            BluetoothGattCharacteristic bluetoothGattCharacteristic = mEnabledCharacteristics.
-                    get(0);
-            Logger.e("Disabling characteristic--" + bluetoothGattCharacteristic.getUuid());
-            setCharacteristicNotification(bluetoothGattCharacteristic, false);
+            GattOperation.OnGattOperationCompleteListener lastListener =
+                    new GattOperation.OnGattOperationCompleteListener() {
+                        @Override
+                        public void onGattOperationComplete(GattOperation operation, int status) {
+                            mDisableNotificationFlag = false;
+                        }
+                    };
+            for (int pos = 0; pos < characteristics.size(); pos++) {
+                BluetoothGattCharacteristic bluetoothGattCharacteristic = characteristics.get(pos);
+                Logger.e("Disabling characteristic--" + bluetoothGattCharacteristic.getUuid());
+                boolean isLast = pos == characteristics.size() - 1;
+                GattOperation operation = setCharacteristicNotification(bluetoothGattCharacteristic,
+                        false, isLast ? lastListener : null);
+                if (isLast && operation == null) {
+                    mDisableNotificationFlag = false;
+                }
+            }
         } else {
             mDisableNotificationFlag = false;
         }
@@ -1519,39 +1730,93 @@ public class BluetoothLeService extends Service {
 
     public static void enableAllRDKCharacteristics() {
         LogUtil.e("BluetoothLeService", "enableAllRDKCharacteristics()");
-        if (mRDKCharacteristics.size() > 0) {
+        DeviceSession session = getSession(mBluetoothDeviceAddress);
+        ArrayList<BluetoothGattCharacteristic> characteristics = session != null
+                ? session.takePendingRDKCharacteristics()
+                : new ArrayList<BluetoothGattCharacteristic>();
+        if (characteristics.size() > 0) {
             mEnableRDKNotificationFlag = true;
-            BluetoothGattCharacteristic bluetoothGattCharacteristic = mRDKCharacteristics.
-                    get(0);
-            Logger.e("enabling characteristic--" + bluetoothGattCharacteristic.getInstanceId());
-            setCharacteristicNotification(bluetoothGattCharacteristic, true);
+            GattOperation.OnGattOperationCompleteListener lastListener =
+                    new GattOperation.OnGattOperationCompleteListener() {
+                        @Override
+                        public void onGattOperationComplete(GattOperation operation, int status) {
+                            onAllRDKCharacteristicsEnabled();
+                        }
+                    };
+            for (int pos = 0; pos < characteristics.size(); pos++) {
+                BluetoothGattCharacteristic bluetoothGattCharacteristic = characteristics.get(pos);
+                Logger.e("enabling characteristic--" + bluetoothGattCharacteristic.getInstanceId());
+                boolean isLast = pos == characteristics.size() - 1;
+                GattOperation operation = setCharacteristicNotification(bluetoothGattCharacteristic,
+                        true, isLast ? lastListener : null);
+                if (isLast && operation == null) {
+                    onAllRDKCharacteristicsEnabled();
+                }
+            }
         } else {
+            mEnableRDKNotificationFlag = true;
+            onAllRDKCharacteristicsEnabled();
+        }
+
+    }
+
+    /**
+     * A failed descriptor write clears mEnableRDKNotificationFlag and reports
+     * ACTION_WRITE_FAILED, in which case completion is not broadcast.
+     */
+    private static void onAllRDKCharacteristicsEnabled() {
+        LogUtil.e("BluetoothLeService", "onAllRDKCharacteristicsEnabled()");
+        if (mEnableRDKNotificationFlag) {
             Logger.e("All RDK Chara enabled");
             mEnableRDKNotificationFlag = false;
-            String intentAction = ACTION_WRITE_COMPLETED;
-            broadcastWritwStatusUpdate(intentAction);
+            broadcastWritwStatusUpdate(ACTION_WRITE_COMPLETED);
         }
-
     }
 
     public static void enableAllGlucoseCharacteristics() {
         LogUtil.e("BluetoothLeService", "enableAllGlucoseCharacteristics()");
-        if (mGlucoseCharacteristics.size() > 0) {
+        DeviceSession session = getSession(mBluetoothDeviceAddress);
+        ArrayList<BluetoothGattCharacteristic> characteristics = session != null
+                ? session.takePendingGlucoseCharacteristics()
+                : new ArrayList<BluetoothGattCharacteristic>();
+        if (characteristics.size() > 0) {
             mEnableGlucoseFlag = true;
-            BluetoothGattCharacteristic bluetoothGattCharacteristic = mGlucoseCharacteristics.
-                    get(0);
-            Logger.e("enabling characteristic--" + bluetoothGattCharacteristic);
-            if (bluetoothGattCharacteristic.getUuid().equals(UUIDDatabase.UUID_RECORD_ACCESS_CONTROL_POINT)) {
-                setCharacteristicIndication(bluetoothGattCharacteristic, true);
-                Logger.e("RACP Indicate");
-            } else {
-                setCharacteristicNotification(bluetoothGattCharacteristic, true);
+            GattOperation.OnGattOperationCompleteListener lastListener =
+                    new GattOperation.OnGattOperationCompleteListener() {
+                        @Override
+                        public void onGattOperationComplete(GattOperation operation, int status) {
+                            onAllGlucoseCharacteristicsEnabled();
+                        }
+                    };
+            for (int pos = 0; pos < characteristics.size(); pos++) {
+                BluetoothGattCharacteristic bluetoothGattCharacteristic = characteristics.get(pos);
+                Logger.e("enabling characteristic--" + bluetoothGattCharacteristic);
+                boolean isLast = pos == characteristics.size() - 1;
+                GattOperation operation;
+                if (bluetoothGattCharacteristic.getUuid().equals(UUIDDatabase.UUID_RECORD_ACCESS_CONTROL_POINT)) {
+                    operation = setCharacteristicIndication(bluetoothGattCharacteristic, true,
+                            isLast ? lastListener : null);
+                    Logger.e("RACP Indicate");
+                } else {
+                    operation = setCharacteristicNotification(bluetoothGattCharacteristic, true,
+                            isLast ? lastListener : null);
+                }
+                if (isLast && operation == null) {
+                    onAllGlucoseCharacteristicsEnabled();
+                }
             }
         } else {
+            mEnableGlucoseFlag = true;
+            onAllGlucoseCharacteristicsEnabled();
+        }
+    }
+
+    private static void onAllGlucoseCharacteristicsEnabled() {
+        LogUtil.e("BluetoothLeService", "onAllGlucoseCharacteristicsEnabled()");
+        if (mEnableGlucoseFlag) {
             Logger.e("All Gluocse Char enabled");
             mEnableGlucoseFlag = false;
-            String intentAction = ACTION_WRITE_COMPLETED;
-            broadcastWritwStatusUpdate(intentAction);
+            broadcastWritwStatusUpdate(ACTION_WRITE_COMPLETED);
         }
     }
 
@@ -1560,9 +1825,34 @@ public class BluetoothLeService extends Service {
      * resources are released properly.
      */
     public static void close() {
+        close(mBluetoothDeviceAddress);
+    }
+
+    /**
+     * Releases the GATT instance of the given device. The session is kept so
+     * that the device can be reconnected.
+     *
+     * @param address
+     */
+    public static void close(String address) {
         LogUtil.e("BluetoothLeService", "close()");
-        mBluetoothGatt.close();
-        mBluetoothGatt = null;
+        DeviceSession session = getSession(address);
+        if (session == null || session.getBluetoothGatt() == null) {
+            return;
+        }
+        BluetoothGatt gatt = session.getBluetoothGatt();
+        session.setBluetoothGatt(null);
+        gatt.close();
+    }
+
+    /**
+     * Closes every session
+     */
+    public static void closeAll() {
+        LogUtil.e("BluetoothLeService", "closeAll()");
+        for (DeviceSession session : mSessions.values()) {
+            close(session.getAddress());
+        }
     }
 
     @Override
@@ -1576,7 +1866,8 @@ public class BluetoothLeService extends Service {
     public boolean onUnbind(Intent intent) {
         LogUtil.e("BluetoothLeService", "onUnbind()");
         mBound = false;
-        close();
+        closeAll();
+        Logger.flushDataLog();
         return super.onUnbind(intent);
     }
 
@@ -0,0 +1,243 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.BLEConnectionServices;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import java.util.ArrayList;
+
+/**
+ * State of the connection to one peripheral: its GATT handle, connection
+ * state, operation queue, the characteristics with notifications or
+ * indications enabled and those waiting to be enabled by the RDK and glucose
+ * screens. Sessions are created and looked up by device address
+ * through BluetoothLeService.
+ */
+public class DeviceSession {
+
+    /**
+     * ATT MTU of a connection before any MTU exchange
+     */
+    public static final int DEFAULT_MTU = 23;
+
+    private final String mAddress;
+    private final GattOperationQueue mOperationQueue;
+    private final ArrayList<BluetoothGattCharacteristic> mEnabledCharacteristics =
+            new ArrayList<BluetoothGattCharacteristic>();
+    private final ArrayList<BluetoothGattCharacteristic> mPendingRDKCharacteristics =
+            new ArrayList<BluetoothGattCharacteristic>();
+    private final ArrayList<BluetoothGattCharacteristic> mPendingGlucoseCharacteristics =
+            new ArrayList<BluetoothGattCharacteristic>();
+    private volatile String mName;
+    private volatile BluetoothGatt mBluetoothGatt;
+    /**
+     * Set while connectGatt has not returned; the released instance is kept so
+     * that its late callbacks are not taken for the new one
+     */
+    private boolean mConnecting;
+    private BluetoothGatt mReleasedGatt;
+    private int mConnectionState = BluetoothLeService.STATE_DISCONNECTED;
+    private volatile int mMtu = DEFAULT_MTU;
+
+    DeviceSession(String address, String name) {
+        this.mAddress = address;
+        this.mName = name;
+        this.mOperationQueue = new GattOperationQueue("DeviceSession " + address);
+    }
+
+    public String getAddress() {
+        return mAddress;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    void setName(String name) {
+        this.mName = name;
+    }
+
+    public BluetoothGatt getBluetoothGatt() {
+        return mBluetoothGatt;
+    }
+
+    /**
+     * Binds the session to a new GATT instance, cancelling the requests queued
+     * for the previous one and forgetting its pending characteristics. Null
+     * releases the session.
+     *
+     * @param gatt
+     */
+    synchronized void setBluetoothGatt(BluetoothGatt gatt) {
+        this.mBluetoothGatt = gatt;
+        this.mMtu = DEFAULT_MTU;
+        mConnecting = false;
+        mReleasedGatt = null;
+        mOperationQueue.reset(gatt);
+        mPendingRDKCharacteristics.clear();
+        mPendingGlucoseCharacteristics.clear();
+    }
+
+    /**
+     * Releases the current GATT instance before connectGatt is called. Until
+     * {@link #finishConnecting(BluetoothGatt)}, the first callback of another
+     * instance for this device is adopted, since it may arrive before
+     * connectGatt returns.
+     */
+    synchronized void startConnecting() {
+        BluetoothGatt releasedGatt = mBluetoothGatt;
+        setBluetoothGatt(null);
+        mConnecting = true;
+        mReleasedGatt = releasedGatt;
+    }
+
+    /**
+     * Binds the instance returned by connectGatt, unless a callback already
+     * adopted it
+     *
+     * @param gatt
+     */
+    synchronized void finishConnecting(BluetoothGatt gatt) {
+        if (!mConnecting && mBluetoothGatt == gatt) {
+            return;
+        }
+        setBluetoothGatt(gatt);
+    }
+
+    /**
+     * Checks that a callback belongs to the current GATT instance, adopting it
+     * if the session is still waiting for connectGatt to return
+     *
+     * @param gatt
+     * @return false if the callback is stale
+     */
+    synchronized boolean adoptBluetoothGatt(BluetoothGatt gatt) {
+        if (mBluetoothGatt == gatt) {
+            return true;
+        }
+        if (!mConnecting || gatt == mReleasedGatt) {
+            return false;
+        }
+        setBluetoothGatt(gatt);
+        return true;
+    }
+
+    /**
+     * ATT MTU negotiated for the current connection
+     *
+     * @return
+     */
+    public int getMtu() {
+        return mMtu;
+    }
+
+    void setMtu(int mtu) {
+        this.mMtu = mtu;
+    }
+
+    public synchronized int getConnectionState() {
+        return mConnectionState;
+    }
+
+    synchronized void setConnectionState(int connectionState) {
+        this.mConnectionState = connectionState;
+    }
+
+    GattOperationQueue getOperationQueue() {
+        return mOperationQueue;
+    }
+
+    /**
+     * Characteristics with notifications or indications enabled, updated from
+     * the CCCD write responses.
+     *
+     * @return a copy of the list
+     */
+    public synchronized ArrayList<BluetoothGattCharacteristic> getEnabledCharacteristics() {
+        return new ArrayList<BluetoothGattCharacteristic>(mEnabledCharacteristics);
+    }
+
+    synchronized void addEnabledCharacteristic(BluetoothGattCharacteristic characteristic) {
+        if (!mEnabledCharacteristics.contains(characteristic))
+            mEnabledCharacteristics.add(characteristic);
+    }
+
+    synchronized void removeEnabledCharacteristic(BluetoothGattCharacteristic characteristic) {
+        mEnabledCharacteristics.remove(characteristic);
+    }
+
+    public synchronized void clearEnabledCharacteristics() {
+        mEnabledCharacteristics.clear();
+    }
+
+    synchronized void addPendingRDKCharacteristic(BluetoothGattCharacteristic characteristic) {
+        if (!mPendingRDKCharacteristics.contains(characteristic))
+            mPendingRDKCharacteristics.add(characteristic);
+    }
+
+    /**
+     * @return the RDK characteristics waiting to be enabled, which are no
+     * longer pending afterwards
+     */
+    synchronized ArrayList<BluetoothGattCharacteristic> takePendingRDKCharacteristics() {
+        ArrayList<BluetoothGattCharacteristic> characteristics =
+                new ArrayList<BluetoothGattCharacteristic>(mPendingRDKCharacteristics);
+        mPendingRDKCharacteristics.clear();
+        return characteristics;
+    }
+
+    synchronized void addPendingGlucoseCharacteristic(BluetoothGattCharacteristic characteristic) {
+        if (!mPendingGlucoseCharacteristics.contains(characteristic))
+            mPendingGlucoseCharacteristics.add(characteristic);
+    }
+
+    /**
+     * @return the glucose characteristics waiting to be enabled, which are no
+     * longer pending afterwards
+     */
+    synchronized ArrayList<BluetoothGattCharacteristic> takePendingGlucoseCharacteristics() {
+        ArrayList<BluetoothGattCharacteristic> characteristics =
+                new ArrayList<BluetoothGattCharacteristic>(mPendingGlucoseCharacteristics);
+        mPendingGlucoseCharacteristics.clear();
+        return characteristics;
+    }
+
+    /**
+     * Stops the operation queue thread. The session cannot be used afterwards.
+     */
+    void quit() {
+        mBluetoothGatt = null;
+        mOperationQueue.quit();
+    }
+}
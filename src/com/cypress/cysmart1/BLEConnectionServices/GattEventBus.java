@@ -0,0 +1,226 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.BLEConnectionServices;
+
+import android.os.Handler;
+
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process publish/subscribe channel for characteristic values. Subscribers
+ * receive the values next to the ACTION_DATA_AVAILABLE broadcast; a subscriber
+ * bound to one device may additionally ask to replace the broadcast for its
+ * UUID, which then only silences that device.
+ */
+public class GattEventBus {
+
+    private static final CopyOnWriteArrayList<Subscription> mSubscriptions =
+            new CopyOnWriteArrayList<Subscription>();
+
+    /**
+     * Subscribes to the raw values of one characteristic UUID, from every device.
+     *
+     * @param characteristicUuid UUID to listen to, or null for every characteristic
+     * @param handler            delivery thread, or null to be called directly on the
+     *                           GATT callback thread
+     * @param subscriber
+     */
+    public static void subscribe(UUID characteristicUuid, Handler handler,
+                                 GattEventSubscriber subscriber) {
+        subscribe(characteristicUuid, null, handler, subscriber, false, false);
+    }
+
+    /**
+     * Subscribes to values of one characteristic UUID, from every device.
+     *
+     * @param characteristicUuid UUID to listen to, or null for every characteristic
+     * @param handler            delivery thread, or null to be called directly on the
+     *                           GATT callback thread
+     * @param subscriber
+     * @param decoded            true to receive GattNotificationEvent.getDecodedValues()
+     */
+    public static void subscribe(UUID characteristicUuid, Handler handler,
+                                 GattEventSubscriber subscriber, boolean decoded) {
+        subscribe(characteristicUuid, null, handler, subscriber, decoded, false);
+    }
+
+    /**
+     * Subscribes to values of one characteristic UUID. Subscribing the same
+     * subscriber to the same UUID and device again has no effect.
+     *
+     * @param characteristicUuid UUID to listen to, or null for every characteristic
+     * @param deviceAddress      device to listen to, or null for every device
+     * @param handler            delivery thread, or null to be called directly on the
+     *                           GATT callback thread
+     * @param subscriber
+     * @param decoded            true to receive GattNotificationEvent.getDecodedValues()
+     * @param replacesBroadcast  true to stop the ACTION_DATA_AVAILABLE broadcast of
+     *                           this UUID for this device while subscribed. Only
+     *                           honoured when both the UUID and the device are given.
+     */
+    public static synchronized void subscribe(UUID characteristicUuid, String deviceAddress,
+                                              Handler handler, GattEventSubscriber subscriber,
+                                              boolean decoded, boolean replacesBroadcast) {
+        for (Subscription subscription : mSubscriptions) {
+            if (subscription.mSubscriber == subscriber
+                    && equal(characteristicUuid, subscription.mCharacteristicUuid)
+                    && equal(deviceAddress, subscription.mDeviceAddress)) {
+                return;
+            }
+        }
+        mSubscriptions.add(new Subscription(characteristicUuid, deviceAddress, handler,
+                subscriber, decoded, replacesBroadcast));
+    }
+
+    /**
+     * Removes every subscription of the subscriber. Events already posted to the
+     * subscriber's handler are dropped.
+     *
+     * @param subscriber
+     */
+    public static void unsubscribe(GattEventSubscriber subscriber) {
+        for (Subscription subscription : mSubscriptions) {
+            if (subscription.mSubscriber == subscriber) {
+                subscription.mActive = false;
+                mSubscriptions.remove(subscription);
+            }
+        }
+    }
+
+    /**
+     * @param characteristicUuid
+     * @param deviceAddress
+     * @return true if a subscriber asked to replace the broadcast of this UUID
+     * for this device
+     */
+    public static boolean replacesBroadcast(UUID characteristicUuid, String deviceAddress) {
+        for (Subscription subscription : mSubscriptions) {
+            if (subscription.mReplacesBroadcast
+                    && characteristicUuid.equals(subscription.mCharacteristicUuid)
+                    && deviceAddress.equals(subscription.mDeviceAddress)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param characteristicUuid
+     * @param deviceAddress
+     * @return true if a subscriber of this UUID and device asked for decoded values
+     */
+    public static boolean wantsDecodedValues(UUID characteristicUuid, String deviceAddress) {
+        for (Subscription subscription : mSubscriptions) {
+            if (subscription.mDecoded && subscription.accepts(characteristicUuid, deviceAddress)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param characteristicUuid
+     * @param deviceAddress
+     * @return true if any subscriber, including catch-all ones, wants this UUID
+     * from this device
+     */
+    public static boolean isObserved(UUID characteristicUuid, String deviceAddress) {
+        for (Subscription subscription : mSubscriptions) {
+            if (subscription.accepts(characteristicUuid, deviceAddress)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static void publish(GattNotificationEvent event) {
+        for (Subscription subscription : mSubscriptions) {
+            if (subscription.accepts(event.getCharacteristicUuid(), event.getDeviceAddress())) {
+                subscription.deliver(event);
+            }
+        }
+    }
+
+    private static boolean equal(Object first, Object second) {
+        return first == null ? second == null : first.equals(second);
+    }
+
+    /**
+     * Receives characteristic values on the thread chosen at subscription
+     */
+    public interface GattEventSubscriber {
+        void onGattNotification(GattNotificationEvent event);
+    }
+
+    private static class Subscription {
+        private final UUID mCharacteristicUuid;
+        private final String mDeviceAddress;
+        private final Handler mHandler;
+        private final GattEventSubscriber mSubscriber;
+        private final boolean mDecoded;
+        private final boolean mReplacesBroadcast;
+        private volatile boolean mActive = true;
+
+        Subscription(UUID characteristicUuid, String deviceAddress, Handler handler,
+                     GattEventSubscriber subscriber, boolean decoded,
+                     boolean replacesBroadcast) {
+            this.mCharacteristicUuid = characteristicUuid;
+            this.mDeviceAddress = deviceAddress;
+            this.mHandler = handler;
+            this.mSubscriber = subscriber;
+            this.mDecoded = decoded;
+            this.mReplacesBroadcast = replacesBroadcast;
+        }
+
+        boolean accepts(UUID characteristicUuid, String deviceAddress) {
+            return (mCharacteristicUuid == null || mCharacteristicUuid.equals(characteristicUuid))
+                    && (mDeviceAddress == null || mDeviceAddress.equals(deviceAddress));
+        }
+
+        void deliver(final GattNotificationEvent event) {
+            if (mHandler == null) {
+                mSubscriber.onGattNotification(event);
+                return;
+            }
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mActive) {
+                        mSubscriber.onGattNotification(event);
+                    }
+                }
+            });
+        }
+    }
+}
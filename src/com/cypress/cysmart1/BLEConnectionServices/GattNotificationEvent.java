@@ -0,0 +1,173 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.BLEConnectionServices;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.os.Bundle;
+import android.os.SystemClock;
+
+import java.util.UUID;
+
+/**
+ * Immutable value received from a characteristic, either as a notification /
+ * indication or as a read response. Published through {@link GattEventBus}.
+ */
+public class GattNotificationEvent {
+
+    private final String mDeviceAddress;
+    private final UUID mServiceUuid;
+    private final int mServiceInstanceId;
+    private final UUID mCharacteristicUuid;
+    private final int mInstanceId;
+    private final byte[] mValue;
+    private final long mTimestampNanos;
+    private final boolean mNotification;
+    private final BluetoothGattCharacteristic mCharacteristic;
+    private final Bundle mDecodedValues;
+
+    /**
+     * Captures the current value of the characteristic. Must be called on the
+     * GATT callback thread, before the stack reuses the characteristic.
+     *
+     * @param deviceAddress
+     * @param characteristic
+     * @param notification   true for notifications/indications, false for read responses
+     */
+    public GattNotificationEvent(String deviceAddress,
+                                 BluetoothGattCharacteristic characteristic,
+                                 boolean notification) {
+        this(deviceAddress, characteristic, notification, null);
+    }
+
+    /**
+     * Captures the current value of the characteristic together with its
+     * decoded form
+     *
+     * @param deviceAddress
+     * @param characteristic
+     * @param notification   true for notifications/indications, false for read responses
+     * @param decodedValues  Constants.EXTRA_* values from the CharacteristicDecoderRegistry,
+     *                       or null if the value was not decoded
+     */
+    public GattNotificationEvent(String deviceAddress,
+                                 BluetoothGattCharacteristic characteristic,
+                                 boolean notification, Bundle decodedValues) {
+        this.mTimestampNanos = SystemClock.elapsedRealtimeNanos();
+        this.mDeviceAddress = deviceAddress;
+        this.mCharacteristic = characteristic;
+        this.mServiceUuid = characteristic.getService().getUuid();
+        this.mServiceInstanceId = characteristic.getService().getInstanceId();
+        this.mCharacteristicUuid = characteristic.getUuid();
+        this.mInstanceId = characteristic.getInstanceId();
+        byte[] value = characteristic.getValue();
+        this.mValue = value == null ? new byte[0] : value.clone();
+        this.mNotification = notification;
+        this.mDecodedValues = decodedValues;
+    }
+
+    public String getDeviceAddress() {
+        return mDeviceAddress;
+    }
+
+    public UUID getServiceUuid() {
+        return mServiceUuid;
+    }
+
+    public int getServiceInstanceId() {
+        return mServiceInstanceId;
+    }
+
+    public UUID getCharacteristicUuid() {
+        return mCharacteristicUuid;
+    }
+
+    public int getInstanceId() {
+        return mInstanceId;
+    }
+
+    /**
+     * The received bytes. The array is shared by all subscribers and must not
+     * be modified.
+     *
+     * @return byte[]
+     */
+    public byte[] getValue() {
+        return mValue;
+    }
+
+    /**
+     * @return receive time in {@code SystemClock.elapsedRealtimeNanos()} base
+     */
+    public long getTimestampNanos() {
+        return mTimestampNanos;
+    }
+
+    public boolean isNotification() {
+        return mNotification;
+    }
+
+    /**
+     * Values decoded by the CharacteristicDecoderRegistry, keyed by the
+     * Constants.EXTRA_* names. Only present when a subscriber of the UUID asked
+     * for decoded values; shared by all subscribers and must not be modified.
+     *
+     * @return Bundle or null
+     */
+    public Bundle getDecodedValues() {
+        return mDecodedValues;
+    }
+
+    /**
+     * Characteristic the value was received on, for descriptor and property
+     * lookups. Its current value may already be newer than {@link #getValue()}.
+     *
+     * @return BluetoothGattCharacteristic
+     */
+    public BluetoothGattCharacteristic getCharacteristic() {
+        return mCharacteristic;
+    }
+
+    /**
+     * Checks whether the event belongs to the given characteristic
+     *
+     * @param characteristic
+     * @return boolean
+     */
+    public boolean isFrom(BluetoothGattCharacteristic characteristic) {
+        return characteristic != null
+                && mCharacteristicUuid.equals(characteristic.getUuid())
+                && mInstanceId == characteristic.getInstanceId()
+                && mServiceUuid.equals(characteristic.getService().getUuid())
+                && mServiceInstanceId == characteristic.getService().getInstanceId();
+    }
+}
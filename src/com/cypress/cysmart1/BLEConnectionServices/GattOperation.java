@@ -0,0 +1,318 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.BLEConnectionServices;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.os.Build;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single GATT request waiting in the {@link GattOperationQueue}. The operation
+ * doubles as the future of the request: callers can attach a listener or block
+ * on {@link #await(long)} until the matching {@code BluetoothGattCallback}
+ * completion arrives.
+ */
+public class GattOperation implements Comparable<GattOperation> {
+
+    /**
+     * Operation types
+     */
+    public static final int TYPE_READ_CHARACTERISTIC = 0;
+    public static final int TYPE_WRITE_CHARACTERISTIC = 1;
+    public static final int TYPE_READ_DESCRIPTOR = 2;
+    public static final int TYPE_WRITE_DESCRIPTOR = 3;
+    public static final int TYPE_REQUEST_MTU = 4;
+
+    /**
+     * Priorities. Lower values are issued first.
+     */
+    public static final int PRIORITY_OTA = 0;
+    public static final int PRIORITY_DEFAULT = 1;
+    public static final int PRIORITY_READ = 2;
+
+    /**
+     * Completion status values used in addition to the BluetoothGatt status codes
+     */
+    public static final int STATUS_TIMEOUT = -1;
+    public static final int STATUS_NOT_ISSUED = -2;
+    public static final int STATUS_CANCELLED = -3;
+    public static final int STATUS_PENDING = -4;
+
+    public static final long DEFAULT_TIMEOUT = 5000;
+
+    private final int mType;
+    private final BluetoothGattCharacteristic mCharacteristic;
+    private final BluetoothGattDescriptor mDescriptor;
+    private final byte[] mValue;
+    private final int mWriteType;
+    private final int mMtu;
+    private int mPriority = PRIORITY_DEFAULT;
+    private long mTimeout = DEFAULT_TIMEOUT;
+    private long mSequence;
+    private OnGattOperationCompleteListener mListener;
+    private int mBusyRefusals;
+    private long mIssueDelay;
+    private volatile int mStatus = STATUS_PENDING;
+    private final CountDownLatch mDoneLatch = new CountDownLatch(1);
+
+    private GattOperation(int type, BluetoothGattCharacteristic characteristic,
+                          BluetoothGattDescriptor descriptor, byte[] value,
+                          int writeType, int mtu) {
+        this.mType = type;
+        this.mCharacteristic = characteristic;
+        this.mDescriptor = descriptor;
+        this.mValue = value;
+        this.mWriteType = writeType;
+        this.mMtu = mtu;
+    }
+
+    public static GattOperation readCharacteristic(BluetoothGattCharacteristic characteristic) {
+        return new GattOperation(TYPE_READ_CHARACTERISTIC, characteristic, null, null, 0, 0)
+                .setPriority(PRIORITY_READ);
+    }
+
+    /**
+     * Write the given value to a characteristic. The value is copied into the
+     * characteristic only when the operation is issued, so queued writes to the
+     * same characteristic do not overwrite each other.
+     *
+     * @param characteristic
+     * @param value
+     * @param writeType      one of BluetoothGattCharacteristic.WRITE_TYPE_*
+     */
+    public static GattOperation writeCharacteristic(BluetoothGattCharacteristic characteristic,
+                                                    byte[] value, int writeType) {
+        return new GattOperation(TYPE_WRITE_CHARACTERISTIC, characteristic, null, value,
+                writeType, 0);
+    }
+
+    public static GattOperation readDescriptor(BluetoothGattDescriptor descriptor) {
+        return new GattOperation(TYPE_READ_DESCRIPTOR, descriptor.getCharacteristic(),
+                descriptor, null, 0, 0).setPriority(PRIORITY_READ);
+    }
+
+    public static GattOperation writeDescriptor(BluetoothGattDescriptor descriptor, byte[] value) {
+        return new GattOperation(TYPE_WRITE_DESCRIPTOR, descriptor.getCharacteristic(),
+                descriptor, value, 0, 0);
+    }
+
+    public static GattOperation requestMtu(int mtu) {
+        return new GattOperation(TYPE_REQUEST_MTU, null, null, null, 0, mtu);
+    }
+
+    public GattOperation setPriority(int priority) {
+        this.mPriority = priority;
+        return this;
+    }
+
+    public GattOperation setTimeout(long timeout) {
+        this.mTimeout = timeout;
+        return this;
+    }
+
+    public GattOperation setListener(OnGattOperationCompleteListener listener) {
+        this.mListener = listener;
+        return this;
+    }
+
+    public int getType() {
+        return mType;
+    }
+
+    public int getPriority() {
+        return mPriority;
+    }
+
+    public long getTimeout() {
+        return mTimeout;
+    }
+
+    public BluetoothGattCharacteristic getCharacteristic() {
+        return mCharacteristic;
+    }
+
+    public BluetoothGattDescriptor getDescriptor() {
+        return mDescriptor;
+    }
+
+    public byte[] getValue() {
+        return mValue;
+    }
+
+    public int getMtu() {
+        return mMtu;
+    }
+
+    void setSequence(long sequence) {
+        this.mSequence = sequence;
+    }
+
+    void onBusyRefusal() {
+        mBusyRefusals++;
+    }
+
+    void setIssueDelay(long issueDelay) {
+        this.mIssueDelay = issueDelay;
+    }
+
+    /**
+     * Times the stack refused the request as busy before it was issued
+     *
+     * @return int
+     */
+    public int getBusyRefusals() {
+        return mBusyRefusals;
+    }
+
+    /**
+     * Time between the first attempt and the stack accepting the request
+     *
+     * @return in milliseconds
+     */
+    public long getIssueDelay() {
+        return mIssueDelay;
+    }
+
+    /**
+     * Hands the request to the Android stack.
+     *
+     * @param gatt
+     * @return false if the stack refused the request (usually because it is busy)
+     * @throws UnsupportedOperationException if the platform lacks the request,
+     *                                       the queue then fails the operation
+     */
+    boolean execute(BluetoothGatt gatt) {
+        switch (mType) {
+            case TYPE_READ_CHARACTERISTIC:
+                return gatt.readCharacteristic(mCharacteristic);
+            case TYPE_WRITE_CHARACTERISTIC:
+                mCharacteristic.setValue(mValue);
+                mCharacteristic.setWriteType(mWriteType);
+                return gatt.writeCharacteristic(mCharacteristic);
+            case TYPE_READ_DESCRIPTOR:
+                return gatt.readDescriptor(mDescriptor);
+            case TYPE_WRITE_DESCRIPTOR:
+                mDescriptor.setValue(mValue);
+                return gatt.writeDescriptor(mDescriptor);
+            case TYPE_REQUEST_MTU:
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+                    throw new UnsupportedOperationException("MTU exchange needs API level 21");
+                }
+                return gatt.requestMtu(mMtu);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Checks whether a GATT callback belongs to this operation
+     *
+     * @param type
+     * @param characteristic characteristic reported by the callback, null for MTU
+     * @param descriptorUUID descriptor UUID reported by the callback, null if none
+     * @return boolean
+     */
+    boolean matches(int type, BluetoothGattCharacteristic characteristic, UUID descriptorUUID) {
+        if (type != mType) {
+            return false;
+        }
+        if (mType == TYPE_REQUEST_MTU) {
+            return true;
+        }
+        if (characteristic == null
+                || !characteristic.getUuid().equals(mCharacteristic.getUuid())
+                || characteristic.getInstanceId() != mCharacteristic.getInstanceId()) {
+            return false;
+        }
+        return mDescriptor == null || mDescriptor.getUuid().equals(descriptorUUID);
+    }
+
+    void complete(int status) {
+        if (mDoneLatch.getCount() == 0) {
+            return;
+        }
+        mStatus = status;
+        mDoneLatch.countDown();
+        if (mListener != null) {
+            mListener.onGattOperationComplete(this, status);
+        }
+    }
+
+    public boolean isDone() {
+        return mDoneLatch.getCount() == 0;
+    }
+
+    public boolean isSuccessful() {
+        return mStatus == BluetoothGatt.GATT_SUCCESS;
+    }
+
+    public int getStatus() {
+        return mStatus;
+    }
+
+    /**
+     * Blocks until the operation completes. Must not be called on the thread
+     * delivering GATT callbacks.
+     *
+     * @param timeout in milliseconds
+     * @return the completion status, or STATUS_PENDING if the wait timed out
+     * @throws InterruptedException
+     */
+    public int await(long timeout) throws InterruptedException {
+        mDoneLatch.await(timeout, TimeUnit.MILLISECONDS);
+        return mStatus;
+    }
+
+    @Override
+    public int compareTo(GattOperation another) {
+        if (mPriority != another.mPriority) {
+            return mPriority < another.mPriority ? -1 : 1;
+        }
+        if (mSequence != another.mSequence) {
+            return mSequence < another.mSequence ? -1 : 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Completion callback of a queued operation. Invoked on the queue thread.
+     */
+    public interface OnGattOperationCompleteListener {
+        void onGattOperationComplete(GattOperation operation, int status);
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.BLEConnectionServices;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+import com.cypress.cysmart1.CommonUtils.Logger;
+
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+/**
+ * Serializes the GATT requests of one connection. Android only allows a single
+ * outstanding request per BluetoothGatt, so every operation is held here until
+ * the callback of the previous one arrives, then issued immediately.
+ * All queue state is touched only from the queue's own thread.
+ */
+public class GattOperationQueue {
+
+    /**
+     * Pause before re-issuing a request the stack refused as busy. It doubles
+     * on every refusal up to the maximum; the operation gives up once its own
+     * timeout has elapsed since the first attempt.
+     */
+    private static final long MIN_BUSY_RETRY_DELAY = 2;
+    private static final long MAX_BUSY_RETRY_DELAY = 32;
+
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+    private final PriorityQueue<GattOperation> mPendingOperations =
+            new PriorityQueue<GattOperation>();
+    private BluetoothGatt mBluetoothGatt;
+    private GattOperation mCurrentOperation;
+    private long mSequence;
+    private long mBusyRetryDelay;
+    private long mFirstIssueTime;
+
+    private final Runnable mTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mCurrentOperation != null) {
+                Logger.e("GATT operation timed out, type " + mCurrentOperation.getType());
+                finishCurrent(GattOperation.STATUS_TIMEOUT);
+            }
+        }
+    };
+
+    private final Runnable mIssueRunnable = new Runnable() {
+        @Override
+        public void run() {
+            issueCurrent();
+        }
+    };
+
+    public GattOperationQueue(String name) {
+        mThread = new HandlerThread(name);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    /**
+     * Binds the queue to a new GATT instance, cancelling whatever was pending
+     * for the previous one.
+     *
+     * @param gatt
+     */
+    public void reset(final BluetoothGatt gatt) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                cancelOperations();
+                mBluetoothGatt = gatt;
+            }
+        });
+    }
+
+    /**
+     * Adds an operation to the queue
+     *
+     * @param operation
+     * @return the same operation, to be used as the future of the request
+     */
+    public GattOperation enqueue(final GattOperation operation) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                operation.setSequence(mSequence++);
+                mPendingOperations.add(operation);
+                issueNext();
+            }
+        });
+        return operation;
+    }
+
+    /**
+     * Must be called from every BluetoothGattCallback completion
+     *
+     * @param type           GattOperation.TYPE_*
+     * @param characteristic characteristic reported by the callback, null for MTU
+     * @param descriptorUUID descriptor reported by the callback, null if none
+     * @param status
+     */
+    public void onOperationComplete(final int type,
+                                    final BluetoothGattCharacteristic characteristic,
+                                    final UUID descriptorUUID, final int status) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mCurrentOperation != null
+                        && mCurrentOperation.matches(type, characteristic, descriptorUUID)) {
+                    finishCurrent(status);
+                }
+            }
+        });
+    }
+
+    /**
+     * Cancels the current and pending operations, e.g. once the connection is
+     * lost. The queue stays bound to its GATT instance.
+     */
+    public void cancelAll() {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                cancelOperations();
+            }
+        });
+    }
+
+    public void quit() {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                cancelOperations();
+                mThread.quit();
+            }
+        });
+    }
+
+    private void issueNext() {
+        if (mCurrentOperation != null || mPendingOperations.isEmpty()) {
+            return;
+        }
+        mCurrentOperation = mPendingOperations.poll();
+        mBusyRetryDelay = MIN_BUSY_RETRY_DELAY;
+        mFirstIssueTime = SystemClock.elapsedRealtime();
+        issueCurrent();
+    }
+
+    private void issueCurrent() {
+        if (mCurrentOperation == null) {
+            return;
+        }
+        if (mBluetoothGatt == null) {
+            finishCurrent(GattOperation.STATUS_NOT_ISSUED);
+            return;
+        }
+        boolean issued;
+        try {
+            issued = mCurrentOperation.execute(mBluetoothGatt);
+        } catch (RuntimeException e) {
+            Logger.e("GATT operation failed " + e.getMessage());
+            finishCurrent(GattOperation.STATUS_NOT_ISSUED);
+            return;
+        }
+        long waited = SystemClock.elapsedRealtime() - mFirstIssueTime;
+        if (issued) {
+            mCurrentOperation.setIssueDelay(waited);
+            mHandler.postDelayed(mTimeoutRunnable, mCurrentOperation.getTimeout());
+        } else if (waited < mCurrentOperation.getTimeout()) {
+            mCurrentOperation.onBusyRefusal();
+            mHandler.postDelayed(mIssueRunnable, mBusyRetryDelay);
+            mBusyRetryDelay = Math.min(mBusyRetryDelay * 2, MAX_BUSY_RETRY_DELAY);
+        } else {
+            mCurrentOperation.setIssueDelay(waited);
+            finishCurrent(GattOperation.STATUS_NOT_ISSUED);
+        }
+    }
+
+    private void finishCurrent(int status) {
+        mHandler.removeCallbacks(mTimeoutRunnable);
+        mHandler.removeCallbacks(mIssueRunnable);
+        GattOperation operation = mCurrentOperation;
+        mCurrentOperation = null;
+        operation.complete(status);
+        issueNext();
+    }
+
+    private void cancelOperations() {
+        mHandler.removeCallbacks(mTimeoutRunnable);
+        mHandler.removeCallbacks(mIssueRunnable);
+        ArrayList<GattOperation> cancelled = new ArrayList<GattOperation>(mPendingOperations);
+        mPendingOperations.clear();
+        if (mCurrentOperation != null) {
+            cancelled.add(0, mCurrentOperation);
+            mCurrentOperation = null;
+        }
+        for (GattOperation operation : cancelled) {
+            operation.complete(GattOperation.STATUS_CANCELLED);
+        }
+    }
+}
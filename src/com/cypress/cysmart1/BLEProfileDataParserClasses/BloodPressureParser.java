@@ -34,10 +34,12 @@ package com.cypress.cysmart1.BLEProfileDataParserClasses;
 
 import android.bluetooth.BluetoothGattCharacteristic;
 import android.content.Context;
+import android.os.Bundle;
 
 import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.LogUtil;
 import com.cypress.cysmart1.CommonUtils.Logger;
+import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
 import com.cypress.cysmart1.R;
 
 /**
@@ -133,4 +135,24 @@ public class BloodPressureParser {
 
     }
 
+    /**
+     * Registers the blood pressure decoder with the CharacteristicDecoderRegistry
+     */
+    static void registerDecoders() {
+        CharacteristicDecoderRegistry.register(UUIDDatabase.UUID_BLOOD_PRESSURE_MEASUREMENT,
+                new CharacteristicDecoder() {
+                    @Override
+                    public void decode(BluetoothGattCharacteristic characteristic,
+                                       Context context, Bundle bundle) {
+                        bundle.putString(Constants.EXTRA_PRESURE_SYSTOLIC_UNIT_VALUE,
+                                getSystolicBloodPressureUnit(characteristic, context));
+                        bundle.putString(Constants.EXTRA_PRESURE_DIASTOLIC_UNIT_VALUE,
+                                getDiaStolicBloodPressureUnit(characteristic, context));
+                        bundle.putString(Constants.EXTRA_PRESURE_SYSTOLIC_VALUE,
+                                getSystolicBloodPressure(characteristic));
+                        bundle.putString(Constants.EXTRA_PRESURE_DIASTOLIC_VALUE,
+                                getDiaStolicBloodPressure(characteristic));
+                    }
+                });
+    }
 }
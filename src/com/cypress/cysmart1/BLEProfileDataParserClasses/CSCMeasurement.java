@@ -0,0 +1,210 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.BLEProfileDataParserClasses;
+
+/**
+ * CSC Measurement decoded into primitive fields, together with the wheel and
+ * crank deltas against the previous measurement decoded by the same instance.
+ * The instance is meant to be reused for every notification of a device.
+ */
+public class CSCMeasurement {
+
+    private static final int FLAG_WHEEL_REVOLUTIONS = 0x01;
+    private static final int FLAG_CRANK_REVOLUTIONS = 0x02;
+    /**
+     * Event times are uint16 in 1/1024 seconds and roll over
+     */
+    private static final int EVENT_TIME_MODULO = 0x10000;
+    private static final long WHEEL_REVOLUTIONS_MODULO = 0x100000000L;
+    private static final int CRANK_REVOLUTIONS_MODULO = 0x10000;
+
+    private boolean mWheelPresent;
+    private long mWheelRevolutions;
+    private int mLastWheelEventTime;
+    private boolean mCrankPresent;
+    private int mCrankRevolutions;
+    private int mLastCrankEventTime;
+
+    private boolean mPreviousWheel;
+    private long mFirstWheelRevolutions = -1;
+    private long mWheelRevolutionsDelta;
+    private int mWheelTimeDelta;
+    private boolean mPreviousCrank;
+    private int mCrankRevolutionsDelta;
+    private int mCrankTimeDelta;
+
+    /**
+     * Decodes a CSC Measurement value. The deltas are only updated when the
+     * event time moved since the previous measurement.
+     *
+     * @param value
+     * @param offset start of the value in the array
+     * @param length
+     * @return false if the value is truncated, the fields are then unchanged
+     */
+    public boolean decode(byte[] value, int offset, int length) {
+        if (value == null || length < 1) {
+            return false;
+        }
+        int flags = RawValueReader.uint8(value, offset);
+        boolean wheelPresent = (flags & FLAG_WHEEL_REVOLUTIONS) != 0;
+        boolean crankPresent = (flags & FLAG_CRANK_REVOLUTIONS) != 0;
+        if (length < 1 + (wheelPresent ? 6 : 0) + (crankPresent ? 4 : 0)) {
+            return false;
+        }
+        int position = offset + 1;
+        mWheelPresent = wheelPresent;
+        if (wheelPresent) {
+            long revolutions = RawValueReader.uint32(value, position);
+            int eventTime = RawValueReader.uint16(value, position + 4);
+            position += 6;
+            if (mFirstWheelRevolutions < 0) {
+                mFirstWheelRevolutions = revolutions;
+            }
+            if (mPreviousWheel && eventTime != mLastWheelEventTime) {
+                mWheelRevolutionsDelta = (revolutions - mWheelRevolutions
+                        + WHEEL_REVOLUTIONS_MODULO) % WHEEL_REVOLUTIONS_MODULO;
+                mWheelTimeDelta = (eventTime - mLastWheelEventTime
+                        + EVENT_TIME_MODULO) % EVENT_TIME_MODULO;
+            }
+            mWheelRevolutions = revolutions;
+            mLastWheelEventTime = eventTime;
+            mPreviousWheel = true;
+        }
+        mCrankPresent = crankPresent;
+        if (crankPresent) {
+            int revolutions = RawValueReader.uint16(value, position);
+            int eventTime = RawValueReader.uint16(value, position + 2);
+            if (mPreviousCrank && eventTime != mLastCrankEventTime) {
+                mCrankRevolutionsDelta = (revolutions - mCrankRevolutions
+                        + CRANK_REVOLUTIONS_MODULO) % CRANK_REVOLUTIONS_MODULO;
+                mCrankTimeDelta = (eventTime - mLastCrankEventTime
+                        + EVENT_TIME_MODULO) % EVENT_TIME_MODULO;
+            }
+            mCrankRevolutions = revolutions;
+            mLastCrankEventTime = eventTime;
+            mPreviousCrank = true;
+        }
+        return true;
+    }
+
+    public boolean decode(byte[] value) {
+        return value != null && decode(value, 0, value.length);
+    }
+
+    /**
+     * Forgets the previous measurement, for a new session or device
+     */
+    public void reset() {
+        mPreviousWheel = false;
+        mPreviousCrank = false;
+        mFirstWheelRevolutions = -1;
+        mWheelRevolutionsDelta = 0;
+        mWheelTimeDelta = 0;
+        mCrankRevolutionsDelta = 0;
+        mCrankTimeDelta = 0;
+    }
+
+    public boolean isWheelPresent() {
+        return mWheelPresent;
+    }
+
+    public long getWheelRevolutions() {
+        return mWheelRevolutions;
+    }
+
+    /**
+     * @return wheel revolutions since the first measurement of the session
+     */
+    public long getSessionWheelRevolutions() {
+        return mFirstWheelRevolutions < 0 ? 0 : mWheelRevolutions - mFirstWheelRevolutions;
+    }
+
+    /**
+     * @return 1/1024 seconds
+     */
+    public int getLastWheelEventTime() {
+        return mLastWheelEventTime;
+    }
+
+    public boolean isCrankPresent() {
+        return mCrankPresent;
+    }
+
+    public int getCrankRevolutions() {
+        return mCrankRevolutions;
+    }
+
+    /**
+     * @return 1/1024 seconds
+     */
+    public int getLastCrankEventTime() {
+        return mLastCrankEventTime;
+    }
+
+    public long getWheelRevolutionsDelta() {
+        return mWheelRevolutionsDelta;
+    }
+
+    /**
+     * @return 1/1024 seconds, 0 until two wheel events were received
+     */
+    public int getWheelTimeDelta() {
+        return mWheelTimeDelta;
+    }
+
+    public int getCrankRevolutionsDelta() {
+        return mCrankRevolutionsDelta;
+    }
+
+    /**
+     * @return 1/1024 seconds, 0 until two crank events were received
+     */
+    public int getCrankTimeDelta() {
+        return mCrankTimeDelta;
+    }
+
+    /**
+     * @return wheel revolutions per minute, 0 until two wheel events were received
+     */
+    public float getWheelCadence() {
+        return mWheelTimeDelta == 0 ? 0F : 60F * 1024F * mWheelRevolutionsDelta / mWheelTimeDelta;
+    }
+
+    /**
+     * @return crank revolutions per minute, 0 until two crank events were received
+     */
+    public float getCrankCadence() {
+        return mCrankTimeDelta == 0 ? 0F : 60F * 1024F * mCrankRevolutionsDelta / mCrankTimeDelta;
+    }
+}
@@ -33,15 +33,21 @@
 package com.cypress.cysmart1.BLEProfileDataParserClasses;
 
 import android.bluetooth.BluetoothGattCharacteristic;
+import android.content.Context;
+import android.os.Bundle;
 
 import com.cypress.cysmart1.BLEServiceFragments.CSCService;
+import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.LogUtil;
 import com.cypress.cysmart1.CommonUtils.Logger;
+import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
 
 import java.util.ArrayList;
 
 /**
- * Class used for parsing Cycling speed and cadence related information
+ * Class used for parsing Cycling speed and cadence related information. Screens receiving every
+ * notification should decode the raw value into a reused
+ * {@link CSCMeasurement} instead.
  */
 public class CSCParser {
 
@@ -168,4 +174,19 @@ public class CSCParser {
         mLastCrankEventTime = lastCrankEventTime;
     }
 
+    /**
+     * Registers the cycling speed and cadence decoder with the
+     * CharacteristicDecoderRegistry
+     */
+    static void registerDecoders() {
+        CharacteristicDecoderRegistry.register(UUIDDatabase.UUID_CSC_MEASURE,
+                new CharacteristicDecoder() {
+                    @Override
+                    public void decode(BluetoothGattCharacteristic characteristic,
+                                       Context context, Bundle bundle) {
+                        bundle.putStringArrayList(Constants.EXTRA_CSC_VALUE,
+                                getCyclingSpeednCadence(characteristic));
+                    }
+                });
+    }
 }
@@ -33,9 +33,13 @@ package com.cypress.cysmart1.BLEProfileDataParserClasses;
 
 import android.R.integer;
 import android.bluetooth.BluetoothGattCharacteristic;
+import android.content.Context;
+import android.os.Bundle;
 
+import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.LogUtil;
 import com.cypress.cysmart1.CommonUtils.Logger;
+import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
 
 import java.util.ArrayList;
 
@@ -97,4 +101,47 @@ public class CapSenseParser {
         mButtonParams.add(buttonStatus2);
         return mButtonParams;
     }
+
+    /**
+     * Registers the CapSense decoders, for both the standard and the custom
+     * UUIDs, with the CharacteristicDecoderRegistry
+     */
+    static void registerDecoders() {
+        CharacteristicDecoder proximityDecoder = new CharacteristicDecoder() {
+            @Override
+            public void decode(BluetoothGattCharacteristic characteristic,
+                               Context context, Bundle bundle) {
+                bundle.putInt(Constants.EXTRA_CAPPROX_VALUE,
+                        getCapSenseProximity(characteristic));
+            }
+        };
+        CharacteristicDecoder sliderDecoder = new CharacteristicDecoder() {
+            @Override
+            public void decode(BluetoothGattCharacteristic characteristic,
+                               Context context, Bundle bundle) {
+                bundle.putInt(Constants.EXTRA_CAPSLIDER_VALUE,
+                        getCapSenseSlider(characteristic));
+            }
+        };
+        CharacteristicDecoder buttonsDecoder = new CharacteristicDecoder() {
+            @Override
+            public void decode(BluetoothGattCharacteristic characteristic,
+                               Context context, Bundle bundle) {
+                bundle.putIntegerArrayList(Constants.EXTRA_CAPBUTTONS_VALUE,
+                        getCapSenseButtons(characteristic));
+            }
+        };
+        CharacteristicDecoderRegistry.register(UUIDDatabase.UUID_CAPSENSE_PROXIMITY,
+                proximityDecoder);
+        CharacteristicDecoderRegistry.register(UUIDDatabase.UUID_CAPSENSE_PROXIMITY_CUSTOM,
+                proximityDecoder);
+        CharacteristicDecoderRegistry.register(UUIDDatabase.UUID_CAPSENSE_SLIDER,
+                sliderDecoder);
+        CharacteristicDecoderRegistry.register(UUIDDatabase.UUID_CAPSENSE_SLIDER_CUSTOM,
+                sliderDecoder);
+        CharacteristicDecoderRegistry.register(UUIDDatabase.UUID_CAPSENSE_BUTTONS,
+                buttonsDecoder);
+        CharacteristicDecoderRegistry.register(UUIDDatabase.UUID_CAPSENSE_BUTTONS_CUSTOM,
+                buttonsDecoder);
+    }
 }
@@ -0,0 +1,194 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.BLEProfileDataParserClasses;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.content.Context;
+import android.os.Bundle;
+
+import com.cypress.cysmart1.CommonUtils.Constants;
+import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
+import com.cypress.cysmart1.CommonUtils.Utils;
+
+import java.util.HashMap;
+import java.util.UUID;
+
+/**
+ * Maps characteristic UUIDs to their decoders. Each parser registers the
+ * characteristics it understands; the plain string/int values handled by
+ * {@link Utils} are registered here.
+ */
+public class CharacteristicDecoderRegistry {
+
+    private static final HashMap<UUID, CharacteristicDecoder> mDecoders =
+            new HashMap<UUID, CharacteristicDecoder>();
+
+    static {
+        HRMParser.registerDecoders();
+        HTMParser.registerDecoders();
+        BloodPressureParser.registerDecoders();
+        CSCParser.registerDecoders();
+        RSCParser.registerDecoders();
+        CapSenseParser.registerDecoders();
+        RGBParser.registerDecoders();
+        GlucoseParser.registerDecoders();
+        SensorHubParser.registerDecoders();
+        DescriptorParser.registerDecoders();
+        registerUtilityDecoders();
+    }
+
+    public static synchronized void register(UUID uuid, CharacteristicDecoder decoder) {
+        mDecoders.put(uuid, decoder);
+    }
+
+    public static synchronized CharacteristicDecoder getDecoder(UUID uuid) {
+        return mDecoders.get(uuid);
+    }
+
+    /**
+     * Decodes the characteristic with its registered decoder, if any
+     *
+     * @param characteristic
+     * @param context
+     * @param bundle
+     * @return true if a decoder was found
+     */
+    public static boolean decode(BluetoothGattCharacteristic characteristic, Context context,
+                                 Bundle bundle) {
+        CharacteristicDecoder decoder = getDecoder(characteristic.getUuid());
+        if (decoder == null) {
+            return false;
+        }
+        decoder.decode(characteristic, context, bundle);
+        return true;
+    }
+
+    private static void registerUtilityDecoders() {
+        register(UUIDDatabase.UUID_MANUFACTURE_NAME_STRING, new CharacteristicDecoder() {
+            @Override
+            public void decode(BluetoothGattCharacteristic characteristic, Context context,
+                               Bundle bundle) {
+                bundle.putString(Constants.EXTRA_MNS_VALUE,
+                        Utils.getManufacturerNameString(characteristic));
+            }
+        });
+        register(UUIDDatabase.UUID_MODEL_NUMBER_STRING, new CharacteristicDecoder() {
+            @Override
+            public void decode(BluetoothGattCharacteristic characteristic, Context context,
+                               Bundle bundle) {
+                bundle.putString(Constants.EXTRA_MONS_VALUE,
+                        Utils.getModelNumberString(characteristic));
+            }
+        });
+        register(UUIDDatabase.UUID_SERIAL_NUMBER_STRING, new CharacteristicDecoder() {
+            @Override
+            public void decode(BluetoothGattCharacteristic characteristic, Context context,
+                               Bundle bundle) {
+                bundle.putString(Constants.EXTRA_SNS_VALUE,
+                        Utils.getSerialNumberString(characteristic));
+            }
+        });
+        register(UUIDDatabase.UUID_HARDWARE_REVISION_STRING, new CharacteristicDecoder() {
+            @Override
+            public void decode(BluetoothGattCharacteristic characteristic, Context context,
+                               Bundle bundle) {
+                bundle.putString(Constants.EXTRA_HRS_VALUE,
+                        Utils.getHardwareRevisionString(characteristic));
+            }
+        });
+        register(UUIDDatabase.UUID_FIRMWARE_REVISION_STRING, new CharacteristicDecoder() {
+            @Override
+            public void decode(BluetoothGattCharacteristic characteristic, Context context,
+                               Bundle bundle) {
+                bundle.putString(Constants.EXTRA_FRS_VALUE,
+                        Utils.getFirmwareRevisionString(characteristic));
+            }
+        });
+        register(UUIDDatabase.UUID_SOFTWARE_REVISION_STRING, new CharacteristicDecoder() {
+            @Override
+            public void decode(BluetoothGattCharacteristic characteristic, Context context,
+                               Bundle bundle) {
+                bundle.putString(Constants.EXTRA_SRS_VALUE,
+                        Utils.getSoftwareRevisionString(characteristic));
+            }
+        });
+        register(UUIDDatabase.UUID_BATTERY_LEVEL, new CharacteristicDecoder() {
+            @Override
+            public void decode(BluetoothGattCharacteristic characteristic, Context context,
+                               Bundle bundle) {
+                bundle.putString(Constants.EXTRA_BTL_VALUE,
+                        Utils.getBatteryLevel(characteristic));
+            }
+        });
+        register(UUIDDatabase.UUID_PNP_ID, new CharacteristicDecoder() {
+            @Override
+            public void decode(BluetoothGattCharacteristic characteristic, Context context,
+                               Bundle bundle) {
+                bundle.putString(Constants.EXTRA_PNP_VALUE,
+                        Utils.getPNPID(characteristic));
+            }
+        });
+        register(UUIDDatabase.UUID_SYSTEM_ID, new CharacteristicDecoder() {
+            @Override
+            public void decode(BluetoothGattCharacteristic characteristic, Context context,
+                               Bundle bundle) {
+                bundle.putString(Constants.EXTRA_SID_VALUE,
+                        Utils.getSYSID(characteristic));
+            }
+        });
+        register(UUIDDatabase.UUID_IEEE, new CharacteristicDecoder() {
+            @Override
+            public void decode(BluetoothGattCharacteristic characteristic, Context context,
+                               Bundle bundle) {
+                bundle.putString(Constants.EXTRA_RCDL_VALUE,
+                        Utils.ByteArraytoHex(characteristic.getValue()));
+            }
+        });
+        register(UUIDDatabase.UUID_ALERT_LEVEL, new CharacteristicDecoder() {
+            @Override
+            public void decode(BluetoothGattCharacteristic characteristic, Context context,
+                               Bundle bundle) {
+                bundle.putString(Constants.EXTRA_ALERT_VALUE,
+                        Utils.getAlertLevel(characteristic));
+            }
+        });
+        register(UUIDDatabase.UUID_TRANSMISSION_POWER_LEVEL, new CharacteristicDecoder() {
+            @Override
+            public void decode(BluetoothGattCharacteristic characteristic, Context context,
+                               Bundle bundle) {
+                bundle.putInt(Constants.EXTRA_POWER_VALUE,
+                        Utils.getTransmissionPower(characteristic));
+            }
+        });
+    }
+}
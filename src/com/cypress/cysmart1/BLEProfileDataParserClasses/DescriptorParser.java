@@ -31,12 +31,16 @@
  */
 package com.cypress.cysmart1.BLEProfileDataParserClasses;
 
+import android.bluetooth.BluetoothGattCharacteristic;
 import android.bluetooth.BluetoothGattDescriptor;
 import android.content.Context;
+import android.os.Bundle;
 
+import com.cypress.cysmart1.BLEConnectionServices.BluetoothLeService;
 import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.GattAttributes;
 import com.cypress.cysmart1.CommonUtils.LogUtil;
+import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
 import com.cypress.cysmart1.R;
 import com.cypress.cysmart1.RDKEmulatorView.ReportAttributes;
 
@@ -165,4 +169,34 @@ public class DescriptorParser {
                 context.getResources().getString(R.string.description) + descriptionValue;
         return value;
     }
+
+    /**
+     * Registers the HID report decoder, which exposes the cached report
+     * reference of the characteristic, with the CharacteristicDecoderRegistry
+     */
+    static void registerDecoders() {
+        CharacteristicDecoderRegistry.register(UUIDDatabase.UUID_REP0RT,
+                new CharacteristicDecoder() {
+                    @Override
+                    public void decode(BluetoothGattCharacteristic characteristic,
+                                       Context context, Bundle bundle) {
+                        BluetoothGattDescriptor descriptor = characteristic.getDescriptor
+                                (UUIDDatabase.UUID_REPORT_REFERENCE);
+                        if (descriptor == null) {
+                            return;
+                        }
+                        // Report reference is static, read it only until it is cached
+                        if (descriptor.getValue() == null) {
+                            BluetoothLeService.readDescriptor(descriptor);
+                        }
+                        ArrayList<String> reportReferenceValues = getReportReference(descriptor);
+                        if (reportReferenceValues.size() == 2) {
+                            bundle.putString(Constants.EXTRA_DESCRIPTOR_REPORT_REFERENCE_ID,
+                                    reportReferenceValues.get(0));
+                            bundle.putString(Constants.EXTRA_DESCRIPTOR_REPORT_REFERENCE_TYPE,
+                                    reportReferenceValues.get(1));
+                        }
+                    }
+                });
+    }
 }
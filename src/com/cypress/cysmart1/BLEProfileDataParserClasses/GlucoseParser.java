@@ -33,14 +33,18 @@
 package com.cypress.cysmart1.BLEProfileDataParserClasses;
 
 import android.bluetooth.BluetoothGattCharacteristic;
+import android.content.Context;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.Parcel;
 import android.util.SparseArray;
 
 import com.cypress.cysmart1.BLEConnectionServices.BluetoothLeService;
+import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.LogUtil;
 import com.cypress.cysmart1.CommonUtils.Logger;
 import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
+import com.cypress.cysmart1.CommonUtils.Utils;
 import com.cypress.cysmart1.DataModelClasses.GlucoseRecord;
 
 import java.util.UUID;
@@ -548,4 +552,34 @@ public class GlucoseParser {
                 return "Reserved for future use (" + id + ")";
         }
     }
+
+    /**
+     * Registers the glucose decoders with the CharacteristicDecoderRegistry.
+     * The RACP decoder only feeds the record handling of this parser and adds
+     * nothing to the bundle.
+     */
+    static void registerDecoders() {
+        CharacteristicDecoder measurementDecoder = new CharacteristicDecoder() {
+            @Override
+            public void decode(BluetoothGattCharacteristic characteristic,
+                               Context context, Bundle bundle) {
+                bundle.putSparseParcelableArray(Constants.EXTRA_GLUCOSE_MEASUREMENT,
+                        getGlucoseMeasurement(characteristic));
+            }
+        };
+        CharacteristicDecoderRegistry.register(UUIDDatabase.UUID_GLUCOSE_MEASUREMENT,
+                measurementDecoder);
+        CharacteristicDecoderRegistry.register(UUIDDatabase.UUID_GLUCOSE_MEASUREMENT_CONTEXT,
+                measurementDecoder);
+        CharacteristicDecoderRegistry.register(UUIDDatabase.UUID_RECORD_ACCESS_CONTROL_POINT,
+                new CharacteristicDecoder() {
+                    @Override
+                    public void decode(BluetoothGattCharacteristic characteristic,
+                                       Context context, Bundle bundle) {
+                        onCharacteristicIndicated(characteristic);
+                        Logger.e("ON RACP received..."
+                                + Utils.ByteArraytoHex(characteristic.getValue()));
+                    }
+                });
+    }
 }
\ No newline at end of file
@@ -0,0 +1,148 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.BLEProfileDataParserClasses;
+
+/**
+ * Heart Rate Measurement decoded into primitive fields. One instance is meant
+ * to be reused for every notification, so decoding allocates nothing once
+ * the RR-Interval array has grown to the longest value received.
+ */
+public class HRMMeasurement {
+
+    private static final int FLAG_HEART_RATE_UINT16 = 0x01;
+    private static final int FLAG_SENSOR_CONTACT_SUPPORTED = 0x04;
+    private static final int FLAG_SENSOR_CONTACT_DETECTED = 0x02;
+    private static final int FLAG_ENERGY_EXPENDED = 0x08;
+    private static final int FLAG_RR_INTERVAL = 0x10;
+    private static final int DEFAULT_RR_CAPACITY = 9;
+
+    private int mHeartRate;
+    private boolean mContactSupported;
+    private boolean mContactDetected;
+    private boolean mEnergyExpendedPresent;
+    private int mEnergyExpended;
+    private int[] mRRIntervals = new int[DEFAULT_RR_CAPACITY];
+    private int mRRCount;
+
+    /**
+     * Decodes a Heart Rate Measurement value
+     *
+     * @param value
+     * @param offset start of the value in the array
+     * @param length
+     * @return false if the value is truncated, the fields are then undefined
+     */
+    public boolean decode(byte[] value, int offset, int length) {
+        if (value == null || length < 2) {
+            return false;
+        }
+        int end = offset + length;
+        int flags = RawValueReader.uint8(value, offset);
+        int position = offset + 1;
+        if ((flags & FLAG_HEART_RATE_UINT16) != 0) {
+            if (end - position < 2) {
+                return false;
+            }
+            mHeartRate = RawValueReader.uint16(value, position);
+            position += 2;
+        } else {
+            mHeartRate = RawValueReader.uint8(value, position);
+            position += 1;
+        }
+        mContactSupported = (flags & FLAG_SENSOR_CONTACT_SUPPORTED) != 0;
+        mContactDetected = mContactSupported && (flags & FLAG_SENSOR_CONTACT_DETECTED) != 0;
+        mEnergyExpendedPresent = (flags & FLAG_ENERGY_EXPENDED) != 0;
+        mEnergyExpended = 0;
+        if (mEnergyExpendedPresent) {
+            if (end - position < 2) {
+                return false;
+            }
+            mEnergyExpended = RawValueReader.uint16(value, position);
+            position += 2;
+        }
+        mRRCount = 0;
+        if ((flags & FLAG_RR_INTERVAL) != 0) {
+            int count = (end - position) / 2;
+            if (count > mRRIntervals.length) {
+                mRRIntervals = new int[count];
+            }
+            for (int i = 0; i < count; i++, position += 2) {
+                mRRIntervals[i] = RawValueReader.uint16(value, position);
+            }
+            mRRCount = count;
+        }
+        return true;
+    }
+
+    public boolean decode(byte[] value) {
+        return value != null && decode(value, 0, value.length);
+    }
+
+    /**
+     * @return beats per minute
+     */
+    public int getHeartRate() {
+        return mHeartRate;
+    }
+
+    public boolean isContactSupported() {
+        return mContactSupported;
+    }
+
+    public boolean isContactDetected() {
+        return mContactDetected;
+    }
+
+    public boolean isEnergyExpendedPresent() {
+        return mEnergyExpendedPresent;
+    }
+
+    /**
+     * @return kilo joules, 0 if not present
+     */
+    public int getEnergyExpended() {
+        return mEnergyExpended;
+    }
+
+    public int getRRCount() {
+        return mRRCount;
+    }
+
+    /**
+     * @param index below {@link #getRRCount()}
+     * @return RR-Interval in 1/1024 seconds
+     */
+    public int getRRInterval(int index) {
+        return mRRIntervals[index];
+    }
+}
@@ -33,14 +33,19 @@ package com.cypress.cysmart1.BLEProfileDataParserClasses;
 
 import android.bluetooth.BluetoothGattCharacteristic;
 import android.content.Context;
+import android.os.Bundle;
 
+import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.LogUtil;
+import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
 import com.cypress.cysmart1.R;
 
 import java.util.ArrayList;
 
 /**
- * Parser class for parsing the data related to HRM Profile
+ * Parser class for parsing the data related to HRM Profile. Screens receiving
+ * every notification should decode the raw value into a reused
+ * {@link HRMMeasurement} instead.
  */
 public class HRMParser {
 
@@ -229,4 +234,40 @@ public class HRMParser {
         }
         return bodySensorLocation;
     }
+
+    /**
+     * Registers the heart rate decoders with the CharacteristicDecoderRegistry
+     */
+    static void registerDecoders() {
+        CharacteristicDecoderRegistry.register(UUIDDatabase.UUID_HEART_RATE_MEASUREMENT,
+                new CharacteristicDecoder() {
+                    @Override
+                    public void decode(BluetoothGattCharacteristic characteristic,
+                                       Context context, Bundle bundle) {
+                        HRMMeasurement measurement = new HRMMeasurement();
+                        if (!measurement.decode(characteristic.getValue())) {
+                            return;
+                        }
+                        ArrayList<Integer> rrIntervals =
+                                new ArrayList<Integer>(measurement.getRRCount());
+                        for (int i = 0; i < measurement.getRRCount(); i++) {
+                            rrIntervals.add(measurement.getRRInterval(i));
+                        }
+                        bundle.putString(Constants.EXTRA_HRM_VALUE,
+                                String.valueOf(measurement.getHeartRate()));
+                        bundle.putString(Constants.EXTRA_HRM_EEVALUE,
+                                String.valueOf(measurement.getEnergyExpended()));
+                        bundle.putIntegerArrayList(Constants.EXTRA_HRM_RRVALUE, rrIntervals);
+                    }
+                });
+        CharacteristicDecoderRegistry.register(UUIDDatabase.UUID_BODY_SENSOR_LOCATION,
+                new CharacteristicDecoder() {
+                    @Override
+                    public void decode(BluetoothGattCharacteristic characteristic,
+                                       Context context, Bundle bundle) {
+                        bundle.putString(Constants.EXTRA_BSL_VALUE,
+                                getBodySensorLocation(characteristic, context));
+                    }
+                });
+    }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.BLEProfileDataParserClasses;
+
+/**
+ * Temperature Measurement decoded into primitive fields. One instance is meant
+ * to be reused for every indication.
+ */
+public class HTMMeasurement {
+
+    private static final int FLAG_FAHRENHEIT = 0x01;
+
+    private float mTemperature;
+    private boolean mFahrenheit;
+
+    /**
+     * Decodes a Temperature Measurement value
+     *
+     * @param value
+     * @param offset start of the value in the array
+     * @param length
+     * @return false if the value is truncated, the fields are then unchanged
+     */
+    public boolean decode(byte[] value, int offset, int length) {
+        if (value == null || length < 5) {
+            return false;
+        }
+        mFahrenheit = (RawValueReader.uint8(value, offset) & FLAG_FAHRENHEIT) != 0;
+        mTemperature = RawValueReader.float32(value, offset + 1);
+        return true;
+    }
+
+    public boolean decode(byte[] value) {
+        return value != null && decode(value, 0, value.length);
+    }
+
+    public float getTemperature() {
+        return mTemperature;
+    }
+
+    public boolean isFahrenheit() {
+        return mFahrenheit;
+    }
+}
@@ -33,15 +33,20 @@ package com.cypress.cysmart1.BLEProfileDataParserClasses;
 
 import android.bluetooth.BluetoothGattCharacteristic;
 import android.content.Context;
+import android.os.Bundle;
 
+import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.LogUtil;
 import com.cypress.cysmart1.CommonUtils.Logger;
+import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
 import com.cypress.cysmart1.R;
 
 import java.util.ArrayList;
 
 /**
- * Class used for parsing Health temperature related information
+ * Class used for parsing Health temperature related information. Screens receiving every
+ * notification should decode the raw value into a reused
+ * {@link HTMMeasurement} instead.
  */
 public class HTMParser {
 
@@ -150,4 +155,29 @@ public class HTMParser {
         }
         return healthTherSensorLocation;
     }
+
+    /**
+     * Registers the health thermometer decoders with the CharacteristicDecoderRegistry
+     */
+    static void registerDecoders() {
+        CharacteristicDecoderRegistry.register(UUIDDatabase.UUID_HEALTH_THERMOMETER,
+                new CharacteristicDecoder() {
+                    @Override
+                    public void decode(BluetoothGattCharacteristic characteristic,
+                                       Context context, Bundle bundle) {
+                        bundle.putStringArrayList(Constants.EXTRA_HTM_VALUE,
+                                getHealthThermo(characteristic, context));
+                    }
+                });
+        CharacteristicDecoderRegistry.register(
+                UUIDDatabase.UUID_HEALTH_THERMOMETER_SENSOR_LOCATION,
+                new CharacteristicDecoder() {
+                    @Override
+                    public void decode(BluetoothGattCharacteristic characteristic,
+                                       Context context, Bundle bundle) {
+                        bundle.putString(Constants.EXTRA_HSL_VALUE,
+                                getHealthThermoSensorLocation(characteristic, context));
+                    }
+                });
+    }
 }
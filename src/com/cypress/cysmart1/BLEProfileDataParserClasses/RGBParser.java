@@ -32,8 +32,12 @@
 package com.cypress.cysmart1.BLEProfileDataParserClasses;
 
 import android.bluetooth.BluetoothGattCharacteristic;
+import android.content.Context;
+import android.os.Bundle;
 
+import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.LogUtil;
+import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
 
 /**
  * Class to parse the RGB service related information
@@ -57,4 +61,20 @@ public class RGBParser {
                 BluetoothGattCharacteristic.FORMAT_UINT8, 3);
         return String.valueOf(red + "," + green + "," + blue + "," + intensity);
     }
+
+    /**
+     * Registers the RGB LED decoder, for both the standard and the custom
+     * UUID, with the CharacteristicDecoderRegistry
+     */
+    static void registerDecoders() {
+        CharacteristicDecoder rgbDecoder = new CharacteristicDecoder() {
+            @Override
+            public void decode(BluetoothGattCharacteristic characteristic,
+                               Context context, Bundle bundle) {
+                bundle.putString(Constants.EXTRA_RGB_VALUE, getRGBValue(characteristic));
+            }
+        };
+        CharacteristicDecoderRegistry.register(UUIDDatabase.UUID_RGB_LED, rgbDecoder);
+        CharacteristicDecoderRegistry.register(UUIDDatabase.UUID_RGB_LED_CUSTOM, rgbDecoder);
+    }
 }
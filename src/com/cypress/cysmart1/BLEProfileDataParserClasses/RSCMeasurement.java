@@ -0,0 +1,139 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.BLEProfileDataParserClasses;
+
+/**
+ * RSC Measurement decoded into primitive fields. One instance is meant to be
+ * reused for every notification.
+ */
+public class RSCMeasurement {
+
+    private static final int FLAG_STRIDE_LENGTH = 0x01;
+    private static final int FLAG_TOTAL_DISTANCE = 0x02;
+    private static final int FLAG_RUNNING = 0x04;
+
+    private int mSpeed;
+    private int mCadence;
+    private boolean mStrideLengthPresent;
+    private int mStrideLength;
+    private boolean mTotalDistancePresent;
+    private long mTotalDistance;
+    private boolean mRunning;
+
+    /**
+     * Decodes a RSC Measurement value
+     *
+     * @param value
+     * @param offset start of the value in the array
+     * @param length
+     * @return false if the value is truncated, the fields are then unchanged
+     */
+    public boolean decode(byte[] value, int offset, int length) {
+        if (value == null || length < 4) {
+            return false;
+        }
+        int flags = RawValueReader.uint8(value, offset);
+        boolean stridePresent = (flags & FLAG_STRIDE_LENGTH) != 0;
+        boolean distancePresent = (flags & FLAG_TOTAL_DISTANCE) != 0;
+        if (length < 4 + (stridePresent ? 2 : 0) + (distancePresent ? 4 : 0)) {
+            return false;
+        }
+        mSpeed = RawValueReader.uint16(value, offset + 1);
+        mCadence = RawValueReader.uint8(value, offset + 3);
+        int position = offset + 4;
+        mStrideLengthPresent = stridePresent;
+        mStrideLength = 0;
+        if (stridePresent) {
+            mStrideLength = RawValueReader.uint16(value, position);
+            position += 2;
+        }
+        mTotalDistancePresent = distancePresent;
+        mTotalDistance = 0;
+        if (distancePresent) {
+            mTotalDistance = RawValueReader.uint32(value, position);
+        }
+        mRunning = (flags & FLAG_RUNNING) != 0;
+        return true;
+    }
+
+    public boolean decode(byte[] value) {
+        return value != null && decode(value, 0, value.length);
+    }
+
+    /**
+     * @return 1/256 meters per second
+     */
+    public int getRawSpeed() {
+        return mSpeed;
+    }
+
+    /**
+     * @return kilometers per hour
+     */
+    public float getSpeedKmh() {
+        return 3.6F * (mSpeed / 256F);
+    }
+
+    /**
+     * @return steps per minute
+     */
+    public int getCadence() {
+        return mCadence;
+    }
+
+    public boolean isStrideLengthPresent() {
+        return mStrideLengthPresent;
+    }
+
+    /**
+     * @return centimeters, 0 if not present
+     */
+    public int getStrideLength() {
+        return mStrideLength;
+    }
+
+    public boolean isTotalDistancePresent() {
+        return mTotalDistancePresent;
+    }
+
+    /**
+     * @return 1/10 meters, 0 if not present
+     */
+    public long getTotalDistance() {
+        return mTotalDistance;
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+}
@@ -33,15 +33,21 @@
 package com.cypress.cysmart1.BLEProfileDataParserClasses;
 
 import android.bluetooth.BluetoothGattCharacteristic;
+import android.content.Context;
+import android.os.Bundle;
 
+import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.LogUtil;
 import com.cypress.cysmart1.CommonUtils.Logger;
+import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
 
 import java.text.NumberFormat;
 import java.util.ArrayList;
 
 /**
- * Class used for parsing Running speed related information
+ * Class used for parsing Running speed related information. Screens receiving every
+ * notification should decode the raw value into a reused
+ * {@link RSCMeasurement} instead.
  */
 public class RSCParser {
 
@@ -153,4 +159,19 @@ public class RSCParser {
         return mRscInfo;
     }
 
+    /**
+     * Registers the running speed and cadence decoder with the
+     * CharacteristicDecoderRegistry
+     */
+    static void registerDecoders() {
+        CharacteristicDecoderRegistry.register(UUIDDatabase.UUID_RSC_MEASURE,
+                new CharacteristicDecoder() {
+                    @Override
+                    public void decode(BluetoothGattCharacteristic characteristic,
+                                       Context context, Bundle bundle) {
+                        bundle.putStringArrayList(Constants.EXTRA_RSC_VALUE,
+                                getRunningSpeednCadence(characteristic));
+                    }
+                });
+    }
 }
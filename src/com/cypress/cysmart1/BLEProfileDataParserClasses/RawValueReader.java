@@ -0,0 +1,67 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.BLEProfileDataParserClasses;
+
+/**
+ * Little endian field readers over a raw characteristic value, matching the
+ * BluetoothGattCharacteristic.FORMAT_* types without copying the value
+ */
+public final class RawValueReader {
+
+    private RawValueReader() {
+    }
+
+    public static int uint8(byte[] value, int offset) {
+        return value[offset] & 0xFF;
+    }
+
+    public static int uint16(byte[] value, int offset) {
+        return (value[offset] & 0xFF) | ((value[offset + 1] & 0xFF) << 8);
+    }
+
+    public static long uint32(byte[] value, int offset) {
+        return uint16(value, offset) | ((long) uint16(value, offset + 2) << 16);
+    }
+
+    /**
+     * IEEE-11073 32-bit FLOAT, as BluetoothGattCharacteristic.FORMAT_FLOAT
+     */
+    public static float float32(byte[] value, int offset) {
+        int mantissa = (value[offset] & 0xFF) | ((value[offset + 1] & 0xFF) << 8)
+                | ((value[offset + 2] & 0xFF) << 16);
+        // Sign extends the 24-bit mantissa
+        mantissa = (mantissa << 8) >> 8;
+        int exponent = value[offset + 3];
+        return (float) (mantissa * Math.pow(10, exponent));
+    }
+}
@@ -32,9 +32,15 @@
 package com.cypress.cysmart1.BLEProfileDataParserClasses;
 
 import android.bluetooth.BluetoothGattCharacteristic;
+import android.content.Context;
+import android.os.Bundle;
 
+import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.LogUtil;
 import com.cypress.cysmart1.CommonUtils.Logger;
+import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
+
+import java.util.UUID;
 
 /**
  * Class used for parsing Sensor hub related information
@@ -105,4 +111,94 @@ public class SensorHubParser {
                 BluetoothGattCharacteristic.FORMAT_UINT16, 0);
         return mThreshold;
     }
+
+    /**
+     * Registers the sensor hub decoders with the CharacteristicDecoderRegistry
+     */
+    static void registerDecoders() {
+        IntReadingDecoder accelerometerDecoder = new IntReadingDecoder() {
+            @Override
+            int read(BluetoothGattCharacteristic characteristic) {
+                return getAcceleroMeterXYZReading(characteristic);
+            }
+        };
+        IntReadingDecoder scanIntervalDecoder = new IntReadingDecoder() {
+            @Override
+            int read(BluetoothGattCharacteristic characteristic) {
+                return getSensorScanIntervalReading(characteristic);
+            }
+        };
+        IntReadingDecoder sensorTypeDecoder = new IntReadingDecoder() {
+            @Override
+            int read(BluetoothGattCharacteristic characteristic) {
+                return getSensorTypeReading(characteristic);
+            }
+        };
+        accelerometerDecoder.register(UUIDDatabase.UUID_ACCELEROMETER_READING_X,
+                Constants.EXTRA_ACCX_VALUE);
+        accelerometerDecoder.register(UUIDDatabase.UUID_ACCELEROMETER_READING_Y,
+                Constants.EXTRA_ACCY_VALUE);
+        accelerometerDecoder.register(UUIDDatabase.UUID_ACCELEROMETER_READING_Z,
+                Constants.EXTRA_ACCZ_VALUE);
+        scanIntervalDecoder.register(UUIDDatabase.UUID_ACCELEROMETER_SENSOR_SCAN_INTERVAL,
+                Constants.EXTRA_ACC_SENSOR_SCAN_VALUE);
+        scanIntervalDecoder.register(UUIDDatabase.UUID_TEMPERATURE_SENSOR_SCAN_INTERVAL,
+                Constants.EXTRA_STEMP_SENSOR_SCAN_VALUE);
+        scanIntervalDecoder.register(UUIDDatabase.UUID_BAROMETER_SENSOR_SCAN_INTERVAL,
+                Constants.EXTRA_SPRESSURE_SENSOR_SCAN_VALUE);
+        sensorTypeDecoder.register(UUIDDatabase.UUID_ACCELEROMETER_ANALOG_SENSOR,
+                Constants.EXTRA_ACC_SENSOR_TYPE_VALUE);
+        sensorTypeDecoder.register(UUIDDatabase.UUID_TEMPERATURE_ANALOG_SENSOR,
+                Constants.EXTRA_STEMP_SENSOR_TYPE_VALUE);
+        sensorTypeDecoder.register(UUIDDatabase.UUID_BAROMETER_DIGITAL_SENSOR,
+                Constants.EXTRA_SPRESSURE_SENSOR_TYPE_VALUE);
+        new IntReadingDecoder() {
+            @Override
+            int read(BluetoothGattCharacteristic characteristic) {
+                return getBarometerReading(characteristic);
+            }
+        }.register(UUIDDatabase.UUID_BAROMETER_READING, Constants.EXTRA_SPRESSURE_VALUE);
+        new IntReadingDecoder() {
+            @Override
+            int read(BluetoothGattCharacteristic characteristic) {
+                return getFilterConfiguration(characteristic);
+            }
+        }.register(UUIDDatabase.UUID_ACCELEROMETER_DATA_ACCUMULATION,
+                Constants.EXTRA_ACC_FILTER_VALUE);
+        new IntReadingDecoder() {
+            @Override
+            int read(BluetoothGattCharacteristic characteristic) {
+                return getThresholdValue(characteristic);
+            }
+        }.register(UUIDDatabase.UUID_BAROMETER_THRESHOLD_FOR_INDICATION,
+                Constants.EXTRA_SPRESSURE_THRESHOLD_VALUE);
+        CharacteristicDecoderRegistry.register(UUIDDatabase.UUID_TEMPERATURE_READING,
+                new CharacteristicDecoder() {
+                    @Override
+                    public void decode(BluetoothGattCharacteristic characteristic,
+                                       Context context, Bundle bundle) {
+                        bundle.putFloat(Constants.EXTRA_STEMP_VALUE,
+                                getThermometerReading(characteristic));
+                    }
+                });
+    }
+
+    /**
+     * Integer reading shared by several characteristics, each stored under
+     * its own bundle key
+     */
+    private static abstract class IntReadingDecoder {
+
+        abstract int read(BluetoothGattCharacteristic characteristic);
+
+        void register(UUID uuid, final String key) {
+            CharacteristicDecoderRegistry.register(uuid, new CharacteristicDecoder() {
+                @Override
+                public void decode(BluetoothGattCharacteristic characteristic,
+                                   Context context, Bundle bundle) {
+                    bundle.putInt(key, read(characteristic));
+                }
+            });
+        }
+    }
 }
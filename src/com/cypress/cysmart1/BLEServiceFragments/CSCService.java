@@ -42,6 +42,8 @@ import android.content.Intent;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.SystemClock;
 import android.support.v4.app.Fragment;
 import android.text.InputType;
@@ -62,11 +64,17 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.cypress.cysmart1.BLEConnectionServices.BluetoothLeService;
+import com.cypress.cysmart1.BLEConnectionServices.GattEventBus;
+import com.cypress.cysmart1.BLEConnectionServices.GattNotificationEvent;
+import com.cypress.cysmart1.BLEProfileDataParserClasses.CSCMeasurement;
+import com.cypress.cysmart1.CommonUtils.ChartRenderScheduler;
 import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.DecimalTextWatcher;
 import com.cypress.cysmart1.CommonUtils.GattAttributes;
 import com.cypress.cysmart1.CommonUtils.LogUtil;
 import com.cypress.cysmart1.CommonUtils.Logger;
+import com.cypress.cysmart1.CommonUtils.RingBufferXYSeries;
+import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
 import com.cypress.cysmart1.CommonUtils.Utils;
 import com.cypress.cysmart1.R;
 
@@ -74,12 +82,10 @@ import org.achartengine.ChartFactory;
 import org.achartengine.GraphicalView;
 import org.achartengine.chart.PointStyle;
 import org.achartengine.model.XYMultipleSeriesDataset;
-import org.achartengine.model.XYSeries;
 import org.achartengine.renderer.XYMultipleSeriesRenderer;
 import org.achartengine.renderer.XYSeriesRenderer;
 
 import java.text.NumberFormat;
-import java.util.ArrayList;
 import java.util.List;
 
 
@@ -118,7 +124,9 @@ public class CSCService extends Fragment {
     private double mPreviosTime = 0;
     private double mCurrentTime = 0;
     private GraphicalView mChart;
-    private XYSeries mDataSeries;
+    private ChartRenderScheduler mRenderScheduler;
+    private ChartRenderScheduler.SeriesFeed mDataFeed;
+    private RingBufferXYSeries mDataSeries;
 
     //Constants
     private static final int MAX_WEIGHT = 200;
@@ -128,6 +136,28 @@ public class CSCService extends Fragment {
     private static final float MINIMUM_RADIUS = 300;
     private static final float MAXIMUM_RADIUS = 725;
 
+    /**
+     * Reused for every measurement, only read on the main thread
+     */
+    private final CSCMeasurement mMeasurement = new CSCMeasurement();
+    private long mDisplayedWheelRevolutions = -1;
+    private int mDisplayedCadence = -1;
+
+    /**
+     * Receives the raw CSC measurements through the GattEventBus. They are
+     * decoded into mMeasurement, text is only formatted for the fields that
+     * changed.
+     */
+    private final GattEventBus.GattEventSubscriber mCSCSubscriber =
+            new GattEventBus.GattEventSubscriber() {
+                @Override
+                public void onGattNotification(GattNotificationEvent event) {
+                    if (mMeasurement.decode(event.getValue())) {
+                        displayLiveData();
+                    }
+                }
+            };
+
     /**
      * BroadcastReceiver for receiving the GATT server status
      */
@@ -137,17 +167,7 @@ public class CSCService extends Fragment {
         public void onReceive(Context context, Intent intent) {
 			LogUtil.e("CSCService", "mGattUpdateReceiver  onReceive()");
             final String action = intent.getAction();
-            Bundle extras = intent.getExtras();
-
-            // GATT Data available
-            if (BluetoothLeService.ACTION_DATA_AVAILABLE.equals(action)) {
-                // Check CSC value
-                if (extras.containsKey(Constants.EXTRA_CSC_VALUE)) {
-                    ArrayList<String> received_csc_data = intent
-                            .getStringArrayListExtra(Constants.EXTRA_CSC_VALUE);
-                    displayLiveData(received_csc_data);
-                }
-            }
+            // Measurements arrive through mCSCSubscriber
             if (action.equals(BluetoothDevice.ACTION_BOND_STATE_CHANGED)) {
                 final int state = intent.getIntExtra(BluetoothDevice.EXTRA_BOND_STATE, BluetoothDevice.ERROR);
 
@@ -324,41 +344,40 @@ public class CSCService extends Fragment {
     }
 
     /**
-     * Display live cycling data
+     * Display live cycling data from mMeasurement
      */
-    private void displayLiveData(final ArrayList<String> csc_data) {
+    private void displayLiveData() {
 		LogUtil.e("CSCService", "displayLiveData()");
-        if (csc_data != null) {
-            try {
-                double distance = Double.parseDouble(csc_data.get(0));
-                if (distance < 1000) { // 1 km in m
-                    mDistanceRan.setText(String.format("%.0f", distance));
-                    mDistanceUnit.setText(R.string.csc_distance_unit_m);
-                } else {
-                    mDistanceRan.setText(String.format("%.2f", distance / 1000.0f));
-                    mDistanceUnit.setText(R.string.csc_distance_unit_km);
-                }
-                mCadence.setText(csc_data.get(1));
-            } catch (Exception e1) {
-                e1.printStackTrace();
-            }
-            if (mCurrentTime == 0) {
-                mGraphLastXValue = 0;
-                mCurrentTime = Utils.getTimeInSeconds();
+        if (mMeasurement.isWheelPresent()
+                && mMeasurement.getWheelRevolutions() != mDisplayedWheelRevolutions) {
+            mDisplayedWheelRevolutions = mMeasurement.getWheelRevolutions();
+            // Wheel radius is in mm, the distance in m
+            double distance = mDisplayedWheelRevolutions * 2 * Math.PI * mRadiusInt / 1000;
+            if (distance < 1000) { // 1 km in m
+                mDistanceRan.setText(String.format("%.0f", distance));
+                mDistanceUnit.setText(R.string.csc_distance_unit_m);
             } else {
-                mPreviosTime = mCurrentTime;
-                mCurrentTime = Utils.getTimeInSeconds();
-                mGraphLastXValue = mGraphLastXValue + (mCurrentTime - mPreviosTime) / 1000;
+                mDistanceRan.setText(String.format("%.2f", distance / 1000.0f));
+                mDistanceUnit.setText(R.string.csc_distance_unit_km);
             }
-            try {
-                float val = Float.valueOf(csc_data.get(1));
-                mDataSeries.add(mGraphLastXValue, val);
-                mChart.repaint();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-
         }
+        int cadence = (int) mMeasurement.getCrankCadence();
+        if (!mMeasurement.isCrankPresent() || cadence <= 0) {
+            return;
+        }
+        if (cadence != mDisplayedCadence) {
+            mCadence.setText(String.valueOf(cadence));
+            mDisplayedCadence = cadence;
+        }
+        if (mCurrentTime == 0) {
+            mGraphLastXValue = 0;
+            mCurrentTime = Utils.getTimeInSeconds();
+        } else {
+            mPreviosTime = mCurrentTime;
+            mCurrentTime = Utils.getTimeInSeconds();
+            mGraphLastXValue = mGraphLastXValue + (mCurrentTime - mPreviosTime) / 1000;
+        }
+        mDataFeed.post(mGraphLastXValue, cadence);
     }
 
     private float showElapsedTime() {
@@ -376,6 +395,9 @@ public class CSCService extends Fragment {
 		LogUtil.e("CSCService", "onResume()");
         getActivity().registerReceiver(mGattUpdateReceiver,
                 Utils.makeGattUpdateIntentFilter());
+        GattEventBus.subscribe(UUIDDatabase.UUID_CSC_MEASURE,
+                BluetoothLeService.getmBluetoothDeviceAddress(),
+                new Handler(Looper.getMainLooper()), mCSCSubscriber, false, true);
         Utils.setUpActionBar(getActivity(),
                 getResources().getString(R.string.csc_fragment));
     }
@@ -389,7 +411,9 @@ public class CSCService extends Fragment {
     @Override
     public void onDestroy() {
 		LogUtil.e("CSCService", "onDestroy()");
+        mRenderScheduler.release();
         getActivity().unregisterReceiver(mGattUpdateReceiver);
+        GattEventBus.unsubscribe(mCSCSubscriber);
         if (mNotifyCharacteristic != null) {
             stopBroadcastDataNotify(mNotifyCharacteristic);
         }
@@ -501,7 +525,7 @@ public class CSCService extends Fragment {
 
 
         // Creating an  XYSeries for running speed
-        mDataSeries = new XYSeries(graphTitle);
+        mDataSeries = RingBufferXYSeries.fromPreferences(getActivity(), graphTitle);
 
 
         // Creating a dataset to hold each series
@@ -600,6 +624,8 @@ public class CSCService extends Fragment {
 
         // Adding the Line Chart to the LinearLayout
         mGraphLayoutParent.addView(mChart);
+        mRenderScheduler = ChartRenderScheduler.fromPreferences(getActivity());
+        mDataFeed = mRenderScheduler.addChart(mChart).addSeries(mDataSeries);
 
     }
 
@@ -366,11 +366,6 @@ public class GlucoseService extends Fragment implements View.OnClickListener {
                             false);
                 }
             }
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
         }
     }
 
@@ -387,7 +382,7 @@ public class GlucoseService extends Fragment implements View.OnClickListener {
             if (uuidchara.equals(UUIDDatabase.UUID_RECORD_ACCESS_CONTROL_POINT)
                     || uuidchara.equals(UUIDDatabase.UUID_GLUCOSE_MEASUREMENT)
                     || uuidchara.equals(UUIDDatabase.UUID_GLUCOSE_MEASUREMENT_CONTEXT)) {
-                BluetoothLeService.mGlucoseCharacteristics.add(gattCharacteristic);
+                BluetoothLeService.addGlucoseCharacteristic(gattCharacteristic);
             }
         }
         BluetoothLeService.enableAllGlucoseCharacteristics();
@@ -44,6 +44,8 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.drawable.ColorDrawable;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v4.app.Fragment;
 import android.util.DisplayMetrics;
 import android.view.LayoutInflater;
@@ -56,10 +58,16 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import com.cypress.cysmart1.BLEConnectionServices.BluetoothLeService;
+import com.cypress.cysmart1.BLEConnectionServices.GattEventBus;
+import com.cypress.cysmart1.BLEConnectionServices.GattNotificationEvent;
+import com.cypress.cysmart1.BLEProfileDataParserClasses.HTMMeasurement;
+import com.cypress.cysmart1.CommonUtils.ChartRenderScheduler;
 import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.GattAttributes;
 import com.cypress.cysmart1.CommonUtils.LogUtil;
 import com.cypress.cysmart1.CommonUtils.Logger;
+import com.cypress.cysmart1.CommonUtils.RingBufferXYSeries;
+import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
 import com.cypress.cysmart1.CommonUtils.Utils;
 import com.cypress.cysmart1.R;
 
@@ -67,11 +75,9 @@ import org.achartengine.ChartFactory;
 import org.achartengine.GraphicalView;
 import org.achartengine.chart.PointStyle;
 import org.achartengine.model.XYMultipleSeriesDataset;
-import org.achartengine.model.XYSeries;
 import org.achartengine.renderer.XYMultipleSeriesRenderer;
 import org.achartengine.renderer.XYSeriesRenderer;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -98,7 +104,9 @@ public class HealthTemperatureService extends Fragment {
     private double mPreviosTime = 0;
     private double mCurrentTime = 0;
     private GraphicalView mChart;
-    private XYSeries mTempEratureDataSeries;
+    private ChartRenderScheduler mRenderScheduler;
+    private ChartRenderScheduler.SeriesFeed mDataFeed;
+    private RingBufferXYSeries mTempEratureDataSeries;
 
     // Creating a XYMultipleSeriesRenderer to customize the whole chart
     XYMultipleSeriesRenderer mMultiRenderer;
@@ -106,6 +114,28 @@ public class HealthTemperatureService extends Fragment {
     //ProgressDialog
     private ProgressDialog mProgressDialog;
 
+    /**
+     * Reused for every measurement, only read on the main thread
+     */
+    private final HTMMeasurement mMeasurement = new HTMMeasurement();
+    private float mDisplayedTemperature = Float.NaN;
+    private boolean mDisplayedFahrenheit;
+
+    /**
+     * Receives the raw temperature measurements through the GattEventBus.
+     * They are decoded into mMeasurement, text is only formatted for the
+     * fields that changed.
+     */
+    private final GattEventBus.GattEventSubscriber mHTMSubscriber =
+            new GattEventBus.GattEventSubscriber() {
+                @Override
+                public void onGattNotification(GattNotificationEvent event) {
+                    if (mMeasurement.decode(event.getValue())) {
+                        displayLiveData();
+                    }
+                }
+            };
+
     /**
      * BroadcastReceiver for receiving the GATT server status
      */
@@ -118,15 +148,9 @@ public class HealthTemperatureService extends Fragment {
             // GATT data available
             if (BluetoothLeService.ACTION_DATA_AVAILABLE.equals(action)) {
 
-                // Check Health temperature
-                if (extras.containsKey(Constants.EXTRA_HTM_VALUE)) {
-                    ArrayList<String> received_htm_data = intent
-                            .getStringArrayListExtra(Constants.EXTRA_HTM_VALUE);
-                    displayLiveData(received_htm_data);
-
-                }
+                // Health temperature arrives through mHTMSubscriber
                 // Check health sensor location
-                else {
+                if (!extras.containsKey(Constants.EXTRA_HTM_VALUE)) {
                     String received_hsl_data = intent
                             .getStringExtra(Constants.EXTRA_HSL_VALUE);
                     prepareBroadcastDataIndicate(mNotifyCharacteristic);
@@ -191,37 +215,32 @@ public class HealthTemperatureService extends Fragment {
         return rootView;
     }
 
-    private void displayLiveData(final ArrayList<String> htm_data) {
+    /**
+     * Display the temperature from mMeasurement, the graph is in celcius
+     */
+    private void displayLiveData() {
 		LogUtil.e("HealthTemperatureService", "displayLiveData()");
-        if (htm_data != null) {
-            try {
-                mDataFieldHTM.setText(htm_data.get(0));
-                mDataFieldThermoUnit.setText(htm_data.get(1));
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-            if (mCurrentTime == 0) {
-                mGraphLastXValue = 0;
-                mCurrentTime = Utils.getTimeInSeconds();
-            } else {
-                mPreviosTime = mCurrentTime;
-                mCurrentTime = Utils.getTimeInSeconds();
-                mGraphLastXValue = mGraphLastXValue + (mCurrentTime - mPreviosTime) / 1000;
-            }
-            try {
-                double val = Double.valueOf(htm_data.get(0));
-                String unit = htm_data.get(1);
-                if (unit.equalsIgnoreCase("°F")) {
-                    val = convertFahrenheitToCelcius((float) val);
-                    Logger.i("convertFahrenheitToCelcius--->" + val);
-                }
-                mTempEratureDataSeries.add(mGraphLastXValue, val);
-                mChart.repaint();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        float temperature = mMeasurement.getTemperature();
+        boolean fahrenheit = mMeasurement.isFahrenheit();
+        if (temperature != mDisplayedTemperature) {
+            mDataFieldHTM.setText(String.valueOf(temperature));
+            mDisplayedTemperature = temperature;
         }
-
+        if (fahrenheit != mDisplayedFahrenheit || mDataFieldThermoUnit.length() == 0) {
+            mDataFieldThermoUnit.setText(fahrenheit ? R.string.tt_fahren_heit
+                    : R.string.tt_celcius);
+            mDisplayedFahrenheit = fahrenheit;
+        }
+        if (mCurrentTime == 0) {
+            mGraphLastXValue = 0;
+            mCurrentTime = Utils.getTimeInSeconds();
+        } else {
+            mPreviosTime = mCurrentTime;
+            mCurrentTime = Utils.getTimeInSeconds();
+            mGraphLastXValue = mGraphLastXValue + (mCurrentTime - mPreviosTime) / 1000;
+        }
+        mDataFeed.post(mGraphLastXValue, fahrenheit
+                ? convertFahrenheitToCelcius(temperature) : temperature);
     }
 
     private void displayBSLData(String htm_sensor_data) {
@@ -244,6 +263,9 @@ public class HealthTemperatureService extends Fragment {
         mHandlerFlag = true;
         getActivity().registerReceiver(mGattUpdateReceiver,
                 Utils.makeGattUpdateIntentFilter());
+        GattEventBus.subscribe(UUIDDatabase.UUID_HEALTH_THERMOMETER,
+                BluetoothLeService.getmBluetoothDeviceAddress(),
+                new Handler(Looper.getMainLooper()), mHTMSubscriber, false, true);
         Utils.setUpActionBar(getActivity(),
                 getResources().getString(R.string.health_thermometer_fragment));
     }
@@ -252,7 +274,9 @@ public class HealthTemperatureService extends Fragment {
     public void onDestroy() {
 		LogUtil.e("HealthTemperatureService", "onDestroy()");
         mHandlerFlag = false;
+        mRenderScheduler.release();
         getActivity().unregisterReceiver(mGattUpdateReceiver);
+        GattEventBus.unsubscribe(mHTMSubscriber);
         stopBroadcastDataIndiacte(mNotifyCharacteristic);
         super.onDestroy();
     }
@@ -383,7 +407,7 @@ public class HealthTemperatureService extends Fragment {
 
 
         // Creating an  XYSeries for temperature
-        mTempEratureDataSeries = new XYSeries(graphTitle);
+        mTempEratureDataSeries = RingBufferXYSeries.fromPreferences(getActivity(), graphTitle);
 
 
         // Creating a dataset to hold each series
@@ -479,6 +503,8 @@ public class HealthTemperatureService extends Fragment {
 
         // Adding the Line Chart to the LinearLayout
         mGraphLayoutParent.addView(mChart);
+        mRenderScheduler = ChartRenderScheduler.fromPreferences(getActivity());
+        mDataFeed = mRenderScheduler.addChart(mChart).addSeries(mTempEratureDataSeries);
 
     }
 }
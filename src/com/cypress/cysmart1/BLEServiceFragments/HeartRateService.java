@@ -42,6 +42,8 @@ import android.content.Intent;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v4.app.Fragment;
 import android.util.DisplayMetrics;
 import android.view.LayoutInflater;
@@ -57,10 +59,16 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import com.cypress.cysmart1.BLEConnectionServices.BluetoothLeService;
+import com.cypress.cysmart1.BLEConnectionServices.GattEventBus;
+import com.cypress.cysmart1.BLEConnectionServices.GattNotificationEvent;
+import com.cypress.cysmart1.BLEProfileDataParserClasses.HRMMeasurement;
+import com.cypress.cysmart1.CommonUtils.ChartRenderScheduler;
 import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.GattAttributes;
 import com.cypress.cysmart1.CommonUtils.LogUtil;
 import com.cypress.cysmart1.CommonUtils.Logger;
+import com.cypress.cysmart1.CommonUtils.RingBufferXYSeries;
+import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
 import com.cypress.cysmart1.CommonUtils.Utils;
 import com.cypress.cysmart1.R;
 
@@ -68,11 +76,9 @@ import org.achartengine.ChartFactory;
 import org.achartengine.GraphicalView;
 import org.achartengine.chart.PointStyle;
 import org.achartengine.model.XYMultipleSeriesDataset;
-import org.achartengine.model.XYSeries;
 import org.achartengine.renderer.XYMultipleSeriesRenderer;
 import org.achartengine.renderer.XYSeriesRenderer;
 
-import java.util.ArrayList;
 import java.util.List;
 
 //Fragment to display the heart rate service
@@ -101,7 +107,9 @@ public class HeartRateService extends Fragment {
     private double mPreviosTime = 0;
     private double mCurrentTime = 0;
     private GraphicalView mChart;
-    private XYSeries mDataSeries;
+    private ChartRenderScheduler mRenderScheduler;
+    private ChartRenderScheduler.SeriesFeed mDataFeed;
+    private RingBufferXYSeries mDataSeries;
 
     //ProgressDialog
     private ProgressDialog mProgressDialog;
@@ -125,28 +133,6 @@ public class HeartRateService extends Fragment {
                     displayBSLData(received_bsl_data);
                     prepareBroadcastDataNotify(mNotifyCharacteristic);
                 }
-                // Check heart rate
-                if (extras.containsKey(Constants.EXTRA_HRM_VALUE)) {
-                    String received_heart_rate = extras
-                            .getString(Constants.EXTRA_HRM_VALUE);
-                    displayHRMData(received_heart_rate);
-
-                }
-                // Check energy expended
-                if (extras.containsKey(Constants.EXTRA_HRM_EEVALUE)) {
-                    String received_heart_rate_ee = extras
-                            .getString(Constants.EXTRA_HRM_EEVALUE);
-                    displayHRMEEData(received_heart_rate_ee);
-
-                }
-                // Check rr interval
-                if (extras.containsKey(Constants.EXTRA_HRM_RRVALUE)) {
-                    ArrayList<Integer> received_rr_interval = extras
-                            .getIntegerArrayList(Constants.EXTRA_HRM_RRVALUE);
-                    displayHRMRRData(received_rr_interval);
-
-                }
-
             }
             //Received when the bond state is changed
             if (action.equals(BluetoothDevice.ACTION_BOND_STATE_CHANGED)) {
@@ -189,6 +175,35 @@ public class HeartRateService extends Fragment {
         }
     };
 
+    /**
+     * Reused for every measurement, only read on the main thread
+     */
+    private final HRMMeasurement mMeasurement = new HRMMeasurement();
+    private int mDisplayedHeartRate = -1;
+    private int mDisplayedEnergyExpended = -1;
+    private int mDisplayedRRInterval = -1;
+
+    /**
+     * Receives the raw heart rate measurements through the GattEventBus. They
+     * are decoded into mMeasurement, text is only formatted for the fields
+     * that changed.
+     */
+    private final GattEventBus.GattEventSubscriber mHeartRateSubscriber =
+            new GattEventBus.GattEventSubscriber() {
+                @Override
+                public void onGattNotification(GattNotificationEvent event) {
+                    if (!mMeasurement.decode(event.getValue())) {
+                        return;
+                    }
+                    displayHRMData(mMeasurement.getHeartRate());
+                    displayHRMEEData(mMeasurement.getEnergyExpended());
+                    if (mMeasurement.getRRCount() > 0) {
+                        displayHRMRRData(mMeasurement.getRRInterval(
+                                mMeasurement.getRRCount() - 1));
+                    }
+                }
+            };
+
     public HeartRateService create(BluetoothGattService service) {
 		LogUtil.e("HeartRateService", "create()");
         mService = service;
@@ -228,40 +243,41 @@ public class HeartRateService extends Fragment {
 
     }
 
-    private void displayHRMData(final String hrm_data) {
+    private void displayHRMData(int heartRate) {
 		LogUtil.e("HeartRateService", "displayHRMData()");
-        if (hrm_data != null) {
-            mDataFieldHRM.setText(hrm_data);
-            if (mCurrentTime == 0) {
-                mGraphLastXValue = 0;
-                mCurrentTime = Utils.getTimeInSeconds();
-            } else {
-                mPreviosTime = mCurrentTime;
-                mCurrentTime = Utils.getTimeInSeconds();
-                mGraphLastXValue = mGraphLastXValue + (mCurrentTime - mPreviosTime) / 1000;
-            }
-            double val = Integer.valueOf(hrm_data);
-            mDataSeries.add(mGraphLastXValue, val);
-            mChart.repaint();
+        if (heartRate != mDisplayedHeartRate) {
+            mDataFieldHRM.setText(String.valueOf(heartRate));
+            mDisplayedHeartRate = heartRate;
         }
-
+        if (mCurrentTime == 0) {
+            mGraphLastXValue = 0;
+            mCurrentTime = Utils.getTimeInSeconds();
+        } else {
+            mPreviosTime = mCurrentTime;
+            mCurrentTime = Utils.getTimeInSeconds();
+            mGraphLastXValue = mGraphLastXValue + (mCurrentTime - mPreviosTime) / 1000;
+        }
+        mDataFeed.post(mGraphLastXValue, heartRate);
     }
 
-    private void displayHRMEEData(String hrm_ee_data) {
+    private void displayHRMEEData(int energyExpended) {
 		LogUtil.e("HeartRateService", "displayHRMEEData()");
-        if (hrm_ee_data != null) {
-            mDataFieldHREE.setText(hrm_ee_data);
+        if (energyExpended != mDisplayedEnergyExpended) {
+            mDataFieldHREE.setText(String.valueOf(energyExpended));
+            mDisplayedEnergyExpended = energyExpended;
         }
     }
 
-    private void displayHRMRRData(ArrayList<Integer> hrm_rr_data) {
+    /**
+     * Shows the last RR-Interval of the measurement
+     *
+     * @param rrInterval
+     */
+    private void displayHRMRRData(int rrInterval) {
 		LogUtil.e("HeartRateService", "displayHRMRRData()");
-        if (hrm_rr_data != null) {
-            for (int i = 0; i < hrm_rr_data.size(); i++) {
-                String data = String.valueOf(hrm_rr_data.get(i));
-                mDataFieldHRRR.setText(data);
-            }
-
+        if (rrInterval != mDisplayedRRInterval) {
+            mDataFieldHRRR.setText(String.valueOf(rrInterval));
+            mDisplayedRRInterval = rrInterval;
         }
     }
 
@@ -272,6 +288,9 @@ public class HeartRateService extends Fragment {
         mHandlerFlag = true;
         getActivity().registerReceiver(mGattUpdateReceiver,
                 Utils.makeGattUpdateIntentFilter());
+        GattEventBus.subscribe(UUIDDatabase.UUID_HEART_RATE_MEASUREMENT,
+                BluetoothLeService.getmBluetoothDeviceAddress(),
+                new Handler(Looper.getMainLooper()), mHeartRateSubscriber, false, true);
         Utils.setUpActionBar(getActivity(),
                 getResources().getString(R.string.heart_rate));
     }
@@ -280,7 +299,9 @@ public class HeartRateService extends Fragment {
     public void onDestroy() {
 		LogUtil.e("HeartRateService", "onDestroy()");
         mHandlerFlag = false;
+        mRenderScheduler.release();
         getActivity().unregisterReceiver(mGattUpdateReceiver);
+        GattEventBus.unsubscribe(mHeartRateSubscriber);
         stopBroadcastDataNotify(mNotifyCharacteristic);
         super.onDestroy();
     }
@@ -407,7 +428,7 @@ public class HeartRateService extends Fragment {
 
 
         // Creating an  XYSeries for temperature
-        mDataSeries = new XYSeries(graphTitle);
+        mDataSeries = RingBufferXYSeries.fromPreferences(getActivity(), graphTitle);
 
 
         // Creating a dataset to hold each series
@@ -504,6 +525,8 @@ public class HeartRateService extends Fragment {
 
         // Adding the Line Chart to the LinearLayout
         mGraphLayoutParent.addView(mChart);
+        mRenderScheduler = ChartRenderScheduler.fromPreferences(getActivity());
+        mDataFeed = mRenderScheduler.addChart(mChart).addSeries(mDataSeries);
 
     }
 }
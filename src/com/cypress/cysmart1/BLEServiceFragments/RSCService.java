@@ -42,6 +42,8 @@ import android.content.Intent;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.SystemClock;
 import android.support.v4.app.Fragment;
 import android.text.InputType;
@@ -61,11 +63,17 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.cypress.cysmart1.BLEConnectionServices.BluetoothLeService;
+import com.cypress.cysmart1.BLEConnectionServices.GattEventBus;
+import com.cypress.cysmart1.BLEConnectionServices.GattNotificationEvent;
+import com.cypress.cysmart1.BLEProfileDataParserClasses.RSCMeasurement;
+import com.cypress.cysmart1.CommonUtils.ChartRenderScheduler;
 import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.DecimalTextWatcher;
 import com.cypress.cysmart1.CommonUtils.GattAttributes;
 import com.cypress.cysmart1.CommonUtils.LogUtil;
 import com.cypress.cysmart1.CommonUtils.Logger;
+import com.cypress.cysmart1.CommonUtils.RingBufferXYSeries;
+import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
 import com.cypress.cysmart1.CommonUtils.Utils;
 import com.cypress.cysmart1.R;
 
@@ -73,12 +81,10 @@ import org.achartengine.ChartFactory;
 import org.achartengine.GraphicalView;
 import org.achartengine.chart.PointStyle;
 import org.achartengine.model.XYMultipleSeriesDataset;
-import org.achartengine.model.XYSeries;
 import org.achartengine.renderer.XYMultipleSeriesRenderer;
 import org.achartengine.renderer.XYSeriesRenderer;
 
 import java.text.NumberFormat;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -97,7 +103,28 @@ public class RSCService extends Fragment {
     private Chronometer mTimer;
     private EditText mWeightEdittext;
 
-    private String mAvgSpeed;
+    /**
+     * Reused for every measurement, only read on the main thread
+     */
+    private final RSCMeasurement mMeasurement = new RSCMeasurement();
+    private int mDisplayedSpeed = -1;
+    private long mDisplayedDistance = -1;
+    private NumberFormat mTwoDecimalFormat;
+
+    /**
+     * Receives the raw RSC measurements through the GattEventBus. They are
+     * decoded into mMeasurement, text is only formatted for the fields that
+     * changed.
+     */
+    private final GattEventBus.GattEventSubscriber mRSCSubscriber =
+            new GattEventBus.GattEventSubscriber() {
+                @Override
+                public void onGattNotification(GattNotificationEvent event) {
+                    if (mMeasurement.decode(event.getValue())) {
+                        displayLiveData();
+                    }
+                }
+            };
 
     //ProgressDialog
     private ProgressDialog mProgressDialog;
@@ -110,7 +137,9 @@ public class RSCService extends Fragment {
     private double mPreviosTime = 0;
     private double mCurrentTime = 0;
     private GraphicalView mChart;
-    private XYSeries mDataSeries;
+    private ChartRenderScheduler mRenderScheduler;
+    private ChartRenderScheduler.SeriesFeed mDataFeed;
+    private RingBufferXYSeries mDataSeries;
 
     private boolean mHandlerFlag = false;
 
@@ -130,16 +159,7 @@ public class RSCService extends Fragment {
         public void onReceive(Context context, Intent intent) {
 			LogUtil.e("RSCService", "mGattUpdateReceiver  onReceive()");
             final String action = intent.getAction();
-            Bundle extras = intent.getExtras();
-            // GATT Data available
-            if (BluetoothLeService.ACTION_DATA_AVAILABLE.equals(action)) {
-                // Check CSC service
-                if (extras.containsKey(Constants.EXTRA_RSC_VALUE)) {
-                    ArrayList<String> received_rsc_data = intent
-                            .getStringArrayListExtra(Constants.EXTRA_RSC_VALUE);
-                    displayLiveData(received_rsc_data);
-                }
-            }
+            // Measurements arrive through mRSCSubscriber
             if (action.equals(BluetoothDevice.ACTION_BOND_STATE_CHANGED)) {
                 final int state = intent.getIntExtra(BluetoothDevice.EXTRA_BOND_STATE, BluetoothDevice.ERROR);
 
@@ -282,45 +302,35 @@ public class RSCService extends Fragment {
     }
 
     /**
-     * Display live running data
+     * Display live running data from mMeasurement
      */
-    private void displayLiveData(final ArrayList<String> rsc_data) {
+    private void displayLiveData() {
 		LogUtil.e("RSCService", "displayLiveData()");
-        if (rsc_data != null) {
-            try {
-                /**
-                 * Number formatting to two fractional decimals
-                 */
-                Number cycledDist = NumberFormat.getInstance().parse(
-                        rsc_data.get(1));
-                Number averageSpeed = NumberFormat.getInstance().parse(
-                        rsc_data.get(0));
-                NumberFormat distformatter = NumberFormat.getNumberInstance();
-                distformatter.setMinimumFractionDigits(2);
-                distformatter.setMaximumFractionDigits(2);
-                String distRan = distformatter.format(cycledDist);
-                mAvgSpeed = distformatter.format(averageSpeed);
-                mDistanceRan.setText(distRan);
-                mAverageSpeed.setText(mAvgSpeed);
-            } catch (Exception e1) {
-                e1.printStackTrace();
-            }
-            if (mCurrentTime == 0) {
-                mGraphLastXValue = 0;
-                mCurrentTime = Utils.getTimeInSeconds();
-            } else {
-                mPreviosTime = mCurrentTime;
-                mCurrentTime = Utils.getTimeInSeconds();
-                mGraphLastXValue = mGraphLastXValue + (mCurrentTime - mPreviosTime) / 1000;
-            }
-            try {
-                float val = Float.valueOf(mAvgSpeed);
-                mDataSeries.add(mGraphLastXValue, val);
-                mChart.repaint();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        if (mTwoDecimalFormat == null) {
+            mTwoDecimalFormat = NumberFormat.getNumberInstance();
+            mTwoDecimalFormat.setMinimumFractionDigits(2);
+            mTwoDecimalFormat.setMaximumFractionDigits(2);
+        }
+        if (mMeasurement.isTotalDistancePresent()
+                && mMeasurement.getTotalDistance() != mDisplayedDistance) {
+            mDisplayedDistance = mMeasurement.getTotalDistance();
+            // Total distance is in 1/10 m, shown in km
+            mDistanceRan.setText(mTwoDecimalFormat.format(mDisplayedDistance / 10000.0));
+        }
+        float speed = mMeasurement.getSpeedKmh();
+        if (mMeasurement.getRawSpeed() != mDisplayedSpeed) {
+            mDisplayedSpeed = mMeasurement.getRawSpeed();
+            mAverageSpeed.setText(mTwoDecimalFormat.format(speed));
+        }
+        if (mCurrentTime == 0) {
+            mGraphLastXValue = 0;
+            mCurrentTime = Utils.getTimeInSeconds();
+        } else {
+            mPreviosTime = mCurrentTime;
+            mCurrentTime = Utils.getTimeInSeconds();
+            mGraphLastXValue = mGraphLastXValue + (mCurrentTime - mPreviosTime) / 1000;
         }
+        mDataFeed.post(mGraphLastXValue, speed);
     }
 
     private float showElapsedTime() {
@@ -339,6 +349,9 @@ public class RSCService extends Fragment {
         mHandlerFlag = true;
         getActivity().registerReceiver(mGattUpdateReceiver,
                 Utils.makeGattUpdateIntentFilter());
+        GattEventBus.subscribe(UUIDDatabase.UUID_RSC_MEASURE,
+                BluetoothLeService.getmBluetoothDeviceAddress(),
+                new Handler(Looper.getMainLooper()), mRSCSubscriber, false, true);
         Utils.setUpActionBar(getActivity(),
                 getResources().getString(R.string.rsc_fragment));
     }
@@ -351,6 +364,8 @@ public class RSCService extends Fragment {
         if (mAverageSpeed != null && mDistanceRan != null) {
             mAverageSpeed.setText("");
             mDistanceRan.setText("");
+            mDisplayedSpeed = -1;
+            mDisplayedDistance = -1;
         }
 
     }
@@ -358,7 +373,9 @@ public class RSCService extends Fragment {
     @Override
     public void onDestroy() {
         LogUtil.e("RSCService", "onDestroy()");
+        mRenderScheduler.release();
         getActivity().unregisterReceiver(mGattUpdateReceiver);
+        GattEventBus.unsubscribe(mRSCSubscriber);
         if (mNotifyCharacteristic != null) {
             stopBroadcastDataNotify(mNotifyCharacteristic);
         }
@@ -468,7 +485,7 @@ public class RSCService extends Fragment {
 
 
         // Creating an  XYSeries for running speed
-        mDataSeries = new XYSeries(graphTitle);
+        mDataSeries = RingBufferXYSeries.fromPreferences(getActivity(), graphTitle);
 
         // Creating a dataset to hold each series
         XYMultipleSeriesDataset mDataset = new XYMultipleSeriesDataset();
@@ -564,6 +581,8 @@ public class RSCService extends Fragment {
 
         // Adding the Line Chart to the LinearLayout
         mGraphLayoutParent.addView(mChart);
+        mRenderScheduler = ChartRenderScheduler.fromPreferences(getActivity());
+        mDataFeed = mRenderScheduler.addChart(mChart).addSeries(mDataSeries);
 
     }
 
@@ -0,0 +1,322 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.BLEServiceFragments;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.cypress.cysmart1.BLEConnectionServices.GattEventBus;
+import com.cypress.cysmart1.BLEConnectionServices.GattNotificationEvent;
+import com.cypress.cysmart1.BLEProfileDataParserClasses.RawValueReader;
+import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sampling pipeline of the sensor hub readings. Values are taken from the
+ * GattEventBus on the GATT callback thread, stamped with their arrival time
+ * and decoded without going through a Bundle. The separate X, Y and Z
+ * characteristics are aligned into one accelerometer record. Records are
+ * queued per sensor and handed to the listener on the main thread, one
+ * message per batch of records rather than one per value.
+ */
+class SensorHubSampler implements GattEventBus.GattEventSubscriber {
+
+    /**
+     * Bits of {@link Listener#onSamplesDelivered(int)}, set when a read
+     * request of the characteristic completed
+     */
+    static final int READ_ACCELEROMETER_X = 0x01;
+    static final int READ_ACCELEROMETER_Y = 0x02;
+    static final int READ_ACCELEROMETER_Z = 0x04;
+    static final int READ_TEMPERATURE = 0x08;
+    static final int READ_PRESSURE = 0x10;
+
+    private static final int ACCELEROMETER_CAPACITY = 1024;
+    private static final int SENSOR_CAPACITY = 256;
+    private static final int ALL_AXES = 0x07;
+    /**
+     * An incomplete X/Y/Z set is released after this time, the missing axes
+     * keeping their previous value
+     */
+    private static final long ALIGNMENT_WINDOW_MILLIS = 100;
+
+    private static final UUID[] SENSOR_UUIDS = {
+            UUIDDatabase.UUID_ACCELEROMETER_READING_X,
+            UUIDDatabase.UUID_ACCELEROMETER_READING_Y,
+            UUIDDatabase.UUID_ACCELEROMETER_READING_Z,
+            UUIDDatabase.UUID_TEMPERATURE_READING,
+            UUIDDatabase.UUID_BAROMETER_READING};
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Listener mListener;
+    private final RecordBuffer mAccelerometer = new RecordBuffer(ACCELEROMETER_CAPACITY, 3);
+    private final RecordBuffer mTemperature = new RecordBuffer(SENSOR_CAPACITY, 1);
+    private final RecordBuffer mPressure = new RecordBuffer(SENSOR_CAPACITY, 1);
+    private final AtomicInteger mCompletedReads = new AtomicInteger();
+    private final AtomicBoolean mDeliveryPending = new AtomicBoolean();
+    private final double[] mRecord = new double[3];
+
+    /**
+     * Axes of the set being aligned, guarded by this
+     */
+    private final int[] mAxes = new int[3];
+    private int mFreshAxes;
+    private long mSetTime;
+
+    private final Runnable mDelivery = new Runnable() {
+        @Override
+        public void run() {
+            deliver();
+        }
+    };
+    /**
+     * Delivers again once an incomplete X/Y/Z set is due for release
+     */
+    private final Runnable mAlignmentTimeout = new Runnable() {
+        @Override
+        public void run() {
+            deliver();
+        }
+    };
+
+    SensorHubSampler(Listener listener) {
+        this.mListener = listener;
+    }
+
+    /**
+     * Starts sampling the given device. Its sensor readings are no longer sent
+     * as ACTION_DATA_AVAILABLE broadcasts while the sampler runs.
+     *
+     * @param deviceAddress
+     */
+    void start(String deviceAddress) {
+        for (UUID uuid : SENSOR_UUIDS) {
+            GattEventBus.subscribe(uuid, deviceAddress, null, this, false, true);
+        }
+    }
+
+    void stop() {
+        GattEventBus.unsubscribe(this);
+        mHandler.removeCallbacks(mDelivery);
+        mHandler.removeCallbacks(mAlignmentTimeout);
+    }
+
+    /**
+     * @return records dropped because the main thread was too far behind
+     */
+    int getDroppedCount() {
+        return mAccelerometer.mDropped.get() + mTemperature.mDropped.get()
+                + mPressure.mDropped.get();
+    }
+
+    @Override
+    public void onGattNotification(GattNotificationEvent event) {
+        byte[] value = event.getValue();
+        if (value == null || value.length < 2) {
+            return;
+        }
+        UUID uuid = event.getCharacteristicUuid();
+        long time = event.getTimestampNanos();
+        int readBit;
+        synchronized (this) {
+            if (UUIDDatabase.UUID_ACCELEROMETER_READING_X.equals(uuid)) {
+                onAxis(0, RawValueReader.uint16(value, 0), time);
+                readBit = READ_ACCELEROMETER_X;
+            } else if (UUIDDatabase.UUID_ACCELEROMETER_READING_Y.equals(uuid)) {
+                onAxis(1, RawValueReader.uint16(value, 0), time);
+                readBit = READ_ACCELEROMETER_Y;
+            } else if (UUIDDatabase.UUID_ACCELEROMETER_READING_Z.equals(uuid)) {
+                onAxis(2, RawValueReader.uint16(value, 0), time);
+                readBit = READ_ACCELEROMETER_Z;
+            } else if (UUIDDatabase.UUID_TEMPERATURE_READING.equals(uuid)) {
+                if (value.length < 4) {
+                    return;
+                }
+                mRecord[0] = RawValueReader.float32(value, 0);
+                mTemperature.put(time, mRecord);
+                readBit = READ_TEMPERATURE;
+            } else if (UUIDDatabase.UUID_BAROMETER_READING.equals(uuid)) {
+                mRecord[0] = RawValueReader.uint16(value, 0);
+                mPressure.put(time, mRecord);
+                readBit = READ_PRESSURE;
+            } else {
+                return;
+            }
+        }
+        if (!event.isNotification()) {
+            int reads;
+            do {
+                reads = mCompletedReads.get();
+            } while (!mCompletedReads.compareAndSet(reads, reads | readBit));
+        }
+        if (mDeliveryPending.compareAndSet(false, true)) {
+            mHandler.post(mDelivery);
+        }
+    }
+
+    /**
+     * Adds one axis to the current set. The set is released once the three
+     * axes arrived, or early if an axis arrives twice.
+     */
+    private void onAxis(int axis, int value, long time) {
+        if ((mFreshAxes & (1 << axis)) != 0) {
+            releaseAxes();
+        }
+        if (mFreshAxes == 0) {
+            mSetTime = time;
+        }
+        mAxes[axis] = value;
+        mFreshAxes |= 1 << axis;
+        if (mFreshAxes == ALL_AXES) {
+            releaseAxes();
+        }
+    }
+
+    private void releaseAxes() {
+        mRecord[0] = mAxes[0];
+        mRecord[1] = mAxes[1];
+        mRecord[2] = mAxes[2];
+        mAccelerometer.put(mSetTime, mRecord);
+        mFreshAxes = 0;
+    }
+
+    /**
+     * Runs on the main thread, once per batch
+     */
+    private void deliver() {
+        // Cleared first so a record queued while delivering posts a new batch
+        mDeliveryPending.set(false);
+        boolean incompleteSet;
+        synchronized (this) {
+            if (mFreshAxes != 0 && SystemClock.elapsedRealtimeNanos() - mSetTime
+                    >= TimeUnit.MILLISECONDS.toNanos(ALIGNMENT_WINDOW_MILLIS)) {
+                releaseAxes();
+            }
+            incompleteSet = mFreshAxes != 0;
+        }
+        double[] values = mAccelerometer.mValues;
+        for (int slot = mAccelerometer.next(); slot >= 0; slot = mAccelerometer.next()) {
+            mListener.onAccelerometerSample(mAccelerometer.mTimes[slot],
+                    (int) values[slot * 3], (int) values[slot * 3 + 1],
+                    (int) values[slot * 3 + 2]);
+        }
+        for (int slot = mTemperature.next(); slot >= 0; slot = mTemperature.next()) {
+            mListener.onTemperatureSample(mTemperature.mTimes[slot],
+                    (float) mTemperature.mValues[slot]);
+        }
+        for (int slot = mPressure.next(); slot >= 0; slot = mPressure.next()) {
+            mListener.onPressureSample(mPressure.mTimes[slot],
+                    (int) mPressure.mValues[slot]);
+        }
+        mListener.onSamplesDelivered(mCompletedReads.getAndSet(0));
+        if (incompleteSet) {
+            mHandler.removeCallbacks(mAlignmentTimeout);
+            mHandler.postDelayed(mAlignmentTimeout, ALIGNMENT_WINDOW_MILLIS);
+        }
+    }
+
+    /**
+     * Receives the records on the main thread
+     */
+    interface Listener {
+        void onAccelerometerSample(long timeNanos, int x, int y, int z);
+
+        void onTemperatureSample(long timeNanos, float temperature);
+
+        void onPressureSample(long timeNanos, int pressure);
+
+        /**
+         * Called after each batch
+         *
+         * @param completedReads READ_* bits of the read requests answered in
+         *                       the batch
+         */
+        void onSamplesDelivered(int completedReads);
+    }
+
+    /**
+     * Single producer, single consumer queue of timestamped records
+     */
+    private static class RecordBuffer {
+        private final int mCapacity;
+        private final int mWidth;
+        private final long[] mTimes;
+        private final double[] mValues;
+        private final AtomicLong mWritten = new AtomicLong();
+        private final AtomicLong mRead = new AtomicLong();
+        private final AtomicInteger mDropped = new AtomicInteger();
+        /**
+         * Records handed to the consumer, only touched by the consumer
+         */
+        private long mConsumed;
+
+        RecordBuffer(int capacity, int width) {
+            this.mCapacity = capacity;
+            this.mWidth = width;
+            mTimes = new long[capacity];
+            mValues = new double[capacity * width];
+        }
+
+        void put(long time, double[] record) {
+            long written = mWritten.get();
+            if (written - mRead.get() == mCapacity) {
+                mDropped.incrementAndGet();
+                return;
+            }
+            int slot = (int) (written % mCapacity);
+            mTimes[slot] = time;
+            System.arraycopy(record, 0, mValues, slot * mWidth, mWidth);
+            mWritten.lazySet(written + 1);
+        }
+
+        /**
+         * Consumes the oldest record. Its slot stays valid until the next call,
+         * which releases it to the producer.
+         *
+         * @return slot of the record, or -1 if empty
+         */
+        int next() {
+            mRead.lazySet(mConsumed);
+            if (mConsumed == mWritten.get()) {
+                return -1;
+            }
+            return (int) (mConsumed++ % mCapacity);
+        }
+    }
+}
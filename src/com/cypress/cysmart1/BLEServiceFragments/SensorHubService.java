@@ -41,7 +41,6 @@ import android.content.Intent;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.os.Bundle;
-import android.os.Handler;
 import android.support.v4.app.Fragment;
 import android.util.DisplayMetrics;
 import android.view.KeyEvent;
@@ -63,11 +62,14 @@ import android.widget.TextView;
 import android.widget.TextView.OnEditorActionListener;
 
 import com.cypress.cysmart1.BLEConnectionServices.BluetoothLeService;
+import com.cypress.cysmart1.CommonUtils.ChartRenderScheduler;
 import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.CustomSlideAnimation;
 import com.cypress.cysmart1.CommonUtils.GattAttributes;
 import com.cypress.cysmart1.CommonUtils.LogUtil;
 import com.cypress.cysmart1.CommonUtils.Logger;
+import com.cypress.cysmart1.CommonUtils.RingBufferXYSeries;
+import com.cypress.cysmart1.CommonUtils.StripChartView;
 import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
 import com.cypress.cysmart1.CommonUtils.Utils;
 import com.cypress.cysmart1.R;
@@ -76,7 +78,6 @@ import org.achartengine.ChartFactory;
 import org.achartengine.GraphicalView;
 import org.achartengine.chart.PointStyle;
 import org.achartengine.model.XYMultipleSeriesDataset;
-import org.achartengine.model.XYSeries;
 import org.achartengine.renderer.XYMultipleSeriesRenderer;
 import org.achartengine.renderer.XYSeriesRenderer;
 
@@ -149,34 +150,116 @@ public class SensorHubService extends Fragment {
 
     //Graph accelerometer
     private LinearLayout mACCGraphLayoutParent;
-    private double mACCXGraphLastXValue = 0;
-    private double mACCYGraphLastXValue = 0;
-    private double mACCZGraphLastXValue = 0;
-    private GraphicalView mAccelerometerChart;
-    private XYSeries mAccXDataSeries;
-    private XYSeries mAccYDataSeries;
-    private XYSeries mAccZDataSeries;
+    private StripChartView mAccelerometerChart;
+    private RingBufferXYSeries mAccXDataSeries;
+    private RingBufferXYSeries mAccYDataSeries;
+    private RingBufferXYSeries mAccZDataSeries;
+    private ChartRenderScheduler.SeriesFeed mAccXFeed;
+    private ChartRenderScheduler.SeriesFeed mAccYFeed;
+    private ChartRenderScheduler.SeriesFeed mAccZFeed;
 
     //Graph temperature
     private LinearLayout mTemperatureGraphLayoutParent;
-    private double mSTempGraphLastXValue = 0;
     private GraphicalView mTemperaturerChart;
-    private XYSeries mTemperatureDataSeries;
+    private RingBufferXYSeries mTemperatureDataSeries;
+    private ChartRenderScheduler.SeriesFeed mTemperatureFeed;
 
     //Graph pressure
     private LinearLayout mPressureGraphLayoutParent;
     private GraphicalView mPressureChart;
-    private double mSPressureGraphLastXValue = 0;
-    private XYSeries mPressureDataSeries;
+    private RingBufferXYSeries mPressureDataSeries;
+    private ChartRenderScheduler.SeriesFeed mPressureFeed;
 
-    private boolean mHandlerFlag = true;
+    private ChartRenderScheduler mRenderScheduler;
+    private SensorHubSampler mSampler;
+    /**
+     * Arrival time of the first sample, the origin of the graphs time axis
+     */
+    private long mFirstSampleTime = -1;
 
     //Constants
     private int mHeight = 200;
-    private static  final int HANDLER_DELAY = 1000;
     private static  final int ROTATION_90 = 90;
     private static  final int ROTATION_N90 = -90;
 
+    /**
+     * Receives the accelerometer, temperature and pressure readings from the
+     * SensorHubSampler, one batch at a time
+     */
+    private final SensorHubSampler.Listener mSampleListener = new SensorHubSampler.Listener() {
+        private int mLatestAccX;
+        private int mLatestAccY;
+        private int mLatestAccZ;
+        private float mLatestTemperature;
+        private int mLatestPressure;
+        private boolean mAccelerometerUpdated;
+        private boolean mTemperatureUpdated;
+        private boolean mPressureUpdated;
+
+        @Override
+        public void onAccelerometerSample(long timeNanos, int x, int y, int z) {
+            double time = getGraphTime(timeNanos);
+            mAccXFeed.post(time, x);
+            mAccYFeed.post(time, y);
+            mAccZFeed.post(time, z);
+            mLatestAccX = x;
+            mLatestAccY = y;
+            mLatestAccZ = z;
+            mAccelerometerUpdated = true;
+        }
+
+        @Override
+        public void onTemperatureSample(long timeNanos, float temperature) {
+            mTemperatureFeed.post(getGraphTime(timeNanos), temperature);
+            mLatestTemperature = temperature;
+            mTemperatureUpdated = true;
+        }
+
+        @Override
+        public void onPressureSample(long timeNanos, int pressure) {
+            mPressureFeed.post(getGraphTime(timeNanos), pressure);
+            mLatestPressure = pressure;
+            mPressureUpdated = true;
+        }
+
+        @Override
+        public void onSamplesDelivered(int completedReads) {
+            if (mAccelerometerUpdated) {
+                mAccX.setText("" + mLatestAccX);
+                mAccY.setText("" + mLatestAccY);
+                mAccZ.setText("" + mLatestAccZ);
+                mAccelerometerUpdated = false;
+            }
+            if (mTemperatureUpdated) {
+                mSensorTemp.setText("" + mLatestTemperature);
+                mTemperatureUpdated = false;
+            }
+            if (mPressureUpdated) {
+                mSensorPressure.setText("" + mLatestPressure);
+                mPressureUpdated = false;
+            }
+            // Initial read of the sensor hub characteristics, one after the other
+            if ((completedReads & SensorHubSampler.READ_ACCELEROMETER_X) != 0
+                    && mReadACCYCharacteristic != null) {
+                prepareBroadcastDataRead(mReadACCYCharacteristic);
+            }
+            if ((completedReads & SensorHubSampler.READ_ACCELEROMETER_Y) != 0
+                    && mReadACCZCharacteristic != null) {
+                prepareBroadcastDataRead(mReadACCZCharacteristic);
+            }
+            if ((completedReads & SensorHubSampler.READ_ACCELEROMETER_Z) != 0) {
+                prepareBroadcastDataRead(mReadBATCharacteristic);
+            }
+            if ((completedReads & SensorHubSampler.READ_TEMPERATURE) != 0) {
+                prepareBroadcastDataRead(mReadSPRESSURECharacteristic);
+            }
+            if ((completedReads & SensorHubSampler.READ_PRESSURE) != 0
+                    && mReadACCSensorScanCharacteristic != null) {
+                prepareBroadcastDataRead(mReadACCSensorScanCharacteristic);
+            }
+        }
+    };
+
     /**
      * BroadcastReceiver for receiving the GATT server status
      */
@@ -189,53 +272,12 @@ public class SensorHubService extends Fragment {
             Bundle extras = intent.getExtras();
             // GATT Data Available
             if (BluetoothLeService.ACTION_DATA_AVAILABLE.equals(action)) {
-                if (extras.containsKey(Constants.EXTRA_ACCX_VALUE)) {
-                    int received_acc_x = extras
-                            .getInt(Constants.EXTRA_ACCX_VALUE);
-                    displayXData("" + received_acc_x);
-                    if (mReadACCYCharacteristic != null) {
-                        prepareBroadcastDataRead(mReadACCYCharacteristic);
-                    }
-
-                }
-                if (extras.containsKey(Constants.EXTRA_ACCY_VALUE)) {
-                    int received_acc_y = extras
-                            .getInt(Constants.EXTRA_ACCY_VALUE);
-                    displayYData("" + received_acc_y);
-                    if (mReadACCZCharacteristic != null) {
-                        prepareBroadcastDataRead(mReadACCZCharacteristic);
-                    }
-
-                }
-                if (extras.containsKey(Constants.EXTRA_ACCZ_VALUE)) {
-                    int received_acc_z = extras
-                            .getInt(Constants.EXTRA_ACCZ_VALUE);
-                    displayZData("" + received_acc_z);
-                    prepareBroadcastDataRead(mReadBATCharacteristic);
-
-                }
                 if (extras.containsKey(Constants.EXTRA_BTL_VALUE)) {
                     String received_bat = extras
                             .getString(Constants.EXTRA_BTL_VALUE);
                     displayBATData(received_bat);
                     prepareBroadcastDataRead(mReadSTEMPCharacteristic);
                 }
-                if (extras.containsKey(Constants.EXTRA_STEMP_VALUE)) {
-                    float received_stemp = extras
-                            .getFloat(Constants.EXTRA_STEMP_VALUE);
-                    displaySTEMPData("" + received_stemp);
-                    prepareBroadcastDataRead(mReadSPRESSURECharacteristic);
-                }
-                if (extras.containsKey(Constants.EXTRA_SPRESSURE_VALUE)) {
-                    int received_spressure = extras
-                            .getInt(Constants.EXTRA_SPRESSURE_VALUE);
-
-                    displaySPressureData("" + received_spressure);
-                    if (mReadACCSensorScanCharacteristic != null) {
-                        prepareBroadcastDataRead(mReadACCSensorScanCharacteristic);
-                    }
-
-                }
                 if (extras.containsKey(Constants.EXTRA_ACC_SENSOR_SCAN_VALUE)) {
                     int received_acc_scan_interval = extras
                             .getInt(Constants.EXTRA_ACC_SENSOR_SCAN_VALUE);
@@ -369,54 +411,14 @@ public class SensorHubService extends Fragment {
     }
 
     /**
-     * Display atmospheric pressure data
-     *
-     * @param pressure
+     * @param timeNanos arrival time of a sample
+     * @return seconds since the first sample
      */
-    void displaySPressureData(final String pressure) {
-        LogUtil.e("SensorHubService", "displaySPressureData()");
-        mSensorPressure.setText(pressure);
-        final Handler lHandler = new Handler();
-        Runnable lRunnable = new Runnable() {
-
-            @Override
-            public void run() {
-                if (mHandlerFlag) {
-                    mSPressureGraphLastXValue++;
-                    double value = Integer.valueOf(pressure);
-                    mPressureDataSeries.add(mSPressureGraphLastXValue, value);
-                    mPressureChart.repaint();
-                }
-
-            }
-        };
-        lHandler.postDelayed(lRunnable, HANDLER_DELAY);
-    }
-
-    /**
-     * Display temperature data
-     *
-     * @param received_stemp
-     */
-    void displaySTEMPData(final String received_stemp) {
-        LogUtil.e("SensorHubService", "displaySTEMPData()");
-        mSensorTemp.setText(received_stemp);
-        final Handler lHandler = new Handler();
-        Runnable lRunnable = new Runnable() {
-
-            @Override
-            public void run() {
-                if (mHandlerFlag) {
-                    mSTempGraphLastXValue++;
-                    double value = Float.valueOf(received_stemp);
-                    mTemperatureDataSeries.add(mSTempGraphLastXValue, value);
-                    mTemperaturerChart.repaint();
-                }
-
-            }
-        };
-        lHandler.postDelayed(lRunnable, HANDLER_DELAY);
-
+    private double getGraphTime(long timeNanos) {
+        if (mFirstSampleTime < 0) {
+            mFirstSampleTime = timeNanos;
+        }
+        return (timeNanos - mFirstSampleTime) / 1e9;
     }
 
     /**
@@ -429,82 +431,6 @@ public class SensorHubService extends Fragment {
         mBattery.setText(val);
     }
 
-    /**
-     * Display accelerometer X Value
-     *
-     * @param val
-     */
-    void displayXData(final String val) {
-        LogUtil.e("SensorHubService", "displayXData()");
-        mAccX.setText(val);
-        final Handler lHandler = new Handler();
-        Runnable lRunnable = new Runnable() {
-            @Override
-            public void run() {
-                if (mHandlerFlag) {
-                    mACCXGraphLastXValue++;
-                    double value = Integer.valueOf(val);
-                    mAccXDataSeries.add(mACCXGraphLastXValue, value);
-                    mAccelerometerChart.repaint();
-
-                }
-
-            }
-        };
-        lHandler.postDelayed(lRunnable, HANDLER_DELAY);
-    }
-
-    /**
-     * Display accelerometer Y Value
-     *
-     * @param val
-     */
-    void displayYData(final String val) {
-        LogUtil.e("SensorHubService", "displayYData()");
-        mAccY.setText(val);
-        final Handler lHandler = new Handler();
-        Runnable lRunnable = new Runnable() {
-
-            @Override
-            public void run() {
-                if (mHandlerFlag) {
-                    mACCYGraphLastXValue++;
-                    double value = Integer.valueOf(val);
-                    mAccYDataSeries.add(mACCYGraphLastXValue, value);
-                    mAccelerometerChart.repaint();
-                }
-
-            }
-        };
-        lHandler.postDelayed(lRunnable, HANDLER_DELAY);
-    }
-
-    /**
-     * Display accelerometer Z Value
-     *
-     * @param val
-     */
-    void displayZData(final String val) {
-        LogUtil.e("SensorHubService", "displayZData()");
-        mAccZ.setText(val);
-        final Handler lHandler = new Handler();
-        Runnable lRunnable = new Runnable() {
-
-            @Override
-            public void run() {
-                if (mHandlerFlag) {
-                    mACCZGraphLastXValue++;
-                    double value = Integer.valueOf(val);
-                    mAccZDataSeries.add(mACCZGraphLastXValue, value);
-                    mAccelerometerChart.repaint();
-
-                }
-
-            }
-        };
-        lHandler.postDelayed(lRunnable, HANDLER_DELAY);
-    }
-
     /**
      * Display accelerometer scan interval data
      *
@@ -902,6 +828,8 @@ public class SensorHubService extends Fragment {
         });
         ImageButton acc_graph = (ImageButton) rootView
                 .findViewById(R.id.acc_graph);
+        mRenderScheduler = ChartRenderScheduler.fromPreferences(getActivity());
+        mSampler = new SensorHubSampler(mSampleListener);
         setupAccChart(rootView);
 
         acc_graph.setOnClickListener(new OnClickListener() {
@@ -966,7 +894,7 @@ public class SensorHubService extends Fragment {
 
 
             // Creating an  XYSeries for temperature
-            mPressureDataSeries = new XYSeries(graphTitle);
+            mPressureDataSeries = RingBufferXYSeries.fromPreferences(getActivity(), graphTitle);
 
 
             // Creating a dataset to hold each series
@@ -1065,6 +993,8 @@ public class SensorHubService extends Fragment {
 
             // Adding the Line Chart to the LinearLayout
             mPressureGraphLayoutParent.addView(mPressureChart);
+            mPressureFeed = mRenderScheduler.addChart(mPressureChart)
+                    .addSeries(mPressureDataSeries);
 
         }
     }
@@ -1081,7 +1011,7 @@ public class SensorHubService extends Fragment {
 
 
             // Creating an  XYSeries for temperature
-            mTemperatureDataSeries = new XYSeries(graphTitle);
+            mTemperatureDataSeries = RingBufferXYSeries.fromPreferences(getActivity(), graphTitle);
 
 
             // Creating a dataset to hold each series
@@ -1180,6 +1110,8 @@ public class SensorHubService extends Fragment {
 
             // Adding the Line Chart to the LinearLayout
             mTemperatureGraphLayoutParent.addView(mTemperaturerChart);
+            mTemperatureFeed = mRenderScheduler.addChart(mTemperaturerChart)
+                    .addSeries(mTemperatureDataSeries);
 
         }
     }
@@ -1197,136 +1129,39 @@ public class SensorHubService extends Fragment {
         String graphXTitle = getResources().getString(R.string.sen_hub_accelerometer_x);
         String graphYTitle = getResources().getString(R.string.sen_hub_accelerometer_Y);
         String graphZTitle = getResources().getString(R.string.sen_hub_accelerometer_Z);
-        String graphXAxis = getResources().getString(R.string.health_temperature_time);
-        String graphYAxis = getResources().getString(R.string.sen_hub_accelerometer);
 
 
         // Creating an  XYSeries for Accelerometer
-        mAccXDataSeries = new XYSeries(graphXTitle);
-        mAccYDataSeries = new XYSeries(graphYTitle);
-        mAccZDataSeries = new XYSeries(graphZTitle);
-
-
-        // Creating a dataset to hold each series
-        XYMultipleSeriesDataset mDataset = new XYMultipleSeriesDataset();
-
-        // Adding temperature Series to the dataset
-        mDataset.addSeries(mAccXDataSeries);
-        mDataset.addSeries(mAccYDataSeries);
-        mDataset.addSeries(mAccZDataSeries);
-
-
-        // Creating XYSeriesRenderer to customize
-        XYSeriesRenderer mXRenderer = new XYSeriesRenderer();
-        mXRenderer.setColor(Color.RED);
-        mXRenderer.setPointStyle(PointStyle.CIRCLE);
-        mXRenderer.setFillPoints(true);
-        mXRenderer.setLineWidth(5);
-
-        XYSeriesRenderer mYRenderer = new XYSeriesRenderer();
-        mYRenderer.setColor(Color.BLUE);
-        mYRenderer.setPointStyle(PointStyle.CIRCLE);
-        mYRenderer.setFillPoints(true);
-        mYRenderer.setLineWidth(5);
-
-        XYSeriesRenderer mZRenderer = new XYSeriesRenderer();
-        mZRenderer.setColor(Color.GREEN);
-        mZRenderer.setPointStyle(PointStyle.CIRCLE);
-        mZRenderer.setFillPoints(true);
-        mZRenderer.setLineWidth(5);
-
-        // Creating a XYMultipleSeriesRenderer to customize the whole chart
-        XYMultipleSeriesRenderer mMultiRenderer = new XYMultipleSeriesRenderer();
-        int deviceDPi = getResources().getDisplayMetrics().densityDpi;
-        switch (deviceDPi) {
-            case DisplayMetrics.DENSITY_XHIGH:
-                mMultiRenderer.setMargins(new int[]{Constants.GRAPH_MARGIN_40, Constants.GRAPH_MARGIN_90,
-                        Constants.GRAPH_MARGIN_25, Constants.GRAPH_MARGIN_10});
-                mMultiRenderer.setAxisTitleTextSize(Constants.TEXT_SIZE_XHDPI);
-                mMultiRenderer.setChartTitleTextSize(Constants.TEXT_SIZE_XHDPI);
-                mMultiRenderer.setLabelsTextSize(Constants.TEXT_SIZE_XHDPI);
-                mMultiRenderer.setLegendTextSize(Constants.TEXT_SIZE_XHDPI);
-                break;
-            case DisplayMetrics.DENSITY_HIGH:
-                mMultiRenderer.setMargins(new int[]{Constants.GRAPH_MARGIN_30, Constants.GRAPH_MARGIN_50,
-                        Constants.GRAPH_MARGIN_25, Constants.GRAPH_MARGIN_10});
-                mMultiRenderer.setAxisTitleTextSize(Constants.TEXT_SIZE_HDPI);
-                mMultiRenderer.setChartTitleTextSize(Constants.TEXT_SIZE_HDPI);
-                mMultiRenderer.setLabelsTextSize(Constants.TEXT_SIZE_HDPI);
-                mMultiRenderer.setLegendTextSize(Constants.TEXT_SIZE_HDPI);
-                break;
-            case DisplayMetrics.DENSITY_XXHIGH:
-                mMultiRenderer.setMargins(new int[]{Constants.GRAPH_MARGIN_50, Constants.GRAPH_MARGIN_100,
-                        Constants.GRAPH_MARGIN_35, Constants.GRAPH_MARGIN_20});
-                mMultiRenderer.setAxisTitleTextSize(Constants.TEXT_SIZE_XXHDPI);
-                mMultiRenderer.setChartTitleTextSize(Constants.TEXT_SIZE_XXHDPI);
-                mMultiRenderer.setLabelsTextSize(Constants.TEXT_SIZE_XXHDPI);
-                mMultiRenderer.setLegendTextSize(Constants.TEXT_SIZE_XXHDPI);
-                break;
-
-            default:
-                if (deviceDPi > DisplayMetrics.DENSITY_XXHIGH && deviceDPi <=
-                        DisplayMetrics.DENSITY_XXXHIGH) {
-                    mMultiRenderer.setMargins(new int[]{Constants.GRAPH_MARGIN_50, Constants.GRAPH_MARGIN_100,
-                            Constants.GRAPH_MARGIN_35, Constants.GRAPH_MARGIN_20});
-                    mMultiRenderer.setAxisTitleTextSize(Constants.TEXT_SIZE_XXXHDPI);
-                    mMultiRenderer.setChartTitleTextSize(Constants.TEXT_SIZE_XXXHDPI);
-                    mMultiRenderer.setLabelsTextSize(Constants.TEXT_SIZE_XXXHDPI);
-                    mMultiRenderer.setLegendTextSize(Constants.TEXT_SIZE_XXXHDPI);
-                } else {
-                    mMultiRenderer.setMargins(new int[]{Constants.GRAPH_MARGIN_30, Constants.GRAPH_MARGIN_50,
-                            Constants.GRAPH_MARGIN_25, Constants.GRAPH_MARGIN_10});
-                    mMultiRenderer.setAxisTitleTextSize(Constants.TEXT_SIZE_LDPI);
-                    mMultiRenderer.setChartTitleTextSize(Constants.TEXT_SIZE_LDPI);
-                    mMultiRenderer.setLabelsTextSize(Constants.TEXT_SIZE_LDPI);
-                    mMultiRenderer.setLegendTextSize(Constants.TEXT_SIZE_LDPI);
-                }
-                break;
-        }
-        mMultiRenderer.setXTitle(graphXAxis);
-        mMultiRenderer.setLabelsColor(Color.BLACK);
-        mMultiRenderer.setYTitle(graphYAxis);
-        mMultiRenderer.setMarginsColor(Color.argb(0x00, 0xff, 0x00, 0x00));
-        mMultiRenderer.setPanEnabled(true, true);
-        mMultiRenderer.setZoomEnabled(false,false);
-        mMultiRenderer.setGridColor(Color.LTGRAY);
-        mMultiRenderer.setLabelsColor(Color.BLACK);
-        mMultiRenderer.setYLabelsColor(0, Color.DKGRAY);
-        mMultiRenderer.setYLabelsAlign(Paint.Align.RIGHT);
-        mMultiRenderer.setXLabelsColor(Color.DKGRAY);
-        mMultiRenderer.setYLabelsColor(0, Color.BLACK);
-        mMultiRenderer.setXLabelsColor(Color.BLACK);
-        mMultiRenderer.setApplyBackgroundColor(true);
-        mMultiRenderer.setBackgroundColor(Color.WHITE);
-        mMultiRenderer.setGridColor(Color.BLACK);
-        mMultiRenderer.setShowGrid(true);
-        mMultiRenderer.setShowLegend(false);
-
-
-        // Adding mRenderer to multipleRenderer
-        mMultiRenderer.addSeriesRenderer(mXRenderer);
-        mMultiRenderer.addSeriesRenderer(mYRenderer);
-        mMultiRenderer.addSeriesRenderer(mZRenderer);
+        mAccXDataSeries = RingBufferXYSeries.fromPreferences(getActivity(), graphXTitle);
+        mAccYDataSeries = RingBufferXYSeries.fromPreferences(getActivity(), graphYTitle);
+        mAccZDataSeries = RingBufferXYSeries.fromPreferences(getActivity(), graphZTitle);
+
+        // The three axes stream at a high rate, drawn from the ring buffers through reused paths
+        mAccelerometerChart = new StripChartView(getActivity());
+        mAccelerometerChart.setLineWidth(5);
+        mAccelerometerChart.setAxisTitles(getResources().getString(R.string.health_temperature_time),
+                getResources().getString(R.string.sen_hub_accelerometer));
+        mAccelerometerChart.addSeries(mAccXDataSeries, Color.RED);
+        mAccelerometerChart.addSeries(mAccYDataSeries, Color.BLUE);
+        mAccelerometerChart.addSeries(mAccZDataSeries, Color.GREEN);
 
         // Getting a reference to LinearLayout of the MainActivity Layout
         mACCGraphLayoutParent = (LinearLayout) parent.findViewById(R.id.accelerometer_chart_container);
 
-
-        mAccelerometerChart = ChartFactory.getLineChartView(getActivity(),
-                mDataset, mMultiRenderer);
-
-
         // Adding the Line Chart to the LinearLayout
         mACCGraphLayoutParent.addView(mAccelerometerChart);
-
-
+        ChartRenderScheduler.Chart accelerometerChart =
+                mRenderScheduler.addChart(mAccelerometerChart);
+        mAccXFeed = accelerometerChart.addSeries(mAccXDataSeries);
+        mAccYFeed = accelerometerChart.addSeries(mAccYDataSeries);
+        mAccZFeed = accelerometerChart.addSeries(mAccZDataSeries);
     }
 
     @Override
     public void onResume() {
         super.onResume();
         LogUtil.e("SensorHubService", "onResume()");
-        mHandlerFlag = true;
+        mSampler.start(BluetoothLeService.getmBluetoothDeviceAddress());
         getGattData();
         getActivity().registerReceiver(mGattUpdateReceiver,
                 Utils.makeGattUpdateIntentFilter());
@@ -1338,7 +1173,8 @@ public class SensorHubService extends Fragment {
     public void onDestroy() {
         super.onDestroy();
         LogUtil.e("SensorHubService", "onDestroy()");
-        mHandlerFlag = false;
+        mSampler.stop();
+        mRenderScheduler.release();
         getActivity().unregisterReceiver(mGattUpdateReceiver);
         stopBroadcastDataNotify(mNotifyACCXCharacteristic);
         stopBroadcastDataNotify(mNotifyACCYCharacteristic);
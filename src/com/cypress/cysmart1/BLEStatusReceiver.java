@@ -47,6 +47,7 @@ import com.cypress.cysmart1.CommonUtils.Utils;
 import com.cypress.cysmart1.DataLoggerFragments.DataLoggerHistoryList;
 import com.cypress.cysmart1.OTAFirmwareUpdate.OTAFilesListingActivity;
 import com.cypress.cysmart1.OTAFirmwareUpdate.OTAFirmwareUpgradeFragment;
+import com.cypress.cysmart1.OTAFirmwareUpdate.OTASession;
 
 
 /**
@@ -69,13 +70,15 @@ public class BLEStatusReceiver extends BroadcastReceiver {
                 Toast.makeText(context,
                         context.getResources().getString(R.string.alert_message_bluetooth_disconnect),
                         Toast.LENGTH_SHORT).show();
-                if (OTAFirmwareUpgradeFragment.mFileupgradeStarted) {
+                //Leaving the bootloader resets the device, the OTA screen completes the update
+                if (OTAFirmwareUpgradeFragment.mFileupgradeStarted
+                        && !OTASession.getInstance().isExitingBootloader()) {
                     //Resetting all preferences on Stop Button
                     Utils.setStringSharedPreference(context, Constants.PREF_OTA_FILE_ONE_NAME, "Default");
                     Utils.setStringSharedPreference(context, Constants.PREF_OTA_FILE_TWO_PATH, "Default");
                     Utils.setStringSharedPreference(context, Constants.PREF_OTA_FILE_TWO_NAME, "Default");
-                    Utils.setStringSharedPreference(context, Constants.PREF_BOOTLOADER_STATE, "Default");
-                    Utils.setIntSharedPreference(context, Constants.PREF_PROGRAM_ROW_NO, 0);
+                    //Keeping the OTA checkpoint to resume from after reconnecting
+                    OTASession.getInstance().suspend();
                 }
                 if (!ProfileScanningFragment.isInFragment &&
                         !ServiceDiscoveryFragment.isInServiceFragment&&!HomePageActivity.mApplicationInBackground) {
@@ -71,7 +71,9 @@ import com.cypress.cysmart1.BLEConnectionServices.BluetoothLeService;
 import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.LogUtil;
 import com.cypress.cysmart1.CommonUtils.Logger;
+import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
 import com.cypress.cysmart1.CommonUtils.Utils;
+import com.cypress.cysmart1.OTAFirmwareUpdate.OTAFleetActivity;
 import com.cypress.cysmart1.R;
 
 import java.lang.reflect.Method;
@@ -111,6 +113,8 @@ public class ProfileScanningFragment extends Fragment {
     private LeDeviceListAdapter mLeDeviceListAdapter;
     private SwipeRefreshLayout mSwipeLayout;
     private Map<String, Integer> mDevRssiValues;
+    // Addresses of the devices advertising the bootloader service
+    private final ArrayList<String> mBootloaderDevices = new ArrayList<String>();
 
     //GUI elements
     private ListView mProfileListView;
@@ -135,11 +139,17 @@ public class ProfileScanningFragment extends Fragment {
         public void onLeScan(final BluetoothDevice device, final int rssi,
                              byte[] scanRecord) {
             LogUtil.e("ProfileScanningFragment", "mLeScanCallback  onLeScan()");
+            final boolean bootloaderAdvertised = Utils.isServiceAdvertised(scanRecord,
+                    UUIDDatabase.UUID_OTA_UPDATE_SERVICE);
             Activity mActivity = getActivity();
             if (mActivity != null) {
                 mActivity.runOnUiThread(new Runnable() {
                     @Override
                     public void run() {
+                        if (bootloaderAdvertised
+                                && !mBootloaderDevices.contains(device.getAddress())) {
+                            mBootloaderDevices.add(device.getAddress());
+                        }
                         if (!mSearchEnabled) {
                             mLeDeviceListAdapter.addDevice(device, rssi);
                             try {
@@ -523,6 +533,8 @@ public class ProfileScanningFragment extends Fragment {
             pairCache.setChecked(false);
         }
 
+        menu.findItem(R.id.batch_ota).setVisible(true);
+
         MenuItem mSearch = menu.findItem(R.id.search);
         mSearch.setVisible(true);
         mSearch.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
@@ -560,9 +572,34 @@ public class ProfileScanningFragment extends Fragment {
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         LogUtil.e("ProfileScanningFragment", "onOptionsItemSelected()");
+        if (item.getItemId() == R.id.batch_ota) {
+            startBatchOTA();
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 
+    /**
+     * Opens the batch OTA screen with the scanned devices
+     */
+    private void startBatchOTA() {
+        if (mScanning) {
+            scanLeDevice(false);
+        }
+        ArrayList<String> names = new ArrayList<String>();
+        ArrayList<String> addresses = new ArrayList<String>();
+        for (BluetoothDevice device : mLeDevices) {
+            names.add(device.getName());
+            addresses.add(device.getAddress());
+        }
+        Intent batchOTA = new Intent(getActivity(), OTAFleetActivity.class);
+        batchOTA.putStringArrayListExtra(Constants.EXTRA_FLEET_DEVICE_NAMES, names);
+        batchOTA.putStringArrayListExtra(Constants.EXTRA_FLEET_DEVICE_ADDRESSES, addresses);
+        batchOTA.putStringArrayListExtra(Constants.EXTRA_FLEET_BOOTLOADER_ADDRESSES,
+                new ArrayList<String>(mBootloaderDevices));
+        startActivity(batchOTA);
+    }
+
     /**
      * Setting up the ActionBar
      */
@@ -0,0 +1,239 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.CommonUtils;
+
+import android.content.Context;
+import android.view.Choreographer;
+import android.view.View;
+
+import org.achartengine.model.XYSeries;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Repaints the live charts at most once per display frame. Samples are posted
+ * to lock-free buffers from any thread; on the next frame they are moved into
+ * their series and each chart that received samples is invalidated once, on
+ * the frame itself rather than through {@code GraphicalView.repaint()}, which
+ * posts a new Runnable per call. Charts that are not shown only get their
+ * series updated, they are not redrawn.
+ * <p/>
+ * Must be created on the UI thread.
+ */
+public class ChartRenderScheduler implements Choreographer.FrameCallback {
+
+    /**
+     * Samples buffered per series between two frames, must be a power of two
+     */
+    private static final int BUFFER_SIZE = 1024;
+
+    private final Choreographer mChoreographer;
+    private final ArrayList<Chart> mCharts = new ArrayList<Chart>();
+    private final AtomicBoolean mFrameScheduled = new AtomicBoolean();
+    private volatile boolean mReleased;
+    private long mMinFrameIntervalNanos;
+    private long mLastFrameTimeNanos;
+
+    public ChartRenderScheduler() {
+        mChoreographer = Choreographer.getInstance();
+    }
+
+    /**
+     * Creates a scheduler capped by {@link Constants#PREF_GRAPH_MAX_FRAME_RATE},
+     * or following the display refresh if it is not set
+     *
+     * @param context
+     * @return
+     */
+    public static ChartRenderScheduler fromPreferences(Context context) {
+        ChartRenderScheduler scheduler = new ChartRenderScheduler();
+        scheduler.setMaxFrameRate(Utils.getIntSharedPreference(context,
+                Constants.PREF_GRAPH_MAX_FRAME_RATE));
+        return scheduler;
+    }
+
+    /**
+     * Caps the repaints of each chart
+     *
+     * @param framesPerSecond 0 to repaint on every display frame
+     */
+    public void setMaxFrameRate(int framesPerSecond) {
+        mMinFrameIntervalNanos = framesPerSecond > 0
+                ? TimeUnit.SECONDS.toNanos(1) / framesPerSecond : 0;
+    }
+
+    /**
+     * Registers a chart view, such as a GraphicalView or a StripChartView, on
+     * the UI thread
+     *
+     * @param view
+     * @return the chart to add the series to
+     */
+    public Chart addChart(View view) {
+        Chart chart = new Chart(view);
+        mCharts.add(chart);
+        return chart;
+    }
+
+    /**
+     * Stops rendering; samples posted afterwards are ignored
+     */
+    public void release() {
+        mReleased = true;
+        mChoreographer.removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        // Cleared first so a sample posted while rendering schedules the next frame
+        mFrameScheduled.set(false);
+        if (mReleased) {
+            return;
+        }
+        long elapsed = frameTimeNanos - mLastFrameTimeNanos;
+        if (elapsed < mMinFrameIntervalNanos) {
+            if (mFrameScheduled.compareAndSet(false, true)) {
+                mChoreographer.postFrameCallbackDelayed(this, TimeUnit.NANOSECONDS
+                        .toMillis(mMinFrameIntervalNanos - elapsed));
+            }
+            return;
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+        for (int i = 0; i < mCharts.size(); i++) {
+            mCharts.get(i).render();
+        }
+    }
+
+    private void requestFrame() {
+        if (!mReleased && mFrameScheduled.compareAndSet(false, true)) {
+            mChoreographer.postFrameCallback(this);
+        }
+    }
+
+    /**
+     * A chart and the series drawn in it
+     */
+    public class Chart {
+        private final View mView;
+        private final ArrayList<SeriesFeed> mFeeds = new ArrayList<SeriesFeed>();
+
+        private Chart(View view) {
+            this.mView = view;
+        }
+
+        /**
+         * Adds a series of the chart, on the UI thread
+         *
+         * @param series
+         * @return the feed to post the samples of the series to
+         */
+        public SeriesFeed addSeries(XYSeries series) {
+            SeriesFeed feed = new SeriesFeed(series);
+            mFeeds.add(feed);
+            return feed;
+        }
+
+        private void render() {
+            int drained = 0;
+            for (int i = 0; i < mFeeds.size(); i++) {
+                drained += mFeeds.get(i).drain();
+            }
+            if (drained > 0 && mView.isShown()) {
+                mView.invalidate();
+            }
+        }
+    }
+
+    /**
+     * Single producer buffer of the samples not yet added to a series
+     */
+    public class SeriesFeed {
+        private final XYSeries mSeries;
+        private final double[] mX = new double[BUFFER_SIZE];
+        private final double[] mY = new double[BUFFER_SIZE];
+        private final AtomicLong mWritten = new AtomicLong();
+        private final AtomicLong mRead = new AtomicLong();
+        private final AtomicInteger mDropped = new AtomicInteger();
+
+        private SeriesFeed(XYSeries series) {
+            this.mSeries = series;
+        }
+
+        /**
+         * Queues a sample for the next frame. Never blocks; the sample is
+         * dropped if the UI thread is too far behind.
+         *
+         * @param x
+         * @param y
+         * @return false if the sample was dropped
+         */
+        public boolean post(double x, double y) {
+            if (mReleased) {
+                return false;
+            }
+            long written = mWritten.get();
+            if (written - mRead.get() == BUFFER_SIZE) {
+                mDropped.incrementAndGet();
+                return false;
+            }
+            int slot = (int) (written & (BUFFER_SIZE - 1));
+            mX[slot] = x;
+            mY[slot] = y;
+            mWritten.lazySet(written + 1);
+            requestFrame();
+            return true;
+        }
+
+        /**
+         * @return samples dropped since the feed was created
+         */
+        public int getDroppedCount() {
+            return mDropped.get();
+        }
+
+        private int drain() {
+            long read = mRead.get();
+            long written = mWritten.get();
+            for (long i = read; i < written; i++) {
+                int slot = (int) (i & (BUFFER_SIZE - 1));
+                mSeries.add(mX[slot], mY[slot]);
+            }
+            mRead.lazySet(written);
+            return (int) (written - read);
+        }
+    }
+}
@@ -189,6 +189,17 @@ public class Constants {
             "EXTRA_VERIFY_EXIT_BOOTLOADER";
     public static final String EXTRA_ERROR_OTA = "com.cypress.cysmart.backgroundservices." +
             "EXTRA_ERROR_OTA";
+    /**
+     * Completion status of a bootloader command write, an int
+     */
+    public static final String EXTRA_OTA_WRITE_STATUS = "com.cypress.cysmart.backgroundservices." +
+            "EXTRA_OTA_WRITE_STATUS";
+    public static final String EXTRA_DEVICE_ADDRESS = "com.cypress.cysmart.backgroundservices." +
+            "EXTRA_DEVICE_ADDRESS";
+    public static final String EXTRA_CONNECTION_STATE = "com.cypress.cysmart.backgroundservices." +
+            "EXTRA_CONNECTION_STATE";
+    public static final String EXTRA_SESSION_ACTION = "com.cypress.cysmart.backgroundservices." +
+            "EXTRA_SESSION_ACTION";
     /**
      * Shared Prefernce Status HandShake State
      */
@@ -196,6 +207,22 @@ public class Constants {
     public static final String PREF_PROGRAM_ROW_NO = "PREF_PROGRAM_ROW_NO";
     public static final String PREF_PROGRAM_ROW_START_POS = "PREF_PROGRAM_ROW_START_POS";
     public static final String PREF_ARRAY_ID = "PREF_EXTRA_ARRAY_ID";
+    /**
+     * Shared Prefernce OTA Resume Checkpoint
+     */
+    public static final String PREF_OTA_RESUME_DEVICE_ADDRESS = "PREF_OTA_RESUME_DEVICE_ADDRESS";
+    public static final String PREF_OTA_RESUME_FILE_PATH = "PREF_OTA_RESUME_FILE_PATH";
+    public static final String PREF_OTA_RESUME_FILE_HASH = "PREF_OTA_RESUME_FILE_HASH";
+    public static final String PREF_OTA_RESUME_UPGRADE_MODE = "PREF_OTA_RESUME_UPGRADE_MODE";
+    public static final String PREF_OTA_RESUME_NEXT_FILE_PATH = "PREF_OTA_RESUME_NEXT_FILE_PATH";
+    /**
+     * Shared Prefernce OTA incremental update
+     */
+    public static final String PREF_OTA_INCREMENTAL = "PREF_OTA_INCREMENTAL";
+    /**
+     * Shared Prefernce silicon ID reported by the bootloader, per device address
+     */
+    public static final String PREF_OTA_SILICON_ID = "PREF_OTA_SILICON_ID_";
     /**
      * OTA File Selection Extras
      */
@@ -206,6 +233,12 @@ public class Constants {
     public static final String REQ_FILE_COUNT_STATE = "REQ_FILE_COUNT_STATE";
     public static final String OTA_OPTION = "OTA_OPTION";
     public static final String OTA_OPTION_SELCETED = "OTA_OPTION_SELCETED";
+    /**
+     * Batch OTA device selection Extras
+     */
+    public static final String EXTRA_FLEET_DEVICE_NAMES = "EXTRA_FLEET_DEVICE_NAMES";
+    public static final String EXTRA_FLEET_DEVICE_ADDRESSES = "EXTRA_FLEET_DEVICE_ADDRESSES";
+    public static final String EXTRA_FLEET_BOOTLOADER_ADDRESSES = "EXTRA_FLEET_BOOTLOADER_ADDRESSES";
     /**
      * Shared Prefernce Status File State
      */
@@ -226,6 +259,18 @@ public class Constants {
      * Shared preference of the google developer api key
      */
     public static final String PREF_GOOGLE_API_KEY = "PREF_GOOGLE_API_KEY";
+    /**
+     * Shared preferences of the live charts: samples kept per series and
+     * whether older samples are written to the data logger. Set from the graph
+     * settings of the overflow menu.
+     */
+    public static final String PREF_GRAPH_WINDOW_SIZE = "PREF_GRAPH_WINDOW_SIZE";
+    public static final String PREF_GRAPH_SPILL_TO_DATA_LOGGER = "PREF_GRAPH_SPILL_TO_DATA_LOGGER";
+    /**
+     * Shared preference capping the chart repaints per second, 0 for every
+     * frame. Set from the graph settings of the overflow menu.
+     */
+    public static final String PREF_GRAPH_MAX_FRAME_RATE = "PREF_GRAPH_MAX_FRAME_RATE";
 
     /**
      * Graph constants
@@ -0,0 +1,432 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.CommonUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Sparse line-offset index of a data logger file, kept in a sidecar file next
+ * to the log. The byte offset of every {@link #INTERVAL}th line is recorded, so
+ * a page of lines is read by seeking to the closest checkpoint and skipping at
+ * most INTERVAL - 1 lines.
+ * <p/>
+ * Checkpoints are written at fixed positions of the sidecar file, so the
+ * logger thread and a reader rebuilding the same index write identical bytes.
+ * A missing or stale index is rebuilt from the last valid checkpoint.
+ */
+public class DataLogIndex {
+
+    public static final String INDEX_EXTENSION = ".idx";
+    /**
+     * Lines between two checkpoints
+     */
+    static final int INTERVAL = 256;
+    private static final int MAGIC = 0x43594C49;
+    private static final int HEADER_SIZE = 8;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final File mLogFile;
+    private final File mIndexFile;
+    private long[] mCheckpoints = new long[64];
+    private int mCheckpointCount;
+    private int mSavedCheckpoints;
+    private boolean mTruncateIndex;
+    /**
+     * Complete lines and bytes covered by the index
+     */
+    private int mLineCount;
+    private long mLength;
+    /**
+     * Bytes of an unterminated last line, completed by the next line written
+     */
+    private int mPendingBytes;
+
+    private DataLogIndex(File logFile) {
+        this.mLogFile = logFile;
+        this.mIndexFile = getIndexFile(logFile);
+    }
+
+    /**
+     * Loads the index of the log file and indexes the lines appended since it
+     * was last saved
+     *
+     * @param logFile
+     * @return DataLogIndex
+     */
+    public static DataLogIndex open(File logFile) {
+        DataLogIndex index = new DataLogIndex(logFile);
+        index.load();
+        try {
+            index.scanTail();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return index;
+    }
+
+    /**
+     * Sidecar file of a log file. The log extension is replaced so the index is
+     * not listed with the log files.
+     *
+     * @param logFile
+     * @return File
+     */
+    public static File getIndexFile(File logFile) {
+        String name = logFile.getName();
+        int extension = name.lastIndexOf('.');
+        if (extension > 0) {
+            name = name.substring(0, extension);
+        }
+        return new File(logFile.getParentFile(), name + INDEX_EXTENSION);
+    }
+
+    /**
+     * @return number of complete lines in the log file
+     */
+    public int getLineCount() {
+        return mLineCount;
+    }
+
+    /**
+     * Records a line appended to the log file by the caller
+     *
+     * @param byteLength encoded length of the line, line separator included
+     */
+    public void onLineWritten(int byteLength) {
+        if (mLineCount % INTERVAL == 0) {
+            addCheckpoint(mLength);
+        }
+        mLineCount++;
+        mLength += byteLength + mPendingBytes;
+        mPendingBytes = 0;
+    }
+
+    /**
+     * Writes the checkpoints added since the last save. The log file must be
+     * flushed first so that no checkpoint points past its end.
+     */
+    public void save() {
+        if (mSavedCheckpoints == mCheckpointCount && !mTruncateIndex) {
+            return;
+        }
+        RandomAccessFile indexFile = null;
+        try {
+            indexFile = new RandomAccessFile(mIndexFile, "rw");
+            if (mSavedCheckpoints == 0) {
+                indexFile.writeInt(MAGIC);
+                indexFile.writeInt(INTERVAL);
+            }
+            int pending = mCheckpointCount - mSavedCheckpoints;
+            ByteBuffer buffer = ByteBuffer.allocate(pending * 8);
+            for (int i = mSavedCheckpoints; i < mCheckpointCount; i++) {
+                buffer.putLong(mCheckpoints[i]);
+            }
+            indexFile.seek(HEADER_SIZE + (long) mSavedCheckpoints * 8);
+            indexFile.write(buffer.array());
+            if (mTruncateIndex) {
+                indexFile.setLength(HEADER_SIZE + (long) mCheckpointCount * 8);
+                mTruncateIndex = false;
+            }
+            mSavedCheckpoints = mCheckpointCount;
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (indexFile != null) {
+                try {
+                    indexFile.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the lines of the log file in the range (startLine, stopLine], with
+     * lines numbered from 1 as in {@code BufferedReader.readLine()} order
+     *
+     * @param startLine
+     * @param stopLine
+     * @return ArrayList<String>
+     */
+    public ArrayList<String> readLines(int startLine, int stopLine) {
+        ArrayList<String> lines = new ArrayList<String>();
+        if (startLine < 0 || stopLine <= startLine || mCheckpointCount == 0) {
+            return lines;
+        }
+        int checkpoint = Math.min(startLine / INTERVAL, mCheckpointCount - 1);
+        int skipLines = startLine - checkpoint * INTERVAL;
+        RandomAccessFile logFile = null;
+        try {
+            logFile = new RandomAccessFile(mLogFile, "r");
+            logFile.seek(mCheckpoints[checkpoint]);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    Channels.newInputStream(logFile.getChannel()), "UTF-8"));
+            String line;
+            while (skipLines > 0 && reader.readLine() != null) {
+                skipLines--;
+            }
+            int remaining = stopLine - startLine;
+            while (remaining > 0 && (line = reader.readLine()) != null) {
+                lines.add(line);
+                remaining--;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (logFile != null) {
+                try {
+                    logFile.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Reads the given lines in one pass over the log file, seeking only when
+     * the next line is past the next checkpoint
+     *
+     * @param lineNumbers line numbers starting from 1, in ascending order
+     * @return the lines, in the same order
+     */
+    public ArrayList<String> readLines(int[] lineNumbers) {
+        ArrayList<String> lines = new ArrayList<String>();
+        if (lineNumbers.length == 0 || mCheckpointCount == 0) {
+            return lines;
+        }
+        RandomAccessFile logFile = null;
+        try {
+            logFile = new RandomAccessFile(mLogFile, "r");
+            BufferedReader reader = null;
+            // Number of the line the reader returns next, from 0
+            int nextLine = 0;
+            for (int lineNumber : lineNumbers) {
+                int line = lineNumber - 1;
+                int checkpoint = Math.min(line / INTERVAL, mCheckpointCount - 1);
+                if (reader == null || line < nextLine || checkpoint * INTERVAL > nextLine) {
+                    logFile.seek(mCheckpoints[checkpoint]);
+                    reader = new BufferedReader(new InputStreamReader(
+                            Channels.newInputStream(logFile.getChannel()), "UTF-8"));
+                    nextLine = checkpoint * INTERVAL;
+                }
+                String text = null;
+                while (nextLine <= line && (text = reader.readLine()) != null) {
+                    nextLine++;
+                }
+                if (text == null) {
+                    break;
+                }
+                lines.add(text);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (logFile != null) {
+                try {
+                    logFile.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Encoded UTF-8 length of a string, without encoding it
+     *
+     * @param text
+     * @return int
+     */
+    public static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0, size = text.length(); i < size; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < size
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                // Unpaired surrogates are encoded as '?'
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private void addCheckpoint(long offset) {
+        if (mCheckpointCount == mCheckpoints.length) {
+            mCheckpoints = Arrays.copyOf(mCheckpoints, mCheckpointCount * 2);
+        }
+        mCheckpoints[mCheckpointCount++] = offset;
+    }
+
+    /**
+     * Reads the saved checkpoints, keeping those that still start a line of
+     * the log file
+     */
+    private void load() {
+        long logLength = mLogFile.length();
+        if (!mIndexFile.exists()) {
+            return;
+        }
+        DataInputStream input = null;
+        RandomAccessFile logFile = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(mIndexFile)));
+            if (input.readInt() != MAGIC || input.readInt() != INTERVAL) {
+                mTruncateIndex = true;
+                return;
+            }
+            logFile = new RandomAccessFile(mLogFile, "r");
+            long previous = -1;
+            while (true) {
+                long offset;
+                try {
+                    offset = input.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (offset <= previous || offset > logLength
+                        || !startsLine(logFile, offset)) {
+                    mTruncateIndex = true;
+                    break;
+                }
+                addCheckpoint(offset);
+                previous = offset;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            mTruncateIndex = true;
+        } finally {
+            closeQuietly(input);
+            if (logFile != null) {
+                try {
+                    logFile.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        mSavedCheckpoints = mCheckpointCount;
+        if (mTruncateIndex) {
+            // Everything after the last valid checkpoint is rewritten on save
+            mSavedCheckpoints = 0;
+        }
+        if (mCheckpointCount > 0) {
+            // The last checkpoint is re-added by the tail scan
+            mCheckpointCount--;
+            mSavedCheckpoints = Math.min(mSavedCheckpoints, mCheckpointCount);
+            mLineCount = mCheckpointCount * INTERVAL;
+            mLength = mCheckpoints[mCheckpointCount];
+        }
+    }
+
+    private static boolean startsLine(RandomAccessFile logFile, long offset) throws IOException {
+        if (offset == 0) {
+            return true;
+        }
+        logFile.seek(offset - 1);
+        return logFile.read() == '\n';
+    }
+
+    /**
+     * Indexes the complete lines after the last checkpoint
+     */
+    private void scanTail() throws IOException {
+        if (!mLogFile.exists()) {
+            return;
+        }
+        InputStream input = new FileInputStream(mLogFile);
+        try {
+            long skipped = 0;
+            while (skipped < mLength) {
+                long count = input.skip(mLength - skipped);
+                if (count <= 0) {
+                    return;
+                }
+                skipped += count;
+            }
+            byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+            long lineStart = mLength;
+            long position = mLength;
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        onLineWritten((int) (position + i + 1 - lineStart));
+                        lineStart = position + i + 1;
+                    }
+                }
+                position += read;
+            }
+            mPendingBytes = (int) (position - lineStart);
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    private static void closeQuietly(InputStream input) {
+        if (input == null) {
+            return;
+        }
+        try {
+            input.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
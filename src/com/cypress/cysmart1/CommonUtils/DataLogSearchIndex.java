@@ -0,0 +1,768 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.CommonUtils;
+
+import android.content.Context;
+
+import com.cypress.cysmart1.R;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Search index over the data logger directory. Every line of a day file is
+ * recorded with its time of day, operation type and the two names of its
+ * [service|characteristic] or [device|address] token. Lines are grouped in
+ * posting lists per name and per operation, so a query only visits the lines
+ * of the names and operation it asks for, within its time window.
+ * <p/>
+ * Each day file has a sidecar "dd-MMM-yyyy.sdx" file with the records in line
+ * order. {@link DataLogWriter} appends to it as lines are logged; files logged
+ * before are indexed from the first line missing in their sidecar.
+ */
+public class DataLogSearchIndex {
+
+    public static final String SEARCH_INDEX_EXTENSION = ".sdx";
+
+    /**
+     * Operation types
+     */
+    public static final int OPERATION_ANY = -1;
+    public static final int OPERATION_OTHER = 0;
+    public static final int OPERATION_CONNECTION = 1;
+    public static final int OPERATION_SERVICE_DISCOVERY = 2;
+    public static final int OPERATION_READ = 3;
+    public static final int OPERATION_WRITE = 4;
+    public static final int OPERATION_NOTIFICATION = 5;
+    public static final int OPERATION_INDICATION = 6;
+    public static final int OPERATION_MTU = 7;
+    private static final int OPERATION_COUNT = 8;
+
+    private static final int MAGIC = 0x43594C53;
+    private static final byte RECORD_NAME = 'N';
+    private static final byte RECORD_LINE = 'L';
+    private static final short NO_NAME = -1;
+    private static final int CATCH_UP_LINES = 4096;
+
+    private final File mDirectory;
+    private final String mFileExtension;
+    private final String[] mPhrases;
+    private final int[] mPhraseOperations;
+    private final HashMap<String, DaySegment> mSegments = new HashMap<String, DaySegment>();
+
+    /**
+     * @param directory     data logger directory
+     * @param fileExtension extension of the day files
+     * @param context       used once to read the data logger phrases
+     */
+    public DataLogSearchIndex(File directory, String fileExtension, Context context) {
+        this.mDirectory = directory;
+        this.mFileExtension = fileExtension;
+        int[][] phrases = {
+                {R.string.dl_connection_request, OPERATION_CONNECTION},
+                {R.string.dl_connection_established, OPERATION_CONNECTION},
+                {R.string.dl_connection_establishing, OPERATION_CONNECTION},
+                {R.string.dl_connection_pairing_request, OPERATION_CONNECTION},
+                {R.string.dl_connection_pairing_request_received, OPERATION_CONNECTION},
+                {R.string.dl_connection_paired, OPERATION_CONNECTION},
+                {R.string.dl_connection_unpaired, OPERATION_CONNECTION},
+                {R.string.dl_connection_pairing_unsupported, OPERATION_CONNECTION},
+                {R.string.dl_connection_disconnected, OPERATION_CONNECTION},
+                {R.string.dl_disconnection_request, OPERATION_CONNECTION},
+                {R.string.dl_service_discovery_request, OPERATION_SERVICE_DISCOVERY},
+                {R.string.dl_service_discovery_status, OPERATION_SERVICE_DISCOVERY},
+                {R.string.dl_characteristic_write_request, OPERATION_WRITE},
+                {R.string.dl_characteristic_write_request_status, OPERATION_WRITE},
+                {R.string.dl_characteristic_start_notification, OPERATION_NOTIFICATION},
+                {R.string.dl_characteristic_stop_notification, OPERATION_NOTIFICATION},
+                {R.string.dl_characteristic_notification_response, OPERATION_NOTIFICATION},
+                {R.string.dl_characteristic_start_indication, OPERATION_INDICATION},
+                {R.string.dl_characteristic_stop_indication, OPERATION_INDICATION},
+                {R.string.dl_characteristic_indication_response, OPERATION_INDICATION},
+                {R.string.dl_characteristic_read_request, OPERATION_READ},
+                {R.string.dl_characteristic_read_request_status, OPERATION_READ},
+                {R.string.dl_characteristic_read_response, OPERATION_READ},
+                {R.string.exchange_mtu, OPERATION_MTU}};
+        mPhrases = new String[phrases.length];
+        mPhraseOperations = new int[phrases.length];
+        for (int i = 0; i < phrases.length; i++) {
+            mPhrases[i] = context.getResources().getString(phrases[i][0]).trim();
+            mPhraseOperations[i] = phrases[i][1];
+        }
+    }
+
+    /**
+     * Searches every day file of the directory
+     *
+     * @param query
+     * @param maxResults
+     * @return matches, oldest first
+     */
+    public ArrayList<Match> search(Query query, int maxResults) {
+        ArrayList<Match> matches = new ArrayList<Match>();
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return matches;
+        }
+        ArrayList<DayFile> dayFiles = new ArrayList<DayFile>();
+        SimpleDateFormat dayFormat = new SimpleDateFormat("dd-MMM-yyyy");
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(mFileExtension)) {
+                continue;
+            }
+            String day = name.substring(0, name.length() - mFileExtension.length());
+            if (query.mDay != null && !query.mDay.equalsIgnoreCase(day)) {
+                continue;
+            }
+            try {
+                dayFiles.add(new DayFile(file, dayFormat.parse(day)));
+            } catch (ParseException e) {
+                // Not a day file
+            }
+        }
+        Collections.sort(dayFiles, new Comparator<DayFile>() {
+            @Override
+            public int compare(DayFile lhs, DayFile rhs) {
+                return lhs.mDate.compareTo(rhs.mDate);
+            }
+        });
+        for (DayFile dayFile : dayFiles) {
+            DataLogIndex logIndex = DataLogIndex.open(dayFile.mFile);
+            logIndex.save();
+            int[] lines = getSegment(dayFile.mFile, logIndex).search(query,
+                    maxResults - matches.size());
+            ArrayList<String> texts = logIndex.readLines(lines);
+            for (int i = 0; i < texts.size(); i++) {
+                matches.add(new Match(dayFile.mFile, lines[i], texts.get(i)));
+            }
+            if (matches.size() >= maxResults) {
+                break;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the index of a day file, indexing the lines missing from its
+     * sidecar first
+     *
+     * @param logFile
+     * @param logIndex line-offset index of the same file
+     * @return DaySegment
+     */
+    DaySegment getSegment(File logFile, DataLogIndex logIndex) {
+        DaySegment segment;
+        synchronized (mSegments) {
+            segment = mSegments.get(logFile.getName());
+            if (segment == null) {
+                segment = new DaySegment(logFile);
+                mSegments.put(logFile.getName(), segment);
+            }
+        }
+        segment.catchUp(logIndex);
+        return segment;
+    }
+
+    /**
+     * Finds the operation of a data logger message from its phrase
+     *
+     * @param message
+     * @param fromIndex
+     * @return one of the OPERATION_* types
+     */
+    int getOperation(String message, int fromIndex) {
+        for (int i = 0; i < mPhrases.length; i++) {
+            if (message.startsWith(mPhrases[i], fromIndex)) {
+                return mPhraseOperations[i];
+            }
+        }
+        return OPERATION_OTHER;
+    }
+
+    /**
+     * Query over names, operation, day and time of day. Built from text such
+     * as "op:write from:10:00 to:11:00 RGB LED": the op, day, from and to
+     * keys are optional and the remaining words must be contained in the
+     * service, characteristic or device name.
+     */
+    public static class Query {
+        private String mName;
+        private int mOperation = OPERATION_ANY;
+        private String mDay;
+        private int mFromSecond = 0;
+        private int mToSecond = 24 * 60 * 60;
+
+        public static Query parse(String text) {
+            Query query = new Query();
+            StringBuilder name = new StringBuilder();
+            for (String word : text.trim().split("\\s+")) {
+                String lowerWord = word.toLowerCase(Locale.US);
+                if (lowerWord.startsWith("op:")) {
+                    query.mOperation = parseOperation(lowerWord.substring(3));
+                } else if (lowerWord.startsWith("day:")) {
+                    query.mDay = word.substring(4);
+                } else if (lowerWord.startsWith("from:")) {
+                    query.mFromSecond = parseTime(word.substring(5), false);
+                } else if (lowerWord.startsWith("to:")) {
+                    query.mToSecond = parseTime(word.substring(3), true);
+                } else if (word.length() > 0) {
+                    if (name.length() > 0) {
+                        name.append(' ');
+                    }
+                    name.append(word);
+                }
+            }
+            if (name.length() > 0) {
+                query.mName = name.toString().toLowerCase(Locale.US);
+            }
+            return query;
+        }
+
+        private static int parseOperation(String operation) {
+            if (operation.startsWith("write")) {
+                return OPERATION_WRITE;
+            } else if (operation.startsWith("read")) {
+                return OPERATION_READ;
+            } else if (operation.startsWith("notif")) {
+                return OPERATION_NOTIFICATION;
+            } else if (operation.startsWith("indic")) {
+                return OPERATION_INDICATION;
+            } else if (operation.startsWith("conn") || operation.startsWith("disconn")
+                    || operation.startsWith("pair")) {
+                return OPERATION_CONNECTION;
+            } else if (operation.startsWith("disc") || operation.startsWith("service")) {
+                return OPERATION_SERVICE_DISCOVERY;
+            } else if (operation.startsWith("mtu")) {
+                return OPERATION_MTU;
+            }
+            return OPERATION_ANY;
+        }
+
+        /**
+         * @param time     HH:mm or HH:mm:ss
+         * @param endOfMinute rounds HH:mm up to the last second of the minute
+         * @return second of the day
+         */
+        private static int parseTime(String time, boolean endOfMinute) {
+            String[] fields = time.split(":");
+            try {
+                int seconds = Integer.parseInt(fields[0]) * 3600;
+                if (fields.length > 1) {
+                    seconds += Integer.parseInt(fields[1]) * 60;
+                }
+                if (fields.length > 2) {
+                    seconds += Integer.parseInt(fields[2]);
+                } else if (endOfMinute) {
+                    seconds += 59;
+                }
+                return seconds;
+            } catch (NumberFormatException e) {
+                return endOfMinute ? 24 * 60 * 60 : 0;
+            }
+        }
+    }
+
+    /**
+     * One matching line
+     */
+    public static class Match {
+        private final File mFile;
+        private final int mLine;
+        private final String mText;
+
+        Match(File file, int line, String text) {
+            this.mFile = file;
+            this.mLine = line;
+            this.mText = text;
+        }
+
+        public File getFile() {
+            return mFile;
+        }
+
+        /**
+         * @return line number, starting from 1
+         */
+        public int getLine() {
+            return mLine;
+        }
+
+        public String getText() {
+            return mText;
+        }
+    }
+
+    private static class DayFile {
+        private final File mFile;
+        private final Date mDate;
+
+        DayFile(File file, Date date) {
+            this.mFile = file;
+            this.mDate = date;
+        }
+    }
+
+    /**
+     * Growable int array
+     */
+    private static class IntList {
+        private int[] mValues = new int[16];
+        private int mSize;
+
+        void add(int value) {
+            if (mSize == mValues.length) {
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+            }
+            mValues[mSize++] = value;
+        }
+    }
+
+    /**
+     * Index of one day file. Entry i describes line i + 1.
+     */
+    class DaySegment {
+        private final File mLogFile;
+        private final File mSidecarFile;
+        private int[] mSeconds = new int[1024];
+        private byte[] mOperations = new byte[1024];
+        private int mSize;
+        /**
+         * False once a line is logged with an earlier time than the previous
+         * one, e.g. after a clock change; time windows are then checked
+         * line by line
+         */
+        private boolean mTimeOrdered = true;
+        private final ArrayList<String> mNames = new ArrayList<String>();
+        private final HashMap<String, Short> mNameIds = new HashMap<String, Short>();
+        private final ArrayList<IntList> mNamePostings = new ArrayList<IntList>();
+        private final IntList[] mOperationPostings = new IntList[OPERATION_COUNT];
+        private final ByteArrayOutputStream mPendingRecords = new ByteArrayOutputStream();
+        private final DataOutputStream mPendingOutput = new DataOutputStream(mPendingRecords);
+        private final Calendar mCalendar = Calendar.getInstance();
+        private boolean mLoaded;
+        /**
+         * Set while {@link DataLogWriter} appends to the day file. The writer
+         * then keeps the segment complete, including lines it has not
+         * committed yet.
+         */
+        private boolean mWriting;
+
+        DaySegment(File logFile) {
+            this.mLogFile = logFile;
+            String name = logFile.getName();
+            int extension = name.lastIndexOf('.');
+            if (extension > 0) {
+                name = name.substring(0, extension);
+            }
+            this.mSidecarFile = new File(logFile.getParentFile(), name + SEARCH_INDEX_EXTENSION);
+            for (int i = 0; i < OPERATION_COUNT; i++) {
+                mOperationPostings[i] = new IntList();
+            }
+        }
+
+        /**
+         * Records a line appended to the day file by {@link DataLogWriter}
+         *
+         * @param time    log time in milliseconds
+         * @param message logged message, without the timestamp
+         */
+        synchronized void onLineWritten(long time, String message) {
+            mCalendar.setTimeInMillis(time);
+            int second = mCalendar.get(Calendar.HOUR_OF_DAY) * 3600
+                    + mCalendar.get(Calendar.MINUTE) * 60
+                    + mCalendar.get(Calendar.SECOND);
+            indexLine(second, message, 0);
+        }
+
+        /**
+         * Called by {@link DataLogWriter} once it opened the day file, after
+         * {@link #catchUp(DataLogIndex)}
+         *
+         * @param writing
+         */
+        synchronized void setWriting(boolean writing) {
+            mWriting = writing;
+        }
+
+        /**
+         * Appends the pending records to the sidecar file
+         */
+        synchronized void save() {
+            if (mPendingRecords.size() == 0) {
+                return;
+            }
+            FileOutputStream output = null;
+            try {
+                boolean newFile = !mSidecarFile.exists() || mSidecarFile.length() == 0;
+                output = new FileOutputStream(mSidecarFile, true);
+                if (newFile) {
+                    DataOutputStream header = new DataOutputStream(output);
+                    header.writeInt(MAGIC);
+                }
+                mPendingRecords.writeTo(output);
+                mPendingRecords.reset();
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                if (output != null) {
+                    try {
+                        output.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Loads the sidecar file once, then indexes the lines of the log file
+         * that are not indexed yet
+         *
+         * @param logIndex
+         */
+        synchronized void catchUp(DataLogIndex logIndex) {
+            if (!mLoaded) {
+                load();
+                mLoaded = true;
+            }
+            if (mWriting) {
+                return;
+            }
+            int lineCount = logIndex.getLineCount();
+            if (mSize > lineCount) {
+                // The log file was replaced, start over
+                clear();
+                mSidecarFile.delete();
+            }
+            while (mSize < lineCount) {
+                ArrayList<String> lines = logIndex.readLines(mSize,
+                        Math.min(lineCount, mSize + CATCH_UP_LINES));
+                if (lines.isEmpty()) {
+                    break;
+                }
+                for (String line : lines) {
+                    indexLogLine(line);
+                }
+            }
+            save();
+        }
+
+        /**
+         * @param query
+         * @param maxResults
+         * @return matching line numbers, in ascending order
+         */
+        synchronized int[] search(Query query, int maxResults) {
+            IntList entries = new IntList();
+            if (query.mName != null) {
+                for (int id = 0; id < mNames.size(); id++) {
+                    if (mNames.get(id).contains(query.mName)) {
+                        collect(mNamePostings.get(id), query, entries);
+                    }
+                }
+            } else if (query.mOperation != OPERATION_ANY) {
+                collect(mOperationPostings[query.mOperation], query, entries);
+            } else {
+                for (int entry = 0; entry < mSize; entry++) {
+                    if (mSeconds[entry] >= query.mFromSecond
+                            && mSeconds[entry] <= query.mToSecond) {
+                        entries.add(entry);
+                    }
+                }
+            }
+            // Several names may match the same line
+            int[] sorted = Arrays.copyOf(entries.mValues, entries.mSize);
+            Arrays.sort(sorted);
+            IntList lines = new IntList();
+            for (int i = 0; i < sorted.length && lines.mSize < maxResults; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    lines.add(sorted[i] + 1);
+                }
+            }
+            return Arrays.copyOf(lines.mValues, lines.mSize);
+        }
+
+        /**
+         * Adds the entries of a posting list that are in the time window and
+         * have the operation of the query
+         */
+        private void collect(IntList postings, Query query, IntList entries) {
+            int start = mTimeOrdered ? lowerBound(postings, query.mFromSecond) : 0;
+            for (int i = start; i < postings.mSize; i++) {
+                int entry = postings.mValues[i];
+                int second = mSeconds[entry];
+                if (second > query.mToSecond && mTimeOrdered) {
+                    break;
+                }
+                if (second >= query.mFromSecond && second <= query.mToSecond
+                        && (query.mOperation == OPERATION_ANY
+                        || mOperations[entry] == query.mOperation)) {
+                    entries.add(entry);
+                }
+            }
+        }
+
+        private int lowerBound(IntList postings, int second) {
+            int low = 0;
+            int high = postings.mSize;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (mSeconds[postings.mValues[middle]] < second) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Indexes a line read back from the log file, timestamp included
+         */
+        private void indexLogLine(String line) {
+            int timestampEnd = line.indexOf(']');
+            int second = 0;
+            if (line.startsWith("[") && timestampEnd >= 9) {
+                second = parseSecond(line, timestampEnd - 8);
+            }
+            indexLine(second, line, timestampEnd + 1);
+        }
+
+        private int parseSecond(String line, int start) {
+            try {
+                return Integer.parseInt(line.substring(start, start + 2)) * 3600
+                        + Integer.parseInt(line.substring(start + 3, start + 5)) * 60
+                        + Integer.parseInt(line.substring(start + 6, start + 8));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        /**
+         * Extracts the token and operation of a message and adds the line
+         */
+        private void indexLine(int second, String message, int fromIndex) {
+            short firstName = NO_NAME;
+            short secondName = NO_NAME;
+            int operation = OPERATION_OTHER;
+            int tokenStart = message.indexOf('[', fromIndex);
+            int tokenEnd = tokenStart < 0 ? -1 : message.indexOf(']', tokenStart);
+            if (tokenEnd > 0) {
+                String[] names = message.substring(tokenStart + 1, tokenEnd).split("\\|");
+                if (names.length >= 2) {
+                    firstName = getNameId(names[0]);
+                    secondName = getNameId(names[1]);
+                }
+                int phraseStart = tokenEnd + 1;
+                while (phraseStart < message.length() && message.charAt(phraseStart) == ' ') {
+                    phraseStart++;
+                }
+                operation = getOperation(message, phraseStart);
+            }
+            addLine(second, operation, firstName, secondName);
+            try {
+                mPendingOutput.writeByte(RECORD_LINE);
+                mPendingOutput.writeInt(second);
+                mPendingOutput.writeByte(operation);
+                mPendingOutput.writeShort(firstName);
+                mPendingOutput.writeShort(secondName);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private short getNameId(String name) {
+            String key = name.trim().toLowerCase(Locale.US);
+            Short id = mNameIds.get(key);
+            if (id != null) {
+                return id;
+            }
+            if (mNames.size() >= Short.MAX_VALUE) {
+                return NO_NAME;
+            }
+            short newId = addName(key);
+            try {
+                mPendingOutput.writeByte(RECORD_NAME);
+                mPendingOutput.writeUTF(key);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return newId;
+        }
+
+        private short addName(String name) {
+            short id = (short) mNames.size();
+            mNames.add(name);
+            mNameIds.put(name, id);
+            mNamePostings.add(new IntList());
+            return id;
+        }
+
+        private void addLine(int second, int operation, short firstName, short secondName) {
+            if (mSize == mSeconds.length) {
+                mSeconds = Arrays.copyOf(mSeconds, mSize * 2);
+                mOperations = Arrays.copyOf(mOperations, mSize * 2);
+            }
+            if (mSize > 0 && second < mSeconds[mSize - 1]) {
+                mTimeOrdered = false;
+            }
+            mSeconds[mSize] = second;
+            mOperations[mSize] = (byte) operation;
+            if (operation >= 0 && operation < OPERATION_COUNT) {
+                mOperationPostings[operation].add(mSize);
+            }
+            if (firstName >= 0 && firstName < mNames.size()) {
+                mNamePostings.get(firstName).add(mSize);
+            }
+            if (secondName >= 0 && secondName < mNames.size() && secondName != firstName) {
+                mNamePostings.get(secondName).add(mSize);
+            }
+            mSize++;
+        }
+
+        private void clear() {
+            mSize = 0;
+            mTimeOrdered = true;
+            mNames.clear();
+            mNameIds.clear();
+            mNamePostings.clear();
+            for (int i = 0; i < OPERATION_COUNT; i++) {
+                mOperationPostings[i] = new IntList();
+            }
+            mPendingRecords.reset();
+        }
+
+        /**
+         * Reads the sidecar records. A truncated last record is cut off so
+         * that new records are appended after the last complete one.
+         */
+        private void load() {
+            if (!mSidecarFile.exists()) {
+                return;
+            }
+            byte[] records = readSidecar();
+            if (records == null) {
+                return;
+            }
+            ByteArrayInputStream buffer = new ByteArrayInputStream(records);
+            DataInputStream input = new DataInputStream(buffer);
+            long validLength = 0;
+            try {
+                if (input.readInt() != MAGIC) {
+                    mSidecarFile.delete();
+                    return;
+                }
+                validLength = 4;
+                while (true) {
+                    byte type = input.readByte();
+                    if (type == RECORD_NAME) {
+                        addName(input.readUTF());
+                    } else if (type == RECORD_LINE) {
+                        int second = input.readInt();
+                        int operation = input.readByte();
+                        short firstName = input.readShort();
+                        short secondName = input.readShort();
+                        addLine(second, operation, firstName, secondName);
+                    } else {
+                        break;
+                    }
+                    validLength = records.length - buffer.available();
+                }
+            } catch (EOFException e) {
+                // End of the last complete record
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            if (records.length > validLength) {
+                truncateSidecar(validLength);
+            }
+        }
+
+        private byte[] readSidecar() {
+            RandomAccessFile sidecar = null;
+            try {
+                sidecar = new RandomAccessFile(mSidecarFile, "r");
+                byte[] records = new byte[(int) sidecar.length()];
+                sidecar.readFully(records);
+                return records;
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            } finally {
+                if (sidecar != null) {
+                    try {
+                        sidecar.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+
+        private void truncateSidecar(long length) {
+            RandomAccessFile sidecar = null;
+            try {
+                sidecar = new RandomAccessFile(mSidecarFile, "rw");
+                sidecar.setLength(length);
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                if (sidecar != null) {
+                    try {
+                        sidecar.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.CommonUtils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background writer for the data logger files. Callers only enqueue the line;
+ * a single thread formats the timestamp, appends to the day file through a
+ * writer kept open for the whole day and commits in groups, once enough bytes
+ * are buffered or the oldest buffered line is older than the flush interval.
+ */
+public class DataLogWriter {
+
+    /**
+     * Lines kept in memory at most; further lines are dropped and counted
+     */
+    private static final int MAX_QUEUED_LINES = 16384;
+    /**
+     * Group commit thresholds
+     */
+    private static final int FLUSH_SIZE = 16 * 1024;
+    private static final long FLUSH_INTERVAL = 500;
+    /**
+     * Queued lines that wake the writer before the flush interval elapses
+     */
+    private static final int WAKE_UP_LINES = 64;
+    private static final int WRITER_BUFFER_SIZE = 32 * 1024;
+
+    private final File mDirectory;
+    private final String mFileExtension;
+    private final ConcurrentLinkedQueue<Entry> mQueue = new ConcurrentLinkedQueue<Entry>();
+    private final AtomicInteger mQueuedLines = new AtomicInteger();
+    private final AtomicInteger mDroppedLines = new AtomicInteger();
+    private final ConcurrentLinkedQueue<CountDownLatch> mFlushRequests =
+            new ConcurrentLinkedQueue<CountDownLatch>();
+    private final ConcurrentLinkedQueue<Report> mReports = new ConcurrentLinkedQueue<Report>();
+    private final Thread mThread;
+
+    /**
+     * Only touched by the writer thread
+     */
+    private final SimpleDateFormat mFileDateFormat = new SimpleDateFormat("dd-MMM-yyyy");
+    private final SimpleDateFormat mLineDateFormat =
+            new SimpleDateFormat("[dd-MMM-yyyy|HH:mm:ss]");
+    private final Date mDate = new Date();
+    private long mFormattedSecond = -1;
+    private String mFormattedTimestamp;
+    private String mFormattedFileName;
+    private String mCurrentFileName;
+    private BufferedWriter mWriter;
+    private DataLogIndex mIndex;
+    private final DataLogSearchIndex mSearchIndex;
+    private DataLogSearchIndex.DaySegment mSearchSegment;
+    private int mUnflushedBytes;
+    private long mFirstUnflushedTime;
+
+    /**
+     * @param directory     data logger directory
+     * @param fileExtension appended to the dd-MMM-yyyy day file name
+     * @param searchIndex   kept up to date with the written lines, or null
+     */
+    public DataLogWriter(File directory, String fileExtension,
+                         DataLogSearchIndex searchIndex) {
+        this.mDirectory = directory;
+        this.mFileExtension = fileExtension;
+        this.mSearchIndex = searchIndex;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writerLoop();
+            }
+        }, "DataLogWriter");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * Queues one line. Never blocks; the line is dropped if the writer is too
+     * far behind.
+     *
+     * @param message
+     */
+    public void append(String message) {
+        int queuedLines = mQueuedLines.incrementAndGet();
+        if (queuedLines > MAX_QUEUED_LINES) {
+            mQueuedLines.decrementAndGet();
+            mDroppedLines.incrementAndGet();
+            return;
+        }
+        mQueue.offer(new Entry(System.currentTimeMillis(), message));
+        if (queuedLines == 1 || queuedLines % WAKE_UP_LINES == 0) {
+            LockSupport.unpark(mThread);
+        }
+    }
+
+    /**
+     * Queues a report to be written as a file of its own. Never blocks.
+     *
+     * @param file    replaced if it exists
+     * @param content
+     */
+    public void writeReport(File file, String content) {
+        mReports.offer(new Report(file, content));
+        LockSupport.unpark(mThread);
+    }
+
+    /**
+     * Asks the writer to commit everything queued so far, without waiting
+     */
+    public void requestFlush() {
+        mFlushRequests.offer(new CountDownLatch(1));
+        LockSupport.unpark(mThread);
+    }
+
+    /**
+     * Commits everything queued so far to the file
+     *
+     * @param timeoutMillis
+     * @return false if the writer did not finish within the timeout
+     */
+    public boolean flush(long timeoutMillis) {
+        CountDownLatch latch = new CountDownLatch(1);
+        mFlushRequests.offer(latch);
+        LockSupport.unpark(mThread);
+        try {
+            return latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void writerLoop() {
+        ArrayList<CountDownLatch> flushRequests = new ArrayList<CountDownLatch>();
+        while (!Thread.interrupted()) {
+            // Take the requests before draining so every line queued ahead of a
+            // request is committed before it is released
+            CountDownLatch latch;
+            while ((latch = mFlushRequests.poll()) != null) {
+                flushRequests.add(latch);
+            }
+            drainQueue();
+            drainReports();
+            if (!flushRequests.isEmpty() || mUnflushedBytes >= FLUSH_SIZE
+                    || (mUnflushedBytes > 0
+                    && System.currentTimeMillis() - mFirstUnflushedTime >= FLUSH_INTERVAL)) {
+                commit();
+            }
+            for (CountDownLatch request : flushRequests) {
+                request.countDown();
+            }
+            flushRequests.clear();
+            if (mQueue.isEmpty() && mFlushRequests.isEmpty() && mReports.isEmpty()) {
+                long parkTime = FLUSH_INTERVAL;
+                if (mUnflushedBytes > 0) {
+                    parkTime = Math.max(1, mFirstUnflushedTime + FLUSH_INTERVAL
+                            - System.currentTimeMillis());
+                }
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(parkTime));
+            }
+        }
+    }
+
+    private void drainQueue() {
+        Entry entry;
+        while ((entry = mQueue.poll()) != null) {
+            mQueuedLines.decrementAndGet();
+            write(entry);
+        }
+        int dropped = mDroppedLines.getAndSet(0);
+        if (dropped > 0) {
+            write(new Entry(System.currentTimeMillis(),
+                    " [DataLogWriter] " + dropped + " lines dropped"));
+        }
+    }
+
+    private void drainReports() {
+        Report report;
+        while ((report = mReports.poll()) != null) {
+            File directory = report.mFile.getParentFile();
+            if (directory != null && !directory.exists()) {
+                directory.mkdirs();
+            }
+            Writer writer = null;
+            try {
+                writer = new OutputStreamWriter(new FileOutputStream(report.mFile), "UTF-8");
+                writer.write(report.mContent);
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                if (writer != null) {
+                    try {
+                        writer.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+    }
+
+    private void write(Entry entry) {
+        // Timestamps have a one second resolution, format them once per second
+        long second = entry.mTime / 1000;
+        if (second != mFormattedSecond) {
+            mDate.setTime(entry.mTime);
+            mFormattedTimestamp = mLineDateFormat.format(mDate);
+            mFormattedFileName = mFileDateFormat.format(mDate) + mFileExtension;
+            mFormattedSecond = second;
+        }
+        try {
+            if (mWriter == null || !mFormattedFileName.equals(mCurrentFileName)) {
+                openWriter(mFormattedFileName);
+            }
+            String message = escapeLineBreaks(entry.mMessage);
+            String line = mFormattedTimestamp + message;
+            mWriter.write(line);
+            mWriter.write('\n');
+            mIndex.onLineWritten(DataLogIndex.utf8Length(line) + 1);
+            if (mSearchSegment != null) {
+                mSearchSegment.onLineWritten(entry.mTime, message);
+            }
+            if (mUnflushedBytes == 0) {
+                mFirstUnflushedTime = System.currentTimeMillis();
+            }
+            mUnflushedBytes += line.length() + 1;
+        } catch (IOException e) {
+            e.printStackTrace();
+            discardWriter();
+        }
+    }
+
+    /**
+     * Each message must stay a single line of the file, the indexes count
+     * one line per message
+     *
+     * @param message
+     * @return the message with line breaks written as \n and \r
+     */
+    private static String escapeLineBreaks(String message) {
+        if (message == null || (message.indexOf('\n') < 0 && message.indexOf('\r') < 0)) {
+            return message;
+        }
+        return message.replace("\r", "\\r").replace("\n", "\\n");
+    }
+
+    private void openWriter(String fileName) throws IOException {
+        closeWriter();
+        if (!mDirectory.exists()) {
+            mDirectory.mkdirs();
+        }
+        File file = new File(mDirectory, fileName);
+        mWriter = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file, true), "UTF-8"), WRITER_BUFFER_SIZE);
+        mCurrentFileName = fileName;
+        // Indexes whatever was logged to the file before this writer opened it
+        mIndex = DataLogIndex.open(file);
+        if (mSearchIndex != null) {
+            mSearchSegment = mSearchIndex.getSegment(file, mIndex);
+            mSearchSegment.setWriting(true);
+        }
+    }
+
+    private void commit() {
+        if (mWriter == null) {
+            return;
+        }
+        try {
+            mWriter.flush();
+            mIndex.save();
+            if (mSearchSegment != null) {
+                mSearchSegment.save();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            discardWriter();
+        }
+        mUnflushedBytes = 0;
+    }
+
+    private void closeWriter() {
+        if (mWriter == null) {
+            return;
+        }
+        try {
+            mWriter.close();
+            mIndex.save();
+            if (mSearchSegment != null) {
+                mSearchSegment.save();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        releaseSearchSegment();
+        mWriter = null;
+        mIndex = null;
+        mCurrentFileName = null;
+        mUnflushedBytes = 0;
+    }
+
+    /**
+     * Closes the writer after a failed write. The index is not saved since it
+     * may count lines that never reached the file; it is rebuilt from its last
+     * saved checkpoint when the file is opened again.
+     */
+    private void discardWriter() {
+        mIndex = null;
+        releaseSearchSegment();
+        if (mWriter != null) {
+            try {
+                mWriter.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        mWriter = null;
+        mCurrentFileName = null;
+        mUnflushedBytes = 0;
+    }
+
+    private void releaseSearchSegment() {
+        if (mSearchSegment != null) {
+            mSearchSegment.setWriting(false);
+            mSearchSegment = null;
+        }
+    }
+
+    private static class Report {
+        private final File mFile;
+        private final String mContent;
+
+        Report(File file, String content) {
+            this.mFile = file;
+            this.mContent = content;
+        }
+    }
+
+    private static class Entry {
+        private final long mTime;
+        private final String mMessage;
+
+        Entry(long time, String message) {
+            this.mTime = time;
+            this.mMessage = message;
+        }
+    }
+}
@@ -38,11 +38,8 @@ import android.util.Log;
 
 import com.cypress.cysmart1.R;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 
 /**
  * This is a custom log class that will manage logs in the project. Using the
@@ -59,6 +56,8 @@ public class Logger {
     private static File mDataLoggerFile;
     private static File mDataLoggerOldFile;
     private static Context mContext;
+    private static DataLogWriter mDataLogWriter;
+    private static DataLogSearchIndex mDataLogSearchIndex;
 
     public static void d(String message) {
         show(Log.DEBUG, mLogTag, message);
@@ -188,6 +187,13 @@ public class Logger {
                 mDataLoggerFile.createNewFile();
             }
             deleteOLDFiles();
+            if (mDataLogWriter == null) {
+                String extension = context.getResources().getString(R.string.dl_file_extension);
+                mDataLogSearchIndex = new DataLogSearchIndex(mDataLoggerDirectory, extension,
+                        context);
+                mDataLogWriter = new DataLogWriter(mDataLoggerDirectory, extension,
+                        mDataLogSearchIndex);
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -202,7 +208,8 @@ public class Logger {
         long cutoff = System.currentTimeMillis() - (7 * 24 * 60 * 60 * 1000);
         for (int pos = 0; pos < allFilesList.length; pos++) {
             File currentFile = allFilesList[pos];
-            if (currentFile.lastModified() < cutoff) {
+            // Reports are kept in a subdirectory and are not expired with the logs
+            if (currentFile.isFile() && currentFile.lastModified() < cutoff) {
                 currentFile.delete();
             }
 
@@ -217,32 +224,56 @@ public class Logger {
     }
 
     private static void saveLogData(String message) {
-        mDataLoggerFile = new File(mDataLoggerDirectory.getAbsoluteFile() + File.separator
-                + Utils.GetDate() + mContext.getResources().getString(R.string.dl_file_extension));
-        if (!mDataLoggerFile.exists()) {
-            try {
-                mDataLoggerFile.createNewFile();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        if (mDataLogWriter != null) {
+            mDataLogWriter.append(message);
         }
-        message = Utils.GetTimeandDate() + message;
-        try {
-            OutputStreamWriter writer = new OutputStreamWriter(
-                    new FileOutputStream(mDataLoggerFile, true),
-                    "UTF-8");
-            BufferedWriter fbw = new BufferedWriter(writer);
-            fbw.write(message);
-            fbw.newLine();
-            fbw.flush();
-            fbw.close();
+    }
 
-        } catch (IOException e) {
-            e.printStackTrace();
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * Commits the queued data logger lines in the background
+     */
+    public static void flushDataLog() {
+        if (mDataLogWriter != null) {
+            mDataLogWriter.requestFlush();
+        }
+    }
+
+    /**
+     * Commits the queued data logger lines and waits until they are on disk,
+     * before the log files are read or shared
+     *
+     * @param timeoutMillis
+     * @return true if the lines were committed within the timeout
+     */
+    public static boolean flushDataLog(long timeoutMillis) {
+        return mDataLogWriter == null || mDataLogWriter.flush(timeoutMillis);
+    }
+
+    /**
+     * Saves a report as a file of its own in the reports subdirectory of the
+     * data logger, where the history and the search do not list it. The file
+     * is written by the data logger thread; nothing is saved until the data
+     * logger file is created.
+     *
+     * @param name    file name, without the extension
+     * @param content
+     */
+    public static void saveReport(String name, String content) {
+        if (mDataLogWriter == null) {
+            return;
         }
+        File directory = new File(mDataLoggerDirectory,
+                mContext.getResources().getString(R.string.dl_report_directory));
+        mDataLogWriter.writeReport(new File(directory, name
+                + mContext.getResources().getString(R.string.dl_file_extension)), content);
+    }
 
+    /**
+     * @return search index of the data logger directory, null until the data
+     * logger file is created
+     */
+    public static DataLogSearchIndex getDataLogSearchIndex() {
+        return mDataLogSearchIndex;
     }
 
 }
@@ -0,0 +1,370 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.CommonUtils;
+
+import android.content.Context;
+
+import org.achartengine.model.XYSeries;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Fixed capacity series for the live charts. Samples are kept in primitive
+ * ring buffers, appending is O(1) and the oldest sample is evicted once the
+ * capacity is reached. The y range is tracked with monotonic queues so the
+ * chart bounds stay O(1) as well. X values are expected in ascending order,
+ * as produced by the services feeding the charts.
+ * <p/>
+ * With decimation enabled, the whole session is also folded into a
+ * {@link SeriesDecimator}. Ranges holding more samples than the chart has
+ * pixels, or reaching back before the retained window, are then drawn from
+ * its min/max buckets.
+ * <p/>
+ * Evicted samples can optionally be written to the data logger, batched into
+ * one line per {@link #SPILL_BATCH_SIZE} samples.
+ */
+public class RingBufferXYSeries extends XYSeries {
+
+    /**
+     * Samples kept when no window size is configured
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 600;
+    /**
+     * Largest window accepted from the preferences
+     */
+    public static final int MAX_WINDOW_SIZE = 10000;
+    private static final int SPILL_BATCH_SIZE = 50;
+
+    private final int mCapacity;
+    private final double[] mX;
+    private final double[] mY;
+    /**
+     * Sequence number of the oldest retained sample and of the next one
+     */
+    private long mHead;
+    private long mTail;
+    /**
+     * Sequence numbers of the candidate minimum/maximum y values, oldest first
+     */
+    private final long[] mMinQueue;
+    private final long[] mMaxQueue;
+    private int mMinQueueHead;
+    private int mMinQueueSize;
+    private int mMaxQueueHead;
+    private int mMaxQueueSize;
+
+    private SeriesDecimator mDecimator;
+    private int mResolution;
+
+    private String mSpillLabel;
+    private StringBuilder mSpillBuffer;
+    private int mSpillCount;
+
+    /**
+     * @param title
+     * @param capacity samples kept, the visible window of the chart
+     */
+    public RingBufferXYSeries(String title, int capacity) {
+        super(title);
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity " + capacity);
+        }
+        this.mCapacity = capacity;
+        mX = new double[capacity];
+        mY = new double[capacity];
+        mMinQueue = new long[capacity];
+        mMaxQueue = new long[capacity];
+    }
+
+    /**
+     * Creates a series sized by {@link Constants#PREF_GRAPH_WINDOW_SIZE}, capped at
+     * {@link #MAX_WINDOW_SIZE}, spilling to the data logger if
+     * {@link Constants#PREF_GRAPH_SPILL_TO_DATA_LOGGER} is set
+     *
+     * @param context
+     * @param title
+     * @return
+     */
+    public static RingBufferXYSeries fromPreferences(Context context, String title) {
+        int windowSize = Utils.getIntSharedPreference(context,
+                Constants.PREF_GRAPH_WINDOW_SIZE);
+        RingBufferXYSeries series = new RingBufferXYSeries(title,
+                windowSize > 0 ? Math.min(windowSize, MAX_WINDOW_SIZE) : DEFAULT_WINDOW_SIZE);
+        if (context != null && Utils.getBooleanSharedPreference(context,
+                Constants.PREF_GRAPH_SPILL_TO_DATA_LOGGER)) {
+            series.setDataLoggerSpill(title);
+        }
+        if (context != null) {
+            series.setDecimation(context.getResources().getDisplayMetrics().widthPixels);
+        }
+        return series;
+    }
+
+    /**
+     * Writes evicted samples to the data logger under the given label, or
+     * stops doing so if the label is null
+     *
+     * @param label
+     */
+    public synchronized void setDataLoggerSpill(String label) {
+        flushSpill();
+        mSpillLabel = label;
+        mSpillBuffer = label != null ? new StringBuilder() : null;
+    }
+
+    /**
+     * Keeps a min/max reduction of the whole session so any range can be
+     * drawn with about two points per pixel. Samples added before are not
+     * part of it.
+     *
+     * @param resolution width of the chart in pixels, 0 to disable
+     */
+    public synchronized void setDecimation(int resolution) {
+        mResolution = resolution;
+        mDecimator = resolution > 0 ? new SeriesDecimator() : null;
+    }
+
+    /**
+     * @return x of the first sample of the session, which may be older than
+     * {@link #getMinX()} if decimation is enabled
+     */
+    public synchronized double getSessionMinX() {
+        return mDecimator != null ? mDecimator.getFirstX() : getMinX();
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    @Override
+    public synchronized void add(double x, double y) {
+        if (mTail - mHead == mCapacity) {
+            evictOldest();
+        }
+        int slot = slot(mTail);
+        mX[slot] = x;
+        mY[slot] = y;
+        while (mMinQueueSize > 0 && mY[slot(queueLast(mMinQueue, mMinQueueHead,
+                mMinQueueSize))] >= y) {
+            mMinQueueSize--;
+        }
+        mMinQueue[(mMinQueueHead + mMinQueueSize++) % mCapacity] = mTail;
+        while (mMaxQueueSize > 0 && mY[slot(queueLast(mMaxQueue, mMaxQueueHead,
+                mMaxQueueSize))] <= y) {
+            mMaxQueueSize--;
+        }
+        mMaxQueue[(mMaxQueueHead + mMaxQueueSize++) % mCapacity] = mTail;
+        mTail++;
+        if (mDecimator != null) {
+            mDecimator.add(x, y);
+        }
+    }
+
+    /**
+     * Only the oldest sample can be removed
+     */
+    @Override
+    public synchronized void remove(int index) {
+        if (index != 0 || mTail == mHead) {
+            throw new UnsupportedOperationException("remove(" + index + ")");
+        }
+        evictOldest();
+    }
+
+    @Override
+    public synchronized void clear() {
+        while (mTail != mHead) {
+            evictOldest();
+        }
+        flushSpill();
+        if (mDecimator != null) {
+            mDecimator.clear();
+        }
+        mHead = 0;
+        mTail = 0;
+    }
+
+    @Override
+    public synchronized double getX(int index) {
+        return mX[slot(mHead + checkIndex(index))];
+    }
+
+    @Override
+    public synchronized double getY(int index) {
+        return mY[slot(mHead + checkIndex(index))];
+    }
+
+    /**
+     * Copies the retained samples, oldest first, without allocating
+     *
+     * @param x at least {@link #getCapacity()} long
+     * @param y at least {@link #getCapacity()} long
+     * @return number of samples copied
+     */
+    public synchronized int copyTo(double[] x, double[] y) {
+        int count = getItemCount();
+        int first = slot(mHead);
+        int firstPart = Math.min(count, mCapacity - first);
+        System.arraycopy(mX, first, x, 0, firstPart);
+        System.arraycopy(mY, first, y, 0, firstPart);
+        System.arraycopy(mX, 0, x, firstPart, count - firstPart);
+        System.arraycopy(mY, 0, y, firstPart, count - firstPart);
+        return count;
+    }
+
+    @Override
+    public synchronized int getItemCount() {
+        return (int) (mTail - mHead);
+    }
+
+    /**
+     * Returns the samples between start and stop plus the closest one on each
+     * side, like {@link XYSeries#getRange}. Only the samples in the range are
+     * boxed, as the chart library expects a map. With decimation enabled, the
+     * min/max buckets are returned instead when the range has more samples
+     * than the chart has pixels or starts before the retained window.
+     */
+    @Override
+    public synchronized SortedMap<Double, Double> getRange(double start, double stop,
+                                                           int beforeAfterPoints) {
+        TreeMap<Double, Double> range = new TreeMap<Double, Double>();
+        int count = getItemCount();
+        if (count == 0) {
+            return range;
+        }
+        int from = Math.max(0, lowerBound(start) - 1);
+        int to = Math.min(count - 1, lowerBound(stop));
+        boolean beforeWindow = mHead > 0 && start < mX[slot(mHead)];
+        if (mDecimator != null && (beforeWindow || to - from + 1 > 2 * mResolution)) {
+            mDecimator.collect(start, stop, mResolution, range);
+            return range;
+        }
+        for (int i = from; i <= to; i++) {
+            int slot = slot(mHead + i);
+            range.put(mX[slot], mY[slot]);
+        }
+        return range;
+    }
+
+    @Override
+    public synchronized int getIndexForKey(double key) {
+        int index = lowerBound(key);
+        if (index < getItemCount() && mX[slot(mHead + index)] == key) {
+            return index;
+        }
+        return -1;
+    }
+
+    @Override
+    public synchronized double getMinX() {
+        return mTail == mHead ? Double.MAX_VALUE : mX[slot(mHead)];
+    }
+
+    @Override
+    public synchronized double getMaxX() {
+        return mTail == mHead ? -Double.MAX_VALUE : mX[slot(mTail - 1)];
+    }
+
+    @Override
+    public synchronized double getMinY() {
+        return mMinQueueSize == 0 ? Double.MAX_VALUE
+                : mY[slot(mMinQueue[mMinQueueHead])];
+    }
+
+    @Override
+    public synchronized double getMaxY() {
+        return mMaxQueueSize == 0 ? -Double.MAX_VALUE
+                : mY[slot(mMaxQueue[mMaxQueueHead])];
+    }
+
+    private void evictOldest() {
+        if (mMinQueueSize > 0 && mMinQueue[mMinQueueHead] == mHead) {
+            mMinQueueHead = (mMinQueueHead + 1) % mCapacity;
+            mMinQueueSize--;
+        }
+        if (mMaxQueueSize > 0 && mMaxQueue[mMaxQueueHead] == mHead) {
+            mMaxQueueHead = (mMaxQueueHead + 1) % mCapacity;
+            mMaxQueueSize--;
+        }
+        if (mSpillBuffer != null) {
+            int slot = slot(mHead);
+            mSpillBuffer.append(' ').append(mX[slot]).append(':').append(mY[slot]);
+            if (++mSpillCount == SPILL_BATCH_SIZE) {
+                flushSpill();
+            }
+        }
+        mHead++;
+    }
+
+    private void flushSpill() {
+        if (mSpillBuffer == null || mSpillCount == 0) {
+            return;
+        }
+        Logger.datalog(" [" + mSpillLabel + "] " + mSpillCount + " samples" + mSpillBuffer);
+        mSpillBuffer.setLength(0);
+        mSpillCount = 0;
+    }
+
+    /**
+     * Index of the first sample with x >= key, or the sample count if none
+     */
+    private int lowerBound(double key) {
+        int low = 0;
+        int high = getItemCount();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mX[slot(mHead + mid)] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long queueLast(long[] queue, int head, int size) {
+        return queue[(head + size - 1) % mCapacity];
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= mTail - mHead) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + (mTail - mHead));
+        }
+        return index;
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % mCapacity);
+    }
+}
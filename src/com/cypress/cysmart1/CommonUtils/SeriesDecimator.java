@@ -0,0 +1,239 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.CommonUtils;
+
+import java.util.SortedMap;
+
+/**
+ * Min/max reduction of a whole chart session. Every sample is folded into a
+ * set of tiers; a bucket of tier k holds the first and last x and the
+ * minimum and maximum sample of FACTOR^(k+1) consecutive samples. Each tier
+ * is a fixed size ring, so the finer tiers forget the oldest buckets first
+ * and the coarsest tier keeps the longest history.
+ * <p/>
+ * A range is drawn from the finest tier that still holds its start and has
+ * no more buckets in it than requested, which keeps the drawing cost bounded
+ * by the chart width whatever the zoom level.
+ */
+class SeriesDecimator {
+
+    private static final int FACTOR = 4;
+    private static final int TIERS = 8;
+    private static final int TIER_CAPACITY = 512;
+
+    private final Tier[] mTiers = new Tier[TIERS];
+    /**
+     * Kept apart since even the coarsest tier evicts its oldest buckets once
+     * a session outgrows it
+     */
+    private double mFirstX = Double.MAX_VALUE;
+
+    SeriesDecimator() {
+        long bucketSize = 1;
+        for (int i = 0; i < TIERS; i++) {
+            bucketSize *= FACTOR;
+            mTiers[i] = new Tier(bucketSize);
+        }
+    }
+
+    void add(double x, double y) {
+        if (mTiers[0].isEmpty()) {
+            mFirstX = x;
+        }
+        for (int i = 0; i < TIERS; i++) {
+            mTiers[i].add(x, y);
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < TIERS; i++) {
+            mTiers[i].clear();
+        }
+        mFirstX = Double.MAX_VALUE;
+    }
+
+    /**
+     * @return x of the first sample of the session, or Double.MAX_VALUE if empty
+     */
+    double getFirstX() {
+        return mFirstX;
+    }
+
+    /**
+     * Adds the minimum and maximum of each bucket between start and stop,
+     * plus the closest bucket on each side, to the given map
+     *
+     * @param start
+     * @param stop
+     * @param maxBuckets buckets wanted at most, usually the chart width
+     * @param range
+     */
+    void collect(double start, double stop, int maxBuckets, SortedMap<Double, Double> range) {
+        Tier tier = mTiers[TIERS - 1];
+        for (int i = 0; i < TIERS - 1; i++) {
+            Tier candidate = mTiers[i];
+            if (candidate.holds(start) && candidate.countBuckets(start, stop) <= maxBuckets) {
+                tier = candidate;
+                break;
+            }
+        }
+        tier.collect(start, stop, range);
+    }
+
+    private static class Tier {
+        private final long mBucketSize;
+        private final double[] mFirstX = new double[TIER_CAPACITY];
+        private final double[] mLastX = new double[TIER_CAPACITY];
+        private final double[] mMinX = new double[TIER_CAPACITY];
+        private final double[] mMinY = new double[TIER_CAPACITY];
+        private final double[] mMaxX = new double[TIER_CAPACITY];
+        private final double[] mMaxY = new double[TIER_CAPACITY];
+        /**
+         * Sequence numbers of the oldest bucket and of the next one
+         */
+        private long mHead;
+        private long mTail;
+        /**
+         * Samples in the last bucket, which is open until it reaches mBucketSize
+         */
+        private long mOpenCount;
+
+        Tier(long bucketSize) {
+            this.mBucketSize = bucketSize;
+        }
+
+        void add(double x, double y) {
+            if (mOpenCount == 0 || mOpenCount == mBucketSize) {
+                if (mTail - mHead == TIER_CAPACITY) {
+                    mHead++;
+                }
+                int slot = slot(mTail++);
+                mFirstX[slot] = x;
+                mLastX[slot] = x;
+                mMinX[slot] = x;
+                mMinY[slot] = y;
+                mMaxX[slot] = x;
+                mMaxY[slot] = y;
+                mOpenCount = 1;
+                return;
+            }
+            int slot = slot(mTail - 1);
+            mLastX[slot] = x;
+            if (y < mMinY[slot]) {
+                mMinX[slot] = x;
+                mMinY[slot] = y;
+            }
+            if (y > mMaxY[slot]) {
+                mMaxX[slot] = x;
+                mMaxY[slot] = y;
+            }
+            mOpenCount++;
+        }
+
+        void clear() {
+            mHead = 0;
+            mTail = 0;
+            mOpenCount = 0;
+        }
+
+        boolean isEmpty() {
+            return mTail == mHead;
+        }
+
+        double firstX(int index) {
+            return mFirstX[slot(mHead + index)];
+        }
+
+        /**
+         * @return false if the buckets holding x were already evicted
+         */
+        boolean holds(double x) {
+            return mHead == 0 || (!isEmpty() && firstX(0) <= x);
+        }
+
+        int countBuckets(double start, double stop) {
+            return lastIndex(stop) - firstIndex(start) + 1;
+        }
+
+        void collect(double start, double stop, SortedMap<Double, Double> range) {
+            if (isEmpty()) {
+                return;
+            }
+            int last = lastIndex(stop);
+            for (int i = firstIndex(start); i <= last; i++) {
+                int slot = slot(mHead + i);
+                range.put(mMinX[slot], mMinY[slot]);
+                range.put(mMaxX[slot], mMaxY[slot]);
+            }
+        }
+
+        /**
+         * Index of the bucket before the first one ending at or after start
+         */
+        private int firstIndex(double start) {
+            int low = 0;
+            int high = (int) (mTail - mHead);
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (mLastX[slot(mHead + mid)] < start) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return Math.max(0, low - 1);
+        }
+
+        /**
+         * Index of the bucket after the last one starting at or before stop
+         */
+        private int lastIndex(double stop) {
+            int count = (int) (mTail - mHead);
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (mFirstX[slot(mHead + mid)] <= stop) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return Math.min(count - 1, low);
+        }
+
+        private int slot(long sequence) {
+            return (int) (sequence % TIER_CAPACITY);
+        }
+    }
+}
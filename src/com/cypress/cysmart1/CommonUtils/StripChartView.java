@@ -0,0 +1,442 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.CommonUtils;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.View;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Scrolling line chart for high rate streams. Each trace is drawn straight
+ * from a {@link RingBufferXYSeries} through a reused Path, samples falling in
+ * the same pixel column are collapsed into one vertical segment, and the Y
+ * axis scales itself to the traces. The chart has axis titles, labels and a
+ * grid on both axes. Dragging pans the chart and stops it following the new
+ * samples, a double tap follows them again.
+ * <p/>
+ * Drawing does not allocate, apart from formatting labels: the Y labels are
+ * formatted when the scale changes, an X label when its tick scrolls in.
+ */
+public class StripChartView extends View {
+
+    /**
+     * Space left above and below the traces, as a fraction of their range
+     */
+    private static final double Y_MARGIN = 0.1;
+    private static final float DEFAULT_LINE_WIDTH = 3;
+    /**
+     * Grid intervals of the Y axis
+     */
+    private static final int Y_DIVISIONS = 4;
+    /**
+     * Grid intervals aimed at on the X axis, between half and twice as many
+     * are shown before the tick step changes
+     */
+    private static final int X_DIVISIONS = 4;
+    private static final int X_LABEL_CACHE_SIZE = X_DIVISIONS * 2 + 2;
+
+    private final ArrayList<Trace> mTraces = new ArrayList<Trace>();
+    private final Paint mAxisPaint = new Paint();
+    private final Paint mGridPaint = new Paint();
+    private final Paint mLabelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mTitlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final DecimalFormat mLabelFormat = new DecimalFormat("0.##");
+    private float mLineWidth = DEFAULT_LINE_WIDTH;
+    private String mXTitle;
+    private String mYTitle;
+
+    private double mScaleMin = Double.NaN;
+    private double mScaleMax = Double.NaN;
+    private final String[] mYLabels = new String[Y_DIVISIONS + 1];
+    private float mLabelWidth;
+
+    private double mXStep;
+    //X labels by tick index, the slot of tick k is k modulo the cache size
+    private final long[] mXLabelTicks = new long[X_LABEL_CACHE_SIZE];
+    private final String[] mXLabels = new String[X_LABEL_CACHE_SIZE];
+
+    private GestureDetector mGestureDetector;
+    //Set once the current gesture drags the chart instead of the page
+    private boolean mDragging;
+    //Range shown while panned, the traces are not followed
+    private boolean mPanned;
+    private double mViewMinX;
+    private double mViewMaxX;
+    //Range and scale of the last frame, panning starts from them
+    private double mDrawnMinX;
+    private double mDrawnMaxX;
+    private double mXScale;
+    private double mYScale;
+
+    public StripChartView(Context context) {
+        super(context);
+        initializeChart(context);
+    }
+
+    public StripChartView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        initializeChart(context);
+    }
+
+    public StripChartView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        initializeChart(context);
+    }
+
+    private void initializeChart(Context context) {
+        mAxisPaint.setColor(Color.DKGRAY);
+        mAxisPaint.setStyle(Paint.Style.STROKE);
+        mGridPaint.setColor(Color.LTGRAY);
+        mGridPaint.setStyle(Paint.Style.STROKE);
+        float textSize = Constants.TEXT_SIZE_HDPI
+                * getResources().getDisplayMetrics().density / 1.5f;
+        mLabelPaint.setColor(Color.BLACK);
+        mLabelPaint.setTextSize(textSize);
+        mTitlePaint.setColor(Color.BLACK);
+        mTitlePaint.setTextSize(textSize);
+        mTitlePaint.setTextAlign(Paint.Align.CENTER);
+        Arrays.fill(mXLabelTicks, Long.MIN_VALUE);
+        mGestureDetector = new GestureDetector(context,
+                new GestureDetector.SimpleOnGestureListener() {
+                    @Override
+                    public boolean onDown(MotionEvent e) {
+                        mDragging = false;
+                        return true;
+                    }
+
+                    @Override
+                    public boolean onScroll(MotionEvent e1, MotionEvent e2,
+                                            float distanceX, float distanceY) {
+                        if (!mDragging) {
+                            // Called past the touch slop; a vertical drag of a live
+                            // chart is left to the scrolling parent
+                            if (!mPanned && Math.abs(e2.getX() - e1.getX())
+                                    < Math.abs(e2.getY() - e1.getY())) {
+                                return false;
+                            }
+                            mDragging = true;
+                            getParent().requestDisallowInterceptTouchEvent(true);
+                        }
+                        pan(distanceX, distanceY);
+                        return true;
+                    }
+
+                    @Override
+                    public boolean onDoubleTap(MotionEvent e) {
+                        mPanned = false;
+                        mScaleMin = Double.NaN;
+                        invalidate();
+                        return true;
+                    }
+                });
+    }
+
+    /**
+     * Adds a trace drawn from the given series
+     *
+     * @param series
+     * @param color
+     */
+    public void addSeries(RingBufferXYSeries series, int color) {
+        Trace trace = new Trace(series, color);
+        trace.mPaint.setStrokeWidth(mLineWidth);
+        mTraces.add(trace);
+        invalidate();
+    }
+
+    public void setLineWidth(float lineWidth) {
+        mLineWidth = lineWidth;
+        for (int i = 0; i < mTraces.size(); i++) {
+            mTraces.get(i).mPaint.setStrokeWidth(lineWidth);
+        }
+        invalidate();
+    }
+
+    /**
+     * @param xTitle title below the X axis, or null
+     * @param yTitle title left of the Y axis, or null
+     */
+    public void setAxisTitles(String xTitle, String yTitle) {
+        mXTitle = xTitle;
+        mYTitle = yTitle;
+        invalidate();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        return mGestureDetector.onTouchEvent(event) || super.onTouchEvent(event);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        double minX = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < mTraces.size(); i++) {
+            Trace trace = mTraces.get(i);
+            trace.mCount = trace.mSeries.copyTo(trace.mX, trace.mY);
+            for (int j = 0; j < trace.mCount; j++) {
+                minY = Math.min(minY, trace.mY[j]);
+                maxY = Math.max(maxY, trace.mY[j]);
+            }
+            if (trace.mCount > 0) {
+                minX = Math.min(minX, trace.mX[0]);
+                maxX = Math.max(maxX, trace.mX[trace.mCount - 1]);
+            }
+        }
+        if (minX > maxX) {
+            return;
+        }
+        if (mPanned) {
+            minX = mViewMinX;
+            maxX = mViewMaxX;
+        } else {
+            updateScale(minY, maxY);
+        }
+        updateXStep(maxX - minX);
+
+        float textHeight = mLabelPaint.getTextSize();
+        float titleHeight = mYTitle != null ? textHeight * 1.5f : 0;
+        float left = getPaddingLeft() + titleHeight + mLabelWidth + textHeight / 2;
+        float top = getPaddingTop() + textHeight / 2;
+        float right = getWidth() - getPaddingRight() - textHeight;
+        float bottom = getHeight() - getPaddingBottom() - textHeight * 1.5f
+                - (mXTitle != null ? textHeight * 1.5f : 0);
+        if (right <= left || bottom <= top) {
+            return;
+        }
+        mDrawnMinX = minX;
+        mDrawnMaxX = maxX;
+        mXScale = maxX > minX ? (right - left) / (maxX - minX) : 0;
+        mYScale = (bottom - top) / (mScaleMax - mScaleMin);
+
+        drawYAxis(canvas, left, top, right, bottom, textHeight);
+        drawXAxis(canvas, left, top, right, bottom, textHeight, minX, maxX);
+        if (mYTitle != null) {
+            float x = getPaddingLeft() + textHeight;
+            float y = (top + bottom) / 2;
+            canvas.save();
+            canvas.rotate(-90, x, y);
+            canvas.drawText(mYTitle, x, y, mTitlePaint);
+            canvas.restore();
+        }
+        if (mXTitle != null) {
+            canvas.drawText(mXTitle, (left + right) / 2, getHeight() - getPaddingBottom()
+                    - textHeight / 2, mTitlePaint);
+        }
+        canvas.drawRect(left, top, right, bottom, mAxisPaint);
+
+        canvas.save();
+        canvas.clipRect(left, top, right, bottom);
+        for (int i = 0; i < mTraces.size(); i++) {
+            Trace trace = mTraces.get(i);
+            if (trace.mCount == 0) {
+                continue;
+            }
+            trace.buildPath(left, bottom, minX, mXScale, mScaleMin, mYScale);
+            canvas.drawPath(trace.mPath, trace.mPaint);
+        }
+        canvas.restore();
+    }
+
+    private void drawYAxis(Canvas canvas, float left, float top, float right, float bottom,
+                           float textHeight) {
+        float labelLeft = left - textHeight / 4 - mLabelWidth;
+        for (int i = 0; i <= Y_DIVISIONS; i++) {
+            float y = bottom - (bottom - top) * i / Y_DIVISIONS;
+            if (i > 0 && i < Y_DIVISIONS) {
+                canvas.drawLine(left, y, right, y, mGridPaint);
+            }
+            canvas.drawText(mYLabels[i], labelLeft, y + textHeight / 3, mLabelPaint);
+        }
+    }
+
+    private void drawXAxis(Canvas canvas, float left, float top, float right, float bottom,
+                           float textHeight, double minX, double maxX) {
+        long firstTick = (long) Math.ceil(minX / mXStep);
+        long lastTick = (long) Math.floor(maxX / mXStep);
+        for (long tick = firstTick; tick <= lastTick; tick++) {
+            float x = (float) (left + (tick * mXStep - minX) * mXScale);
+            canvas.drawLine(x, top, x, bottom, mGridPaint);
+            String label = getXLabel(tick);
+            canvas.drawText(label, x - mLabelPaint.measureText(label) / 2,
+                    bottom + textHeight * 1.2f, mLabelPaint);
+        }
+    }
+
+    /**
+     * Label of an X tick, formatted once while the tick stays in view
+     */
+    private String getXLabel(long tick) {
+        int slot = (int) (((tick % X_LABEL_CACHE_SIZE) + X_LABEL_CACHE_SIZE)
+                % X_LABEL_CACHE_SIZE);
+        if (mXLabelTicks[slot] != tick) {
+            mXLabelTicks[slot] = tick;
+            mXLabels[slot] = mLabelFormat.format(tick * mXStep);
+        }
+        return mXLabels[slot];
+    }
+
+    /**
+     * Keeps the X tick step while it gives between half and twice the aimed
+     * number of grid intervals, otherwise picks a 1, 2 or 5 step
+     */
+    private void updateXStep(double span) {
+        span = Math.max(span, 1e-6);
+        if (mXStep > 0 && span / mXStep >= X_DIVISIONS / 2.0
+                && span / mXStep <= X_DIVISIONS * 2.0) {
+            return;
+        }
+        double rawStep = span / X_DIVISIONS;
+        double magnitude = Math.pow(10, Math.floor(Math.log10(rawStep)));
+        double fraction = rawStep / magnitude;
+        mXStep = (fraction < 1.5 ? 1 : fraction < 3.5 ? 2 : fraction < 7.5 ? 5 : 10) * magnitude;
+        Arrays.fill(mXLabelTicks, Long.MIN_VALUE);
+    }
+
+    /**
+     * Widens the scale at once when the traces leave it, but only narrows it
+     * once they use less than half of it, so labels are rarely reformatted
+     */
+    private void updateScale(double minY, double maxY) {
+        double range = Math.max(maxY - minY, 1e-6);
+        boolean outside = Double.isNaN(mScaleMin) || minY < mScaleMin || maxY > mScaleMax;
+        boolean tooWide = range < (mScaleMax - mScaleMin) / 2;
+        if (!outside && !tooWide) {
+            return;
+        }
+        mScaleMin = minY - range * Y_MARGIN;
+        mScaleMax = maxY + range * Y_MARGIN;
+        updateYLabels();
+    }
+
+    private void updateYLabels() {
+        mLabelWidth = 0;
+        for (int i = 0; i <= Y_DIVISIONS; i++) {
+            mYLabels[i] = mLabelFormat.format(mScaleMin
+                    + (mScaleMax - mScaleMin) * i / Y_DIVISIONS);
+            mLabelWidth = Math.max(mLabelWidth, mLabelPaint.measureText(mYLabels[i]));
+        }
+    }
+
+    /**
+     * Moves the shown range by a drag, freezing it on the first one
+     *
+     * @param distanceX pixels dragged to the left
+     * @param distanceY pixels dragged upwards
+     */
+    private void pan(float distanceX, float distanceY) {
+        if (mXScale <= 0 || mYScale <= 0) {
+            return;
+        }
+        if (!mPanned) {
+            mPanned = true;
+            mViewMinX = mDrawnMinX;
+            mViewMaxX = mDrawnMaxX;
+        }
+        double dx = distanceX / mXScale;
+        mViewMinX += dx;
+        mViewMaxX += dx;
+        double dy = -distanceY / mYScale;
+        mScaleMin += dy;
+        mScaleMax += dy;
+        updateYLabels();
+        invalidate();
+    }
+
+    private static class Trace {
+        private final RingBufferXYSeries mSeries;
+        private final double[] mX;
+        private final double[] mY;
+        private final Path mPath = new Path();
+        private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        private int mCount;
+
+        Trace(RingBufferXYSeries series, int color) {
+            this.mSeries = series;
+            mX = new double[series.getCapacity()];
+            mY = new double[series.getCapacity()];
+            mPaint.setColor(color);
+            mPaint.setStyle(Paint.Style.STROKE);
+            mPaint.setStrokeJoin(Paint.Join.ROUND);
+        }
+
+        void buildPath(float left, float bottom, double minX, double xScale,
+                       double minY, double yScale) {
+            mPath.rewind();
+            int column = Integer.MIN_VALUE;
+            float columnMin = 0;
+            float columnMax = 0;
+            float lastY = 0;
+            for (int i = 0; i < mCount; i++) {
+                float x = (float) (left + (mX[i] - minX) * xScale);
+                float y = (float) (bottom - (mY[i] - minY) * yScale);
+                int pixel = (int) x;
+                if (pixel == column) {
+                    columnMin = Math.min(columnMin, y);
+                    columnMax = Math.max(columnMax, y);
+                    lastY = y;
+                    continue;
+                }
+                if (column == Integer.MIN_VALUE) {
+                    mPath.moveTo(x, y);
+                } else {
+                    // Vertical extent of the previous column, then on to this sample
+                    mPath.lineTo(column, columnMin);
+                    mPath.lineTo(column, columnMax);
+                    mPath.lineTo(column, lastY);
+                    mPath.lineTo(x, y);
+                }
+                column = pixel;
+                columnMin = y;
+                columnMax = y;
+                lastY = y;
+            }
+            mPath.lineTo(column, columnMin);
+            mPath.lineTo(column, columnMax);
+            mPath.lineTo(column, lastY);
+        }
+    }
+}
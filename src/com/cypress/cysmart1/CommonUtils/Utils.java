@@ -65,6 +65,7 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.UUID;
 
 /**
  * Class for commonly used methods in the project
@@ -230,6 +231,59 @@ public class Utils {
         return "";
     }
 
+    /**
+     * Checks whether the advertisement data lists the service among its
+     * complete or incomplete 16 or 128 bit service UUIDs
+     *
+     * @param scanRecord
+     * @param serviceUuid
+     * @return boolean
+     */
+    public static boolean isServiceAdvertised(byte[] scanRecord, UUID serviceUuid) {
+        if (scanRecord == null) {
+            return false;
+        }
+        long msb = serviceUuid.getMostSignificantBits();
+        long lsb = serviceUuid.getLeastSignificantBits();
+        int offset = 0;
+        while (offset < scanRecord.length - 1) {
+            int length = scanRecord[offset] & 0xFF;
+            if (length == 0 || offset + length >= scanRecord.length) {
+                break;
+            }
+            int type = scanRecord[offset + 1] & 0xFF;
+            int uuidSize = (type == 0x02 || type == 0x03) ? 2
+                    : (type == 0x06 || type == 0x07) ? 16 : 0;
+            for (int pos = offset + 2; uuidSize > 0 && pos + uuidSize <= offset + length + 1;
+                 pos += uuidSize) {
+                if (uuidSize == 2) {
+                    //16 bit UUIDs are aliases within the Bluetooth base UUID
+                    int shortUuid = (scanRecord[pos] & 0xFF) | ((scanRecord[pos + 1] & 0xFF) << 8);
+                    if (lsb == BLUETOOTH_BASE_UUID_LSB
+                            && msb == (((long) shortUuid << 32) | BLUETOOTH_BASE_UUID_MSB)) {
+                        return true;
+                    }
+                } else if (readLittleEndianLong(scanRecord, pos) == lsb
+                        && readLittleEndianLong(scanRecord, pos + 8) == msb) {
+                    return true;
+                }
+            }
+            offset += length + 1;
+        }
+        return false;
+    }
+
+    private static final long BLUETOOTH_BASE_UUID_MSB = 0x00001000L;
+    private static final long BLUETOOTH_BASE_UUID_LSB = 0x800000805F9B34FBL;
+
+    private static long readLittleEndianLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 7; i >= 0; i--) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
     public static byte[] hexStringToByteArray(String s) {
         int len = s.length();
         byte[] data = new byte[len / 2];
@@ -453,6 +507,17 @@ public class Utils {
 
     }
 
+    /**
+     * Returns the application shared preferences, for callers that need to
+     * write several values with a single editor
+     *
+     * @param context
+     * @return
+     */
+    public static final SharedPreferences getSharedPreferences(Context context) {
+        return context.getSharedPreferences(SHARED_PREF_NAME, Context.MODE_PRIVATE);
+    }
+
     /**
      * Setting the shared preference with values provided as parameters
      *
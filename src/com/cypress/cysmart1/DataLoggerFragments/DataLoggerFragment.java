@@ -34,11 +34,13 @@ package com.cypress.cysmart1.DataLoggerFragments;
 
 import android.app.Activity;
 import android.app.ProgressDialog;
+import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
+import android.view.KeyEvent;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -46,13 +48,18 @@ import android.view.MenuItem;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.ViewGroup;
+import android.view.inputmethod.EditorInfo;
+import android.view.inputmethod.InputMethodManager;
 import android.widget.AbsListView;
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import com.cypress.cysmart1.CommonUtils.Constants;
+import com.cypress.cysmart1.CommonUtils.DataLogIndex;
+import com.cypress.cysmart1.CommonUtils.DataLogSearchIndex;
 import com.cypress.cysmart1.CommonUtils.Logger;
 import com.cypress.cysmart1.CommonUtils.Utils;
 import com.cypress.cysmart1.HomePageActivity;
@@ -99,6 +106,14 @@ public class DataLoggerFragment extends Fragment implements AbsListView.OnScroll
     private int mStartLine = 0;
     private int mStopLine = 500;
     private boolean mLazyLoadingEnabled = false;
+    /**
+     * Line-offset index of the file in view
+     */
+    private DataLogIndex mLogIndex;
+    /**
+     * Counts the prepareData() calls, loads of an older one are dropped
+     */
+    private int mLoadGeneration;
     /**
      * GUI elements
      */
@@ -108,6 +123,15 @@ public class DataLoggerFragment extends Fragment implements AbsListView.OnScroll
     //Activity Request Code
     private static final int REQUEST_CODE = 123;
 
+    //Maximum wait for queued data logger lines before reading the file
+    private static final long DATA_LOG_FLUSH_TIMEOUT = 1000;
+
+    //Files with more lines are read in chunks
+    private static final int LAZY_LOADING_LINES = 5000;
+
+    //Maximum lines shown for a search
+    private static final int MAX_SEARCH_RESULTS = 1000;
+
     /**
      * Constructor
      *
@@ -204,32 +228,35 @@ public class DataLoggerFragment extends Fragment implements AbsListView.OnScroll
         super.onPause();
     }
 
+    /**
+     * Shows the file in view. The file is indexed and its first lines read
+     * by loadLogdata, off the main thread.
+     */
     public void prepareData() {
-        mTotalLinesToRead = getTotalLines();
+        mLoadGeneration++;
+        mLogIndex = null;
+        mLazyLoadingEnabled = false;
         mReadLogData = new ArrayList<String>();
         mAdapter = new DataLogsListAdapter(getActivity(), mReadLogData);
         mLogList.setAdapter(mAdapter);
         mProgressDialog = new ProgressDialog(getActivity());
         //scrollMyListViewToBottom();
-        if (mTotalLinesToRead > 5000) {
-            // mLogList.setOnScrollListener(this);
-            mLazyLoadingEnabled = true;
-            loadLogdata loadLogdata = new loadLogdata(mStartLine, mStopLine);
-            Logger.e("Start Line>> " + mStartLine + "Stop Line>>" + mStopLine);
-            loadLogdata.execute();
-            mProgressDialog.setTitle(
-                    getResources().
-                            getString(R.string.app_name));
-            mProgressDialog.setMessage(getResources().
-                    getString(R.string.alert_message_log_read));
-            mProgressDialog.setCancelable(false);
-            mProgressDialog.show();
+        Logger.e("Start Line>> " + mStartLine + "Stop Line>>" + mStopLine);
+        loadLogdata loadLogdata = new loadLogdata(mStartLine, mStopLine, true);
+        loadLogdata.execute();
+    }
 
-        } else {
-            mLazyLoadingEnabled = false;
-            loadLogdata loadLogdata = new loadLogdata(0, 0);
-            loadLogdata.execute();
-        }
+    /**
+     * Shows the progress while a large file is read in chunks
+     */
+    private void showLazyLoadingProgress() {
+        mProgressDialog.setTitle(
+                getResources().
+                        getString(R.string.app_name));
+        mProgressDialog.setMessage(getResources().
+                getString(R.string.alert_message_log_read));
+        mProgressDialog.setCancelable(false);
+        mProgressDialog.show();
     }
 
     /**
@@ -266,29 +293,13 @@ public class DataLoggerFragment extends Fragment implements AbsListView.OnScroll
      * @return {@link String}
      * @throws FileNotFoundException
      */
-    private ArrayList<String> logdata(int startLine, int stopLine) throws FileNotFoundException {
+    private ArrayList<String> logdata(DataLogIndex index, int startLine, int stopLine)
+            throws FileNotFoundException {
         File file = new File(mFilepath);
-        ArrayList<String> dataLines = new ArrayList<String>();
         if (!file.exists()) {
-            return dataLines;
-        } else {
-            BufferedReader buffreader = new BufferedReader(new FileReader(file));
-            String line;
-            int lines = 0;
-            try {
-                while ((line = buffreader.readLine()) != null) {
-                    lines++;
-                    if (lines > startLine && lines <= stopLine) {
-                        dataLines.add(line);
-                    }
-
-                }
-
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            return dataLines;
+            return new ArrayList<String>();
         }
+        return index.readLines(startLine, stopLine);
     }
 
     /**
@@ -297,18 +308,7 @@ public class DataLoggerFragment extends Fragment implements AbsListView.OnScroll
      * @return totalLines
      */
     public int getTotalLines() {
-        int totalLines = 0;
-        try {
-            BufferedReader bufferedReader = new BufferedReader(new FileReader(mFilepath));
-            while ((bufferedReader.readLine()) != null) {
-                totalLines++;
-            }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return totalLines;
+        return mLogIndex.getLineCount();
     }
 
     @Override
@@ -353,7 +353,7 @@ public class DataLoggerFragment extends Fragment implements AbsListView.OnScroll
         } else {
             pairCache.setChecked(false);
         }
-        search.setVisible(false);
+        setUpSearch(search);
         share.setVisible(false);
         log.setVisible(false);
         graph.setVisible(false);
@@ -373,10 +373,65 @@ public class DataLoggerFragment extends Fragment implements AbsListView.OnScroll
         }
     }
 
+    /**
+     * Searches the data logger history through the search index, when the
+     * data logger is running
+     *
+     * @param search
+     */
+    private void setUpSearch(MenuItem search) {
+        if (Logger.getDataLogSearchIndex() == null) {
+            search.setVisible(false);
+            return;
+        }
+        search.setVisible(true);
+        final EditText searchText = (EditText) search.getActionView();
+        searchText.setHint(R.string.data_logger_search_hint);
+        searchText.setOnEditorActionListener(new TextView.OnEditorActionListener() {
+            @Override
+            public boolean onEditorAction(TextView textView, int actionId, KeyEvent keyEvent) {
+                if (actionId == EditorInfo.IME_ACTION_DONE
+                        && textView.getText().toString().trim().length() > 0) {
+                    hideKeyboard();
+                    new searchLogData(textView.getText().toString()).execute();
+                    return true;
+                }
+                return false;
+            }
+        });
+        search.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                searchText.requestFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                // Back to the file in view
+                hideKeyboard();
+                mStartLine = 0;
+                mStopLine = 500;
+                prepareData();
+                return true;
+            }
+        });
+    }
+
+    private void hideKeyboard() {
+        View view = getActivity().getCurrentFocus();
+        if (view != null) {
+            InputMethodManager imm = (InputMethodManager) getActivity().getSystemService(
+                    Context.INPUT_METHOD_SERVICE);
+            imm.hideSoftInputFromWindow(view.getWindowToken(), 0);
+        }
+    }
+
     /**
      * Sharing the data logger txt file
      */
     private void shareDataLoggerFile() {
+        Logger.flushDataLog(DATA_LOG_FLUSH_TIMEOUT);
         HomePageActivity.mContainerView.invalidate();
         Intent emailIntent = new Intent(Intent.ACTION_SEND);
         // set the type to 'email'
@@ -391,16 +446,30 @@ public class DataLoggerFragment extends Fragment implements AbsListView.OnScroll
     }
 
     /**
-     * AsyncTask class for loading logger data
+     * AsyncTask class for loading logger data. The first task of a file
+     * also indexes it, then reads all of a small file or the first chunk
+     * of a large one.
      */
     private class loadLogdata extends AsyncTask<Void, Void, ArrayList<String>> {
         int startLine = 0;
         int stopLine = 0;
+        boolean openIndex;
+        DataLogIndex index;
+        String filePath;
+        int generation;
         ArrayList<String> newData = new ArrayList<String>();
 
         public loadLogdata(int startLine, int stopLine) {
+            this(startLine, stopLine, false);
+        }
+
+        public loadLogdata(int startLine, int stopLine, boolean openIndex) {
             this.startLine = startLine;
             this.stopLine = stopLine;
+            this.openIndex = openIndex;
+            this.index = mLogIndex;
+            this.filePath = mFilepath;
+            this.generation = mLoadGeneration;
         }
 
         @Override
@@ -411,10 +480,21 @@ public class DataLoggerFragment extends Fragment implements AbsListView.OnScroll
 
         protected ArrayList<String> doInBackground(Void... params) {
             try {
+                if (openIndex) {
+                    // Lines still queued in the data logger writer belong to the file
+                    Logger.flushDataLog(DATA_LOG_FLUSH_TIMEOUT);
+                    index = DataLogIndex.open(new File(filePath));
+                    // Keeps the index of history files for the next time they are opened
+                    index.save();
+                    if (index.getLineCount() <= LAZY_LOADING_LINES) {
+                        startLine = 0;
+                        stopLine = 0;
+                    }
+                }
                 if (startLine == 0 && stopLine == 0) {
                     newData = logdata();
                 } else {
-                    newData = logdata(startLine, stopLine);
+                    newData = logdata(index, startLine, stopLine);
                 }
             } catch (FileNotFoundException e) {
                 e.printStackTrace();
@@ -427,6 +507,18 @@ public class DataLoggerFragment extends Fragment implements AbsListView.OnScroll
 
         @Override
         protected void onPostExecute(ArrayList<String> result) {
+            if (!isAdded() || generation != mLoadGeneration) {
+                // A later prepareData() replaced the file in view
+                return;
+            }
+            if (openIndex) {
+                mLogIndex = index;
+                mTotalLinesToRead = getTotalLines();
+                mLazyLoadingEnabled = mTotalLinesToRead > LAZY_LOADING_LINES;
+                if (mLazyLoadingEnabled) {
+                    showLazyLoadingProgress();
+                }
+            }
             mReadLogData.addAll(result);
             //load more list items:
             if (mLazyLoadingEnabled) {
@@ -450,4 +542,44 @@ public class DataLoggerFragment extends Fragment implements AbsListView.OnScroll
         }
     }
 
+    /**
+     * AsyncTask class for searching the data logger history
+     */
+    private class searchLogData extends AsyncTask<Void, Void, ArrayList<String>> {
+        String query;
+
+        public searchLogData(String query) {
+            this.query = query;
+        }
+
+        @Override
+        protected ArrayList<String> doInBackground(Void... params) {
+            Logger.flushDataLog(DATA_LOG_FLUSH_TIMEOUT);
+            ArrayList<String> results = new ArrayList<String>();
+            ArrayList<DataLogSearchIndex.Match> matches = Logger.getDataLogSearchIndex().search(
+                    DataLogSearchIndex.Query.parse(query), MAX_SEARCH_RESULTS);
+            for (DataLogSearchIndex.Match match : matches) {
+                results.add(match.getFile().getName() + ":" + match.getLine() + " "
+                        + match.getText());
+            }
+            return results;
+        }
+
+        @Override
+        protected void onPostExecute(ArrayList<String> result) {
+            if (!isAdded()) {
+                return;
+            }
+            mLazyLoadingEnabled = false;
+            mReadLogData = result;
+            mAdapter.addData(mReadLogData);
+            mAdapter.notifyDataSetChanged();
+            if (result.isEmpty()) {
+                Toast.makeText(getActivity(), getResources().
+                        getString(R.string.data_logger_search_no_results),
+                        Toast.LENGTH_SHORT).show();
+            }
+        }
+    }
+
 }
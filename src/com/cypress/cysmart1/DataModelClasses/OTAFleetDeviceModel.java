@@ -0,0 +1,126 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.DataModelClasses;
+
+/**
+ * Data Model class for a device of a batch OTA update
+ */
+public class OTAFleetDeviceModel {
+
+    /**
+     * Update status
+     */
+    public static final int STATUS_IDLE = 0;
+    public static final int STATUS_QUEUED = 1;
+    public static final int STATUS_CONNECTING = 2;
+    public static final int STATUS_UPDATING = 3;
+    public static final int STATUS_SUCCESS = 4;
+    public static final int STATUS_FAILED = 5;
+
+    private final String mDeviceName;
+    private final String mDeviceAddress;
+    /**
+     * True if the device advertised the bootloader service when scanned
+     */
+    private final boolean mBootloaderAdvertised;
+    private boolean mSelected = false;
+    private int mStatus = STATUS_IDLE;
+    private int mRowsDone;
+    private int mRowCount;
+    private String mMessage;
+
+    // Constructor
+    public OTAFleetDeviceModel(String deviceName, String deviceAddress,
+                               boolean bootloaderAdvertised) {
+        super();
+        this.mDeviceName = deviceName;
+        this.mDeviceAddress = deviceAddress;
+        this.mBootloaderAdvertised = bootloaderAdvertised;
+    }
+
+    public String getDeviceName() {
+        return mDeviceName;
+    }
+
+    public String getDeviceAddress() {
+        return mDeviceAddress;
+    }
+
+    public boolean isBootloaderAdvertised() {
+        return mBootloaderAdvertised;
+    }
+
+    public boolean isSelected() {
+        return mSelected;
+    }
+
+    public void setSelected(boolean selected) {
+        this.mSelected = selected;
+    }
+
+    public int getStatus() {
+        return mStatus;
+    }
+
+    public void setStatus(int status) {
+        this.mStatus = status;
+    }
+
+    public int getRowsDone() {
+        return mRowsDone;
+    }
+
+    public int getRowCount() {
+        return mRowCount;
+    }
+
+    public void setProgress(int rowsDone, int rowCount) {
+        this.mRowsDone = rowsDone;
+        this.mRowCount = rowCount;
+    }
+
+    /**
+     * @return the failure reason
+     */
+    public String getMessage() {
+        return mMessage;
+    }
+
+    public void setMessage(String message) {
+        this.mMessage = message;
+    }
+
+    public boolean isFinished() {
+        return mStatus == STATUS_SUCCESS || mStatus == STATUS_FAILED;
+    }
+}
@@ -43,6 +43,8 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentManager;
 import android.view.Gravity;
@@ -62,6 +64,8 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.cypress.cysmart1.BLEConnectionServices.BluetoothLeService;
+import com.cypress.cysmart1.BLEConnectionServices.GattEventBus;
+import com.cypress.cysmart1.BLEConnectionServices.GattNotificationEvent;
 import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.DialogListner;
 import com.cypress.cysmart1.CommonUtils.GattAttributes;
@@ -281,6 +285,9 @@ public class GattDetailsFragment extends Fragment implements DialogListner, OnCl
 		LogUtil.e("GattDetailsFragment", "onResume()");
         getActivity().registerReceiver(mGattUpdateReceiver,
                 Utils.makeGattUpdateIntentFilter());
+        GattEventBus.subscribe(mApplication.getBluetoothgattcharacteristic().getUuid(),
+                BluetoothLeService.getmBluetoothDeviceAddress(),
+                new Handler(Looper.getMainLooper()), mCharacteristicSubscriber, false, false);
         mIsNotifyEnabled = false;
         mIsIndicateEnabled = false;
     }
@@ -292,6 +299,7 @@ public class GattDetailsFragment extends Fragment implements DialogListner, OnCl
         super.onDestroy();
 		LogUtil.e("GattDetailsFragment", "onDestroy()");
         getActivity().unregisterReceiver(mGattUpdateReceiver);
+        GattEventBus.unsubscribe(mCharacteristicSubscriber);
     }
 
     @Override
@@ -717,6 +725,25 @@ public class GattDetailsFragment extends Fragment implements DialogListner, OnCl
         alert.show();
     }
 
+    /**
+     * Receives the values of the displayed characteristic through the GattEventBus
+     */
+    private final GattEventBus.GattEventSubscriber mCharacteristicSubscriber =
+            new GattEventBus.GattEventSubscriber() {
+        @Override
+        public void onGattNotification(GattNotificationEvent event) {
+            LogUtil.e("GattDetailsFragment", "mCharacteristicSubscriber   onGattNotification()");
+            BluetoothGattCharacteristic requiredCharacteristic =
+                    mApplication.getBluetoothgattcharacteristic();
+            if (event.isFrom(requiredCharacteristic)) {
+                displayHexValue(event.getValue());
+                displayASCIIValue(mHexValue.getText().
+                        toString());
+                displayTimeandDate();
+            }
+        }
+    };
+
     /**
      * Broadcast receiver class to receives the broadcast from the service class
      */
@@ -728,52 +755,6 @@ public class GattDetailsFragment extends Fragment implements DialogListner, OnCl
             final String action = intent.getAction();
             Bundle extras = intent.getExtras();
             if (BluetoothLeService.ACTION_DATA_AVAILABLE.equals(action)) {
-                // Data Received
-                if (extras.containsKey(Constants.EXTRA_BYTE_VALUE)) {
-                   BluetoothGattCharacteristic requiredCharacteristic =
-                                mApplication.getBluetoothgattcharacteristic();
-                    String uuidRequired = requiredCharacteristic.getUuid().toString();
-                    String receivedUUID = "";
-                    String requiredServiceUUID = requiredCharacteristic.
-                            getService().getUuid().toString();
-                    String receivedServiceUUID = "";
-                    int requiredInstanceID = requiredCharacteristic.getInstanceId();
-                    int receivedInstanceID = -1;
-                    int receivedServiceInstanceID = -1;
-                    int requiredServiceInstanceID =
-                            requiredCharacteristic.getService().
-                                    getInstanceId();
-                    if (extras.containsKey(Constants.EXTRA_BYTE_UUID_VALUE)) {
-                        receivedUUID  = intent.getStringExtra(
-                                Constants.EXTRA_BYTE_UUID_VALUE);
-                    }if (extras.containsKey(Constants.EXTRA_BYTE_INSTANCE_VALUE)) {
-                        receivedInstanceID= intent.getIntExtra(Constants.
-                                        EXTRA_BYTE_INSTANCE_VALUE,
-                                -1);
-                    }if(extras.containsKey(Constants.
-                                                EXTRA_BYTE_SERVICE_UUID_VALUE)) {
-                        receivedServiceUUID = intent.getStringExtra(
-                                Constants.EXTRA_BYTE_SERVICE_UUID_VALUE);
-                    }if(extras.containsKey(Constants.
-                                                        EXTRA_BYTE_SERVICE_INSTANCE_VALUE)) {
-                        receivedServiceInstanceID  =
-                                intent.getIntExtra(Constants.EXTRA_BYTE_SERVICE_INSTANCE_VALUE,
-                                        -1);
-                    }
-                    if(uuidRequired.equalsIgnoreCase(receivedUUID)
-                            && requiredServiceUUID.equalsIgnoreCase(receivedServiceUUID)
-                            && requiredInstanceID==receivedInstanceID
-                            && requiredServiceInstanceID==receivedServiceInstanceID) {
-
-                        byte[] array = intent
-                                .getByteArrayExtra(Constants.
-                                        EXTRA_BYTE_VALUE);
-                         displayHexValue(array);
-                         displayASCIIValue(mHexValue.getText().
-                                toString());
-                         displayTimeandDate();
-                         }
-                     }
                 if (extras.containsKey(Constants.EXTRA_DESCRIPTOR_BYTE_VALUE)) {
                     if (extras.containsKey(Constants.
                             EXTRA_DESCRIPTOR_BYTE_VALUE_CHARACTERISTIC_UUID)) {
@@ -156,7 +156,7 @@ public class GattServicesFragment extends Fragment {
             }
         });
         setHasOptionsMenu(true);
-        BluetoothLeService.mEnabledCharacteristics=new ArrayList<BluetoothGattCharacteristic>();
+        BluetoothLeService.clearEnabledCharacteristics();
         return rootView;
     }
 
@@ -192,8 +192,8 @@ public class GattServicesFragment extends Fragment {
     public void onDestroy() {
         super.onDestroy();
 		LogUtil.e("GattServicesFragment", "onDestroy()");
-        Logger.e("Enabled characteristic size-->" + BluetoothLeService.mEnabledCharacteristics.size());
-        if(BluetoothLeService.mEnabledCharacteristics.size()>0){
+        Logger.e("Enabled characteristic size-->" + BluetoothLeService.getEnabledCharacteristics().size());
+        if(BluetoothLeService.getEnabledCharacteristics().size()>0){
             BluetoothLeService.disableAllEnabledCharacteristics();
             Toast.makeText(getActivity(), getResources().
                             getString(R.string.profile_control_stop_both_notify_indicate_toast),
@@ -58,10 +58,14 @@ import android.support.v4.app.FragmentActivity;
 import android.support.v4.app.FragmentManager;
 import android.support.v4.widget.DrawerLayout;
 import android.view.Gravity;
+import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.CheckBox;
+import android.widget.EditText;
 import android.widget.FrameLayout;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import com.cypress.cysmart1.BLEConnectionServices.BluetoothLeService;
@@ -82,9 +86,11 @@ import com.cypress.cysmart1.CommonFragments.NavigationDrawerFragment;
 import com.cypress.cysmart1.CommonFragments.ProfileControlFragment;
 import com.cypress.cysmart1.CommonFragments.ProfileScanningFragment;
 import com.cypress.cysmart1.CommonFragments.ServiceDiscoveryFragment;
+import com.cypress.cysmart1.CommonUtils.ChartRenderScheduler;
 import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.LogUtil;
 import com.cypress.cysmart1.CommonUtils.Logger;
+import com.cypress.cysmart1.CommonUtils.RingBufferXYSeries;
 import com.cypress.cysmart1.CommonUtils.Utils;
 import com.cypress.cysmart1.DataLoggerFragments.DataLoggerFragment;
 import com.cypress.cysmart1.GATTDBFragments.GattDescriptorFragment;
@@ -799,6 +805,71 @@ public class HomePageActivity extends FragmentActivity implements
         alert.show();
     }
 
+    /**
+     * Edits the shared preferences of the live graphs, read by
+     * {@link RingBufferXYSeries#fromPreferences} and
+     * {@link ChartRenderScheduler#fromPreferences} when a graph is opened
+     */
+    private void showGraphSettings() {
+        LogUtil.e("HomePageActivity", "showGraphSettings()");
+        View settingsView = LayoutInflater.from(this).inflate(R.layout.graph_settings_dialog, null);
+        final EditText windowSize = (EditText) settingsView
+                .findViewById(R.id.graph_settings_window_size);
+        final EditText maxFrameRate = (EditText) settingsView
+                .findViewById(R.id.graph_settings_max_frame_rate);
+        final CheckBox spill = (CheckBox) settingsView.findViewById(R.id.graph_settings_spill);
+        TextView windowSizeLabel = (TextView) settingsView
+                .findViewById(R.id.graph_settings_window_size_label);
+        windowSizeLabel.setText(getResources().getString(R.string.graph_settings_window_size,
+                RingBufferXYSeries.MAX_WINDOW_SIZE));
+        int storedWindowSize = Utils.getIntSharedPreference(this, Constants.PREF_GRAPH_WINDOW_SIZE);
+        if (storedWindowSize > 0) {
+            windowSize.setText(String.valueOf(storedWindowSize));
+        }
+        int storedFrameRate = Utils.getIntSharedPreference(this,
+                Constants.PREF_GRAPH_MAX_FRAME_RATE);
+        if (storedFrameRate > 0) {
+            maxFrameRate.setText(String.valueOf(storedFrameRate));
+        }
+        spill.setChecked(Utils.getBooleanSharedPreference(this,
+                Constants.PREF_GRAPH_SPILL_TO_DATA_LOGGER));
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle(R.string.graph_settings)
+                .setView(settingsView)
+                .setPositiveButton(getResources().getString(R.string.alert_message_exit_ok),
+                        new DialogInterface.OnClickListener() {
+                            public void onClick(DialogInterface dialog, int id) {
+                                //Empty or 0 falls back to the default of the graph
+                                Utils.setIntSharedPreference(HomePageActivity.this,
+                                        Constants.PREF_GRAPH_WINDOW_SIZE,
+                                        parseSetting(windowSize.getText().toString(),
+                                                RingBufferXYSeries.MAX_WINDOW_SIZE));
+                                Utils.setIntSharedPreference(HomePageActivity.this,
+                                        Constants.PREF_GRAPH_MAX_FRAME_RATE,
+                                        parseSetting(maxFrameRate.getText().toString(),
+                                                Integer.MAX_VALUE));
+                                Utils.setBooleanSharedPreference(HomePageActivity.this,
+                                        Constants.PREF_GRAPH_SPILL_TO_DATA_LOGGER,
+                                        spill.isChecked());
+                            }
+                        })
+                .setNegativeButton(getResources().getString(R.string.alert_message_exit_cancel),
+                        new DialogInterface.OnClickListener() {
+                            public void onClick(DialogInterface dialog, int id) {
+                                dialog.cancel();
+                            }
+                        });
+        builder.create().show();
+    }
+
+    private static int parseSetting(String value, int max) {
+        try {
+            return Math.min(max, Math.max(0, Integer.parseInt(value.trim())));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
     //For UnPairing
     private void unpairDevice(BluetoothDevice device) {
         LogUtil.e("HomePageActivity", "unpairDevice()");
@@ -882,6 +953,9 @@ public class HomePageActivity extends FragmentActivity implements
                         .add(R.id.container, dataloggerfragment)
                         .addToBackStack(null).commit();
                 return true;
+            case R.id.graph_settings:
+                showGraphSettings();
+                return true;
             case R.id.pairing:
                 if (item.isChecked()) {
                     item.setChecked(false);
@@ -911,8 +985,7 @@ public class HomePageActivity extends FragmentActivity implements
                         new DialogInterface.OnClickListener() {
                             public void onClick(DialogInterface dialog, int id) {
                                 dialog.dismiss();
-                                if (BluetoothLeService.mBluetoothGatt != null)
-                                    BluetoothLeService.refreshDeviceCache(BluetoothLeService.mBluetoothGatt);
+                                BluetoothLeService.refreshDeviceCache();
                                 BluetoothLeService.disconnect();
                                 Toast.makeText(getBaseContext(),
                                         getString(R.string.alert_message_bluetooth_disconnect),
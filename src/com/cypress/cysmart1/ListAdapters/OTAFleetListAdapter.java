@@ -0,0 +1,148 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.ListAdapters;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.CheckBox;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import com.cypress.cysmart1.DataModelClasses.OTAFleetDeviceModel;
+import com.cypress.cysmart1.R;
+
+import java.util.ArrayList;
+
+/**
+ * Adapter listing the devices of a batch OTA update with their progress
+ */
+public class OTAFleetListAdapter extends BaseAdapter {
+
+    ArrayList<OTAFleetDeviceModel> mDeviceList = new ArrayList<OTAFleetDeviceModel>();
+    LayoutInflater mInflater;
+    Context mContext;
+
+    public OTAFleetListAdapter(Context context, ArrayList<OTAFleetDeviceModel> deviceList) {
+        this.mDeviceList = deviceList;
+        this.mContext = context;
+        mInflater = LayoutInflater.from(this.mContext);
+    }
+
+    @Override
+    public int getCount() {
+        return mDeviceList.size();
+    }
+
+    @Override
+    public Object getItem(int position) {
+        return mDeviceList.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(final int position, View convertView, ViewGroup parent) {
+        MyViewHolder mViewHolder;
+
+        if (convertView == null) {
+            convertView = mInflater.inflate(R.layout.listitem_ota_fleet_device, null);
+            mViewHolder = new MyViewHolder();
+            mViewHolder.deviceName = (TextView) convertView.findViewById(R.id.device_name);
+            mViewHolder.deviceAddress = (TextView) convertView.findViewById(R.id.device_address);
+            mViewHolder.deviceStatus = (TextView) convertView.findViewById(R.id.device_status);
+            mViewHolder.deviceProgress =
+                    (ProgressBar) convertView.findViewById(R.id.device_progress);
+            mViewHolder.deviceSelect = (CheckBox) convertView.findViewById(R.id.device_checkbox);
+            convertView.setTag(mViewHolder);
+        }
+        mViewHolder = (MyViewHolder) convertView.getTag();
+        OTAFleetDeviceModel device = mDeviceList.get(position);
+        String deviceName = device.getDeviceName();
+        if (deviceName != null && deviceName.length() > 0) {
+            mViewHolder.deviceName.setText(deviceName);
+        } else {
+            mViewHolder.deviceName.setText(R.string.device_unknown);
+        }
+        mViewHolder.deviceAddress.setText(device.getDeviceAddress());
+        mViewHolder.deviceStatus.setText(getStatusText(device));
+        if (device.getStatus() == OTAFleetDeviceModel.STATUS_UPDATING
+                && device.getRowCount() > 0) {
+            mViewHolder.deviceProgress.setVisibility(View.VISIBLE);
+            mViewHolder.deviceProgress.setMax(device.getRowCount());
+            mViewHolder.deviceProgress.setProgress(device.getRowsDone());
+        } else {
+            mViewHolder.deviceProgress.setVisibility(View.GONE);
+        }
+        mViewHolder.deviceSelect.setChecked(device.isSelected());
+
+        return convertView;
+    }
+
+    public void addDevices(ArrayList<OTAFleetDeviceModel> deviceModels) {
+        this.mDeviceList = deviceModels;
+    }
+
+    private String getStatusText(OTAFleetDeviceModel device) {
+        switch (device.getStatus()) {
+            case OTAFleetDeviceModel.STATUS_QUEUED:
+                return mContext.getResources().getString(R.string.ota_fleet_status_queued);
+            case OTAFleetDeviceModel.STATUS_CONNECTING:
+                return mContext.getResources().getString(R.string.ota_fleet_status_connecting);
+            case OTAFleetDeviceModel.STATUS_UPDATING:
+                return mContext.getResources().getString(R.string.ota_fleet_status_updating,
+                        device.getRowsDone(), device.getRowCount());
+            case OTAFleetDeviceModel.STATUS_SUCCESS:
+                return mContext.getResources().getString(R.string.ota_fleet_status_success);
+            case OTAFleetDeviceModel.STATUS_FAILED:
+                return mContext.getResources().getString(R.string.ota_fleet_status_failed,
+                        device.getMessage());
+            default:
+                return mContext.getResources().getString(R.string.ota_fleet_status_idle);
+        }
+    }
+
+    private class MyViewHolder {
+        TextView deviceName;
+        TextView deviceAddress;
+        TextView deviceStatus;
+        ProgressBar deviceProgress;
+        CheckBox deviceSelect;
+    }
+
+}
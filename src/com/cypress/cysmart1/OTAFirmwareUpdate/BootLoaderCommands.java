@@ -55,6 +55,14 @@ class BootLoaderCommands {
     public static final int EXIT_BOOTLOADER = 0x3B;
     public static final int PACKET_END = 0x17;
     public static final int MAX_DATA_SIZE = 133;
+    /**
+     * Array id and row number preceding the data of a program row command
+     */
+    public static final int PROGRAM_ROW_HEADER_SIZE = 3;
+    /**
+     * Opcode and handle preceding the value of an ATT write
+     */
+    public static final int ATT_WRITE_HEADER_SIZE = 3;
 // --Commented out by Inspection START (25/3/15 4:33 PM):
 // --Commented out by Inspection START (25/3/15 4:33 PM):
 // --Commented out by Inspection START (25/3/15 4:33 PM):
@@ -0,0 +1,160 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.OTAFirmwareUpdate;
+
+/**
+ * Response frame received from the bootloader: start of packet, status code,
+ * two byte data length, data, two byte checksum and end of packet. Reads the
+ * same fields as {@link OTAResponseReceiver}, from the raw bytes.
+ */
+class BootLoaderResponse {
+
+    private static final int BYTE_STATUS = 1;
+    private static final int BYTE_DATA_LENGTH = 2;
+    private static final int BYTE_DATA = 4;
+    private static final int MIN_RESPONSE_SIZE = 7;
+
+    private final byte[] mValue;
+
+    BootLoaderResponse(byte[] value) {
+        this.mValue = value;
+    }
+
+    /**
+     * @return false if the frame is too short to carry its data
+     */
+    boolean isValid() {
+        return mValue != null && mValue.length >= MIN_RESPONSE_SIZE
+                && mValue.length >= MIN_RESPONSE_SIZE + getDataLength();
+    }
+
+    int getStatus() {
+        return mValue[BYTE_STATUS] & 0xFF;
+    }
+
+    boolean isSuccess() {
+        return getStatus() == 0;
+    }
+
+    int getDataLength() {
+        return (mValue[BYTE_DATA_LENGTH] & 0xFF) | ((mValue[BYTE_DATA_LENGTH + 1] & 0xFF) << 8);
+    }
+
+    int getData(int position) {
+        return mValue[BYTE_DATA + position] & 0xFF;
+    }
+
+    /**
+     * Enter bootloader response
+     *
+     * @return the four silicon id bytes as hex, in received order
+     */
+    String getSiliconId() {
+        return String.format("%02X%02X%02X%02X", getData(0), getData(1), getData(2), getData(3));
+    }
+
+    String getSiliconRev() {
+        return String.format("%02X", getData(4));
+    }
+
+    /**
+     * Get flash size response
+     *
+     * @return first row of the bootloadable area
+     */
+    int getStartRow() {
+        return getData(0) | (getData(1) << 8);
+    }
+
+    int getEndRow() {
+        return getData(2) | (getData(3) << 8);
+    }
+
+    /**
+     * Verify row response
+     *
+     * @return the row checksum as two hex digits
+     */
+    String getRowCheckSum() {
+        return String.format("%02x", getData(0));
+    }
+
+    /**
+     * Verify checksum response
+     *
+     * @return true if the bootloader found the application checksum valid
+     */
+    boolean isApplicationValid() {
+        return getDataLength() > 0 && getData(0) != 0;
+    }
+
+    /**
+     * @return the CYRET name of the status code
+     */
+    String getStatusName() {
+        switch (getStatus()) {
+            case 0x00:
+                return "CYRET_SUCCESS";
+            case 0x01:
+                return "CYRET_ERR_FILE";
+            case 0x02:
+                return "CYRET_ERR_EOF";
+            case 0x03:
+                return "CYRET_ERR_LENGTH";
+            case 0x04:
+                return "CYRET_ERR_DATA";
+            case 0x05:
+                return "CYRET_ERR_CMD";
+            case 0x06:
+                return "CYRET_ERR_DEVICE";
+            case 0x07:
+                return "CYRET_ERR_VERSION";
+            case 0x08:
+                return "CYRET_ERR_CHECKSUM";
+            case 0x09:
+                return "CYRET_ERR_ARRAY";
+            case 0x0A:
+                return "CYRET_ERR_ROW";
+            case 0x0B:
+                return "CYRET_BTLDR";
+            case 0x0C:
+                return "CYRET_ERR_APP";
+            case 0x0D:
+                return "CYRET_ERR_ACTIVE";
+            case 0xFF:
+                return "CYRET_ABORT";
+            default:
+                return "CYRET_ERR_UNK";
+        }
+    }
+}
@@ -154,4 +154,31 @@ public class BootLoaderUtils {
         return b1 << 24 | b2 << 16 | b3 << 8 | b4 << 0;
     }
 
+    /**
+     * Data bytes of a send data command filling a single ATT write. Never
+     * below {@link BootLoaderCommands#MAX_DATA_SIZE}, longer commands are sent
+     * by the stack as a long write.
+     *
+     * @param mtu negotiated ATT MTU
+     * @return
+     */
+    public static int getSendDataSize(int mtu) {
+        return Math.max(BootLoaderCommands.MAX_DATA_SIZE,
+                mtu - BootLoaderCommands.ATT_WRITE_HEADER_SIZE
+                        - BootLoaderCommands.BASE_CMD_SIZE);
+    }
+
+    /**
+     * Data bytes of a program row command filling a single ATT write
+     *
+     * @param mtu negotiated ATT MTU
+     * @return
+     */
+    public static int getProgramRowDataSize(int mtu) {
+        return Math.max(BootLoaderCommands.MAX_DATA_SIZE,
+                mtu - BootLoaderCommands.ATT_WRITE_HEADER_SIZE
+                        - BootLoaderCommands.BASE_CMD_SIZE
+                        - BootLoaderCommands.PROGRAM_ROW_HEADER_SIZE);
+    }
+
 }
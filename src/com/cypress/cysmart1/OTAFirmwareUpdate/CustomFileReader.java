@@ -38,30 +38,83 @@ import com.cypress.cysmart1.CommonUtils.Logger;
 import com.cypress.cysmart1.CommonUtils.Utils;
 import com.cypress.cysmart1.DataModelClasses.OTAFlashRowModel;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStream;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
 
 /**
- * Class created to read the .cycad files.The read file is stored temporarily
+ * Class created to read the .cycad files. The file is streamed once through a
+ * small buffer: the header, the line count, the row index and the binary row
+ * data all come from that single pass. Row models are only
+ * built when a row is accessed.
  */
 class CustomFileReader {
+    /**
+     * Value of each ASCII hex digit, -1 for any other byte
+     */
+    private static final byte[] NIBBLES = new byte[128];
+
+    static {
+        Arrays.fill(NIBBLES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            NIBBLES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            NIBBLES['a' + i] = (byte) (10 + i);
+            NIBBLES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    /**
+     * Hex characters before the data of a row: array id, row number and data length
+     */
+    private static final int ROW_PREFIX_LENGTH = 10;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
     private String mSiliconID;
-    private final String mHeader;
+    private String mHeader;
     private final File mFile;
-    private int mReadingLine = 0;
+    private int mTotalLines = 0;
+
+    /**
+     * Decoded data of all rows, back to back
+     */
+    private byte[] mRowData = new byte[0];
+    private int mRowDataLength = 0;
+    /**
+     * Row index, in file order
+     */
+    private int mRowCount = 0;
+    private int[] mRowOffsets = new int[16];
+    private int[] mRowArrayIds = new int[16];
+    private int[] mRowNumbers = new int[16];
+    private int[] mRowLengths = new int[16];
+    private int[] mRowCheckSums = new int[16];
+    /**
+     * CRC32 of the file content, hex
+     */
+    private String mFileHash;
 
     //File read status updater
     private FileReadStatusUpdater mFileReadStatusUpdaterUpdater;
 
-    //Constructor
-    public CustomFileReader(String filepath) {
+    /**
+     * Reads the whole file
+     *
+     * @param filepath
+     * @throws IOException               if the file could not be read
+     * @throws IndexOutOfBoundsException if the file is not a valid .cycad file
+     */
+    public CustomFileReader(String filepath) throws IOException {
         mFile = new File(filepath);
-        mHeader = getTheHeaderString(mFile);
-        Logger.e("PATH>>>"+filepath);
+        Logger.e("PATH>>>" + filepath);
+        parse();
     }
 
     public void setFileReadStatusUpdater(FileReadStatusUpdater fileReadStatusUpdater) {
@@ -72,59 +125,37 @@ class CustomFileReader {
      * Analysing the header file and extracting the silicon ID,Check Sum Type and Silicon rev
      */
     public String[] analyseFileHeader() {
-        String[] headerData = new String[3];
-        String MSBString = Utils.getMSB(mHeader);
-        mSiliconID = getSiliconID(MSBString);
-        String mSiliconRev = getSiliconRev(MSBString);
-        String mCheckSumType = getCheckSumType(MSBString);
-        headerData[0] = mSiliconID;
-        headerData[1] = mSiliconRev;
-        headerData[2] = mCheckSumType;
+        String[] headerData = analyseFileHeader(mHeader);
+        mSiliconID = headerData[0];
         return headerData;
     }
 
+    /**
+     * Extracts the silicon ID, silicon rev and check sum type of a header line
+     *
+     * @param header
+     * @return the silicon ID, silicon rev and check sum type
+     */
+    static String[] analyseFileHeader(String header) {
+        String[] headerData = new String[3];
+        String MSBString = Utils.getMSB(header);
+        headerData[0] = getSiliconID(MSBString);
+        headerData[1] = getSiliconRev(MSBString);
+        headerData[2] = getCheckSumType(MSBString);
+        return headerData;
+    }
 
     /**
-     * Method to parse the file a read each line and put the line to a data model
+     * Returns the data rows of the file. Rows are decoded from the file buffer
+     * each time they are accessed; the list itself holds no row data.
      *
      * @return
      */
-    public ArrayList<OTAFlashRowModel> readDataLines() {
-        ArrayList<OTAFlashRowModel> flashDataLines = new ArrayList<OTAFlashRowModel>();
-        String dataLine = null;
-        try {
-            BufferedReader bufferedReader = new BufferedReader(new FileReader(mFile));
-            while ((dataLine = bufferedReader.readLine()) != null) {
-                mReadingLine++;
-                mFileReadStatusUpdaterUpdater.onFileReadProgressUpdate(mReadingLine);
-                byte[] data;
-
-                OTAFlashRowModel model = new OTAFlashRowModel();
-                if (mReadingLine != 1) {
-                    StringBuilder dataBuilder = new StringBuilder(dataLine);
-                    dataBuilder.deleteCharAt(0);
-                    model.mArrayId = Integer.parseInt(dataBuilder.substring(0, 2), 16);
-                    model.mRowNo = Utils.getMSB(dataBuilder.substring(2, 6));
-                    model.mDataLength = Integer.parseInt(dataBuilder.
-                            substring(6, 10), 16);
-                    model.mRowCheckSum = Integer.parseInt(dataBuilder.
-                            substring(dataLine.length() - 3, dataLine.length() - 1), 16);
-                    String datacharacters = dataBuilder.
-                            substring(10, dataLine.length() - 2);
-                    data = new byte[model.mDataLength];
-                    for (int i = 0, j = 0; i < model.mDataLength; i++, j += 2) {
-                        data[i] = (byte) Integer.parseInt(datacharacters.substring(j, j + 2), 16);
-                    }
-                    model.mData = data;
-                    flashDataLines.add(model);
-                }
-            }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
+    public List<OTAFlashRowModel> readDataLines() {
+        if (mFileReadStatusUpdaterUpdater != null) {
+            mFileReadStatusUpdaterUpdater.onFileReadProgressUpdate(mTotalLines);
         }
-        return flashDataLines;
+        return new RowList();
     }
 
     /**
@@ -133,54 +164,184 @@ class CustomFileReader {
      * @return totalLines
      */
     public int getTotalLines() {
-        int totalLines = 0;
-        String dataLine = "";
-        try {
-            BufferedReader bufferedReader = new BufferedReader(new FileReader(mFile));
-            while ((dataLine = bufferedReader.readLine()) != null) {
-                totalLines++;
-            }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return totalLines;
+        return mTotalLines;
     }
 
     /**
-     * Reading the first line from the file
+     * Identifies the file content, e.g. to check that an interrupted update is
+     * resumed with the same file
      *
-     * @param file
      * @return
      */
-    private String getTheHeaderString(File file) {
-        String header = "";
+    public String getFileHash() {
+        return mFileHash;
+    }
+
+    /**
+     * Single pass over the file: reads the header line, then validates and
+     * decodes each row line into the row data and the row index
+     */
+    private void parse() throws IOException {
+        // Every data byte takes two characters in the file
+        mRowData = new byte[(int) (mFile.length() / 2)];
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        byte[] line = new byte[1024];
+        int lineLength = 0;
+        CRC32 crc = new CRC32();
+        InputStream input = new FileInputStream(mFile);
         try {
-            BufferedReader bufferedReader = new BufferedReader(new FileReader(file));
-            header = bufferedReader.readLine();
-            bufferedReader.close();
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                crc.update(buffer, 0, read);
+                int start = 0;
+                while (start < read) {
+                    int end = start;
+                    while (end < read && buffer[end] != '\n') {
+                        end++;
+                    }
+                    if (lineLength + end - start > line.length) {
+                        line = Arrays.copyOf(line, Math.max(line.length * 2,
+                                lineLength + end - start));
+                    }
+                    System.arraycopy(buffer, start, line, lineLength, end - start);
+                    lineLength += end - start;
+                    if (end < read) {
+                        processLine(line, lineLength);
+                        lineLength = 0;
+                    }
+                    start = end + 1;
+                }
+            }
+            processLine(line, lineLength);
+        } finally {
+            input.close();
+        }
+        mFileHash = Long.toHexString(crc.getValue());
+        if (mHeader == null) {
+            throw new IndexOutOfBoundsException("Missing header");
+        }
+    }
+
+    private void processLine(byte[] line, int length) {
+        while (length > 0 && (line[length - 1] == '\r' || line[length - 1] == ' '
+                || line[length - 1] == '\t')) {
+            length--;
+        }
+        if (length == 0) {
+            return;
+        }
+        mTotalLines++;
+        if (mHeader == null) {
+            mHeader = new String(line, 0, length).trim();
+        } else {
+            addRow(line, length);
+        }
+    }
+
+    /**
+     * Decodes a ':' + array id + row number + data length + data + checksum line
+     */
+    private void addRow(byte[] line, int length) {
+        if (line[0] != ':' || length < 1 + ROW_PREFIX_LENGTH + 2) {
+            throw new IndexOutOfBoundsException("Invalid row at line " + mTotalLines);
+        }
+        int arrayId = hexByte(line, 1);
+        int rowNumber = (hexByte(line, 3) << 8) | hexByte(line, 5);
+        int dataLength = (hexByte(line, 7) << 8) | hexByte(line, 9);
+        if (1 + ROW_PREFIX_LENGTH + dataLength * 2 + 2 != length
+                || mRowDataLength + dataLength > mRowData.length) {
+            throw new IndexOutOfBoundsException("Invalid row length at line " + mTotalLines);
+        }
+        if (mRowCount == mRowOffsets.length) {
+            int capacity = mRowCount * 2;
+            mRowOffsets = Arrays.copyOf(mRowOffsets, capacity);
+            mRowArrayIds = Arrays.copyOf(mRowArrayIds, capacity);
+            mRowNumbers = Arrays.copyOf(mRowNumbers, capacity);
+            mRowLengths = Arrays.copyOf(mRowLengths, capacity);
+            mRowCheckSums = Arrays.copyOf(mRowCheckSums, capacity);
+        }
+        int offset = 1 + ROW_PREFIX_LENGTH;
+        for (int i = 0; i < dataLength; i++, offset += 2) {
+            mRowData[mRowDataLength + i] = (byte) hexByte(line, offset);
         }
-        return header;
+        mRowOffsets[mRowCount] = mRowDataLength;
+        mRowArrayIds[mRowCount] = arrayId;
+        mRowNumbers[mRowCount] = rowNumber;
+        mRowLengths[mRowCount] = dataLength;
+        mRowCheckSums[mRowCount] = hexByte(line, offset);
+        mRowDataLength += dataLength;
+        mRowCount++;
     }
 
-    private String getSiliconID(String header) {
+    /**
+     * Decodes the two hex characters at the offset
+     */
+    private static int hexByte(byte[] line, int offset) {
+        int high = line[offset];
+        int low = line[offset + 1];
+        int value = high < 0 || low < 0 ? -1 : (NIBBLES[high] << 4) | NIBBLES[low];
+        if (value < 0) {
+            throw new IndexOutOfBoundsException("Invalid hex digit");
+        }
+        return value;
+    }
+
+    /**
+     * Builds the data model of a row from the decoded row data
+     */
+    private OTAFlashRowModel decodeRow(int row) {
+        OTAFlashRowModel model = new OTAFlashRowModel();
+        int rowNumber = mRowNumbers[row];
+        model.mArrayId = mRowArrayIds[row];
+        // Row number bytes in swapped order, as Utils.getMSB() returns them
+        model.mRowNo = new String(new char[]{
+                HEX_DIGITS[(rowNumber >> 4) & 0x0F], HEX_DIGITS[rowNumber & 0x0F],
+                HEX_DIGITS[(rowNumber >> 12) & 0x0F], HEX_DIGITS[(rowNumber >> 8) & 0x0F]});
+        model.mDataLength = mRowLengths[row];
+        model.mData = Arrays.copyOfRange(mRowData, mRowOffsets[row],
+                mRowOffsets[row] + mRowLengths[row]);
+        model.mRowCheckSum = mRowCheckSums[row];
+        return model;
+    }
+
+    private static String getSiliconID(String header) {
         String siliconID = header.substring(4, 12);
         return siliconID;
     }
 
-    private String getSiliconRev(String header) {
+    private static String getSiliconRev(String header) {
         String siliconRev = header.substring(2, 4);
         return siliconRev;
     }
 
-    private String getCheckSumType(String header) {
+    private static String getCheckSumType(String header) {
         String checkSumType = header.substring(0, 2);
         return checkSumType;
     }
 
+    /**
+     * Read-only view of the rows. The OTA state machine asks for the same row
+     * several times, so the last decoded row is kept.
+     */
+    private class RowList extends AbstractList<OTAFlashRowModel> {
+        private int mCachedRow = -1;
+        private OTAFlashRowModel mCachedModel;
+
+        @Override
+        public OTAFlashRowModel get(int location) {
+            if (location < 0 || location >= mRowCount) {
+                throw new IndexOutOfBoundsException("Row " + location + " of " + mRowCount);
+            }
+            if (location != mCachedRow) {
+                mCachedModel = decodeRow(location);
+                mCachedRow = location;
+            }
+            return mCachedModel;
+        }
+
+        @Override
+        public int size() {
+            return mRowCount;
+        }
+    }
 }
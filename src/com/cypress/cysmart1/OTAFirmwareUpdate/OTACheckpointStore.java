@@ -0,0 +1,94 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.OTAFirmwareUpdate;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.cypress.cysmart1.CommonUtils.Constants;
+import com.cypress.cysmart1.CommonUtils.Utils;
+
+/**
+ * Keeps the {@link OTASession} checkpoint in the shared preferences. Each
+ * checkpoint is a single editor applied asynchronously.
+ */
+class OTACheckpointStore implements OTASession.CheckpointStore {
+
+    private final SharedPreferences mPreferences;
+
+    OTACheckpointStore(Context context) {
+        mPreferences = Utils.getSharedPreferences(context.getApplicationContext());
+    }
+
+    @Override
+    public void save(OTASession.Checkpoint checkpoint) {
+        mPreferences.edit()
+                .putString(Constants.PREF_OTA_RESUME_DEVICE_ADDRESS, checkpoint.getDeviceAddress())
+                .putString(Constants.PREF_OTA_RESUME_FILE_PATH, checkpoint.getFilePath())
+                .putString(Constants.PREF_OTA_RESUME_FILE_HASH, checkpoint.getFileHash())
+                .putInt(Constants.PREF_PROGRAM_ROW_NO, checkpoint.getRowNumber())
+                .putInt(Constants.PREF_ARRAY_ID, checkpoint.getArrayId())
+                .putInt(Constants.PREF_OTA_RESUME_UPGRADE_MODE, checkpoint.getUpgradeMode())
+                .putString(Constants.PREF_OTA_RESUME_NEXT_FILE_PATH, checkpoint.getNextFilePath())
+                .apply();
+    }
+
+    @Override
+    public OTASession.Checkpoint load() {
+        String deviceAddress = mPreferences.getString(Constants.PREF_OTA_RESUME_DEVICE_ADDRESS, null);
+        String filePath = mPreferences.getString(Constants.PREF_OTA_RESUME_FILE_PATH, null);
+        String fileHash = mPreferences.getString(Constants.PREF_OTA_RESUME_FILE_HASH, null);
+        if (deviceAddress == null || filePath == null || fileHash == null) {
+            return null;
+        }
+        return new OTASession.Checkpoint(deviceAddress, filePath, fileHash,
+                mPreferences.getInt(Constants.PREF_ARRAY_ID, 0),
+                mPreferences.getInt(Constants.PREF_PROGRAM_ROW_NO, 0),
+                mPreferences.getInt(Constants.PREF_OTA_RESUME_UPGRADE_MODE,
+                        OTAFirmwareUpgradeFragment.mApplicationUpgrade),
+                mPreferences.getString(Constants.PREF_OTA_RESUME_NEXT_FILE_PATH, null));
+    }
+
+    @Override
+    public void clear() {
+        mPreferences.edit()
+                .remove(Constants.PREF_OTA_RESUME_DEVICE_ADDRESS)
+                .remove(Constants.PREF_OTA_RESUME_FILE_PATH)
+                .remove(Constants.PREF_OTA_RESUME_FILE_HASH)
+                .remove(Constants.PREF_OTA_RESUME_UPGRADE_MODE)
+                .remove(Constants.PREF_OTA_RESUME_NEXT_FILE_PATH)
+                .putInt(Constants.PREF_PROGRAM_ROW_NO, 0)
+                .putInt(Constants.PREF_ARRAY_ID, 0)
+                .apply();
+    }
+}
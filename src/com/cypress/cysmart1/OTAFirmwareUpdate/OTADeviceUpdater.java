@@ -0,0 +1,314 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.OTAFirmwareUpdate;
+
+/**
+ * Bootloader protocol run against one device, from enter bootloader to exit
+ * bootloader, over the frames of an {@link OTAPacketStream}. Unlike the
+ * single device {@link OTAFirmwareUpgradeFragment} it keeps its state in an
+ * {@link OTASession} of its own and reads the raw responses, so any number of
+ * devices can be updated at the same time. The session checkpoints every
+ * verified row, an interrupted update resumes from its checkpoint. Not thread
+ * safe; all calls must come from the same thread.
+ */
+class OTADeviceUpdater {
+
+    private final OTAPacketStream mPacketStream;
+    private final String mSiliconID;
+    private final String mSiliconRev;
+    private final OTASession mSession;
+    private final Transport mTransport;
+    private final Listener mListener;
+
+    private boolean mStarted;
+    private boolean mFinished;
+    private int mStartRow;
+    private int mEndRow;
+    /**
+     * Rows are verified first and only programmed if the flash differs
+     */
+    private boolean mIncremental;
+
+    /**
+     * @param packetStream frames of the file, shared between devices
+     * @param siliconID    silicon id from the file header
+     * @param siliconRev   silicon revision from the file header
+     * @param session      state of this device, not shared with other updaters
+     * @param transport
+     * @param listener
+     */
+    OTADeviceUpdater(OTAPacketStream packetStream, String siliconID, String siliconRev,
+                     OTASession session, Transport transport, Listener listener) {
+        this.mPacketStream = packetStream;
+        this.mSiliconID = siliconID;
+        this.mSiliconRev = siliconRev;
+        this.mSession = session;
+        this.mTransport = transport;
+        this.mListener = listener;
+    }
+
+    /**
+     * Only programs the rows whose checksum read back from the flash differs
+     * from the file. Must be set before {@link #start}.
+     *
+     * @param incremental
+     */
+    void setIncremental(boolean incremental) {
+        this.mIncremental = incremental;
+    }
+
+    /**
+     * @param deviceAddress device being updated
+     * @param filePath      .cyacd file being written
+     * @param fileHash      hash of the file content, or null
+     * @param resumeRow     row of the checkpoint to resume from, or -1
+     */
+    void start(String deviceAddress, String filePath, String fileHash, int resumeRow) {
+        mSession.start(deviceAddress, filePath, fileHash, resumeRow, mIncremental, 0, null);
+        //No flash array is selected until its row range is asked for
+        mSession.setArrayId(-1);
+        mStarted = true;
+        write(BootLoaderCommands.ENTER_BOOTLOADER, mPacketStream.getEnterBootLoaderCmd());
+    }
+
+    int getRowNumber() {
+        return mSession.getRowNumber();
+    }
+
+    int getRowCount() {
+        return mPacketStream.getRowCount();
+    }
+
+    boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * Stops the update; later responses are ignored
+     */
+    void cancel() {
+        if (!mFinished) {
+            mFinished = true;
+            mSession.suspend();
+        }
+    }
+
+    /**
+     * Handles a notification of the bootloader characteristic
+     *
+     * @param value
+     */
+    void onResponse(byte[] value) {
+        if (!mStarted || mFinished || mSession.isState(BootLoaderCommands.EXIT_BOOTLOADER)) {
+            return;
+        }
+        BootLoaderResponse response = new BootLoaderResponse(value);
+        if (!response.isValid()) {
+            fail("invalid response");
+            return;
+        }
+        if (!response.isSuccess()) {
+            if (mSession.isState(BootLoaderCommands.VERIFY_ROW) && mSession.isPreVerifying()) {
+                //The row is not in flash yet
+                mSession.onPreVerifyFailed();
+                writeProgrammableData();
+                return;
+            }
+            fail(response.getStatusName());
+            return;
+        }
+        switch (mSession.getState()) {
+            case BootLoaderCommands.ENTER_BOOTLOADER:
+                if (response.getSiliconId().equalsIgnoreCase(mSiliconID)
+                        && response.getSiliconRev().equalsIgnoreCase(mSiliconRev)) {
+                    writeGetFlashSize();
+                } else {
+                    fail("silicon id mismatch");
+                }
+                break;
+            case BootLoaderCommands.GET_FLASH_SIZE:
+                mStartRow = response.getStartRow();
+                mEndRow = response.getEndRow();
+                writeNextRow();
+                break;
+            case BootLoaderCommands.SEND_DATA:
+                writeProgrammableData();
+                break;
+            case BootLoaderCommands.PROGRAM_ROW:
+                write(BootLoaderCommands.VERIFY_ROW,
+                        mPacketStream.getVerifyRowCmd(mSession.getRowNumber()));
+                break;
+            case BootLoaderCommands.VERIFY_ROW:
+                int rowNumber = mSession.getRowNumber();
+                boolean unchanged = mSession.isPreVerifying();
+                if (!mPacketStream.getRowCheckSum(rowNumber)
+                        .equalsIgnoreCase(response.getRowCheckSum())) {
+                    if (unchanged) {
+                        mSession.onPreVerifyFailed();
+                        writeProgrammableData();
+                    } else {
+                        fail("row checksum mismatch");
+                    }
+                    return;
+                }
+                boolean hasNextRow = mSession.onRowVerified(mPacketStream.getRowCount());
+                mListener.onRowVerified(this, rowNumber + 1, mPacketStream.getRowCount(),
+                        unchanged);
+                if (hasNextRow) {
+                    writeNextRow();
+                } else {
+                    write(BootLoaderCommands.VERIFY_CHECK_SUM,
+                            mPacketStream.getVerifyCheckSumCmd());
+                }
+                break;
+            case BootLoaderCommands.VERIFY_CHECK_SUM:
+                if (response.isApplicationValid()) {
+                    mSession.setState(BootLoaderCommands.EXIT_BOOTLOADER);
+                    mTransport.writeExitCommand(mPacketStream.getExitBootloaderCmd());
+                } else {
+                    fail("application checksum invalid");
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Must be called once the exit bootloader frame is written; the device
+     * resets without responding
+     */
+    void onExitCommandWritten() {
+        if (!mFinished && mSession.isState(BootLoaderCommands.EXIT_BOOTLOADER)) {
+            mFinished = true;
+            mSession.complete();
+            mListener.onUpdateComplete(this);
+        }
+    }
+
+    /**
+     * Fails the update on a transport error. The checkpoint is kept so the
+     * update can be resumed.
+     *
+     * @param message
+     */
+    void fail(String message) {
+        if (mFinished) {
+            return;
+        }
+        mFinished = true;
+        mSession.suspend();
+        mListener.onUpdateFailed(this, message);
+    }
+
+    private void writeGetFlashSize() {
+        int rowNumber = mSession.getRowNumber();
+        mSession.setArrayId(mPacketStream.getArrayId(rowNumber));
+        write(BootLoaderCommands.GET_FLASH_SIZE, mPacketStream.getGetFlashSizeCmd(rowNumber));
+    }
+
+    /**
+     * Starts the current row, verifying it first when resuming or in
+     * incremental mode
+     */
+    private void writeNextRow() {
+        int rowNumber = mSession.getRowNumber();
+        if (mSession.isPreVerifying()
+                && mPacketStream.getArrayId(rowNumber) == mSession.getArrayId()) {
+            write(BootLoaderCommands.VERIFY_ROW, mPacketStream.getVerifyRowCmd(rowNumber));
+        } else {
+            //A new flash array first asks for its row range
+            writeProgrammableData();
+        }
+    }
+
+    private void writeProgrammableData() {
+        int rowNumber = mSession.getRowNumber();
+        if (mPacketStream.getArrayId(rowNumber) != mSession.getArrayId()) {
+            //Rows of another flash array, asking for its row range first
+            writeGetFlashSize();
+            return;
+        }
+        //The stream keeps the row number shifted into the upper half word
+        int rowNo = mPacketStream.getRowNumber(rowNumber) >>> 16;
+        if (rowNo < mStartRow || rowNo > mEndRow) {
+            fail("row out of bounds");
+            return;
+        }
+        //The row start position of the session counts the packets of the row
+        byte[][] packets = mPacketStream.getProgramRowCmds(rowNumber);
+        int packetPosition = mSession.getRowStartPosition();
+        byte[] packet = packets[packetPosition];
+        if (packetPosition == packets.length - 1) {
+            mSession.setRowStartPosition(0);
+            write(BootLoaderCommands.PROGRAM_ROW, packet);
+        } else {
+            mSession.setRowStartPosition(packetPosition + 1);
+            write(BootLoaderCommands.SEND_DATA, packet);
+        }
+    }
+
+    private void write(int state, byte[] frame) {
+        mSession.setState(state);
+        mTransport.writeCommand(frame);
+    }
+
+    /**
+     * Delivers the frames to the device
+     */
+    interface Transport {
+        /**
+         * Writes a frame the bootloader answers with a notification
+         */
+        void writeCommand(byte[] frame);
+
+        /**
+         * Writes the exit bootloader frame, which has no response.
+         * {@link #onExitCommandWritten()} must follow once it is written.
+         */
+        void writeExitCommand(byte[] frame);
+    }
+
+    interface Listener {
+        /**
+         * @param unchanged true if the flash already held the row and it was
+         *                  not programmed
+         */
+        void onRowVerified(OTADeviceUpdater updater, int rowsDone, int rowCount,
+                           boolean unchanged);
+
+        void onUpdateComplete(OTADeviceUpdater updater);
+
+        void onUpdateFailed(OTADeviceUpdater updater, String message);
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.OTAFirmwareUpdate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Index of the .cyacd files below a directory, kept in a file so the file
+ * list shows up without searching the storage. A refresh only lists the
+ * directories modified since the previous one and only reads the files whose
+ * size or modification time changed; a file is read once for its header and
+ * row count. Calls may come from any thread.
+ */
+class OTAFileIndex {
+
+    private static final String FILE_EXTENSION = ".cyacd";
+    private static final int MAGIC = 0x43594649;
+    private static final int VERSION = 1;
+    /**
+     * Directories modified this close to the previous refresh are listed
+     * again, the modification time having a coarse resolution on some file
+     * systems
+     */
+    private static final long MODIFICATION_TIME_RESOLUTION = 2000;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final File mIndexFile;
+    private final HashMap<String, Directory> mDirectories = new HashMap<String, Directory>();
+    private final HashMap<String, Entry> mEntries = new HashMap<String, Entry>();
+    private boolean mLoaded;
+
+    /**
+     * @param indexFile file the index is kept in
+     */
+    OTAFileIndex(File indexFile) {
+        this.mIndexFile = indexFile;
+    }
+
+    /**
+     * Reads the index as saved by the last refresh
+     *
+     * @return the indexed files
+     */
+    synchronized List<Entry> load() {
+        if (!mLoaded) {
+            mLoaded = true;
+            try {
+                read();
+            } catch (IOException e) {
+                //Rebuilt by the next refresh
+                mDirectories.clear();
+                mEntries.clear();
+            }
+        }
+        return new ArrayList<Entry>(mEntries.values());
+    }
+
+    /**
+     * Brings the index up to date with the files below the directory and
+     * saves it
+     *
+     * @param root
+     * @return the indexed files
+     */
+    synchronized List<Entry> refresh(File root) {
+        load();
+        long refreshTime = System.currentTimeMillis();
+        HashMap<String, Directory> directories = new HashMap<String, Directory>();
+        HashMap<String, Entry> entries = new HashMap<String, Entry>();
+        boolean changed = scanDirectory(root, refreshTime, new HashSet<String>(), directories,
+                entries);
+        changed |= directories.size() != mDirectories.size()
+                || entries.size() != mEntries.size();
+        mDirectories.clear();
+        mDirectories.putAll(directories);
+        mEntries.clear();
+        mEntries.putAll(entries);
+        if (changed) {
+            try {
+                write();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return new ArrayList<Entry>(mEntries.values());
+    }
+
+    /**
+     * @return true if a directory listing or a file entry changed
+     */
+    private boolean scanDirectory(File directory, long refreshTime, HashSet<String> visited,
+                                  HashMap<String, Directory> directories,
+                                  HashMap<String, Entry> entries) {
+        String path = directory.getAbsolutePath();
+        long modified = directory.lastModified();
+        //Guards against directory links looping back
+        if (modified == 0 || !visited.add(path)) {
+            return false;
+        }
+        boolean changed = false;
+        Directory cached = mDirectories.get(path);
+        if (cached == null || cached.mModified != modified
+                || modified > cached.mListed - MODIFICATION_TIME_RESOLUTION) {
+            File[] files = directory.listFiles();
+            if (files == null) {
+                return cached != null;
+            }
+            cached = new Directory(modified, refreshTime);
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    cached.mSubdirectories.add(file.getName());
+                } else if (file.getName().toLowerCase(Locale.US).endsWith(FILE_EXTENSION)) {
+                    cached.mFiles.add(file.getName());
+                }
+            }
+            changed = true;
+        }
+        directories.put(path, cached);
+        for (String name : cached.mFiles) {
+            File file = new File(directory, name);
+            Entry entry = mEntries.get(file.getAbsolutePath());
+            if (entry == null || entry.mSize != file.length()
+                    || entry.mModified != file.lastModified()) {
+                entry = readEntry(file);
+                changed = true;
+            }
+            entries.put(entry.mPath, entry);
+        }
+        for (String name : cached.mSubdirectories) {
+            changed |= scanDirectory(new File(directory, name), refreshTime, visited,
+                    directories, entries);
+        }
+        return changed;
+    }
+
+    /**
+     * Reads the header and counts the rows of a file
+     */
+    private static Entry readEntry(File file) {
+        Entry entry = new Entry(file.getAbsolutePath(), file.length(), file.lastModified());
+        StringBuilder header = new StringBuilder();
+        boolean headerRead = false;
+        boolean lineStart = true;
+        int rowCount = 0;
+        InputStream input = null;
+        try {
+            input = new FileInputStream(file);
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer[i];
+                    if (!headerRead) {
+                        if (b == '\n') {
+                            headerRead = header.toString().trim().length() > 0;
+                        } else {
+                            header.append((char) (b & 0xFF));
+                        }
+                    } else if (lineStart && b == ':') {
+                        rowCount++;
+                    }
+                    lineStart = b == '\n';
+                }
+            }
+            String[] headerData = CustomFileReader.analyseFileHeader(header.toString().trim());
+            entry.mSiliconId = headerData[0];
+            entry.mSiliconRev = headerData[1];
+            entry.mCheckSumType = headerData[2];
+            entry.mRowCount = rowCount;
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (IndexOutOfBoundsException e) {
+            //Not a valid file, listed without header data
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return entry;
+    }
+
+    private void read() throws IOException {
+        if (!mIndexFile.exists()) {
+            return;
+        }
+        DataInputStream input = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(mIndexFile)));
+        try {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                return;
+            }
+            int directoryCount = input.readInt();
+            for (int i = 0; i < directoryCount; i++) {
+                String path = input.readUTF();
+                Directory directory = new Directory(input.readLong(), input.readLong());
+                int subdirectoryCount = input.readInt();
+                for (int j = 0; j < subdirectoryCount; j++) {
+                    directory.mSubdirectories.add(input.readUTF());
+                }
+                int fileCount = input.readInt();
+                for (int j = 0; j < fileCount; j++) {
+                    directory.mFiles.add(input.readUTF());
+                }
+                mDirectories.put(path, directory);
+            }
+            int entryCount = input.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                Entry entry = new Entry(input.readUTF(), input.readLong(), input.readLong());
+                if (input.readBoolean()) {
+                    entry.mSiliconId = input.readUTF();
+                    entry.mSiliconRev = input.readUTF();
+                    entry.mCheckSumType = input.readUTF();
+                    entry.mRowCount = input.readInt();
+                }
+                mEntries.put(entry.mPath, entry);
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    private void write() throws IOException {
+        File tempFile = new File(mIndexFile.getPath() + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tempFile)));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(mDirectories.size());
+            for (java.util.Map.Entry<String, Directory> item : mDirectories.entrySet()) {
+                Directory directory = item.getValue();
+                output.writeUTF(item.getKey());
+                output.writeLong(directory.mModified);
+                output.writeLong(directory.mListed);
+                output.writeInt(directory.mSubdirectories.size());
+                for (String name : directory.mSubdirectories) {
+                    output.writeUTF(name);
+                }
+                output.writeInt(directory.mFiles.size());
+                for (String name : directory.mFiles) {
+                    output.writeUTF(name);
+                }
+            }
+            output.writeInt(mEntries.size());
+            for (Entry entry : mEntries.values()) {
+                output.writeUTF(entry.mPath);
+                output.writeLong(entry.mSize);
+                output.writeLong(entry.mModified);
+                output.writeBoolean(entry.isValid());
+                if (entry.isValid()) {
+                    output.writeUTF(entry.mSiliconId);
+                    output.writeUTF(entry.mSiliconRev);
+                    output.writeUTF(entry.mCheckSumType);
+                    output.writeInt(entry.mRowCount);
+                }
+            }
+        } finally {
+            output.close();
+        }
+        //Replaces the index in one step so a reader never sees half of it
+        if (!tempFile.renameTo(mIndexFile)) {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Listing of a directory, as of its modification time
+     */
+    private static class Directory {
+        private final long mModified;
+        private final long mListed;
+        private final ArrayList<String> mSubdirectories = new ArrayList<String>();
+        private final ArrayList<String> mFiles = new ArrayList<String>();
+
+        Directory(long modified, long listed) {
+            this.mModified = modified;
+            this.mListed = listed;
+        }
+    }
+
+    /**
+     * Indexed file. Header data is null for a file that could not be parsed.
+     */
+    static class Entry {
+        private final String mPath;
+        private final long mSize;
+        private final long mModified;
+        private String mSiliconId;
+        private String mSiliconRev;
+        private String mCheckSumType;
+        private int mRowCount;
+
+        Entry(String path, long size, long modified) {
+            this.mPath = path;
+            this.mSize = size;
+            this.mModified = modified;
+        }
+
+        String getPath() {
+            return mPath;
+        }
+
+        String getName() {
+            return new File(mPath).getName();
+        }
+
+        String getParent() {
+            return new File(mPath).getParent();
+        }
+
+        long getSize() {
+            return mSize;
+        }
+
+        long getModified() {
+            return mModified;
+        }
+
+        String getSiliconId() {
+            return mSiliconId;
+        }
+
+        String getSiliconRev() {
+            return mSiliconRev;
+        }
+
+        String getCheckSumType() {
+            return mCheckSumType;
+        }
+
+        int getRowCount() {
+            return mRowCount;
+        }
+
+        boolean isValid() {
+            return mSiliconId != null;
+        }
+    }
+}
@@ -39,17 +39,17 @@ import android.app.AlertDialog;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.pm.ActivityInfo;
-import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Environment;
 import android.view.View;
-import android.webkit.MimeTypeMap;
 import android.widget.AdapterView;
 import android.widget.Button;
 import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.cypress.cysmart1.BLEConnectionServices.BluetoothLeService;
 import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.Logger;
 import com.cypress.cysmart1.CommonUtils.Utils;
@@ -59,6 +59,10 @@ import com.cypress.cysmart1.R;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
 
 /**
  * Fragment that display the firmware files.User can select the firmware file for upgrade
@@ -67,6 +71,7 @@ public class OTAFilesListingActivity extends Activity {
 
     //Constants
     private static int mFilesCount;
+    private static final String FILE_INDEX_NAME = "ota_file_index";
     private final ArrayList<OTAFileModel> mArrayListFiles = new ArrayList<OTAFileModel>();
     private final ArrayList<String> mArrayListPaths = new ArrayList<String>();
     private final ArrayList<String> mArrayListFileNames = new ArrayList<String>();
@@ -77,6 +82,7 @@ public class OTAFilesListingActivity extends Activity {
     private Button mUpgrade;
     private Button mNext;
     private TextView mHeading;
+    private FileIndexLoader mFileIndexLoader;
 
     public static Boolean mApplicationInBackground = false;
 
@@ -111,7 +117,9 @@ public class OTAFilesListingActivity extends Activity {
         mFirmwareAdapter = new OTAFileListAdapter(this,
                 mArrayListFiles, mFilesCount);
         mFileListView.setAdapter(mFirmwareAdapter);
-        searchRequiredFile(filedir);
+        mFileIndexLoader = new FileIndexLoader(new OTAFileIndex(
+                new File(getFilesDir(), FILE_INDEX_NAME)), filedir);
+        mFileIndexLoader.execute();
 
         if (mFilesCount == OTAFirmwareUpgradeFragment.mApplicationAndStackSeparate) {
             mHeading.setText(getResources().getString((R.string.ota_stack_file)));
@@ -224,37 +232,56 @@ public class OTAFilesListingActivity extends Activity {
 
 
     /**
-     * Method to search phone/directory for the .cyacd files
+     * Lists the indexed files, the files compatible with the silicon ID of
+     * the connected device first. Files already picked are left out and the
+     * selection is kept.
      *
-     * @param dir
+     * @param entries
      */
-    void searchRequiredFile(File dir) {
-        if (dir.exists()) {
-            String filePattern = "cyacd";
-            File[] allFilesList = dir.listFiles();
-            for (int pos = 0; pos < allFilesList.length; pos++) {
-                File analyseFile = allFilesList[pos];
-                if (analyseFile != null) {
-                    if (analyseFile.isDirectory()) {
-                        searchRequiredFile(analyseFile);
-                    } else {
-                        Uri selectedUri = Uri.fromFile(analyseFile);
-                        String fileExtension
-                                = MimeTypeMap.getFileExtensionFromUrl(selectedUri.toString());
-                        if (fileExtension.equalsIgnoreCase(filePattern)) {
-                            OTAFileModel fileModel = new OTAFileModel(analyseFile.getName(),
-                                    analyseFile.getAbsolutePath(), false, analyseFile.getParent());
-                            mArrayListFiles.add(fileModel);
-                            mFirmwareAdapter.addFiles(mArrayListFiles);
-                            mFirmwareAdapter.notifyDataSetChanged();
-                        }
-                    }
-
+    private void showFiles(List<OTAFileIndex.Entry> entries) {
+        final String siliconId = getConnectedSiliconId();
+        Collections.sort(entries, new Comparator<OTAFileIndex.Entry>() {
+            @Override
+            public int compare(OTAFileIndex.Entry lhs, OTAFileIndex.Entry rhs) {
+                boolean lhsCompatible = siliconId != null
+                        && siliconId.equalsIgnoreCase(lhs.getSiliconId());
+                boolean rhsCompatible = siliconId != null
+                        && siliconId.equalsIgnoreCase(rhs.getSiliconId());
+                if (lhsCompatible != rhsCompatible) {
+                    return lhsCompatible ? -1 : 1;
                 }
+                return lhs.getName().compareToIgnoreCase(rhs.getName());
+            }
+        });
+        HashSet<String> selectedPaths = new HashSet<String>();
+        for (OTAFileModel model : mArrayListFiles) {
+            if (model.isSelected()) {
+                selectedPaths.add(model.getFilePath());
+            }
+        }
+        mArrayListFiles.clear();
+        for (OTAFileIndex.Entry entry : entries) {
+            if (!mArrayListPaths.contains(entry.getPath())) {
+                mArrayListFiles.add(new OTAFileModel(entry.getName(), entry.getPath(),
+                        selectedPaths.contains(entry.getPath()), entry.getParent()));
             }
-        } else {
-            Toast.makeText(this, "Directory does not exist", Toast.LENGTH_SHORT).show();
         }
+        mFirmwareAdapter.addFiles(mArrayListFiles);
+        mFirmwareAdapter.notifyDataSetChanged();
+    }
+
+    /**
+     * @return silicon ID the connected device reported when it was last
+     * updated, or null
+     */
+    private String getConnectedSiliconId() {
+        String address = BluetoothLeService.getmBluetoothDeviceAddress();
+        if (address == null) {
+            return null;
+        }
+        String siliconId = Utils.getStringSharedPreference(this,
+                Constants.PREF_OTA_SILICON_ID + address);
+        return siliconId.length() > 0 ? siliconId : null;
     }
 
     void alertFileSelection(String message) {
@@ -282,6 +309,55 @@ public class OTAFilesListingActivity extends Activity {
         mApplicationInBackground = true;
         super.onPause();
     }
+
+    @Override
+    protected void onDestroy() {
+        mFileIndexLoader.cancel(false);
+        super.onDestroy();
+    }
+
+    /**
+     * AsyncTask class showing the files of the saved index, then refreshing
+     * the index with the files on the storage
+     */
+    private class FileIndexLoader extends AsyncTask<Void, List<OTAFileIndex.Entry>,
+            List<OTAFileIndex.Entry>> {
+        private final OTAFileIndex mFileIndex;
+        private final File mDirectory;
+
+        FileIndexLoader(OTAFileIndex fileIndex, File directory) {
+            this.mFileIndex = fileIndex;
+            this.mDirectory = directory;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        protected List<OTAFileIndex.Entry> doInBackground(Void... params) {
+            publishProgress(mFileIndex.load());
+            if (!mDirectory.exists()) {
+                return null;
+            }
+            return mFileIndex.refresh(mDirectory);
+        }
+
+        @Override
+        protected void onProgressUpdate(List<OTAFileIndex.Entry>... entries) {
+            if (!isCancelled()) {
+                showFiles(entries[0]);
+            }
+        }
+
+        @Override
+        protected void onPostExecute(List<OTAFileIndex.Entry> entries) {
+            if (entries == null) {
+                Toast.makeText(OTAFilesListingActivity.this, "Directory does not exist",
+                        Toast.LENGTH_SHORT).show();
+                showFiles(new ArrayList<OTAFileIndex.Entry>());
+            } else {
+                showFiles(entries);
+            }
+        }
+    }
 }
 
 
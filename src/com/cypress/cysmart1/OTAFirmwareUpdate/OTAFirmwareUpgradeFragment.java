@@ -44,8 +44,10 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.NotificationCompat;
 import android.view.LayoutInflater;
@@ -55,6 +57,8 @@ import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.CompoundButton;
 import android.widget.LinearLayout;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
@@ -70,6 +74,8 @@ import com.cypress.cysmart1.DataModelClasses.OTAFlashRowModel;
 import com.cypress.cysmart1.HomePageActivity;
 import com.cypress.cysmart1.R;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
@@ -98,7 +104,9 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
     NotificationCompat.Builder mBuilder;
     //UI Elements
     private TextView mProgressText;
+    private TextView mTransferStatsText;
     private Button mStopUpgradeButton;
+    private CheckBox mIncrementalUpdate;
     private TextProgressBar mProgressTop;
     private TextProgressBar mProgressBottom;
     private TextView mFileNameTop;
@@ -113,30 +121,44 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
     //File read variables
     private int mTotalLines = 0;
     //CYCAD file data list
-    private ArrayList<OTAFlashRowModel> mFlashRowList;
+    private List<OTAFlashRowModel> mFlashRowList;
     //   flags
     private boolean mHandlerFlag = true;
     //Current Upgrade file path
     private String mCurrentFilePath;
     private int mProgressBarPosition = 0;
+    //Upgrade option being written, kept in the resume checkpoint
+    private int mUpgradeMode = mApplicationUpgrade;
     private int mStartRow;
     private int mEndRow;
+    //Bootloader state machine
+    private final OTASession mOTASession = OTASession.getInstance();
+    //Hash of the file being written
+    private String mFileHash;
+    //Interrupted update to resume, set until programming starts
+    private OTASession.Checkpoint mResumeCheckpoint;
+    //Command frames of the file, compiled before the transfer starts
+    private OTAPacketStream mPacketStream;
+    //Second file of a separate stack and application update, prepared in the background
+    private OTAImagePreparer.PreparedImage mPreparedImage;
     private BroadcastReceiver mGattOTAStatusReceiver = new BroadcastReceiver() {
 
         @Override
         public void onReceive(Context context, Intent intent) {
 
             /**
-             * Shared preference to hold the state of the boot loader
+             * Session holding the state of the boot loader
              */
             synchronized (this) {
-                final String sharedPrefStatus = Utils.getStringSharedPreference(getActivity(),
-                        Constants.PREF_BOOTLOADER_STATE);
+                final int bootloaderState = mOTASession.getState();
                 final String action = intent.getAction();
                 Bundle extras = intent.getExtras();
+                if (BootLoaderUtils.ACTION_OTA_STATUS.equals(action) && mOtaFirmwareWrite != null) {
+                    mOtaFirmwareWrite.onResponseReceived();
+                }
                 if (BootLoaderUtils.ACTION_OTA_STATUS.equals(action)) {
 
-                    if (sharedPrefStatus.equalsIgnoreCase("" + BootLoaderCommands.ENTER_BOOTLOADER)) {
+                    if (bootloaderState == BootLoaderCommands.ENTER_BOOTLOADER) {
                         String siliconIDReceived, siliconRevReceived;
                         if (extras.containsKey(Constants.EXTRA_SILICON_ID)
                                 && extras.containsKey(Constants.EXTRA_SILICON_REV)) {
@@ -148,21 +170,22 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
                                  * SiliconID and SiliconRev Verified
                                  * Sending Next coommand
                                  */
+                                //Sorts the files of this device first when picking a file
+                                Utils.setStringSharedPreference(getActivity(),
+                                        Constants.PREF_OTA_SILICON_ID
+                                                + BluetoothLeService.getmBluetoothDeviceAddress(),
+                                        siliconIDReceived);
 
-                                //Getting the arrayID
-                                OTAFlashRowModel modelData = mFlashRowList.get(0);
-                                byte[] data = new byte[1];
-                                data[0] = (byte) modelData.mArrayId;
-                                //Saving the array id locally
-                                Utils.setIntSharedPreference(getActivity(), Constants.PREF_ARRAY_ID, Byte.valueOf(data[0]));
-                                int dataLength = data.length;
+                                //Saving the arrayID of the first row to write locally
+                                int row = mOTASession.getRowNumber();
+                                mOTASession.setArrayId(mPacketStream.getArrayId(row));
                                 /**
                                  * Writing the next command
-                                 * Changing the shared preference value
+                                 * Changing the session state
                                  */
-                                mOtaFirmwareWrite.OTAGetFlashSizeCmd(data, mCheckSumType, dataLength);
-                                Utils.setStringSharedPreference(getActivity(),
-                                        Constants.PREF_BOOTLOADER_STATE, "" + BootLoaderCommands.GET_FLASH_SIZE);
+                                mOtaFirmwareWrite.writeCommand(
+                                        mPacketStream.getGetFlashSizeCmd(row), false);
+                                mOTASession.setState(BootLoaderCommands.GET_FLASH_SIZE);
                                 mProgressText.setText(getActivity().getResources().getText(R.string.ota_get_flash_size));
                             } else {
                                 /**
@@ -173,7 +196,7 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
                             }
                         }
 
-                    } else if (sharedPrefStatus.equalsIgnoreCase("" + BootLoaderCommands.GET_FLASH_SIZE)) {
+                    } else if (bootloaderState == BootLoaderCommands.GET_FLASH_SIZE) {
                         /**
                          * verifying the rows to be programmed within the bootloadable area of flash
                          * not done for time being
@@ -183,24 +206,20 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
                             mStartRow = Integer.parseInt(extras.getString(Constants.EXTRA_START_ROW));
                             mEndRow = Integer.parseInt(extras.getString(Constants.EXTRA_END_ROW));
                         }
-                        int PROGRAM_ROW_NO = Utils.getIntSharedPreference(getActivity(),
-                                Constants.PREF_PROGRAM_ROW_NO);
-                        writeProgrammableData(PROGRAM_ROW_NO);
-                    } else if (sharedPrefStatus.equalsIgnoreCase("" + BootLoaderCommands.SEND_DATA)) {
+                        writeNextRow(mOTASession.getRowNumber());
+                    } else if (bootloaderState == BootLoaderCommands.SEND_DATA) {
                         /**
                          * verifying the status and sending the next command
-                         * Changing the shared preference value
+                         * Changing the session state
                          */
                         if (extras.containsKey(Constants.EXTRA_SEND_DATA_ROW_STATUS)) {
                             String statusReceived = extras.getString(Constants.EXTRA_SEND_DATA_ROW_STATUS);
                             if (statusReceived.equalsIgnoreCase("00")) {
                                 //Succes status received.Send programmable data
-                                int PROGRAM_ROW_NO = Utils.getIntSharedPreference(getActivity(),
-                                        Constants.PREF_PROGRAM_ROW_NO);
-                                writeProgrammableData(PROGRAM_ROW_NO);
+                                writeProgrammableData(mOTASession.getRowNumber());
                             }
                         }
-                    } else if (sharedPrefStatus.equalsIgnoreCase("" + BootLoaderCommands.PROGRAM_ROW)) {
+                    } else if (bootloaderState == BootLoaderCommands.PROGRAM_ROW) {
                         String statusReceived;
                         if (extras.containsKey(Constants.EXTRA_PROGRAM_ROW_STATUS)) {
                             statusReceived = extras.getString(Constants.EXTRA_PROGRAM_ROW_STATUS);
@@ -209,22 +228,18 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
                                  * Program Row Status Verified
                                  * Sending Next coommand
                                  */
-                                int PROGRAM_ROW = Utils.getIntSharedPreference(getActivity(),
-                                        Constants.PREF_PROGRAM_ROW_NO);
-                                OTAFlashRowModel modelData = mFlashRowList.get(PROGRAM_ROW);
-                                long rowMSB = Long.parseLong(modelData.mRowNo.substring(0, 2), 16);
-                                long rowLSB = Long.parseLong(modelData.mRowNo.substring(2, 4), 16);
+                                int PROGRAM_ROW = mOTASession.getRowNumber();
                                 /**
                                  * Writing the next command
-                                 * Changing the shared preference value
+                                 * Changing the session state
                                  */
-                                mOtaFirmwareWrite.OTAVerifyRowCmd(rowMSB, rowLSB, modelData, mCheckSumType);
-                                Utils.setStringSharedPreference(getActivity(),
-                                        Constants.PREF_BOOTLOADER_STATE, "" + BootLoaderCommands.VERIFY_ROW);
+                                mOtaFirmwareWrite.writeCommand(
+                                        mPacketStream.getVerifyRowCmd(PROGRAM_ROW), false);
+                                mOTASession.setState(BootLoaderCommands.VERIFY_ROW);
                                 mProgressText.setText(getActivity().getResources().getText(R.string.ota_verify_row));
                             }
                         }
-                    } else if (sharedPrefStatus.equalsIgnoreCase("" + BootLoaderCommands.VERIFY_ROW)) {
+                    } else if (bootloaderState == BootLoaderCommands.VERIFY_ROW) {
                         String statusReceived, checksumReceived;
                         if (extras.containsKey(Constants.EXTRA_VERIFY_ROW_STATUS)
                                 && extras.containsKey(Constants.EXTRA_VERIFY_ROW_CHECKSUM)) {
@@ -236,71 +251,50 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
                                  * Program Row Status Verified
                                  * Sending Next coommand
                                  */
-                                int PROGRAM_ROW_NO = Utils.getIntSharedPreference(getActivity(),
-                                        Constants.PREF_PROGRAM_ROW_NO);
-                                //Getting the arrayID
-                                OTAFlashRowModel modelData = mFlashRowList.get(PROGRAM_ROW_NO);
-                                long rowMSB = Long.parseLong(modelData.mRowNo.substring(0, 2), 16);
-                                long rowLSB = Long.parseLong(modelData.mRowNo.substring(2, 4), 16);
-
-
-                                byte[] checkSumVerify = new byte[6];
-                                checkSumVerify[0] = (byte) modelData.mRowCheckSum;
-                                checkSumVerify[1] = (byte) modelData.mArrayId;
-                                checkSumVerify[2] = (byte) rowMSB;
-                                checkSumVerify[3] = (byte) rowLSB;
-                                checkSumVerify[4] = (byte) (modelData.mDataLength);
-                                checkSumVerify[5] = (byte) ((modelData.mDataLength) >> 8);
-                                String fileCheckSumCalculated = Integer.toHexString(BootLoaderUtils.calculateCheckSumVerifyRow(6, checkSumVerify));
-                                int fileCheckSumCalculatedLength = fileCheckSumCalculated.length();
-                                String fileCheckSumByte = null;
-//                                Logger.e("Checksum>>" + fileCheckSumCalculated);
-//                                Logger.e("Checksum received>> " + checksumReceived);
-                                if (fileCheckSumCalculatedLength >= 2) {
-                                    fileCheckSumByte = fileCheckSumCalculated.substring((fileCheckSumCalculatedLength - 2),
-                                            fileCheckSumCalculatedLength);
-                                } else {
-                                    fileCheckSumByte = "0" + fileCheckSumCalculated;
-                                }
+                                int PROGRAM_ROW_NO = mOTASession.getRowNumber();
+                                String fileCheckSumByte = mPacketStream.getRowCheckSum(PROGRAM_ROW_NO);
                                 if (fileCheckSumByte.equalsIgnoreCase(checksumReceived)) {
+                                    OTATransferStats stats = mOtaFirmwareWrite.getTransferStats();
+                                    if (stats != null) {
+                                        stats.onRowVerified(mOTASession.isPreVerifying(),
+                                                SystemClock.elapsedRealtime());
+                                        showTransferStats(stats);
+                                    }
                                     PROGRAM_ROW_NO = PROGRAM_ROW_NO + 1;
                                     //Shows ProgressBar status
                                     showProgress(mProgressBarPosition, PROGRAM_ROW_NO, mFlashRowList.size());
-                                    if (PROGRAM_ROW_NO < mFlashRowList.size()) {
-                                        Utils.setIntSharedPreference(getActivity(),
-                                                Constants.PREF_PROGRAM_ROW_NO,
-                                                PROGRAM_ROW_NO);
-                                        Utils.setIntSharedPreference(getActivity(),
-                                                Constants.PREF_PROGRAM_ROW_START_POS,
-                                                0);
-                                        writeProgrammableData(PROGRAM_ROW_NO);
-                                    }
-                                    if (PROGRAM_ROW_NO == mFlashRowList.size()) {
-                                        Utils.setIntSharedPreference(getActivity(),
-                                                Constants.PREF_PROGRAM_ROW_NO,
-                                                0);
-                                        Utils.setIntSharedPreference(getActivity(),
-                                                Constants.PREF_PROGRAM_ROW_START_POS,
-                                                0);
+                                    /**
+                                     * Row boundary, the session checkpoints the next row
+                                     * or moves on to the checksum verification
+                                     */
+                                    if (mOTASession.onRowVerified(mFlashRowList.size())) {
+                                        writeNextRow(mOTASession.getRowNumber());
+                                    } else {
                                         /**
                                          * Writing the next command
-                                         * Changing the shared preference value
                                          */
-                                        Utils.setStringSharedPreference(getActivity(),
-                                                Constants.PREF_BOOTLOADER_STATE, "" +
-                                                        BootLoaderCommands.VERIFY_CHECK_SUM);
-                                        mOtaFirmwareWrite.OTAVerifyCheckSumCmd(mCheckSumType);
+                                        mOtaFirmwareWrite.writeCommand(
+                                                mPacketStream.getVerifyCheckSumCmd(), false);
                                         mProgressText.setText(getActivity().getResources().
                                                 getText(R.string.ota_verify_checksum));
                                     }
+                                } else if (mOTASession.isPreVerifying()) {
+                                    /**
+                                     * The row in flash differs from the file, programming it
+                                     */
+                                    mOTASession.onPreVerifyFailed();
+                                    writeProgrammableData(PROGRAM_ROW_NO);
                                 } else {
                                     showErrorDialogMessage(getActivity().getResources().getString(
                                             R.string.alert_message_checksum_error), false);
                                 }
+                            } else if (mOTASession.isPreVerifying()) {
+                                mOTASession.onPreVerifyFailed();
+                                writeProgrammableData(mOTASession.getRowNumber());
                             }
                         }
 
-                    } else if (sharedPrefStatus.equalsIgnoreCase("" + BootLoaderCommands.VERIFY_CHECK_SUM)) {
+                    } else if (bootloaderState == BootLoaderCommands.VERIFY_CHECK_SUM) {
                         String statusReceived;
                         if (extras.containsKey(Constants.EXTRA_VERIFY_CHECKSUM_STATUS)) {
                             statusReceived = extras.getString(Constants.EXTRA_VERIFY_CHECKSUM_STATUS);
@@ -309,22 +303,22 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
                                  * Verify Status Verified
                                  * Sending Exit bootloader coommand
                                  */
-                                mOtaFirmwareWrite.OTAExitBootloaderCmd(mCheckSumType);
-                                Utils.setStringSharedPreference(getActivity(),
-                                        Constants.PREF_BOOTLOADER_STATE, "" + BootLoaderCommands.EXIT_BOOTLOADER);
+                                mOtaFirmwareWrite.writeCommand(
+                                        mPacketStream.getExitBootloaderCmd(), true);
+                                mOTASession.setState(BootLoaderCommands.EXIT_BOOTLOADER);
                                 mProgressText.setText(getActivity().getResources().getText(R.string.ota_end_bootloader));
                             }
                         }
 
-                    } else if (sharedPrefStatus.equalsIgnoreCase("" + BootLoaderCommands.EXIT_BOOTLOADER)) {
-                        String statusReceived;
-                        if (extras.containsKey(Constants.EXTRA_VERIFY_EXIT_BOOTLOADER)) {
-                            statusReceived = extras.getString(Constants.EXTRA_VERIFY_EXIT_BOOTLOADER);
-                            Logger.e("Fragment Exit bootloader response>>" + statusReceived);
-                        }
+                    } else if (bootloaderState == BootLoaderCommands.EXIT_BOOTLOADER
+                            && extras.containsKey(Constants.EXTRA_VERIFY_EXIT_BOOTLOADER)) {
+                        String statusReceived = extras.getString(Constants.EXTRA_VERIFY_EXIT_BOOTLOADER);
+                        Logger.e("Fragment Exit bootloader response>>" + statusReceived);
                         final BluetoothDevice device = BluetoothLeService.mBluetoothAdapter
                                 .getRemoteDevice(BluetoothLeService.getmBluetoothDeviceAddress());
 
+                        mOTASession.complete();
+                        finishTransfer();
                         mProgressText.setText(getActivity().getResources().getText(R.string.ota_end_success));
                         if (secondFileUpdatedNeeded()) {
                             mBuilder.setContentText(getActivity().getResources().getText(R.string.ota_notification_stack_file))
@@ -385,6 +379,7 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
     };
 
     private void showErrorDialogMessage(String errorMessage, final boolean stayOnPage) {
+        finishTransfer();
         AlertDialog alert;
         AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
         builder.setMessage(errorMessage)
@@ -420,6 +415,7 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
                                         mProgBarLayoutTop.setVisibility(View.INVISIBLE);
                                         mProgBarLayoutBottom.setVisibility(View.INVISIBLE);
                                         mAppDownload.setEnabled(true);
+                                        mIncrementalUpdate.setEnabled(true);
                                         mAppDownload.setSelected(false);
                                         mAppStackCombDownload.setEnabled(true);
                                         mAppStackCombDownload.setSelected(false);
@@ -435,80 +431,66 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
             alert.show();
     }
 
+    /**
+     * Starts the next row. A row to verify before programming, the row to
+     * resume from or any row of an incremental update, is only programmed if
+     * the checksum read back from the flash differs from the file.
+     *
+     * @param rowPosition
+     */
+    private void writeNextRow(int rowPosition) {
+        if (mOTASession.isPreVerifying()
+                && mPacketStream.getArrayId(rowPosition) == mOTASession.getArrayId()) {
+            mOtaFirmwareWrite.writeCommand(mPacketStream.getVerifyRowCmd(rowPosition), false);
+            mOTASession.setState(BootLoaderCommands.VERIFY_ROW);
+            mProgressText.setText(getActivity().getResources().getText(R.string.ota_verify_row));
+        } else {
+            //A new flash array first asks for its row range
+            writeProgrammableData(rowPosition);
+        }
+    }
+
+    /**
+     * Writes the next frame of the row: a send data frame, or the program row
+     * frame once the rest of the row fits in it. The row start position of the
+     * session is the index of that frame.
+     *
+     * @param rowPosition
+     */
     private void writeProgrammableData(int rowPosition) {
-        int startPosition = Utils.getIntSharedPreference(getActivity(),
-                Constants.PREF_PROGRAM_ROW_START_POS);
-        OTAFlashRowModel modelData = mFlashRowList.get(rowPosition);
-        int mRowNo = BootLoaderUtils.swap(Integer.parseInt(modelData.mRowNo.substring(0, 4), 16));
-        Logger.e("Row: " + rowPosition + "Start Pos: " + startPosition + "mStartRow: " + mStartRow +
+        int packetPosition = mOTASession.getRowStartPosition();
+        int mRowNo = mPacketStream.getRowNumber(rowPosition);
+        int arrayId = mPacketStream.getArrayId(rowPosition);
+        Logger.e("Row: " + rowPosition + "Packet: " + packetPosition + "mStartRow: " + mStartRow +
                 "mEndRow: " + mEndRow + "Row No:" + mRowNo);
-        Logger.e("Array id: " + modelData.mArrayId
-                + " Shared Array id: " + Utils.getIntSharedPreference(getActivity(), Constants.PREF_ARRAY_ID));
 
-        if (modelData.mArrayId != Utils.getIntSharedPreference(getActivity(), Constants.PREF_ARRAY_ID)) {
+        if (arrayId != mOTASession.getArrayId()) {
             /**
              * Writing the get flash command again to get the new row numbers
-             * Changing the shared preference value
+             * Changing the session state
              */
-            Utils.setIntSharedPreference(getActivity(), Constants.PREF_ARRAY_ID, modelData.mArrayId);
-            byte[] data = new byte[1];
-            data[0] = (byte) modelData.mArrayId;
-            int dataLength = data.length;
-            mOtaFirmwareWrite.OTAGetFlashSizeCmd(data, mCheckSumType, dataLength);
-            Utils.setStringSharedPreference(getActivity(),
-                    Constants.PREF_BOOTLOADER_STATE, "" + BootLoaderCommands.GET_FLASH_SIZE);
+            Logger.e("Array id: " + arrayId
+                    + " Session Array id: " + mOTASession.getArrayId());
+            mOTASession.setArrayId(arrayId);
+            mOtaFirmwareWrite.writeCommand(mPacketStream.getGetFlashSizeCmd(rowPosition), false);
+            mOTASession.setState(BootLoaderCommands.GET_FLASH_SIZE);
             mProgressText.setText(getActivity().getResources().getText(R.string.ota_get_flash_size));
         } else {
             /**
              * Verify weather the program row number is within the acceptable range
              */
             if (mRowNo >= mStartRow && mRowNo <= mEndRow) {
-                int verifyDataLength = modelData.mDataLength - startPosition;
-                if (checkProgramRowCommandToSend(verifyDataLength)) {
-                    long rowMSB = Long.parseLong(modelData.mRowNo.substring(0, 2), 16);
-                    long rowLSB = Long.parseLong(modelData.mRowNo.substring(2, 4), 16);
-                    int dataLength = modelData.mDataLength - startPosition;
-                    byte[] dataToSend = new byte[dataLength];
-                    for (int pos = 0; pos < dataLength; pos++) {
-                        if (startPosition < modelData.mData.length) {
-                            byte data = modelData.mData[startPosition];
-                            dataToSend[pos] = data;
-                            startPosition++;
-                        } else {
-                            break;
-                        }
-                    }
-                    mOtaFirmwareWrite.OTAProgramRowCmd(rowMSB, rowLSB, modelData.mArrayId,
-                            dataToSend, mCheckSumType);
-                    Utils.setStringSharedPreference(getActivity(),
-                            Constants.PREF_BOOTLOADER_STATE, "" +
-                                    BootLoaderCommands.PROGRAM_ROW);
-                    Utils.setIntSharedPreference(getActivity(),
-                            Constants.PREF_PROGRAM_ROW_START_POS, 0);
-                    mProgressText.setText(getActivity().getResources().
-                            getText(R.string.ota_program_row));
+                byte[][] packets = mPacketStream.getProgramRowCmds(rowPosition);
+                mOtaFirmwareWrite.writeCommand(packets[packetPosition], false);
+                if (packetPosition == packets.length - 1) {
+                    mOTASession.setState(BootLoaderCommands.PROGRAM_ROW);
+                    mOTASession.setRowStartPosition(0);
                 } else {
-                    int dataLength = BootLoaderCommands.MAX_DATA_SIZE;
-                    byte[] dataToSend = new byte[dataLength];
-                    for (int pos = 0; pos < dataLength; pos++) {
-                        if (startPosition < modelData.mData.length) {
-                            byte data = modelData.mData[startPosition];
-                            dataToSend[pos] = data;
-                            startPosition++;
-                        } else {
-                            break;
-                        }
-                    }
-                    mOtaFirmwareWrite.OTAProgramRowSendDataCmd(
-                            dataToSend, mCheckSumType);
-                    Utils.setStringSharedPreference(getActivity(),
-                            Constants.PREF_BOOTLOADER_STATE, "" +
-                                    BootLoaderCommands.SEND_DATA);
-                    Utils.setIntSharedPreference(getActivity(),
-                            Constants.PREF_PROGRAM_ROW_START_POS, startPosition);
-                    mProgressText.setText(getActivity().getResources().
-                            getText(R.string.ota_program_row));
+                    mOTASession.setState(BootLoaderCommands.SEND_DATA);
+                    mOTASession.setRowStartPosition(packetPosition + 1);
                 }
+                mProgressText.setText(getActivity().getResources().
+                        getText(R.string.ota_program_row));
             } else {
                 showErrorDialogMessage(getActivity().getResources().
                         getString(R.string.alert_message_row_out_of_bounds_error), true);
@@ -516,14 +498,6 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
         }
     }
 
-    private boolean checkProgramRowCommandToSend(int totalSize) {
-        if (totalSize <= BootLoaderCommands.MAX_DATA_SIZE) {
-            return true;
-        } else {
-            return false;
-        }
-    }
-
     //Constructor
     public OTAFirmwareUpgradeFragment create(BluetoothGattService bluetoothGattService) {
         mService = bluetoothGattService;
@@ -537,12 +511,15 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
                 false);
         initializeGUIElements();
         initializeNotification();
+        mOTASession.setCheckpointStore(new OTACheckpointStore(getActivity()));
         /**
          * Second file Upgradation
          *
          */
         if (secondFileUpdatedNeeded()) {
             secondFileUpgradation();
+        } else if (resumeUpdateNeeded()) {
+            resumeUpgradation();
         }
         return mView;
     }
@@ -560,14 +537,19 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
     @Override
     public void onDestroy() {
         mHandlerFlag = false;
+        finishTransfer();
         getActivity().unregisterReceiver(mGattOTAStatusReceiver);
         if (mOTACharacteristic != null) {
-            final String sharedPrefStatus = Utils.getStringSharedPreference(getActivity(),
-                    Constants.PREF_BOOTLOADER_STATE);
-            if (!sharedPrefStatus.equalsIgnoreCase("" + BootLoaderCommands.EXIT_BOOTLOADER)) {
+            if (!mOTASession.isState(BootLoaderCommands.EXIT_BOOTLOADER)) {
                 cancelPendingNotification(mNotificationManager,
                         mNotificationId);
-                clearDataNPreferences();
+                if (mFileupgradeStarted) {
+                    //Update interrupted, keeping the checkpoint to resume from
+                    clearFilePreferences();
+                    mOTASession.suspend();
+                } else {
+                    clearDataNPreferences();
+                }
             }
             stopBroadcastDataNotify(mOTACharacteristic);
         }
@@ -649,6 +631,7 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
     }
 
     private void updateGUI(int updateOtion) {
+        mUpgradeMode = updateOtion;
         switch (updateOtion) {
             case mApplicationUpgrade:
                 /**
@@ -658,6 +641,7 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
                 mAppDownload.setSelected(true);
                 mAppDownload.setPressed(true);
                 mAppDownload.setEnabled(false);
+                mIncrementalUpdate.setEnabled(false);
                 mAppStackCombDownload.setEnabled(false);
                 mAppStackSepDownload.setEnabled(false);
                 mProgressText.setVisibility(View.VISIBLE);
@@ -682,6 +666,7 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
                 mAppStackCombDownload.setSelected(true);
                 mAppStackCombDownload.setPressed(true);
                 mAppDownload.setEnabled(false);
+                mIncrementalUpdate.setEnabled(false);
                 mAppStackCombDownload.setEnabled(false);
                 mAppStackSepDownload.setEnabled(false);
                 mProgressText.setVisibility(View.VISIBLE);
@@ -704,6 +689,7 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
                 mAppStackSepDownload.setSelected(true);
                 mAppStackSepDownload.setPressed(true);
                 mAppDownload.setEnabled(false);
+                mIncrementalUpdate.setEnabled(false);
                 mAppStackCombDownload.setEnabled(false);
                 mAppStackSepDownload.setEnabled(false);
                 mProgressText.setVisibility(View.VISIBLE);
@@ -723,15 +709,33 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
 
     private void prepareFileWriting() {
         /**
-         * Always start the programming from the first line
+         * Programming starts from the first line unless an interrupted update
+         * is resumed
          */
-        Utils.setIntSharedPreference(getActivity(), Constants.PREF_PROGRAM_ROW_NO, 0);
-        Utils.setIntSharedPreference(getActivity(), Constants.PREF_PROGRAM_ROW_START_POS, 0);
+        if (mResumeCheckpoint == null) {
+            mOTASession.reset();
+        } else {
+            mOTASession.suspend();
+        }
         /**
          * Custom file write class initialisation
          */
         if (mOTACharacteristic != null) {
             mOtaFirmwareWrite = new OTAFirmwareWrite(mOTACharacteristic);
+            mOtaFirmwareWrite.setOnTransportErrorListener(
+                    new OTAFirmwareWrite.OnTransportErrorListener() {
+                        @Override
+                        public void onTransportError(String message) {
+                            if (mHandlerFlag && getActivity() != null) {
+                                showErrorDialogMessage(getActivity().getResources().getString(
+                                        R.string.alert_message_ota_error) + message, false);
+                            }
+                        }
+                    });
+        }
+        if (mPreparedImage != null) {
+            usePreparedImage();
+            return;
         }
 
         /**
@@ -750,6 +754,7 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
             mSiliconID = headerData[0];
             mSiliconRev = headerData[1];
             mCheckSumType = headerData[2];
+            mFileHash = customFileReader.getFileHash();
 
             /**
              * Reads the file content an provides a 1 second delay
@@ -764,6 +769,8 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
                             mTotalLines = customFileReader.getTotalLines();
                             //Getting the data lines
                             mFlashRowList = customFileReader.readDataLines();
+                            new PacketStreamCompiler(mFlashRowList, mCheckSumType,
+                                    BluetoothLeService.getMtu()).execute();
                         } catch (IndexOutOfBoundsException e) {
                         /*
                         Catches invalid files
@@ -778,6 +785,9 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
                     }
                 }
             }, 1000);
+        } catch (IOException e) {
+            Logger.e("Reading " + mCurrentFilePath + " failed: " + e);
+            showErrorDialogMessage(getResources().getString(R.string.ota_alert_file_read_error), true);
         } catch (IndexOutOfBoundsException e) {
                         /*
                         Catches invalid files
@@ -803,17 +813,20 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
                 findViewById(R.id.ota_app_stack_seperate);
         mProgressText = (TextView) mView.
                 findViewById(R.id.file_status);
+        mTransferStatsText = (TextView) mView.findViewById(R.id.ota_transfer_stats);
         mProgressTop = (TextProgressBar) mView.findViewById(R.id.upgrade_progress_bar_top);
         mProgressBottom = (TextProgressBar) mView.findViewById(R.id.upgrade_progress_bar_bottom);
         mFileNameTop = (TextView) mView.findViewById(R.id.upgrade_progress_bar_top_filename);
         mFileNameBottom = (TextView) mView.findViewById(R.id.upgrade_progress_bar_bottom_filename);
         mStopUpgradeButton = (Button) mView.findViewById(R.id.stop_upgrade_button);
+        mIncrementalUpdate = (CheckBox) mView.findViewById(R.id.ota_incremental_update);
         mProgressDialog = new ProgressDialog(getActivity());
 
         mProgBarLayoutTop = (RelativeLayout) mView.findViewById(R.id.progress_bar_top_rel_lay);
         mProgBarLayoutBottom = (RelativeLayout) mView.findViewById(R.id.progress_bar_bottom_rel_lay);
 
         mProgressText.setVisibility(View.INVISIBLE);
+        mTransferStatsText.setVisibility(View.INVISIBLE);
         mStopUpgradeButton.setVisibility(View.INVISIBLE);
         mProgBarLayoutTop.setVisibility(View.INVISIBLE);
         mProgBarLayoutBottom.setVisibility(View.INVISIBLE);
@@ -846,6 +859,20 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
          *
          */
         mStopUpgradeButton.setOnClickListener(this);
+
+        /**
+         *Only program the rows that differ from the flash
+         */
+        mIncrementalUpdate.setChecked(Utils.getBooleanSharedPreference(getActivity(),
+                Constants.PREF_OTA_INCREMENTAL));
+        mIncrementalUpdate.setOnCheckedChangeListener(
+                new CompoundButton.OnCheckedChangeListener() {
+                    @Override
+                    public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                        Utils.setBooleanSharedPreference(getActivity(),
+                                Constants.PREF_OTA_INCREMENTAL, isChecked);
+                    }
+                });
         setHasOptionsMenu(true);
     }
 
@@ -951,19 +978,154 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
             if (mOTACharacteristic != null) {
                 mProgressText.setText(getActivity().getResources().
                         getText(R.string.ota_file_read_complete));
-                Utils.setStringSharedPreference(getActivity(),
-                        Constants.PREF_BOOTLOADER_STATE, "" + BootLoaderCommands.ENTER_BOOTLOADER);
-                mFileupgradeStarted = true;
-                generatePendingNotification(getActivity(),
-                        mNotificationManager, mBuilder,
-                        mNotificationId);
-                mOtaFirmwareWrite.OTAEnterBootLoaderCmd(mCheckSumType);
-                mProgressText.setText(getActivity().getResources().getText(R.string.ota_enter_bootloader));
+            }
+        }
+    }
+
+    /**
+     * Starts the bootloader session once the command frames are compiled
+     */
+    private void startProgramming() {
+        String secondFilePath = null;
+        if (mProgressBarPosition == 1) {
+            secondFilePath = Utils.getStringSharedPreference(getActivity(),
+                    Constants.PREF_OTA_FILE_TWO_PATH);
+            if (secondFilePath.equalsIgnoreCase("Default") || secondFilePath.equals("")) {
+                secondFilePath = null;
+            }
+        }
+        mOTASession.start(BluetoothLeService.getmBluetoothDeviceAddress(),
+                mCurrentFilePath, mFileHash, getResumeRow(mPacketStream.getRowCount()),
+                mIncrementalUpdate.isChecked(), mUpgradeMode, secondFilePath);
+        mResumeCheckpoint = null;
+        mFileupgradeStarted = true;
+        mOtaFirmwareWrite.startTransfer(BluetoothLeService.getMtu());
+        mTransferStatsText.setText("");
+        mTransferStatsText.setVisibility(View.VISIBLE);
+        generatePendingNotification(getActivity(),
+                mNotificationManager, mBuilder,
+                mNotificationId);
+        mOtaFirmwareWrite.writeCommand(mPacketStream.getEnterBootLoaderCmd(), false);
+        mProgressText.setText(getActivity().getResources().getText(R.string.ota_enter_bootloader));
+        if (secondFilePath != null) {
+            //Reads the second file while the first one is programmed
+            OTAImagePreparer.prepare(secondFilePath, BluetoothLeService.getMtu());
+        }
+    }
 
+    /**
+     * Takes the header, rows and frames of the file prepared while the
+     * previous file was programmed, compiling the frames again only if the MTU
+     * changed
+     */
+    private void usePreparedImage() {
+        OTAImagePreparer.PreparedImage image = mPreparedImage;
+        mPreparedImage = null;
+        mSiliconID = image.getSiliconID();
+        mSiliconRev = image.getSiliconRev();
+        mCheckSumType = image.getCheckSumType();
+        mFileHash = image.getFileHash();
+        mTotalLines = image.getTotalLines();
+        mFlashRowList = image.getRows();
+        int mtu = BluetoothLeService.getMtu();
+        OTAPacketStream packetStream = image.getPacketStream(mtu);
+        if (packetStream == null) {
+            new PacketStreamCompiler(mFlashRowList, mCheckSumType, mtu).execute();
+        } else {
+            mPacketStream = packetStream;
+            if (mOTACharacteristic != null) {
+                startProgramming();
             }
         }
     }
 
+    /**
+     * Shows the live throughput of the transfer below the status
+     *
+     * @param stats
+     */
+    private void showTransferStats(OTATransferStats stats) {
+        long time = SystemClock.elapsedRealtime();
+        mTransferStatsText.setText(getResources().getString(R.string.ota_transfer_stats,
+                stats.getRowsPerSecond(time), stats.getPayloadBytesPerSecond(time),
+                stats.getMtu(), stats.getWriteRetries(), stats.getStalledFrames()));
+    }
+
+    /**
+     * Ends the transfer counters and keeps their report in the data logger
+     */
+    private void finishTransfer() {
+        if (mOtaFirmwareWrite == null) {
+            return;
+        }
+        String report = mOtaFirmwareWrite.finishTransfer();
+        if (report != null && getActivity() != null) {
+            Logger.datalog(getActivity().getResources().getString(R.string.dl_commaseparator)
+                    + "[OTA] " + report);
+        }
+    }
+
+    /**
+     * AsyncTask class compiling the command frames of the file off the main
+     * thread, so the response handler only hands over the next frame
+     */
+    private class PacketStreamCompiler extends AsyncTask<Void, Void, OTAPacketStream> {
+        private final List<OTAFlashRowModel> mRows;
+        private final String mRowCheckSumType;
+        private final int mMtu;
+
+        public PacketStreamCompiler(List<OTAFlashRowModel> rows, String checkSumType, int mtu) {
+            this.mRows = rows;
+            this.mRowCheckSumType = checkSumType;
+            this.mMtu = mtu;
+        }
+
+        @Override
+        protected OTAPacketStream doInBackground(Void... params) {
+            try {
+                return OTAPacketStream.compile(mRows, mRowCheckSumType, mMtu);
+            } catch (IndexOutOfBoundsException e) {
+                return null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(OTAPacketStream packetStream) {
+            if (!mHandlerFlag || getActivity() == null) {
+                return;
+            }
+            if (packetStream == null) {
+                /*
+                Catches invalid files
+                 */
+                showErrorDialogMessage(getResources().getString(R.string.ota_alert_invalid_file), true);
+                return;
+            }
+            mPacketStream = packetStream;
+            if (mOTACharacteristic != null) {
+                startProgramming();
+            }
+        }
+    }
+
+    /**
+     * Row to resume from, if the interrupted update was writing the same file
+     *
+     * @param rowCount rows in the file
+     * @return the last verified row, or -1 to start from the first row
+     */
+    private int getResumeRow(int rowCount) {
+        if (mResumeCheckpoint != null
+                && mResumeCheckpoint.getFileHash().equalsIgnoreCase(mFileHash)
+                && mResumeCheckpoint.getRowNumber() < rowCount) {
+            Logger.e("Resuming OTA from row " + mResumeCheckpoint.getRowNumber());
+            return mResumeCheckpoint.getRowNumber();
+        }
+        return -1;
+    }
+
     /**
      * Method to show progress bar
      *
@@ -997,13 +1159,15 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
     public void clearDataNPreferences() {
         //Resetting all preferences on Stop Button
         Logger.e("Data and Prefs cleared>>>>>>>>>");
+        clearFilePreferences();
+        mOTASession.reset();
+    }
+
+    private void clearFilePreferences() {
+        OTAImagePreparer.discard();
         Utils.setStringSharedPreference(getActivity(), Constants.PREF_OTA_FILE_ONE_NAME, "Default");
         Utils.setStringSharedPreference(getActivity(), Constants.PREF_OTA_FILE_TWO_PATH, "Default");
         Utils.setStringSharedPreference(getActivity(), Constants.PREF_OTA_FILE_TWO_NAME, "Default");
-        Utils.setStringSharedPreference(getActivity(), Constants.PREF_BOOTLOADER_STATE, "Default");
-        Utils.setIntSharedPreference(getActivity(), Constants.PREF_PROGRAM_ROW_NO, 0);
-        Utils.setIntSharedPreference(getActivity(), Constants.PREF_PROGRAM_ROW_START_POS, 0);
-        Utils.setIntSharedPreference(getActivity(), Constants.PREF_ARRAY_ID, 0);
     }
 
     /**
@@ -1134,12 +1298,7 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
                         new DialogInterface.OnClickListener() {
                             public void onClick(DialogInterface dialog, int id) {
 
-                                Utils.setStringSharedPreference(getActivity(),
-                                        Constants.PREF_BOOTLOADER_STATE, null);
-                                Utils.setIntSharedPreference(getActivity(),
-                                        Constants.PREF_PROGRAM_ROW_NO, 0);
-                                Utils.setIntSharedPreference(getActivity(),
-                                        Constants.PREF_PROGRAM_ROW_START_POS, 0);
+                                mOTASession.reset();
                                 generatePendingNotification(getActivity(),
                                         mNotificationManager, mBuilder,
                                         mNotificationId);
@@ -1162,6 +1321,7 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
                                 mAppStackSepDownload.setSelected(true);
                                 mAppStackSepDownload.setPressed(true);
                                 mAppDownload.setEnabled(false);
+                                mIncrementalUpdate.setEnabled(false);
                                 mAppStackCombDownload.setEnabled(false);
                                 mAppStackSepDownload.setEnabled(false);
                                 mProgressText.setVisibility(View.VISIBLE);
@@ -1173,7 +1333,9 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
                                 mCurrentFilePath = Utils.
                                         getStringSharedPreference(getActivity(),
                                                 Constants.PREF_OTA_FILE_TWO_PATH);
+                                mPreparedImage = OTAImagePreparer.take(mCurrentFilePath);
                                 clearDataNPreferences();
+                                mUpgradeMode = mApplicationAndStackSeparate;
                                 mProgressBarPosition = 2;
                                 prepareFileWriting();
                             }
@@ -1193,6 +1355,104 @@ public class OTAFirmwareUpgradeFragment extends Fragment implements View.OnClick
             alert.show();
     }
 
+    /**
+     * Checks for an update of the connected device that was interrupted after
+     * some rows were verified
+     *
+     * @return
+     */
+    private boolean resumeUpdateNeeded() {
+        OTASession.Checkpoint checkpoint = mOTASession.getCheckpoint();
+        return checkpoint != null
+                && BluetoothLeService.getmBluetoothDeviceAddress()
+                .equalsIgnoreCase(checkpoint.getDeviceAddress())
+                && new File(checkpoint.getFilePath()).exists();
+    }
+
+    /**
+     * Method to resume an interrupted update from its last verified row
+     */
+    private void resumeUpgradation() {
+        final OTASession.Checkpoint checkpoint = mOTASession.getCheckpoint();
+        final String fileName = new File(checkpoint.getFilePath()).getName();
+        AlertDialog alert;
+        AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
+        builder.setMessage(
+                getActivity().getResources().getString(
+                        R.string.alert_message_ota_resume_file, fileName))
+                .setTitle(getActivity().getResources().getString(R.string.app_name))
+                .setCancelable(false)
+                .setPositiveButton(
+                        getActivity().getResources().getString(
+                                R.string.alert_message_yes),
+                        new DialogInterface.OnClickListener() {
+                            public void onClick(DialogInterface dialog, int id) {
+                                mResumeCheckpoint = checkpoint;
+                                mCurrentFilePath = checkpoint.getFilePath();
+                                getGattData();
+                                resumeInUpgradeMode(checkpoint, fileName);
+                            }
+                        })
+                .setNegativeButton(getActivity().getResources().getString(
+                                R.string.alert_message_no),
+                        new DialogInterface.OnClickListener() {
+                            public void onClick(DialogInterface dialog, int id) {
+                                mOTASession.reset();
+                            }
+                        });
+        alert = builder.create();
+        alert.setCanceledOnTouchOutside(false);
+        if (!getActivity().isDestroyed())
+            alert.show();
+    }
+
+    /**
+     * Restarts the interrupted update in the upgrade option it was started
+     * with. The second file of a separate stack and application update is
+     * planned again, or programmed as the second file if it was the one
+     * interrupted.
+     *
+     * @param checkpoint
+     * @param fileName
+     */
+    private void resumeInUpgradeMode(OTASession.Checkpoint checkpoint, String fileName) {
+        if (checkpoint.getUpgradeMode() != mApplicationAndStackSeparate) {
+            mFileNameTop.setText(fileName.replace(".cyacd", ""));
+            updateGUI(checkpoint.getUpgradeMode());
+            return;
+        }
+        String nextFilePath = checkpoint.getNextFilePath();
+        if (nextFilePath != null) {
+            String nextFileName = new File(nextFilePath).getName();
+            mFileNameTop.setText(fileName.replace(".cyacd", ""));
+            mFileNameBottom.setText(nextFileName.replace(".cyacd", ""));
+            Utils.setStringSharedPreference(getActivity(), Constants.PREF_OTA_FILE_ONE_NAME,
+                    fileName);
+            Utils.setStringSharedPreference(getActivity(), Constants.PREF_OTA_FILE_TWO_NAME,
+                    nextFileName);
+            Utils.setStringSharedPreference(getActivity(), Constants.PREF_OTA_FILE_TWO_PATH,
+                    nextFilePath);
+            updateGUI(mApplicationAndStackSeparate);
+            return;
+        }
+        //The stack was written already, the application file is resumed
+        mFileNameBottom.setText(fileName.replace(".cyacd", ""));
+        mAppStackSepDownload.setSelected(true);
+        mAppStackSepDownload.setPressed(true);
+        mAppDownload.setEnabled(false);
+        mIncrementalUpdate.setEnabled(false);
+        mAppStackCombDownload.setEnabled(false);
+        mAppStackSepDownload.setEnabled(false);
+        mProgressText.setVisibility(View.VISIBLE);
+        mStopUpgradeButton.setVisibility(View.VISIBLE);
+        mProgBarLayoutTop.setVisibility(View.VISIBLE);
+        mProgBarLayoutBottom.setVisibility(View.VISIBLE);
+        mProgressText.setText(getActivity().getResources().getText(R.string.ota_file_read));
+        mUpgradeMode = mApplicationAndStackSeparate;
+        mProgressBarPosition = 2;
+        prepareFileWriting();
+    }
+
     @Override
     public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
         menu.clear();
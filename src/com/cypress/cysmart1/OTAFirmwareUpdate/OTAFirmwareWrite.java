@@ -34,17 +34,63 @@
 
 package com.cypress.cysmart1.OTAFirmwareUpdate;
 
+import android.bluetooth.BluetoothGatt;
 import android.bluetooth.BluetoothGattCharacteristic;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 
 import com.cypress.cysmart1.BLEConnectionServices.BluetoothLeService;
+import com.cypress.cysmart1.BLEConnectionServices.GattOperation;
 import com.cypress.cysmart1.CommonUtils.Logger;
-import com.cypress.cysmart1.DataModelClasses.OTAFlashRowModel;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
 
 /**
- * Separate class for handling the write operation during OTA firmware upgrade
+ * Separate class for handling the write operation during OTA firmware upgrade.
+ * The build methods only assemble the command frames, so they can be prepared
+ * ahead of the transfer by the {@link OTAPacketStream}.
+ * <p/>
+ * Frames are written over an {@link OTALink}, the operation queue of the
+ * device unless another link is given, without blocking. A frame
+ * the stack did not issue or the device rejected is written again, a bounded
+ * number of times, as soon as its write completion reports the failure. A
+ * write without completion in time, or a frame whose bootloader response does
+ * not arrive in time, fails the transfer since the device may hold the frame.
+ * Transport state is only touched on the thread of the link, the main thread
+ * for a device.
  */
 public class OTAFirmwareWrite {
-    private BluetoothGattCharacteristic mOTACharacteristic;
+    private final OTALink mLink;
+
+    /**
+     * Writes of one frame before the transfer fails
+     */
+    static final int MAX_WRITE_ATTEMPTS = 3;
+    /**
+     * Time allowed for the bootloader response once a frame is written
+     */
+    static final long RESPONSE_TIMEOUT = 10000;
+
+    private OnTransportErrorListener mTransportErrorListener;
+    private OTATransferStats mTransferStats;
+    //Frame waiting for its bootloader response
+    private byte[] mPendingFrame;
+    private int mFrameSequence;
+    private int mWriteAttempts;
+    private boolean mResponseReceived;
+
+    private final Runnable mResponseTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mTransferStats != null) {
+                mTransferStats.onResponseTimeout();
+            }
+            onTransportError("no response from the bootloader");
+        }
+    };
 
     private static  final int BYTE_START_CMD = 0;
     private static  final int BYTE_CMD_TYPE = 1;
@@ -64,10 +110,168 @@ public class OTAFirmwareWrite {
     private static  final int RADIX = 16;
     private static  final int ADDITIVE_OP = 8;
     private static  final int BYTE_ARRAY_SIZE = 7;
+    private static  final int START_COMMAND = 0x01;
+    private static  final int BYTE_SEND_DATA = 4;
+    private static  final int BYTE_PROGRAM_ROW_DATA = 7;
 
 
     public OTAFirmwareWrite(BluetoothGattCharacteristic writeCharacteristic) {
-        this.mOTACharacteristic = writeCharacteristic;
+        this(new GattLink(null, writeCharacteristic));
+    }
+
+    /**
+     * Writes to the characteristic of the given device instead of the selected one
+     *
+     * @param address
+     * @param writeCharacteristic
+     */
+    public OTAFirmwareWrite(String address, BluetoothGattCharacteristic writeCharacteristic) {
+        this(new GattLink(address, writeCharacteristic));
+    }
+
+    /**
+     * Writes over any link, such as an emulated bootloader
+     *
+     * @param link
+     */
+    OTAFirmwareWrite(OTALink link) {
+        this.mLink = link;
+    }
+
+    public void setOnTransportErrorListener(OnTransportErrorListener listener) {
+        this.mTransportErrorListener = listener;
+    }
+
+    /**
+     * Starts counting the writes of a new transfer
+     *
+     * @param mtu negotiated ATT MTU the frames are sized for
+     */
+    public void startTransfer(int mtu) {
+        mTransferStats = new OTATransferStats(mLink.getTime(), mtu);
+    }
+
+    /**
+     * Stops waiting for the pending frame and ends the counters of the
+     * transfer. Their summary is saved in the data logger reports directory.
+     *
+     * @return the report of the transfer, or null if none was started
+     */
+    public String finishTransfer() {
+        mLink.removeCallbacks(mResponseTimeoutRunnable);
+        mPendingFrame = null;
+        mFrameSequence++;
+        if (mTransferStats == null) {
+            return null;
+        }
+        long endTime = mLink.getTime();
+        String report = mTransferStats.getReport(endTime);
+        String address = mLink.getDeviceAddress();
+        Logger.saveReport("OTA_" + (address != null ? address.replace(":", "") + "_" : "")
+                        + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date()),
+                "Device: " + address + "\n" + mTransferStats.getSummary(endTime));
+        mTransferStats = null;
+        Logger.i(report);
+        return report;
+    }
+
+    public OTATransferStats getTransferStats() {
+        return mTransferStats;
+    }
+
+    /**
+     * Writes a command frame built ahead of time. Must be called on the main
+     * thread.
+     *
+     * @param commandBytes
+     * @param isExitBootloaderCmd
+     */
+    public void writeCommand(byte[] commandBytes, boolean isExitBootloaderCmd) {
+        mLink.removeCallbacks(mResponseTimeoutRunnable);
+        mFrameSequence++;
+        if (mTransferStats != null) {
+            mTransferStats.onFrameWritten(commandBytes, mLink.getTime());
+        }
+        if (isExitBootloaderCmd) {
+            //The device resets without a response, the write completion ends the transfer
+            mPendingFrame = null;
+            mLink.writeExit(commandBytes);
+            return;
+        }
+        mPendingFrame = commandBytes;
+        mWriteAttempts = 0;
+        mResponseReceived = false;
+        writePendingFrame();
+    }
+
+    /**
+     * Must be called when a bootloader response arrives, on the main thread
+     */
+    public void onResponseReceived() {
+        if (mTransferStats != null && mPendingFrame != null && !mResponseReceived) {
+            mTransferStats.onResponseReceived(mLink.getTime());
+        }
+        mResponseReceived = true;
+        mLink.removeCallbacks(mResponseTimeoutRunnable);
+    }
+
+    private void writePendingFrame() {
+        final int frameSequence = mFrameSequence;
+        final int frameLength = mPendingFrame.length;
+        mWriteAttempts++;
+        boolean written = mLink.write(mPendingFrame, new OTALink.WriteListener() {
+            @Override
+            public void onWriteComplete(int status, int busyRefusals, long issueDelay) {
+                if (mTransferStats != null) {
+                    mTransferStats.onWriteComplete(frameLength, status, busyRefusals, issueDelay);
+                }
+                OTAFirmwareWrite.this.onWriteComplete(frameSequence, status);
+            }
+        });
+        if (!written) {
+            onTransportError("not connected");
+        }
+    }
+
+    private void onWriteComplete(int frameSequence, int status) {
+        if (frameSequence != mFrameSequence || mPendingFrame == null || mResponseReceived) {
+            return;
+        }
+        if (status == BluetoothGatt.GATT_SUCCESS) {
+            mLink.postDelayed(mResponseTimeoutRunnable, RESPONSE_TIMEOUT);
+        } else if (status == GattOperation.STATUS_CANCELLED) {
+            //Disconnected, handled by the connection state broadcast
+            mPendingFrame = null;
+        } else if (status == GattOperation.STATUS_TIMEOUT) {
+            //The device may have taken the frame, writing it again could duplicate its data
+            onTransportError("write timed out");
+        } else if (mWriteAttempts < MAX_WRITE_ATTEMPTS) {
+            Logger.e("OTA frame write failed with status " + status + ", writing again");
+            if (mTransferStats != null) {
+                mTransferStats.onWriteRetry();
+            }
+            writePendingFrame();
+        } else {
+            onTransportError("write failed with status " + status);
+        }
+    }
+
+    private void onTransportError(String message) {
+        mPendingFrame = null;
+        mFrameSequence++;
+        if (mTransportErrorListener != null) {
+            mTransportErrorListener.onTransportError(message);
+        }
+    }
+
+    /**
+     * Checksum type from the file header, as used by the build methods
+     *
+     * @param checkSumType
+     * @return
+     */
+    static int parseCheckSumType(String checkSumType) {
+        return Integer.parseInt(checkSumType, RADIX);
     }
 
     /**
@@ -75,76 +279,66 @@ public class OTAFirmwareWrite {
      *
      * @param checkSumType
      */
-    public void OTAEnterBootLoaderCmd(String checkSumType) {
-        int startCommand = 0x01;
+    static byte[] buildEnterBootLoaderCmd(int checkSumType) {
         int dataLength0 = 0x00;
         int dataLength1 = 0x00;
 
         byte[] commandBytes = new byte[BYTE_ARRAY_SIZE];
-        commandBytes[BYTE_START_CMD] = (byte) startCommand;
+        commandBytes[BYTE_START_CMD] = (byte) START_COMMAND;
         commandBytes[BYTE_CMD_TYPE] = (byte) BootLoaderCommands.ENTER_BOOTLOADER;
         commandBytes[BYTE_CMD_DATA_SIZE] = (byte) dataLength0;
         commandBytes[BYTE_CMD_DATA_SIZE_SHIFT] = (byte) dataLength1;
-        String checkSum = Integer.toHexString(BootLoaderUtils.calculateCheckSum2(Integer.parseInt(checkSumType, 16), 4, commandBytes));
-        long checksum = Long.parseLong(checkSum, RADIX);
+        int checksum = BootLoaderUtils.calculateCheckSum2(checkSumType, 4, commandBytes);
         commandBytes[BYTE_CHECKSUM] = (byte) checksum;
         commandBytes[BYTE_CHECKSUM_SHIFT] = (byte) (checksum >> ADDITIVE_OP);
         commandBytes[BYTE_PACKET_END] = (byte) BootLoaderCommands.PACKET_END;
-        Logger.e("OTAEnterBootLoaderCmd");
-        BluetoothLeService.writeOTABootLoaderCommand(mOTACharacteristic, commandBytes);
+        return commandBytes;
     }
 
     /**
      * OTA Bootloader Get Flash Size Command
      */
-    public void OTAGetFlashSizeCmd(byte[] data, String checkSumType, int dataLength) {
+    static byte[] buildGetFlashSizeCmd(byte[] data, int dataLength, int checkSumType) {
         byte[] commandBytes = new byte[BootLoaderCommands.BASE_CMD_SIZE + dataLength];
-        int startCommand = 0x01;
-        commandBytes[BYTE_START_CMD] = (byte) startCommand;
+        commandBytes[BYTE_START_CMD] = (byte) START_COMMAND;
         commandBytes[BYTE_CMD_TYPE] = (byte) BootLoaderCommands.GET_FLASH_SIZE;
         commandBytes[BYTE_CMD_DATA_SIZE] = (byte) dataLength;
         commandBytes[BYTE_CMD_DATA_SIZE_SHIFT] = (byte) (dataLength >> ADDITIVE_OP);
-        int dataByteLocationStart = 4;
-        int datByteLocationEnd;
-        for (int count = 0; count < dataLength; count++) {
-            commandBytes[dataByteLocationStart] = data[count];
-            dataByteLocationStart++;
-        }
-        datByteLocationEnd = dataByteLocationStart;
-        String checkSum = Integer.toHexString(BootLoaderUtils.calculateCheckSum2(Integer.parseInt(checkSumType, RADIX), commandBytes.length, commandBytes));
-        long checksum = Long.parseLong(checkSum, RADIX);
+        System.arraycopy(data, 0, commandBytes, 4, dataLength);
+        int datByteLocationEnd = 4 + dataLength;
+        int checksum = BootLoaderUtils.calculateCheckSum2(checkSumType, commandBytes.length,
+                commandBytes);
         commandBytes[datByteLocationEnd] = (byte) checksum;
         commandBytes[datByteLocationEnd + 1] = (byte) (checksum >> ADDITIVE_OP);
         commandBytes[datByteLocationEnd + 2] = (byte) BootLoaderCommands.PACKET_END;
-        Logger.e("OTAGetFlashSizeCmd");
-        BluetoothLeService.writeOTABootLoaderCommand(mOTACharacteristic, commandBytes);
+        return commandBytes;
     }
 
     /**
      * OTA Bootloader Program Row Send Command
+     *
+     * @param data         row data
+     * @param offset       first byte of the row data to send
+     * @param length       bytes to send
+     * @param checkSumType
+     * @return
      */
-    public void OTAProgramRowSendDataCmd(byte[] data,
-                                         String checksumType) {
-        int totalSize = BootLoaderCommands.BASE_CMD_SIZE +
-                data.length;
-        int checksum;
-        int i;
+    static byte[] buildProgramRowSendDataCmd(byte[] data, int offset, int length,
+                                             int checkSumType) {
+        int totalSize = BootLoaderCommands.BASE_CMD_SIZE + length;
         byte[] commandBytes = new byte[totalSize];
-        int startCommand = 0x01;
 
-        commandBytes[BYTE_START_CMD] = (byte) startCommand;
+        commandBytes[BYTE_START_CMD] = (byte) START_COMMAND;
         commandBytes[BYTE_CMD_TYPE] = (byte) BootLoaderCommands.SEND_DATA;
-        commandBytes[BYTE_CMD_DATA_SIZE] = (byte) (data.length);
-        commandBytes[BYTE_CMD_DATA_SIZE_SHIFT] = (byte) ((int) ((data.length) >> ADDITIVE_OP));
-        for (i = 0; i < data.length; i++)
-            commandBytes[i + 4] = data[i];
-        checksum = BootLoaderUtils.calculateCheckSum2(Integer.parseInt(checksumType, RADIX),
-                data.length + 4, commandBytes);
+        commandBytes[BYTE_CMD_DATA_SIZE] = (byte) (length);
+        commandBytes[BYTE_CMD_DATA_SIZE_SHIFT] = (byte) (length >> ADDITIVE_OP);
+        System.arraycopy(data, offset, commandBytes, BYTE_SEND_DATA, length);
+        int checksum = BootLoaderUtils.calculateCheckSum2(checkSumType,
+                length + 4, commandBytes);
         commandBytes[totalSize - 3] = (byte) checksum;
         commandBytes[totalSize - 2] = (byte) (checksum >> ADDITIVE_OP);
         commandBytes[totalSize - 1] = (byte) BootLoaderCommands.PACKET_END;
-        Logger.e("OTAProgramRowSendDataCmd Send size--->" + commandBytes.length);
-        BluetoothLeService.writeOTABootLoaderCommand(mOTACharacteristic, commandBytes);
+        return commandBytes;
     }
 
 
@@ -152,84 +346,69 @@ public class OTAFirmwareWrite {
     *
     * OTA Bootloader Program row Command
     * */
-    public void OTAProgramRowCmd(long rowMSB, long rowLSB, int arrayID, byte[] data,
-                                 String checkSumType) {
-
+    static byte[] buildProgramRowCmd(long rowMSB, long rowLSB, int arrayID, byte[] data,
+                                     int offset, int length, int checkSumType) {
         int COMMAND_DATA_SIZE = 3;
-        int totalSize = BootLoaderCommands.BASE_CMD_SIZE + COMMAND_DATA_SIZE +
-                data.length;
-        int checksum;
-        int i;
+        int totalSize = BootLoaderCommands.BASE_CMD_SIZE + COMMAND_DATA_SIZE + length;
         byte[] commandBytes = new byte[totalSize];
-        int startCommand = 0x01;
 
-        commandBytes[BYTE_START_CMD] = (byte) startCommand;
+        commandBytes[BYTE_START_CMD] = (byte) START_COMMAND;
         commandBytes[BYTE_CMD_TYPE] = (byte) BootLoaderCommands.PROGRAM_ROW;
-        commandBytes[BYTE_CMD_DATA_SIZE] = (byte) (data.length + COMMAND_DATA_SIZE);
-        commandBytes[BYTE_CMD_DATA_SIZE_SHIFT] = (byte) ((int) ((data.length + COMMAND_DATA_SIZE) >> ADDITIVE_OP));
+        commandBytes[BYTE_CMD_DATA_SIZE] = (byte) (length + COMMAND_DATA_SIZE);
+        commandBytes[BYTE_CMD_DATA_SIZE_SHIFT] = (byte) ((length + COMMAND_DATA_SIZE) >> ADDITIVE_OP);
         commandBytes[BYTE_ARRAY_ID] = (byte) arrayID;
         commandBytes[BYTE_ROW] = (byte) rowMSB;
         commandBytes[6] = (byte) rowLSB;
-        for (i = 0; i < data.length; i++)
-            commandBytes[i + 7] = data[i];
-        checksum = BootLoaderUtils.calculateCheckSum2(Integer.parseInt(checkSumType, RADIX),
-                data.length + 7, commandBytes);
+        System.arraycopy(data, offset, commandBytes, BYTE_PROGRAM_ROW_DATA, length);
+        int checksum = BootLoaderUtils.calculateCheckSum2(checkSumType,
+                length + 7, commandBytes);
         commandBytes[totalSize - 3] = (byte) checksum;
         commandBytes[totalSize - 2] = (byte) (checksum >> ADDITIVE_OP);
         commandBytes[totalSize - 1] = (byte) BootLoaderCommands.PACKET_END;
-        Logger.e("OTAProgramRowCmd send size--->" + commandBytes.length);
-        BluetoothLeService.writeOTABootLoaderCommand(mOTACharacteristic, commandBytes);
+        return commandBytes;
     }
 
     /*
    *
    * OTA Bootloader Verify row Command
    * */
-    public void OTAVerifyRowCmd(long rowMSB, long rowLSB, OTAFlashRowModel model,
-                                String checkSumType) {
+    static byte[] buildVerifyRowCmd(long rowMSB, long rowLSB, int arrayId, int checkSumType) {
         int COMMAND_DATA_SIZE = 3;
         int COMMAND_SIZE = BootLoaderCommands.BASE_CMD_SIZE + COMMAND_DATA_SIZE;
-        int checksum;
         byte[] commandBytes = new byte[COMMAND_SIZE];
-        int startCommand = 0x01;
 
-        commandBytes[BYTE_START_CMD] = (byte) startCommand;
+        commandBytes[BYTE_START_CMD] = (byte) START_COMMAND;
         commandBytes[BYTE_CMD_TYPE] = (byte) BootLoaderCommands.VERIFY_ROW;
         commandBytes[BYTE_CMD_DATA_SIZE] = (byte) (COMMAND_DATA_SIZE);
         commandBytes[BYTE_CMD_DATA_SIZE_SHIFT] = (byte) (COMMAND_DATA_SIZE >> ADDITIVE_OP);
-        commandBytes[BYTE_ARRAY_ID] = (byte) model.mArrayId;
+        commandBytes[BYTE_ARRAY_ID] = (byte) arrayId;
         commandBytes[BYTE_ROW] = (byte) rowMSB;
         commandBytes[BYTE_ROW_SHIFT] = (byte) rowLSB;
-        checksum = BootLoaderUtils.calculateCheckSum2(Integer.parseInt(checkSumType, RADIX),
+        int checksum = BootLoaderUtils.calculateCheckSum2(checkSumType,
                 COMMAND_SIZE - 3, commandBytes);
         commandBytes[BYTE_CHECKSUM_VER_ROW] = (byte) checksum;
         commandBytes[BYTE_CHECKSUM_VER_ROW_SHIFT] = (byte) (checksum >> ADDITIVE_OP);
         commandBytes[BYTE_PACKET_END_VER_ROW] = (byte) BootLoaderCommands.PACKET_END;
-        Logger.e("OTAVerifyRowCmd");
-        BluetoothLeService.writeOTABootLoaderCommand(mOTACharacteristic, commandBytes);
+        return commandBytes;
     }
 
     /*
    *
    * OTA Verify CheckSum Command
    * */
-    public void OTAVerifyCheckSumCmd(String checkSumType) {
-
-        int checksum;
+    static byte[] buildVerifyCheckSumCmd(int checkSumType) {
         byte[] commandBytes = new byte[BootLoaderCommands.BASE_CMD_SIZE];
-        int startCommand = 0x01;
 
-        commandBytes[BYTE_START_CMD] = (byte) startCommand;
+        commandBytes[BYTE_START_CMD] = (byte) START_COMMAND;
         commandBytes[BYTE_CMD_TYPE] = (byte) BootLoaderCommands.VERIFY_CHECK_SUM;
         commandBytes[BYTE_CMD_DATA_SIZE] = (byte) (0);
         commandBytes[BYTE_CMD_DATA_SIZE_SHIFT] = (byte) (0);
-        checksum = BootLoaderUtils.calculateCheckSum2(Integer.parseInt(checkSumType, RADIX),
+        int checksum = BootLoaderUtils.calculateCheckSum2(checkSumType,
                 BootLoaderCommands.BASE_CMD_SIZE - 3, commandBytes);
         commandBytes[BYTE_CHECKSUM] = (byte) checksum;
         commandBytes[BYTE_CHECKSUM_SHIFT] = (byte) (checksum >> ADDITIVE_OP);
         commandBytes[BYTE_PACKET_END] = (byte) BootLoaderCommands.PACKET_END;
-        Logger.e("OTAVerifyCheckSumCmd");
-        BluetoothLeService.writeOTABootLoaderCommand(mOTACharacteristic, commandBytes);
+        return commandBytes;
     }
 
     /*
@@ -237,25 +416,100 @@ public class OTAFirmwareWrite {
      * Exit BootloaderCommand
      *
      * */
-    public void OTAExitBootloaderCmd(String checkSumType) {
-
+    static byte[] buildExitBootloaderCmd(int checkSumType) {
         int COMMAND_DATA_SIZE = 0x00;
         int COMMAND_SIZE = BootLoaderCommands.BASE_CMD_SIZE + COMMAND_DATA_SIZE;
-        int checksum;
         byte[] commandBytes = new byte[BootLoaderCommands.BASE_CMD_SIZE];
-        int startCommand = 0x01;
 
-        commandBytes[BYTE_START_CMD] = (byte) startCommand;
+        commandBytes[BYTE_START_CMD] = (byte) START_COMMAND;
         commandBytes[BYTE_CMD_TYPE] = (byte) BootLoaderCommands.EXIT_BOOTLOADER;
         commandBytes[BYTE_CMD_DATA_SIZE] = (byte) (COMMAND_DATA_SIZE);
         commandBytes[BYTE_CMD_DATA_SIZE_SHIFT] = (byte) (COMMAND_DATA_SIZE >> ADDITIVE_OP);
-        checksum = BootLoaderUtils.calculateCheckSum2(Integer.parseInt(checkSumType, RADIX),
+        int checksum = BootLoaderUtils.calculateCheckSum2(checkSumType,
                 COMMAND_SIZE - 3, commandBytes);
         commandBytes[BYTE_CHECKSUM] = (byte) checksum;
         commandBytes[BYTE_CHECKSUM_SHIFT] = (byte) (checksum >> ADDITIVE_OP);
         commandBytes[BYTE_PACKET_END] = (byte) BootLoaderCommands.PACKET_END;
-        Logger.e("OTAExitBootloaderCmd");
-        BluetoothLeService.writeOTABootLoaderCommand(mOTACharacteristic, commandBytes, true);
+        return commandBytes;
+    }
+
+    /**
+     * Notified on the main thread when a frame could not be delivered
+     */
+    public interface OnTransportErrorListener {
+        void onTransportError(String message);
     }
 
+    /**
+     * Bootloader characteristic of a connected device, written through its
+     * operation queue. Completions and timeouts run on the main thread.
+     */
+    private static class GattLink implements OTALink {
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+        //Device written to, null for the selected device
+        private final String mAddress;
+        private final BluetoothGattCharacteristic mOTACharacteristic;
+
+        GattLink(String address, BluetoothGattCharacteristic characteristic) {
+            this.mAddress = address;
+            this.mOTACharacteristic = characteristic;
+        }
+
+        @Override
+        public boolean write(byte[] frame, final WriteListener listener) {
+            GattOperation.OnGattOperationCompleteListener operationListener =
+                    new GattOperation.OnGattOperationCompleteListener() {
+                        @Override
+                        public void onGattOperationComplete(final GattOperation operation,
+                                                            final int status) {
+                            mHandler.post(new Runnable() {
+                                @Override
+                                public void run() {
+                                    listener.onWriteComplete(status,
+                                            operation.getBusyRefusals(),
+                                            operation.getIssueDelay());
+                                }
+                            });
+                        }
+                    };
+            GattOperation operation = mAddress == null
+                    ? BluetoothLeService.writeOTABootLoaderCommand(mOTACharacteristic, frame,
+                    operationListener)
+                    : BluetoothLeService.writeOTABootLoaderCommand(mAddress, mOTACharacteristic,
+                    frame, operationListener);
+            return operation != null;
+        }
+
+        @Override
+        public void writeExit(byte[] frame) {
+            if (mAddress == null) {
+                //The completion is broadcast to the OTA screen
+                BluetoothLeService.writeOTABootLoaderCommand(mOTACharacteristic, frame, true);
+            } else {
+                //The device leaving the bootloader disconnects
+                BluetoothLeService.writeOTABootLoaderCommand(mAddress, mOTACharacteristic, frame,
+                        null);
+            }
+        }
+
+        @Override
+        public void postDelayed(Runnable task, long delay) {
+            mHandler.postDelayed(task, delay);
+        }
+
+        @Override
+        public void removeCallbacks(Runnable task) {
+            mHandler.removeCallbacks(task);
+        }
+
+        @Override
+        public long getTime() {
+            return SystemClock.elapsedRealtime();
+        }
+
+        @Override
+        public String getDeviceAddress() {
+            return mAddress != null ? mAddress : BluetoothLeService.getmBluetoothDeviceAddress();
+        }
+    }
 }
@@ -0,0 +1,311 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.OTAFirmwareUpdate;
+
+import android.app.Activity;
+import android.app.AlertDialog;
+import android.content.DialogInterface;
+import android.content.Intent;
+import android.content.pm.ActivityInfo;
+import android.os.Bundle;
+import android.view.View;
+import android.view.WindowManager;
+import android.widget.AdapterView;
+import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.CompoundButton;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import com.cypress.cysmart1.CommonUtils.Constants;
+import com.cypress.cysmart1.CommonUtils.Logger;
+import com.cypress.cysmart1.CommonUtils.Utils;
+import com.cypress.cysmart1.DataModelClasses.OTAFleetDeviceModel;
+import com.cypress.cysmart1.ListAdapters.OTAFleetListAdapter;
+import com.cypress.cysmart1.R;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Activity updating several scanned devices with the same firmware file.
+ * The devices are passed as extras by the scanning screen.
+ */
+public class OTAFleetActivity extends Activity implements OTAFleetUpdater.FleetUpdateListener {
+
+    private final ArrayList<OTAFleetDeviceModel> mAllDevices = new ArrayList<OTAFleetDeviceModel>();
+    private final ArrayList<OTAFleetDeviceModel> mShownDevices = new ArrayList<OTAFleetDeviceModel>();
+
+    private OTAFleetListAdapter mDeviceAdapter;
+    private ListView mDeviceListView;
+    private CheckBox mBootloaderFilter;
+    private CheckBox mIncrementalUpdate;
+    private TextView mFileName;
+    private Button mSelectFile;
+    private Button mStart;
+
+    private String mFilePath;
+    private OTAFleetUpdater mFleetUpdater;
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.ota_fleet);
+
+        if (Utils.isTablet(this)) {
+            Logger.d("tablet");
+            setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_UNSPECIFIED);
+        } else {
+            Logger.d("Phone");
+            setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_PORTRAIT);
+        }
+
+        Bundle extras = getIntent().getExtras();
+        if (extras != null) {
+            ArrayList<String> names = extras.getStringArrayList(Constants.EXTRA_FLEET_DEVICE_NAMES);
+            ArrayList<String> addresses =
+                    extras.getStringArrayList(Constants.EXTRA_FLEET_DEVICE_ADDRESSES);
+            ArrayList<String> bootloaderAddresses =
+                    extras.getStringArrayList(Constants.EXTRA_FLEET_BOOTLOADER_ADDRESSES);
+            for (int i = 0; addresses != null && i < addresses.size(); i++) {
+                mAllDevices.add(new OTAFleetDeviceModel(names.get(i), addresses.get(i),
+                        bootloaderAddresses != null
+                                && bootloaderAddresses.contains(addresses.get(i))));
+            }
+        }
+
+        mDeviceListView = (ListView) findViewById(R.id.listView);
+        mBootloaderFilter = (CheckBox) findViewById(R.id.bootloader_filter);
+        mIncrementalUpdate = (CheckBox) findViewById(R.id.incremental_update);
+        mFileName = (TextView) findViewById(R.id.file_name);
+        mSelectFile = (Button) findViewById(R.id.select_file_button);
+        mStart = (Button) findViewById(R.id.start_button);
+
+        mShownDevices.addAll(mAllDevices);
+        mDeviceAdapter = new OTAFleetListAdapter(this, mShownDevices);
+        mDeviceListView.setAdapter(mDeviceAdapter);
+
+        /**
+         * Device selection click event
+         */
+        mDeviceListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            public void onItemClick(AdapterView<?> parent, View view,
+                                    int position, long id) {
+                if (isUpdateRunning()) {
+                    return;
+                }
+                OTAFleetDeviceModel model = mShownDevices.get(position);
+                model.setSelected(!model.isSelected());
+                mDeviceAdapter.notifyDataSetChanged();
+            }
+        });
+
+        /**
+         * Shows only the devices already in the bootloader and selects them all
+         */
+        mBootloaderFilter.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                mShownDevices.clear();
+                for (OTAFleetDeviceModel model : mAllDevices) {
+                    if (!isChecked || model.isBootloaderAdvertised()) {
+                        model.setSelected(isChecked);
+                        mShownDevices.add(model);
+                    } else {
+                        model.setSelected(false);
+                    }
+                }
+                mDeviceAdapter.notifyDataSetChanged();
+            }
+        });
+
+        /**
+         * Only program the rows that differ from the flash, shared with the
+         * single device upgrade
+         */
+        mIncrementalUpdate.setChecked(Utils.getBooleanSharedPreference(this,
+                Constants.PREF_OTA_INCREMENTAL));
+        mIncrementalUpdate.setOnCheckedChangeListener(
+                new CompoundButton.OnCheckedChangeListener() {
+                    @Override
+                    public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                        Utils.setBooleanSharedPreference(OTAFleetActivity.this,
+                                Constants.PREF_OTA_INCREMENTAL, isChecked);
+                    }
+                });
+
+        mSelectFile.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                Intent fileSelection = new Intent(OTAFleetActivity.this,
+                        OTAFilesListingActivity.class);
+                fileSelection.putExtra(Constants.REQ_FILE_COUNT,
+                        OTAFirmwareUpgradeFragment.mApplicationUpgrade);
+                startActivityForResult(fileSelection,
+                        OTAFirmwareUpgradeFragment.mApplicationUpgrade);
+            }
+        });
+
+        mStart.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                startUpdate();
+            }
+        });
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode == OTAFirmwareUpgradeFragment.mApplicationUpgrade
+                && resultCode == RESULT_OK && data != null) {
+            ArrayList<String> paths =
+                    data.getStringArrayListExtra(Constants.ARRAYLIST_SELECTED_FILE_PATHS);
+            if (paths != null && paths.size() > 0) {
+                mFilePath = paths.get(0);
+                mFileName.setText(new File(mFilePath).getName());
+            }
+        }
+    }
+
+    private void startUpdate() {
+        if (mFilePath == null) {
+            alertMessage(getResources().getString(R.string.ota_fleet_alert_no_file));
+            return;
+        }
+        ArrayList<OTAFleetDeviceModel> selectedDevices = new ArrayList<OTAFleetDeviceModel>();
+        for (OTAFleetDeviceModel model : mShownDevices) {
+            if (model.isSelected()) {
+                selectedDevices.add(model);
+            }
+        }
+        if (selectedDevices.isEmpty()) {
+            alertMessage(getResources().getString(R.string.ota_fleet_alert_no_device));
+            return;
+        }
+        mSelectFile.setEnabled(false);
+        mStart.setEnabled(false);
+        mBootloaderFilter.setEnabled(false);
+        mIncrementalUpdate.setEnabled(false);
+        getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
+        mFleetUpdater = new OTAFleetUpdater(this, mFilePath, selectedDevices, this);
+        mFleetUpdater.setIncremental(mIncrementalUpdate.isChecked());
+        mFleetUpdater.start();
+        mDeviceAdapter.notifyDataSetChanged();
+    }
+
+    private boolean isUpdateRunning() {
+        return mFleetUpdater != null && mFleetUpdater.isRunning();
+    }
+
+    @Override
+    public void onDeviceUpdated(OTAFleetDeviceModel device) {
+        mDeviceAdapter.notifyDataSetChanged();
+    }
+
+    @Override
+    public void onFleetUpdateComplete(List<OTAFleetDeviceModel> devices) {
+        getWindow().clearFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
+        mSelectFile.setEnabled(true);
+        mStart.setEnabled(true);
+        mBootloaderFilter.setEnabled(true);
+        mIncrementalUpdate.setEnabled(true);
+        mDeviceAdapter.notifyDataSetChanged();
+        if (isFinishing()) {
+            return;
+        }
+        int successCount = 0;
+        StringBuilder failures = new StringBuilder();
+        for (OTAFleetDeviceModel device : devices) {
+            if (device.getStatus() == OTAFleetDeviceModel.STATUS_SUCCESS) {
+                successCount++;
+            } else {
+                failures.append("\n").append(device.getDeviceAddress()).append(": ")
+                        .append(device.getMessage());
+            }
+        }
+        alertMessage(getResources().getString(R.string.ota_fleet_summary, successCount,
+                devices.size()) + failures);
+    }
+
+    void alertMessage(String message) {
+        final AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setMessage(message)
+                .setTitle(R.string.app_name)
+                .setCancelable(true)
+                .setPositiveButton(getResources().getString(R.string.alert_message_exit_ok),
+                        new DialogInterface.OnClickListener() {
+                            public void onClick(DialogInterface dialog, int id) {
+                                dialog.dismiss();
+                            }
+                        });
+        AlertDialog alert = builder.create();
+        alert.show();
+    }
+
+    @Override
+    public void onBackPressed() {
+        if (!isUpdateRunning()) {
+            super.onBackPressed();
+            return;
+        }
+        final AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setMessage(getResources().getString(R.string.alert_message_ota_fleet_cancel))
+                .setTitle(R.string.app_name)
+                .setCancelable(false)
+                .setPositiveButton(getResources().getString(R.string.alert_message_yes),
+                        new DialogInterface.OnClickListener() {
+                            public void onClick(DialogInterface dialog, int id) {
+                                //The update is cancelled in onDestroy
+                                finish();
+                            }
+                        })
+                .setNegativeButton(getResources().getString(R.string.alert_message_no),
+                        new DialogInterface.OnClickListener() {
+                            public void onClick(DialogInterface dialog, int id) {
+                                dialog.dismiss();
+                            }
+                        });
+        AlertDialog alert = builder.create();
+        alert.show();
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (mFleetUpdater != null) {
+            mFleetUpdater.cancel();
+        }
+        super.onDestroy();
+    }
+}
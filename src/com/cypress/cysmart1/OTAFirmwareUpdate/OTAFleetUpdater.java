@@ -0,0 +1,552 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.OTAFirmwareUpdate;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattService;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.cypress.cysmart1.BLEConnectionServices.BluetoothLeService;
+import com.cypress.cysmart1.BLEConnectionServices.GattEventBus;
+import com.cypress.cysmart1.BLEConnectionServices.GattNotificationEvent;
+import com.cypress.cysmart1.BLEConnectionServices.GattOperation;
+import com.cypress.cysmart1.CommonUtils.Constants;
+import com.cypress.cysmart1.CommonUtils.Logger;
+import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
+import com.cypress.cysmart1.DataModelClasses.OTAFleetDeviceModel;
+import com.cypress.cysmart1.DataModelClasses.OTAFlashRowModel;
+import com.cypress.cysmart1.R;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Batch OTA update: flashes one .cyacd file to several devices at the same
+ * time. The file is parsed once; its frames are compiled once per packet size
+ * and shared by every device, each running its own {@link OTADeviceUpdater}
+ * over its own connection. At most {@link #MAX_PARALLEL_DEVICES} devices are
+ * connected at once, the others wait for a free slot.
+ * Must be used from the main thread.
+ */
+public class OTAFleetUpdater {
+
+    /**
+     * Connections kept open at the same time
+     */
+    private static final int MAX_PARALLEL_DEVICES = 4;
+    /**
+     * Time allowed to connect, discover the bootloader service and enable
+     * its notifications
+     */
+    private static final long CONNECTION_TIMEOUT = 20000;
+    private static final int REQUESTED_MTU = 512;
+
+    private final Context mContext;
+    private final String mFilePath;
+    private final List<OTAFleetDeviceModel> mDevices;
+    private final FleetUpdateListener mListener;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    /**
+     * Devices being connected or updated, by address
+     */
+    private final HashMap<String, FleetDevice> mActiveDevices = new HashMap<String, FleetDevice>();
+    private int mNextDevice;
+    private boolean mRunning;
+    private boolean mIncremental;
+
+    //File content, shared by all devices
+    private String mSiliconID;
+    private String mSiliconRev;
+    private String mCheckSumType;
+    private List<OTAFlashRowModel> mFlashRowList;
+    /**
+     * Compiled frames by send data size, and the devices waiting for a stream
+     * still being compiled
+     */
+    private final HashMap<Integer, OTAPacketStream> mPacketStreams =
+            new HashMap<Integer, OTAPacketStream>();
+    private final HashMap<Integer, ArrayList<FleetDevice>> mPendingStreams =
+            new HashMap<Integer, ArrayList<FleetDevice>>();
+
+    private final BroadcastReceiver mSessionStateReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            FleetDevice device = mActiveDevices.get(
+                    intent.getStringExtra(Constants.EXTRA_DEVICE_ADDRESS));
+            String action = intent.getStringExtra(Constants.EXTRA_SESSION_ACTION);
+            if (device == null || action == null) {
+                return;
+            }
+            if (BluetoothLeService.ACTION_GATT_CONNECTED.equals(action)) {
+                device.onConnected();
+            } else if (BluetoothLeService.ACTION_GATT_SERVICES_DISCOVERED.equals(action)) {
+                device.onServicesDiscovered();
+            } else if (BluetoothLeService.ACTION_GATT_SERVICE_DISCOVERY_UNSUCCESSFUL.equals(action)) {
+                device.fail("service discovery failed");
+            } else if (BluetoothLeService.ACTION_GATT_DISCONNECTED.equals(action)) {
+                device.onDisconnected();
+            }
+        }
+    };
+
+    private final GattEventBus.GattEventSubscriber mResponseSubscriber =
+            new GattEventBus.GattEventSubscriber() {
+                @Override
+                public void onGattNotification(GattNotificationEvent event) {
+                    FleetDevice device = mActiveDevices.get(event.getDeviceAddress());
+                    if (device != null) {
+                        device.onResponse(event.getValue());
+                    }
+                }
+            };
+
+    /**
+     * @param context
+     * @param filePath .cyacd file to write
+     * @param devices  devices to update, their status is updated as the update runs
+     * @param listener
+     */
+    public OTAFleetUpdater(Context context, String filePath, List<OTAFleetDeviceModel> devices,
+                           FleetUpdateListener listener) {
+        this.mContext = context;
+        this.mFilePath = filePath;
+        this.mDevices = devices;
+        this.mListener = listener;
+    }
+
+    /**
+     * Only programs the rows that differ from the flash of each device.
+     * Must be set before {@link #start()}.
+     *
+     * @param incremental
+     */
+    public void setIncremental(boolean incremental) {
+        this.mIncremental = incremental;
+    }
+
+    public void start() {
+        Logger.e("Batch OTA of " + mFilePath + " on " + mDevices.size() + " devices");
+        mRunning = true;
+        for (OTAFleetDeviceModel device : mDevices) {
+            device.setStatus(OTAFleetDeviceModel.STATUS_QUEUED);
+            device.setProgress(0, 0);
+            device.setMessage(null);
+            // Responses of the fleet must not reach the single device OTA screen
+            GattEventBus.subscribe(UUIDDatabase.UUID_OTA_UPDATE_CHARACTERISTIC,
+                    device.getDeviceAddress(), mHandler, mResponseSubscriber, false, true);
+        }
+        mContext.registerReceiver(mSessionStateReceiver,
+                new IntentFilter(BluetoothLeService.ACTION_SESSION_STATE_CHANGED));
+        new FileParser().execute();
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Stops every update; devices not finished yet are reported as failed
+     */
+    public void cancel() {
+        if (!mRunning) {
+            return;
+        }
+        String message = mContext.getResources().getString(R.string.ota_fleet_cancelled);
+        //Devices never started are marked first so the summary sees them all
+        for (int i = mNextDevice; i < mDevices.size(); i++) {
+            mDevices.get(i).setStatus(OTAFleetDeviceModel.STATUS_FAILED);
+            mDevices.get(i).setMessage(message);
+        }
+        mNextDevice = mDevices.size();
+        for (FleetDevice device : new ArrayList<FleetDevice>(mActiveDevices.values())) {
+            device.fail(message);
+        }
+        finish();
+    }
+
+    /**
+     * Connects the next queued devices while slots are free
+     */
+    private void startNextDevices() {
+        while (mRunning && mActiveDevices.size() < MAX_PARALLEL_DEVICES
+                && mNextDevice < mDevices.size()) {
+            FleetDevice device = new FleetDevice(mDevices.get(mNextDevice++));
+            mActiveDevices.put(device.mModel.getDeviceAddress(), device);
+            device.connect();
+        }
+        if (mRunning && mActiveDevices.isEmpty() && mNextDevice >= mDevices.size()) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        mContext.unregisterReceiver(mSessionStateReceiver);
+        GattEventBus.unsubscribe(mResponseSubscriber);
+        mListener.onFleetUpdateComplete(mDevices);
+    }
+
+    /**
+     * Hands the frames compiled for the device MTU to the device, compiling
+     * them first if no other device used the same packet size
+     *
+     * @param device
+     * @param mtu
+     */
+    private void requestPacketStream(FleetDevice device, int mtu) {
+        int packetSize = BootLoaderUtils.getSendDataSize(mtu);
+        OTAPacketStream packetStream = mPacketStreams.get(packetSize);
+        if (packetStream != null) {
+            device.startUpdate(packetStream);
+            return;
+        }
+        ArrayList<FleetDevice> waiting = mPendingStreams.get(packetSize);
+        if (waiting == null) {
+            waiting = new ArrayList<FleetDevice>();
+            mPendingStreams.put(packetSize, waiting);
+            new PacketStreamCompiler(packetSize, mtu).execute();
+        }
+        waiting.add(device);
+    }
+
+    private void logReport(OTAFleetDeviceModel model, String report) {
+        if (report != null) {
+            Logger.datalog(mContext.getResources().getString(R.string.dl_commaseparator)
+                    + "[" + model.getDeviceName() + "|" + model.getDeviceAddress() + "] [OTA] "
+                    + report);
+        }
+    }
+
+    /**
+     * AsyncTask class parsing the file once for all devices
+     */
+    private class FileParser extends AsyncTask<Void, Void, Boolean> {
+        private int mError = R.string.ota_alert_invalid_file;
+
+        @Override
+        protected Boolean doInBackground(Void... params) {
+            try {
+                CustomFileReader customFileReader = new CustomFileReader(mFilePath);
+                String[] headerData = customFileReader.analyseFileHeader();
+                mSiliconID = headerData[0];
+                mSiliconRev = headerData[1];
+                mCheckSumType = headerData[2];
+                mFlashRowList = customFileReader.readDataLines();
+                return mFlashRowList.size() > 0;
+            } catch (IOException e) {
+                Logger.e("Reading " + mFilePath + " failed: " + e);
+                mError = R.string.ota_alert_file_read_error;
+                return false;
+            } catch (IndexOutOfBoundsException e) {
+                return false;
+            } catch (NullPointerException e) {
+                return false;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(Boolean parsed) {
+            if (!mRunning) {
+                return;
+            }
+            if (!parsed) {
+                for (OTAFleetDeviceModel device : mDevices) {
+                    device.setStatus(OTAFleetDeviceModel.STATUS_FAILED);
+                    device.setMessage(mContext.getResources().getString(mError));
+                }
+                finish();
+                return;
+            }
+            startNextDevices();
+        }
+    }
+
+    /**
+     * AsyncTask class compiling the frames for one packet size
+     */
+    private class PacketStreamCompiler extends AsyncTask<Void, Void, OTAPacketStream> {
+        private final int mPacketSize;
+        private final int mMtu;
+
+        public PacketStreamCompiler(int packetSize, int mtu) {
+            this.mPacketSize = packetSize;
+            this.mMtu = mtu;
+        }
+
+        @Override
+        protected OTAPacketStream doInBackground(Void... params) {
+            try {
+                return OTAPacketStream.compile(mFlashRowList, mCheckSumType, mMtu);
+            } catch (IndexOutOfBoundsException e) {
+                return null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(OTAPacketStream packetStream) {
+            ArrayList<FleetDevice> waiting = mPendingStreams.remove(mPacketSize);
+            if (packetStream != null) {
+                mPacketStreams.put(mPacketSize, packetStream);
+            }
+            for (FleetDevice device : waiting) {
+                if (packetStream != null) {
+                    device.startUpdate(packetStream);
+                } else {
+                    device.fail(mContext.getResources().getString(
+                            R.string.ota_alert_invalid_file));
+                }
+            }
+        }
+    }
+
+    /**
+     * Connection and update of one device
+     */
+    private class FleetDevice implements OTADeviceUpdater.Transport, OTADeviceUpdater.Listener,
+            OTAFirmwareWrite.OnTransportErrorListener {
+        private final OTAFleetDeviceModel mModel;
+        private final String mAddress;
+        private BluetoothGattCharacteristic mOTACharacteristic;
+        private OTAFirmwareWrite mOtaFirmwareWrite;
+        private OTADeviceUpdater mUpdater;
+        private boolean mExitCommandWritten;
+
+        private final Runnable mConnectionTimeoutRunnable = new Runnable() {
+            @Override
+            public void run() {
+                fail("connection timed out");
+            }
+        };
+
+        FleetDevice(OTAFleetDeviceModel model) {
+            this.mModel = model;
+            this.mAddress = model.getDeviceAddress();
+        }
+
+        void connect() {
+            mModel.setStatus(OTAFleetDeviceModel.STATUS_CONNECTING);
+            mListener.onDeviceUpdated(mModel);
+            mHandler.postDelayed(mConnectionTimeoutRunnable, CONNECTION_TIMEOUT);
+            BluetoothLeService.connect(mAddress, mModel.getDeviceName(), mContext, false);
+        }
+
+        void onConnected() {
+            if (mUpdater == null) {
+                BluetoothLeService.discoverServices(mAddress);
+            }
+        }
+
+        void onServicesDiscovered() {
+            if (mOTACharacteristic != null) {
+                return;
+            }
+            List<BluetoothGattService> services =
+                    BluetoothLeService.getSupportedGattServices(mAddress);
+            if (services != null) {
+                for (BluetoothGattService service : services) {
+                    if (service.getUuid().equals(UUIDDatabase.UUID_OTA_UPDATE_SERVICE)) {
+                        mOTACharacteristic = service.getCharacteristic(
+                                UUIDDatabase.UUID_OTA_UPDATE_CHARACTERISTIC);
+                    }
+                }
+            }
+            if (mOTACharacteristic == null) {
+                fail("bootloader service not found");
+                return;
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                BluetoothLeService.exchangeGattMtu(mAddress, REQUESTED_MTU);
+            }
+            GattOperation operation = BluetoothLeService.setCharacteristicNotification(mAddress,
+                    mOTACharacteristic, true, new GattOperation.OnGattOperationCompleteListener() {
+                        @Override
+                        public void onGattOperationComplete(GattOperation operation,
+                                                            final int status) {
+                            mHandler.post(new Runnable() {
+                                @Override
+                                public void run() {
+                                    onNotificationEnabled(status);
+                                }
+                            });
+                        }
+                    });
+            if (operation == null) {
+                fail("notifications not supported");
+            }
+        }
+
+        private void onNotificationEnabled(int status) {
+            if (mModel.isFinished()) {
+                return;
+            }
+            if (status != BluetoothGatt.GATT_SUCCESS) {
+                fail("enabling notifications failed with status " + status);
+                return;
+            }
+            mHandler.removeCallbacks(mConnectionTimeoutRunnable);
+            requestPacketStream(this, BluetoothLeService.getMtu(mAddress));
+        }
+
+        void startUpdate(OTAPacketStream packetStream) {
+            if (mModel.isFinished()) {
+                return;
+            }
+            mModel.setStatus(OTAFleetDeviceModel.STATUS_UPDATING);
+            mModel.setProgress(0, packetStream.getRowCount());
+            mListener.onDeviceUpdated(mModel);
+            mOtaFirmwareWrite = new OTAFirmwareWrite(mAddress, mOTACharacteristic);
+            mOtaFirmwareWrite.setOnTransportErrorListener(this);
+            mOtaFirmwareWrite.startTransfer(BluetoothLeService.getMtu(mAddress));
+            mUpdater = new OTADeviceUpdater(packetStream, mSiliconID, mSiliconRev,
+                    new OTASession(), this, this);
+            mUpdater.setIncremental(mIncremental);
+            mUpdater.start(mAddress, mFilePath, null, -1);
+        }
+
+        void onResponse(byte[] value) {
+            if (mUpdater != null) {
+                mOtaFirmwareWrite.onResponseReceived();
+                mUpdater.onResponse(value);
+            }
+        }
+
+        void onDisconnected() {
+            if (mExitCommandWritten) {
+                //The device resets once it leaves the bootloader
+                mUpdater.onExitCommandWritten();
+            } else {
+                fail(mContext.getResources().getString(
+                        R.string.alert_message_bluetooth_disconnect));
+            }
+        }
+
+        void fail(String message) {
+            if (mUpdater != null) {
+                mUpdater.fail(message);
+            } else {
+                finish(OTAFleetDeviceModel.STATUS_FAILED, message);
+            }
+        }
+
+        private void finish(int status, String message) {
+            if (mModel.isFinished()) {
+                return;
+            }
+            mHandler.removeCallbacks(mConnectionTimeoutRunnable);
+            if (mOtaFirmwareWrite != null) {
+                logReport(mModel, mOtaFirmwareWrite.finishTransfer());
+            }
+            mModel.setStatus(status);
+            mModel.setMessage(message);
+            Logger.e("Batch OTA " + mAddress + " finished, " + (message != null ? message : "OK"));
+            mActiveDevices.remove(mAddress);
+            BluetoothLeService.disconnect(mAddress);
+            mListener.onDeviceUpdated(mModel);
+            startNextDevices();
+        }
+
+        @Override
+        public void writeCommand(byte[] frame) {
+            mOtaFirmwareWrite.writeCommand(frame, false);
+        }
+
+        @Override
+        public void writeExitCommand(byte[] frame) {
+            logReport(mModel, mOtaFirmwareWrite.finishTransfer());
+            mExitCommandWritten = true;
+            BluetoothLeService.writeOTABootLoaderCommand(mAddress, mOTACharacteristic, frame,
+                    new GattOperation.OnGattOperationCompleteListener() {
+                        @Override
+                        public void onGattOperationComplete(GattOperation operation, int status) {
+                            mHandler.post(new Runnable() {
+                                @Override
+                                public void run() {
+                                    mUpdater.onExitCommandWritten();
+                                }
+                            });
+                        }
+                    });
+        }
+
+        @Override
+        public void onTransportError(String message) {
+            fail(message);
+        }
+
+        @Override
+        public void onRowVerified(OTADeviceUpdater updater, int rowsDone, int rowCount,
+                                  boolean unchanged) {
+            if (mOtaFirmwareWrite.getTransferStats() != null) {
+                mOtaFirmwareWrite.getTransferStats().onRowVerified(unchanged,
+                        SystemClock.elapsedRealtime());
+            }
+            mModel.setProgress(rowsDone, rowCount);
+            mListener.onDeviceUpdated(mModel);
+        }
+
+        @Override
+        public void onUpdateComplete(OTADeviceUpdater updater) {
+            finish(OTAFleetDeviceModel.STATUS_SUCCESS, null);
+        }
+
+        @Override
+        public void onUpdateFailed(OTADeviceUpdater updater, String message) {
+            finish(OTAFleetDeviceModel.STATUS_FAILED, message);
+        }
+    }
+
+    /**
+     * Progress of a batch update, reported on the main thread
+     */
+    public interface FleetUpdateListener {
+        void onDeviceUpdated(OTAFleetDeviceModel device);
+
+        void onFleetUpdateComplete(List<OTAFleetDeviceModel> devices);
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.OTAFirmwareUpdate;
+
+import android.os.AsyncTask;
+
+import com.cypress.cysmart1.CommonUtils.Logger;
+import com.cypress.cysmart1.DataModelClasses.OTAFlashRowModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Parses and compiles the second file of a stack and application update in
+ * the background while the first file is programmed. The device reconnects
+ * in bootloader mode for the second file in a new instance of the upgrade
+ * screen, so the result is kept for the process. Only used from the main
+ * thread.
+ */
+class OTAImagePreparer {
+
+    private static PrepareTask mTask;
+    private static PreparedImage mPreparedImage;
+
+    private OTAImagePreparer() {
+    }
+
+    /**
+     * Starts preparing a file, replacing any file prepared before
+     *
+     * @param filePath
+     * @param mtu      negotiated ATT MTU the frames are sized for
+     */
+    static void prepare(String filePath, int mtu) {
+        discard();
+        mTask = new PrepareTask(filePath, mtu);
+        mTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * Hands over the prepared file, if it is ready and unchanged since
+     *
+     * @param filePath
+     * @return the prepared file, or null to read it now
+     */
+    static PreparedImage take(String filePath) {
+        PreparedImage image = mPreparedImage;
+        mPreparedImage = null;
+        if (image == null || !image.mFilePath.equals(filePath)) {
+            return null;
+        }
+        File file = new File(filePath);
+        if (file.length() != image.mFileLength || file.lastModified() != image.mFileModified) {
+            return null;
+        }
+        return image;
+    }
+
+    /**
+     * Drops the prepared file and stops preparing one
+     */
+    static void discard() {
+        if (mTask != null) {
+            mTask.cancel(false);
+            mTask = null;
+        }
+        mPreparedImage = null;
+    }
+
+    /**
+     * Header, rows and command frames of a file
+     */
+    static class PreparedImage {
+        private final String mFilePath;
+        private final long mFileLength;
+        private final long mFileModified;
+        private String mSiliconID;
+        private String mSiliconRev;
+        private String mCheckSumType;
+        private String mFileHash;
+        private int mTotalLines;
+        private List<OTAFlashRowModel> mRows;
+        private OTAPacketStream mPacketStream;
+        private int mMtu;
+
+        PreparedImage(String filePath) {
+            File file = new File(filePath);
+            this.mFilePath = filePath;
+            this.mFileLength = file.length();
+            this.mFileModified = file.lastModified();
+        }
+
+        String getSiliconID() {
+            return mSiliconID;
+        }
+
+        String getSiliconRev() {
+            return mSiliconRev;
+        }
+
+        String getCheckSumType() {
+            return mCheckSumType;
+        }
+
+        String getFileHash() {
+            return mFileHash;
+        }
+
+        int getTotalLines() {
+            return mTotalLines;
+        }
+
+        List<OTAFlashRowModel> getRows() {
+            return mRows;
+        }
+
+        /**
+         * @param mtu negotiated ATT MTU of the current connection
+         * @return the frames, or null if they were sized for another MTU
+         */
+        OTAPacketStream getPacketStream(int mtu) {
+            return mtu == mMtu ? mPacketStream : null;
+        }
+    }
+
+    /**
+     * AsyncTask class reading and compiling the file on the thread pool, so it
+     * does not wait behind the serial tasks of the screen
+     */
+    private static class PrepareTask extends AsyncTask<Void, Void, PreparedImage> {
+        private final String mFilePath;
+        private final int mMtu;
+
+        PrepareTask(String filePath, int mtu) {
+            this.mFilePath = filePath;
+            this.mMtu = mtu;
+        }
+
+        @Override
+        protected PreparedImage doInBackground(Void... params) {
+            PreparedImage image = new PreparedImage(mFilePath);
+            try {
+                CustomFileReader reader = new CustomFileReader(mFilePath);
+                String[] headerData = reader.analyseFileHeader();
+                image.mSiliconID = headerData[0];
+                image.mSiliconRev = headerData[1];
+                image.mCheckSumType = headerData[2];
+                image.mFileHash = reader.getFileHash();
+                image.mTotalLines = reader.getTotalLines();
+                image.mRows = reader.readDataLines();
+                if (isCancelled()) {
+                    return null;
+                }
+                image.mPacketStream = OTAPacketStream.compile(image.mRows, image.mCheckSumType,
+                        mMtu);
+                image.mMtu = mMtu;
+            } catch (IOException e) {
+                //Reported when the file is read again for programming
+                Logger.e("Reading " + mFilePath + " failed: " + e);
+                return null;
+            } catch (RuntimeException e) {
+                //Invalid file, reported when it is read for programming
+                Logger.e("Preparing " + mFilePath + " failed: " + e);
+                return null;
+            }
+            return image;
+        }
+
+        @Override
+        protected void onPostExecute(PreparedImage image) {
+            if (mTask == this) {
+                mTask = null;
+                mPreparedImage = image;
+                if (image != null) {
+                    Logger.i("Prepared " + mFilePath + ", " + image.mRows.size() + " rows");
+                }
+            }
+        }
+    }
+}
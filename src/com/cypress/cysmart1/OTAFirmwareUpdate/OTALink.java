@@ -0,0 +1,84 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+
+package com.cypress.cysmart1.OTAFirmwareUpdate;
+
+/**
+ * Link the {@link OTAFirmwareWrite} delivers its frames over: the bootloader
+ * characteristic of a connected device, or an emulated bootloader on the host.
+ * Write completions and scheduled tasks must run on the thread driving the
+ * transfer.
+ */
+interface OTALink {
+
+    /**
+     * Writes a frame the bootloader answers with a notification
+     *
+     * @param frame
+     * @param listener notified once the write completes
+     * @return false if the device is not connected
+     */
+    boolean write(byte[] frame, WriteListener listener);
+
+    /**
+     * Writes the exit bootloader frame. The device resets without a response,
+     * the link reports the completion to whoever drives the update.
+     *
+     * @param frame
+     */
+    void writeExit(byte[] frame);
+
+    void postDelayed(Runnable task, long delay);
+
+    void removeCallbacks(Runnable task);
+
+    /**
+     * @return time of the link in milliseconds, only meaningful as a difference
+     */
+    long getTime();
+
+    /**
+     * @return address of the device written to, or null if not known
+     */
+    String getDeviceAddress();
+
+    interface WriteListener {
+        /**
+         * @param status       GATT status of the write, or one of the
+         *                     GattOperation statuses
+         * @param busyRefusals times the stack refused the write as busy
+         * @param issueDelay   time the write waited for the stack, in milliseconds
+         */
+        void onWriteComplete(int status, int busyRefusals, long issueDelay);
+    }
+}
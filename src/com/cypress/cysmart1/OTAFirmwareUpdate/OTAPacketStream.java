@@ -0,0 +1,197 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.OTAFirmwareUpdate;
+
+import com.cypress.cysmart1.DataModelClasses.OTAFlashRowModel;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Every command frame of an update, built from the parsed .cyacd rows before
+ * the first write: enter bootloader, get flash size per array, the send data
+ * and program row frames and the verify row frame of each row, verify checksum
+ * and exit bootloader. The response handler only hands over the next frame.
+ */
+class OTAPacketStream {
+
+    private final byte[] mEnterBootLoaderCmd;
+    private final byte[] mVerifyCheckSumCmd;
+    private final byte[] mExitBootloaderCmd;
+    /**
+     * Per row, in file order
+     */
+    private final int[] mArrayIds;
+    private final int[] mRowNumbers;
+    private final byte[][] mGetFlashSizeCmds;
+    private final byte[][][] mProgramRowCmds;
+    private final byte[][] mVerifyRowCmds;
+    private final String[] mRowCheckSums;
+
+    private OTAPacketStream(int rowCount, int checkSumType) {
+        mEnterBootLoaderCmd = OTAFirmwareWrite.buildEnterBootLoaderCmd(checkSumType);
+        mVerifyCheckSumCmd = OTAFirmwareWrite.buildVerifyCheckSumCmd(checkSumType);
+        mExitBootloaderCmd = OTAFirmwareWrite.buildExitBootloaderCmd(checkSumType);
+        mArrayIds = new int[rowCount];
+        mRowNumbers = new int[rowCount];
+        mGetFlashSizeCmds = new byte[rowCount][];
+        mProgramRowCmds = new byte[rowCount][][];
+        mVerifyRowCmds = new byte[rowCount][];
+        mRowCheckSums = new String[rowCount];
+    }
+
+    /**
+     * Builds the frames of all rows
+     *
+     * @param rows         parsed file rows
+     * @param checkSumType checksum type from the file header
+     * @param mtu          negotiated ATT MTU, sizes the send data frames
+     * @return
+     */
+    static OTAPacketStream compile(List<OTAFlashRowModel> rows, String checkSumType, int mtu) {
+        int checkSum = OTAFirmwareWrite.parseCheckSumType(checkSumType);
+        int rowCount = rows.size();
+        OTAPacketStream stream = new OTAPacketStream(rowCount, checkSum);
+        int programRowSize = BootLoaderUtils.getProgramRowDataSize(mtu);
+        int sendDataSize = BootLoaderUtils.getSendDataSize(mtu);
+        HashMap<Integer, byte[]> getFlashSizeCmds = new HashMap<Integer, byte[]>();
+        for (int row = 0; row < rowCount; row++) {
+            OTAFlashRowModel model = rows.get(row);
+            long rowMSB = Long.parseLong(model.mRowNo.substring(0, 2), 16);
+            long rowLSB = Long.parseLong(model.mRowNo.substring(2, 4), 16);
+            stream.mArrayIds[row] = model.mArrayId;
+            stream.mRowNumbers[row] = BootLoaderUtils.swap(
+                    Integer.parseInt(model.mRowNo.substring(0, 4), 16));
+
+            byte[] getFlashSizeCmd = getFlashSizeCmds.get(model.mArrayId);
+            if (getFlashSizeCmd == null) {
+                byte[] data = new byte[]{(byte) model.mArrayId};
+                getFlashSizeCmd = OTAFirmwareWrite.buildGetFlashSizeCmd(data, data.length,
+                        checkSum);
+                getFlashSizeCmds.put(model.mArrayId, getFlashSizeCmd);
+            }
+            stream.mGetFlashSizeCmds[row] = getFlashSizeCmd;
+
+            /**
+             * Send data frames while the rest of the row does not fit in a program
+             * row frame, always leaving at least one byte for the program row
+             */
+            int dataLength = Math.min(model.mDataLength, model.mData.length);
+            int frameCount = 1;
+            for (int remaining = dataLength; remaining > programRowSize;
+                 remaining -= Math.min(sendDataSize, remaining - 1)) {
+                frameCount++;
+            }
+            byte[][] frames = new byte[frameCount][];
+            int position = 0;
+            for (int frame = 0; frame < frameCount - 1; frame++) {
+                int length = Math.min(sendDataSize, dataLength - position - 1);
+                frames[frame] = OTAFirmwareWrite.buildProgramRowSendDataCmd(model.mData,
+                        position, length, checkSum);
+                position += length;
+            }
+            frames[frameCount - 1] = OTAFirmwareWrite.buildProgramRowCmd(rowMSB, rowLSB,
+                    model.mArrayId, model.mData, position, dataLength - position, checkSum);
+            stream.mProgramRowCmds[row] = frames;
+
+            stream.mVerifyRowCmds[row] = OTAFirmwareWrite.buildVerifyRowCmd(rowMSB, rowLSB,
+                    model.mArrayId, checkSum);
+            byte[] checkSumVerify = new byte[6];
+            checkSumVerify[0] = (byte) model.mRowCheckSum;
+            checkSumVerify[1] = (byte) model.mArrayId;
+            checkSumVerify[2] = (byte) rowMSB;
+            checkSumVerify[3] = (byte) rowLSB;
+            checkSumVerify[4] = (byte) (model.mDataLength);
+            checkSumVerify[5] = (byte) ((model.mDataLength) >> 8);
+            int rowCheckSum = BootLoaderUtils.calculateCheckSumVerifyRow(6, checkSumVerify);
+            stream.mRowCheckSums[row] = String.format("%02x", rowCheckSum & 0xFF);
+        }
+        return stream;
+    }
+
+    int getRowCount() {
+        return mArrayIds.length;
+    }
+
+    int getArrayId(int row) {
+        return mArrayIds[row];
+    }
+
+    /**
+     * @param row
+     * @return the flash row number, as reported by the get flash size response
+     */
+    int getRowNumber(int row) {
+        return mRowNumbers[row];
+    }
+
+    byte[] getEnterBootLoaderCmd() {
+        return mEnterBootLoaderCmd;
+    }
+
+    /**
+     * @param row
+     * @return the get flash size frame for the array of the row
+     */
+    byte[] getGetFlashSizeCmd(int row) {
+        return mGetFlashSizeCmds[row];
+    }
+
+    /**
+     * @param row
+     * @return the send data frames of the row followed by its program row frame
+     */
+    byte[][] getProgramRowCmds(int row) {
+        return mProgramRowCmds[row];
+    }
+
+    byte[] getVerifyRowCmd(int row) {
+        return mVerifyRowCmds[row];
+    }
+
+    /**
+     * @param row
+     * @return the checksum the verify row response has to report, two hex digits
+     */
+    String getRowCheckSum(int row) {
+        return mRowCheckSums[row];
+    }
+
+    byte[] getVerifyCheckSumCmd() {
+        return mVerifyCheckSumCmd;
+    }
+
+    byte[] getExitBootloaderCmd() {
+        return mExitBootloaderCmd;
+    }
+}
@@ -40,6 +40,7 @@ import android.content.Intent;
 import android.os.Bundle;
 
 import com.cypress.cysmart1.BLEConnectionServices.BluetoothLeService;
+import com.cypress.cysmart1.BLEConnectionServices.GattOperation;
 import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.Logger;
 import com.cypress.cysmart1.CommonUtils.Utils;
@@ -110,6 +111,7 @@ public class OTAResponseReceiver extends BroadcastReceiver {
     private static final String CYRET_ERR_UNK = "CYRET_ERR_UNK";
     private static final String CYRET_ERR_ROW = "CYRET_ERR_ROW";
     private static final String CYRET_ABORT = "CYRET_ABORT";
+    private static final String EXIT_BOOTLOADER_NOT_WRITTEN = "EXIT_BOOTLOADER_NOT_WRITTEN";
 
     @Override
     public void onReceive(Context context, Intent intent) {
@@ -117,35 +119,32 @@ public class OTAResponseReceiver extends BroadcastReceiver {
         this.mContext = context;
         /**
          * Condition to execute the next command to execute
-         * Checks the Shared preferences for the currently executing command
+         * Checks the OTA session for the currently executing command
          */
         if (BluetoothLeService.ACTION_OTA_DATA_AVAILABLE.equals(action)) {
             byte[] responseArray = intent
                     .getByteArrayExtra(Constants.EXTRA_BYTE_VALUE);
             String hexValue = Utils.ByteArraytoHex(responseArray);
-            if ((Utils.getStringSharedPreference(mContext, Constants.PREF_BOOTLOADER_STATE))
-                    .equalsIgnoreCase("" + BootLoaderCommands.ENTER_BOOTLOADER)) {
+            int bootloaderState = OTASession.getInstance().getState();
+            if (bootloaderState == BootLoaderCommands.ENTER_BOOTLOADER) {
                 parseEnterBootLoaderAcknowledgement(hexValue);
-            } else if ((Utils.getStringSharedPreference(mContext, Constants.PREF_BOOTLOADER_STATE))
-                    .equalsIgnoreCase("" + BootLoaderCommands.GET_FLASH_SIZE)) {
+            } else if (bootloaderState == BootLoaderCommands.GET_FLASH_SIZE) {
                 parseGetFlashSizeAcknowledgement(hexValue);
-            } else if ((Utils.getStringSharedPreference(mContext, Constants.PREF_BOOTLOADER_STATE))
-                    .equalsIgnoreCase("" + BootLoaderCommands.SEND_DATA)) {
+            } else if (bootloaderState == BootLoaderCommands.SEND_DATA) {
                 parseParseSendDataAcknowledgement(hexValue);
-            } else if ((Utils.getStringSharedPreference(mContext, Constants.PREF_BOOTLOADER_STATE))
-                    .equalsIgnoreCase("" + BootLoaderCommands.PROGRAM_ROW)) {
+            } else if (bootloaderState == BootLoaderCommands.PROGRAM_ROW) {
                 parseParseRowAcknowledgement(hexValue);
-            } else if ((Utils.getStringSharedPreference(mContext, Constants.PREF_BOOTLOADER_STATE))
-                    .equalsIgnoreCase("" + BootLoaderCommands.VERIFY_ROW)) {
+            } else if (bootloaderState == BootLoaderCommands.VERIFY_ROW) {
                 parseVerifyRowAcknowledgement(hexValue);
-            } else if ((Utils.getStringSharedPreference(mContext, Constants.PREF_BOOTLOADER_STATE))
-                    .equalsIgnoreCase("" + BootLoaderCommands.VERIFY_CHECK_SUM)) {
+            } else if (bootloaderState == BootLoaderCommands.VERIFY_CHECK_SUM) {
                 parseVerifyCheckSum(hexValue);
-            } else if ((Utils.getStringSharedPreference(mContext, Constants.PREF_BOOTLOADER_STATE))
-                    .equalsIgnoreCase("" + BootLoaderCommands.EXIT_BOOTLOADER)) {
-                parseExitBootloader(hexValue);
             } else {
-                Logger.i("In Receiver No case " + Utils.getStringSharedPreference(mContext, Constants.PREF_BOOTLOADER_STATE));
+                Logger.i("In Receiver No case " + bootloaderState);
+            }
+        } else if (BluetoothLeService.ACTION_OTA_EXIT_BOOTLOADER_WRITTEN.equals(action)) {
+            if (OTASession.getInstance().isState(BootLoaderCommands.EXIT_BOOTLOADER)) {
+                parseExitBootloader(intent.getIntExtra(Constants.EXTRA_OTA_WRITE_STATUS,
+                        GattOperation.STATUS_NOT_ISSUED));
             }
         }
     }
@@ -283,6 +282,16 @@ public class OTAResponseReceiver extends BroadcastReceiver {
                 mContext.sendBroadcast(intent);
                 break;
             default:
+                if (OTASession.getInstance().isPreVerifying()) {
+                    //The row is not in flash yet, the screen programs it
+                    Intent preVerifyIntent = new Intent(BootLoaderUtils.ACTION_OTA_STATUS);
+                    Bundle preVerifyBundle = new Bundle();
+                    preVerifyBundle.putString(Constants.EXTRA_VERIFY_ROW_STATUS, response);
+                    preVerifyBundle.putString(Constants.EXTRA_VERIFY_ROW_CHECKSUM, data);
+                    preVerifyIntent.putExtras(preVerifyBundle);
+                    mContext.sendBroadcast(preVerifyIntent);
+                    break;
+                }
                 broadCastErrors(reponseBytes);
                 Logger.i("CYRET ERROR");
                 break;
@@ -318,14 +327,21 @@ public class OTAResponseReceiver extends BroadcastReceiver {
 
 
     /**
-     * Method parses the response String and executes the corresponding cases
+     * The exit bootloader command has no response, the completion of its
+     * write ends the update. The device resets as soon as it takes the
+     * command, so a write that timed out or was cancelled by the disconnection
+     * counts as written. A write that was never issued is an error.
      *
-     * @param parse
+     * @param status completion status of the write
      */
-    private void parseExitBootloader(String parse) {
-        String response = parse.trim().replace(" ", "");
-        //int responseBytes = Integer.parseInt(response, RADIX);
-        Logger.e("Reponse Byte Exit>>" + response);
+    private void parseExitBootloader(int status) {
+        Logger.e("Exit bootloader write status>>" + status);
+        if (status == GattOperation.STATUS_NOT_ISSUED) {
+            broadCastErrorMessage(EXIT_BOOTLOADER_NOT_WRITTEN);
+            return;
+        }
+        String response = status >= 0 ? String.format("%02X", status)
+                : (status == GattOperation.STATUS_TIMEOUT ? "TIMEOUT" : "CANCELLED");
         Intent intent = new Intent(BootLoaderUtils.ACTION_OTA_STATUS);
         Bundle mBundle = new Bundle();
         mBundle.putString(Constants.EXTRA_VERIFY_EXIT_BOOTLOADER,
@@ -0,0 +1,322 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.OTAFirmwareUpdate;
+
+/**
+ * In-memory state of the bootloader programming: the command waiting for its
+ * response, the row being programmed, the position reached inside that row and
+ * the current flash array id. Responses are dispatched on this state instead of
+ * the shared preferences, a compact {@link Checkpoint} is handed to the
+ * {@link CheckpointStore} only when a row has been verified, so an interrupted
+ * update can resume from that row. The OTA screen uses the shared instance,
+ * every device of a batch update has a session of its own.
+ */
+public class OTASession {
+
+    /**
+     * No bootloader command is waiting for a response
+     */
+    public static final int STATE_NONE = 0;
+
+    private static final OTASession mSession = new OTASession();
+
+    private int mState = STATE_NONE;
+    private int mRowNumber;
+    private int mRowStartPosition;
+    private int mArrayId;
+    private String mDeviceAddress;
+    private String mFilePath;
+    private String mFileHash;
+    private int mUpgradeMode;
+    private String mNextFilePath;
+    /**
+     * Set while the current row is verified before being programmed, it is
+     * only programmed if the flash does not hold it already
+     */
+    private boolean mPreVerifying;
+    /**
+     * Every row is verified before being programmed, see {@link #start}
+     */
+    private boolean mIncremental;
+    private CheckpointStore mCheckpointStore;
+
+    /**
+     * Last verified row of an update
+     */
+    public static class Checkpoint {
+        private final String mDeviceAddress;
+        private final String mFilePath;
+        private final String mFileHash;
+        private final int mArrayId;
+        private final int mRowNumber;
+        private final int mUpgradeMode;
+        private final String mNextFilePath;
+
+        /**
+         * @param deviceAddress device being updated
+         * @param filePath      .cyacd file being written
+         * @param fileHash      hash of the file content
+         * @param arrayId       array id of the verified row
+         * @param rowNumber     position of the verified row in the file
+         * @param upgradeMode   upgrade option chosen on the OTA screen
+         * @param nextFilePath  file to write once this one is complete, or null
+         */
+        public Checkpoint(String deviceAddress, String filePath, String fileHash,
+                          int arrayId, int rowNumber, int upgradeMode, String nextFilePath) {
+            this.mDeviceAddress = deviceAddress;
+            this.mFilePath = filePath;
+            this.mFileHash = fileHash;
+            this.mArrayId = arrayId;
+            this.mRowNumber = rowNumber;
+            this.mUpgradeMode = upgradeMode;
+            this.mNextFilePath = nextFilePath;
+        }
+
+        public String getDeviceAddress() {
+            return mDeviceAddress;
+        }
+
+        public String getFilePath() {
+            return mFilePath;
+        }
+
+        public String getFileHash() {
+            return mFileHash;
+        }
+
+        public int getArrayId() {
+            return mArrayId;
+        }
+
+        public int getRowNumber() {
+            return mRowNumber;
+        }
+
+        public int getUpgradeMode() {
+            return mUpgradeMode;
+        }
+
+        /**
+         * @return the second file of a separate stack and application update
+         * while the first one is written, otherwise null
+         */
+        public String getNextFilePath() {
+            return mNextFilePath;
+        }
+    }
+
+    /**
+     * Keeps the checkpoint of the session. {@link #save(Checkpoint)} must not
+     * block, it is called on the thread driving the bootloader.
+     */
+    public interface CheckpointStore {
+        void save(Checkpoint checkpoint);
+
+        /**
+         * @return the saved checkpoint, or null
+         */
+        Checkpoint load();
+
+        void clear();
+    }
+
+    /**
+     * Session shared by the OTA screen and the response receiver
+     *
+     * @return
+     */
+    public static OTASession getInstance() {
+        return mSession;
+    }
+
+    public synchronized void setCheckpointStore(CheckpointStore checkpointStore) {
+        this.mCheckpointStore = checkpointStore;
+    }
+
+    /**
+     * @return the checkpoint of an interrupted update, or null
+     */
+    public synchronized Checkpoint getCheckpoint() {
+        return mCheckpointStore != null ? mCheckpointStore.load() : null;
+    }
+
+    public synchronized int getState() {
+        return mState;
+    }
+
+    /**
+     * Records the command just written, the response is parsed accordingly
+     *
+     * @param state one of the {@link BootLoaderCommands}
+     */
+    public synchronized void setState(int state) {
+        this.mState = state;
+    }
+
+    public synchronized boolean isState(int state) {
+        return mState == state;
+    }
+
+    /**
+     * @return true once the exit bootloader command is written, the device
+     * then resets and disconnects
+     */
+    public synchronized boolean isExitingBootloader() {
+        return mState == BootLoaderCommands.EXIT_BOOTLOADER;
+    }
+
+    public synchronized int getRowNumber() {
+        return mRowNumber;
+    }
+
+    public synchronized int getRowStartPosition() {
+        return mRowStartPosition;
+    }
+
+    public synchronized void setRowStartPosition(int rowStartPosition) {
+        this.mRowStartPosition = rowStartPosition;
+    }
+
+    public synchronized int getArrayId() {
+        return mArrayId;
+    }
+
+    public synchronized void setArrayId(int arrayId) {
+        this.mArrayId = arrayId;
+    }
+
+    /**
+     * @return true while the current row has to be verified before it is
+     * programmed: the row to resume from, or any row of an incremental update
+     */
+    public synchronized boolean isPreVerifying() {
+        return mPreVerifying;
+    }
+
+    /**
+     * Starts programming with the enter bootloader command
+     *
+     * @param deviceAddress
+     * @param filePath
+     * @param fileHash
+     * @param resumeRow     verified row to re-verify and continue after, or -1
+     *                      to program from the first row
+     * @param incremental   verify every row first and only program the rows
+     *                      whose checksum differs from the file
+     * @param upgradeMode   upgrade option chosen on the OTA screen, kept in the
+     *                      checkpoint
+     * @param nextFilePath  file to write once this one is complete, or null,
+     *                      kept in the checkpoint
+     */
+    public synchronized void start(String deviceAddress, String filePath, String fileHash,
+                                   int resumeRow, boolean incremental, int upgradeMode,
+                                   String nextFilePath) {
+        mState = BootLoaderCommands.ENTER_BOOTLOADER;
+        mDeviceAddress = deviceAddress;
+        mFilePath = filePath;
+        mFileHash = fileHash;
+        mUpgradeMode = upgradeMode;
+        mNextFilePath = nextFilePath;
+        mIncremental = incremental;
+        mPreVerifying = incremental || resumeRow >= 0;
+        mRowNumber = resumeRow >= 0 ? resumeRow : 0;
+        mRowStartPosition = 0;
+        if (resumeRow < 0 && mCheckpointStore != null) {
+            mCheckpointStore.clear();
+        }
+    }
+
+    /**
+     * Moves past a row whose checksum was verified and checkpoints it
+     *
+     * @param rowCount rows in the file
+     * @return true if there is a next row to program, otherwise the session
+     * waits for the application checksum
+     */
+    public synchronized boolean onRowVerified(int rowCount) {
+        if (mCheckpointStore != null) {
+            mCheckpointStore.save(new Checkpoint(mDeviceAddress, mFilePath, mFileHash,
+                    mArrayId, mRowNumber, mUpgradeMode, mNextFilePath));
+        }
+        mPreVerifying = mIncremental;
+        mRowStartPosition = 0;
+        if (mRowNumber + 1 < rowCount) {
+            mRowNumber++;
+            return true;
+        }
+        mRowNumber = 0;
+        mState = BootLoaderCommands.VERIFY_CHECK_SUM;
+        return false;
+    }
+
+    /**
+     * The row verified before programming does not match the file, it is
+     * programmed
+     */
+    public synchronized void onPreVerifyFailed() {
+        mPreVerifying = false;
+        mRowStartPosition = 0;
+    }
+
+    /**
+     * The update is complete, there is nothing left to resume
+     */
+    public synchronized void complete() {
+        if (mCheckpointStore != null) {
+            mCheckpointStore.clear();
+        }
+    }
+
+    /**
+     * Forgets the in-memory state but keeps the checkpoint, so the update can
+     * be resumed once the device is reconnected
+     */
+    public synchronized void suspend() {
+        mState = STATE_NONE;
+        mRowNumber = 0;
+        mRowStartPosition = 0;
+        mArrayId = 0;
+        mPreVerifying = false;
+        mIncremental = false;
+    }
+
+    /**
+     * Forgets the session and its checkpoint
+     */
+    public synchronized void reset() {
+        suspend();
+        if (mCheckpointStore != null) {
+            mCheckpointStore.clear();
+        }
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.OTAFirmwareUpdate;
+
+import android.bluetooth.BluetoothGatt;
+
+import com.cypress.cysmart1.BLEConnectionServices.GattOperation;
+
+import java.util.Locale;
+
+/**
+ * Write counters and timings of one OTA transfer, kept by
+ * {@link OTAFirmwareWrite}. Backpressure is reported as the frames the stack
+ * refused as busy at least once before accepting them, and the time they
+ * waited. The time between two frame writes is charged to the bootloader
+ * phase of the first one, and a row lasts from its first frame until its
+ * verify row response.
+ */
+public class OTATransferStats {
+
+    private static final int PHASE_ENTER_BOOTLOADER = 0;
+    private static final int PHASE_GET_FLASH_SIZE = 1;
+    private static final int PHASE_PROGRAM_ROW = 2;
+    private static final int PHASE_VERIFY_ROW = 3;
+    private static final int PHASE_VERIFY_CHECKSUM = 4;
+    private static final int PHASE_EXIT_BOOTLOADER = 5;
+    private static final String[] PHASE_NAMES = new String[]{"enter bootloader",
+            "get flash size", "program row", "verify row", "verify checksum", "exit bootloader"};
+    /**
+     * Upper bounds of the row latency histogram buckets, in milliseconds; the
+     * last bucket holds the slower rows
+     */
+    private static final long[] ROW_LATENCY_BOUNDS = new long[]{25, 50, 100, 200, 400, 800,
+            1600};
+
+    private final long mStartTime;
+    private final int mMtu;
+    private int mFramesWritten;
+    private long mBytesWritten;
+    private int mBusyRefusals;
+    private int mStalledFrames;
+    private long mStallTime;
+    private long mMaxStallTime;
+    private int mWriteRetries;
+    private int mWriteTimeouts;
+    private int mResponseTimeouts;
+    private int mRowsUnchanged;
+
+    private int mMaxFrameSize;
+    private long mPayloadBytes;
+    private int mRowsVerified;
+    private final long[] mPhaseTimes = new long[PHASE_NAMES.length];
+    private int mPhase = -1;
+    private long mPhaseStartTime;
+    private long mFrameWriteTime = -1;
+    private int mResponses;
+    private long mResponseTime;
+    private long mMaxResponseTime;
+    private long mRowStartTime = -1;
+    private final int[] mRowLatencies = new int[ROW_LATENCY_BOUNDS.length + 1];
+
+    /**
+     * @param startTime
+     * @param mtu       negotiated ATT MTU the frames were sized for
+     */
+    OTATransferStats(long startTime, int mtu) {
+        this.mStartTime = startTime;
+        this.mMtu = mtu;
+    }
+
+    /**
+     * Records a frame handed to the stack, ending the phase of the previous
+     * frame
+     *
+     * @param frame
+     * @param time
+     */
+    void onFrameWritten(byte[] frame, long time) {
+        endPhase(time);
+        int command = frame[1] & 0xFF;
+        mPhase = getPhase(command);
+        mPhaseStartTime = time;
+        mFrameWriteTime = time;
+        mMaxFrameSize = Math.max(mMaxFrameSize, frame.length);
+        if (command == BootLoaderCommands.SEND_DATA) {
+            mPayloadBytes += frame.length - BootLoaderCommands.BASE_CMD_SIZE;
+        } else if (command == BootLoaderCommands.PROGRAM_ROW) {
+            mPayloadBytes += frame.length - BootLoaderCommands.BASE_CMD_SIZE
+                    - BootLoaderCommands.PROGRAM_ROW_HEADER_SIZE;
+        }
+        if (mRowStartTime < 0 && (mPhase == PHASE_PROGRAM_ROW || mPhase == PHASE_VERIFY_ROW)) {
+            mRowStartTime = time;
+        }
+    }
+
+    /**
+     * Records the bootloader response to the last frame written
+     *
+     * @param time
+     */
+    void onResponseReceived(long time) {
+        if (mFrameWriteTime < 0) {
+            return;
+        }
+        long responseTime = time - mFrameWriteTime;
+        mResponses++;
+        mResponseTime += responseTime;
+        mMaxResponseTime = Math.max(mMaxResponseTime, responseTime);
+        mFrameWriteTime = -1;
+    }
+
+    /**
+     * Records a completed write
+     *
+     * @param frameLength
+     * @param status       completion status of the write
+     * @param busyRefusals times the stack refused the write as busy
+     * @param issueDelay   time the write waited for the stack
+     */
+    void onWriteComplete(int frameLength, int status, int busyRefusals, long issueDelay) {
+        if (busyRefusals > 0) {
+            mBusyRefusals += busyRefusals;
+            mStalledFrames++;
+            mStallTime += issueDelay;
+            mMaxStallTime = Math.max(mMaxStallTime, issueDelay);
+        }
+        if (status == BluetoothGatt.GATT_SUCCESS) {
+            mFramesWritten++;
+            mBytesWritten += frameLength;
+        } else if (status == GattOperation.STATUS_TIMEOUT) {
+            mWriteTimeouts++;
+        }
+    }
+
+    void onWriteRetry() {
+        mWriteRetries++;
+    }
+
+    void onResponseTimeout() {
+        mResponseTimeouts++;
+    }
+
+    /**
+     * Records a row whose verify row checksum matched the file
+     *
+     * @param unchanged true for a row of an incremental update the flash
+     *                  already held
+     * @param time
+     */
+    void onRowVerified(boolean unchanged, long time) {
+        mRowsVerified++;
+        if (unchanged) {
+            mRowsUnchanged++;
+        }
+        if (mRowStartTime >= 0) {
+            long latency = time - mRowStartTime;
+            int bucket = 0;
+            while (bucket < ROW_LATENCY_BOUNDS.length && latency >= ROW_LATENCY_BOUNDS[bucket]) {
+                bucket++;
+            }
+            mRowLatencies[bucket]++;
+            mRowStartTime = -1;
+        }
+    }
+
+    public int getFramesWritten() {
+        return mFramesWritten;
+    }
+
+    public long getBytesWritten() {
+        return mBytesWritten;
+    }
+
+    public int getBusyRefusals() {
+        return mBusyRefusals;
+    }
+
+    public int getStalledFrames() {
+        return mStalledFrames;
+    }
+
+    public long getStallTime() {
+        return mStallTime;
+    }
+
+    public long getMaxStallTime() {
+        return mMaxStallTime;
+    }
+
+    public int getWriteRetries() {
+        return mWriteRetries;
+    }
+
+    public int getWriteTimeouts() {
+        return mWriteTimeouts;
+    }
+
+    public int getResponseTimeouts() {
+        return mResponseTimeouts;
+    }
+
+    public int getRowsUnchanged() {
+        return mRowsUnchanged;
+    }
+
+    public int getRowsVerified() {
+        return mRowsVerified;
+    }
+
+    public long getPayloadBytes() {
+        return mPayloadBytes;
+    }
+
+    public int getMtu() {
+        return mMtu;
+    }
+
+    /**
+     * @param time
+     * @return rows verified per second since the transfer started
+     */
+    public float getRowsPerSecond(long time) {
+        return time > mStartTime ? mRowsVerified * 1000f / (time - mStartTime) : 0;
+    }
+
+    /**
+     * @param time
+     * @return row data bytes written per second since the transfer started
+     */
+    public float getPayloadBytesPerSecond(long time) {
+        return time > mStartTime ? mPayloadBytes * 1000f / (time - mStartTime) : 0;
+    }
+
+    /**
+     * One line summary for the logs
+     *
+     * @param endTime
+     * @return String
+     */
+    public String getReport(long endTime) {
+        return "OTA transfer " + (endTime - mStartTime) + " ms, MTU " + mMtu + ", "
+                + mFramesWritten + " frames, " + mBytesWritten + " bytes, "
+                + mRowsVerified + " rows (" + String.format(Locale.US, "%.1f",
+                getRowsPerSecond(endTime)) + " rows/s, " + String.format(Locale.US, "%.0f",
+                getPayloadBytesPerSecond(endTime)) + " payload B/s), "
+                + mStalledFrames + " frames stalled by busy stack ("
+                + mBusyRefusals + " refusals, " + mStallTime + " ms total, "
+                + mMaxStallTime + " ms max), "
+                + mWriteRetries + " write retries, " + mWriteTimeouts + " write timeouts, "
+                + mResponseTimeouts + " response timeouts, "
+                + mRowsUnchanged + " rows already in flash";
+    }
+
+    /**
+     * Summary with the time of each phase and the row latency histogram, for
+     * the summary file
+     *
+     * @param endTime
+     * @return String
+     */
+    public String getSummary(long endTime) {
+        StringBuilder summary = new StringBuilder();
+        summary.append("OTA transfer summary\n");
+        summary.append("Duration: ").append(endTime - mStartTime).append(" ms\n");
+        summary.append("MTU: ").append(mMtu).append(", send data size: ")
+                .append(BootLoaderUtils.getSendDataSize(mMtu)).append(" bytes, program row size: ")
+                .append(BootLoaderUtils.getProgramRowDataSize(mMtu))
+                .append(" bytes, largest frame: ").append(mMaxFrameSize).append(" bytes\n");
+        summary.append("Rows: ").append(mRowsVerified).append(" verified, ")
+                .append(mRowsUnchanged).append(" already in flash, ")
+                .append(String.format(Locale.US, "%.2f", getRowsPerSecond(endTime)))
+                .append(" rows/s\n");
+        summary.append("Payload: ").append(mPayloadBytes).append(" bytes, ")
+                .append(String.format(Locale.US, "%.0f", getPayloadBytesPerSecond(endTime)))
+                .append(" B/s\n");
+        summary.append("Frames: ").append(mFramesWritten).append(" written, ")
+                .append(mBytesWritten).append(" bytes\n");
+        summary.append("Write retries: ").append(mWriteRetries).append(", write timeouts: ")
+                .append(mWriteTimeouts).append(", response timeouts: ")
+                .append(mResponseTimeouts).append("\n");
+        summary.append("Backpressure: ").append(mStalledFrames).append(" frames stalled, ")
+                .append(mBusyRefusals).append(" refusals, ").append(mStallTime)
+                .append(" ms total, ").append(mMaxStallTime).append(" ms max\n");
+        summary.append("Response time: ")
+                .append(mResponses > 0 ? mResponseTime / mResponses : 0)
+                .append(" ms average, ").append(mMaxResponseTime).append(" ms max\n");
+        summary.append("Phase times:\n");
+        for (int phase = 0; phase < PHASE_NAMES.length; phase++) {
+            long phaseTime = mPhaseTimes[phase];
+            if (phase == mPhase) {
+                phaseTime += endTime - mPhaseStartTime;
+            }
+            summary.append("  ").append(PHASE_NAMES[phase]).append(": ").append(phaseTime)
+                    .append(" ms\n");
+        }
+        summary.append("Row latency:\n");
+        for (int bucket = 0; bucket < mRowLatencies.length; bucket++) {
+            summary.append("  ");
+            if (bucket < ROW_LATENCY_BOUNDS.length) {
+                summary.append("< ").append(ROW_LATENCY_BOUNDS[bucket]);
+            } else {
+                summary.append(">= ").append(ROW_LATENCY_BOUNDS[bucket - 1]);
+            }
+            summary.append(" ms: ").append(mRowLatencies[bucket]).append("\n");
+        }
+        return summary.toString();
+    }
+
+    private void endPhase(long time) {
+        if (mPhase >= 0) {
+            mPhaseTimes[mPhase] += time - mPhaseStartTime;
+        }
+    }
+
+    private static int getPhase(int command) {
+        switch (command) {
+            case BootLoaderCommands.ENTER_BOOTLOADER:
+                return PHASE_ENTER_BOOTLOADER;
+            case BootLoaderCommands.GET_FLASH_SIZE:
+                return PHASE_GET_FLASH_SIZE;
+            case BootLoaderCommands.VERIFY_ROW:
+                return PHASE_VERIFY_ROW;
+            case BootLoaderCommands.VERIFY_CHECK_SUM:
+                return PHASE_VERIFY_CHECKSUM;
+            case BootLoaderCommands.EXIT_BOOTLOADER:
+                return PHASE_EXIT_BOOTLOADER;
+            default:
+                return PHASE_PROGRAM_ROW;
+        }
+    }
+}
@@ -36,10 +36,7 @@ package com.cypress.cysmart1.RDKEmulatorView;
 import android.app.AlertDialog;
 import android.app.ProgressDialog;
 import android.bluetooth.BluetoothGattService;
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.DialogInterface;
-import android.content.Intent;
 import android.media.MediaPlayer;
 import android.os.AsyncTask;
 import android.os.Bundle;
@@ -57,8 +54,11 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.cypress.cysmart1.BLEConnectionServices.BluetoothLeService;
+import com.cypress.cysmart1.BLEConnectionServices.GattEventBus;
+import com.cypress.cysmart1.BLEConnectionServices.GattNotificationEvent;
 import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.Logger;
+import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
 import com.cypress.cysmart1.CommonUtils.Utils;
 import com.cypress.cysmart1.R;
 
@@ -119,85 +119,77 @@ public class MicrophoneEmulatorFragment extends Fragment {
     String START_RECORD = "RECORD";
     String CANCEL_RECORD = "CANCEL";
     /**
-     * BroadcastReceiver for receiving the GATT server status
+     * Receives the HID report notifications through the GattEventBus
      */
-    private final BroadcastReceiver mGattUpdateReceiver = new BroadcastReceiver() {
+    private final GattEventBus.GattEventSubscriber mReportSubscriber =
+            new GattEventBus.GattEventSubscriber() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            final String action = intent.getAction();
-            Bundle extras = intent.getExtras();
-            // GATT Data available
-            if (BluetoothLeService.ACTION_DATA_AVAILABLE.equals(action)) {
+        public void onGattNotification(GattNotificationEvent event) {
+            /**
+             * Byte information send through BLE received here
+             */
+            byte[] array = event.getValue();
+            String hexValue = getHexValue(array);
+            String reportReference = ReportAttributes
+                    .getReportReferenceID(event.getCharacteristic());
+            /**
+             * Report reference descriptor received
+             */
+            if (reportReference != null) {
                 /**
-                 * Byte information send through BLE received here
+                 * Audio report reference control received
                  */
-                if (extras.containsKey(Constants.EXTRA_BYTE_VALUE)) {
-                    byte[] array = intent
-                            .getByteArrayExtra(Constants.EXTRA_BYTE_VALUE);
-                    String hexValue = getHexValue(array);
+                if (reportReference.equalsIgnoreCase(ReportAttributes.
+                        AUDIO_REPORT_REFERENCE_CONTROL_STRING)) {
+
                     /**
-                     * Report reference descriptor received
+                     * Extracting the first byte to verify
+                     * sync is required
                      */
-                    if (extras.containsKey(Constants.EXTRA_DESCRIPTOR_REPORT_REFERENCE_ID)) {
-                        String reportReference = intent.getStringExtra
-                                (Constants.EXTRA_DESCRIPTOR_REPORT_REFERENCE_ID);
+                    String firstByte = hexValue.substring(0, 2);
+                    if (firstByte.equalsIgnoreCase(ReportAttributes.MICROPHONE_SYNC)) {
                         /**
-                         * Audio report reference control received
+                         * Sync required
+                         * Updating the ADPCMStateModel values
                          */
-                        if (reportReference.equalsIgnoreCase(ReportAttributes.
-                                AUDIO_REPORT_REFERENCE_CONTROL_STRING)) {
-
-                            /**
-                             * Extracting the first byte to verify
-                             * sync is required
-                             */
-                            String firstByte = hexValue.substring(0, 2);
-                            if (firstByte.equalsIgnoreCase(ReportAttributes.MICROPHONE_SYNC)) {
-                                /**
-                                 * Sync required
-                                 * Updating the ADPCMStateModel values
-                                 */
-                                if (hexValue.length() == 8) {
-                                    ADPCMStateModel.prevIndex = array[1];
-                                    ADPCMStateModel.prevSample = ((int) array[2] << 8);
-                                    ADPCMStateModel.prevSample |= array[3];
-                                }
-                            }else if(hexValue.equalsIgnoreCase("FF00")){
-                                Logger.e("Last Packet Received");
-                                if(mIsrecording){
-                                    mIsrecording=false;
-                                    if(mTimer!=null){
-                                        mTimer.cancel();
-                                    }
-                                    mGoogleVoiceRecord.setText(START_RECORD);
-                                    createWavFile(mFilePCM, mfileWAV);
-                                    Handler handler=new Handler();
-                                    handler.postDelayed(new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            displayHexData("The Complete PCM data of the recording " +
-                                                    "is saved at\n"+mfilePCM);
-                                        }
-                                    },1000);
-                                }
-
-                            }
-
-
+                        if (hexValue.length() == 8) {
+                            ADPCMStateModel.prevIndex = array[1];
+                            ADPCMStateModel.prevSample = ((int) array[2] << 8);
+                            ADPCMStateModel.prevSample |= array[3];
                         }
-                        /**
-                         * Audio report reference data received
-                         */
-                        if (reportReference.equalsIgnoreCase(ReportAttributes.
-                                AUDIO_REPORT_REFERENCE_DATA_STRING)) {
-                            if(mIsrecording){
-                                Message audioData=Message.obtain();
-                                audioData.obj=array;
-                                mTaskandler.sendMessage(audioData);
+                    }else if(hexValue.equalsIgnoreCase("FF00")){
+                        Logger.e("Last Packet Received");
+                        if(mIsrecording){
+                            mIsrecording=false;
+                            if(mTimer!=null){
+                                mTimer.cancel();
                             }
+                            mGoogleVoiceRecord.setText(START_RECORD);
+                            createWavFile(mFilePCM, mfileWAV);
+                            Handler handler=new Handler();
+                            handler.postDelayed(new Runnable() {
+                                @Override
+                                public void run() {
+                                    displayHexData("The Complete PCM data of the recording " +
+                                            "is saved at\n"+mfilePCM);
+                                }
+                            },1000);
                         }
+
                     }
 
+
+                }
+                /**
+                 * Audio report reference data received
+                 */
+                if (reportReference.equalsIgnoreCase(ReportAttributes.
+                        AUDIO_REPORT_REFERENCE_DATA_STRING)) {
+                    if(mIsrecording){
+                        Message audioData=Message.obtain();
+                        audioData.obj=array;
+                        mTaskandler.sendMessage(audioData);
+                    }
                 }
             }
         }
@@ -383,6 +375,9 @@ public class MicrophoneEmulatorFragment extends Fragment {
                 displayHexData(getHexValue(PCMData));
             }
         };
+        GattEventBus.subscribe(UUIDDatabase.UUID_REP0RT,
+                BluetoothLeService.getmBluetoothDeviceAddress(),
+                new Handler(Looper.getMainLooper()), mReportSubscriber, false, true);
         return rootView;
     }
 
@@ -466,15 +461,13 @@ public class MicrophoneEmulatorFragment extends Fragment {
     @Override
     public void onResume() {
         super.onResume();
-        getActivity().registerReceiver(mGattUpdateReceiver,
-                Utils.makeGattUpdateIntentFilter());
         Utils.setUpActionBar(getActivity(),
                 getResources().getString(R.string.rdk_emulator_view));
     }
 
     @Override
     public void onDestroy() {
-        getActivity().unregisterReceiver(mGattUpdateReceiver);
+        GattEventBus.unsubscribe(mReportSubscriber);
         super.onDestroy();
     }
 
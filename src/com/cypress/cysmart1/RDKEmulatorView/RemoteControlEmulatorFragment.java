@@ -46,6 +46,8 @@ import android.content.Intent;
 import android.content.res.Configuration;
 import android.media.AudioFormat;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentManager;
 import android.view.LayoutInflater;
@@ -55,6 +57,8 @@ import android.widget.Button;
 import android.widget.ImageButton;
 
 import com.cypress.cysmart1.BLEConnectionServices.BluetoothLeService;
+import com.cypress.cysmart1.BLEConnectionServices.GattEventBus;
+import com.cypress.cysmart1.BLEConnectionServices.GattNotificationEvent;
 import com.cypress.cysmart1.CommonUtils.Constants;
 import com.cypress.cysmart1.CommonUtils.GattAttributes;
 import com.cypress.cysmart1.CommonUtils.Logger;
@@ -66,7 +70,6 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -168,6 +171,17 @@ public class RemoteControlEmulatorFragment extends Fragment {
         }
 
 
+    };
+    /**
+     * HID reports arrive through the GattEventBus instead of the broadcast
+     */
+    private final GattEventBus.GattEventSubscriber mReportSubscriber =
+            new GattEventBus.GattEventSubscriber() {
+        @Override
+        public void onGattNotification(GattNotificationEvent event) {
+            String hexValue = getHexValue(event.getValue());
+            updateEmulatorView(hexValue);
+        }
     };
     //View
     private View mParentView;
@@ -203,6 +217,9 @@ public class RemoteControlEmulatorFragment extends Fragment {
 
         setUpControls();
         initializeBondingIFnotBonded();
+        GattEventBus.subscribe(UUIDDatabase.UUID_REP0RT,
+                BluetoothLeService.getmBluetoothDeviceAddress(),
+                new Handler(Looper.getMainLooper()), mReportSubscriber, false, true);
         return mParentView;
     }
 
@@ -293,12 +310,13 @@ public class RemoteControlEmulatorFragment extends Fragment {
     public void onDestroy() {
         mNotiificationsEnabled = false;
        // stopBroadcastAllNotifications();
-        Logger.e("Enabled characteristic size-->" + BluetoothLeService.mEnabledCharacteristics.size());
-        if(BluetoothLeService.mEnabledCharacteristics.size()>0){
+        Logger.e("Enabled characteristic size-->" + BluetoothLeService.getEnabledCharacteristics().size());
+        if(BluetoothLeService.getEnabledCharacteristics().size()>0){
             BluetoothLeService.disableAllEnabledCharacteristics();
 
         }
         getActivity().unregisterReceiver(mGattUpdateReceiver);
+        GattEventBus.unsubscribe(mReportSubscriber);
         super.onDestroy();
     }
     private void stopBroadcastAllNotifications() {
@@ -343,12 +361,13 @@ public class RemoteControlEmulatorFragment extends Fragment {
     private void getAllCharacteristicReportReference() {
         List<BluetoothGattCharacteristic> gattCharacteristics = mService
                 .getCharacteristics();
-        BluetoothLeService.mRDKCharacteristics=new ArrayList<BluetoothGattCharacteristic>();
-        BluetoothLeService.mEnabledCharacteristics=new ArrayList<BluetoothGattCharacteristic>();
+        BluetoothLeService.clearRDKCharacteristics();
+        BluetoothLeService.clearEnabledCharacteristics();
         for (BluetoothGattCharacteristic gattCharacteristic : gattCharacteristics) {
-            if(gattCharacteristic.getUuid().equals(UUIDDatabase.UUID_REP0RT)&&
-                    !BluetoothLeService.mRDKCharacteristics.contains(gattCharacteristic)){
-                BluetoothLeService.mRDKCharacteristics.add(gattCharacteristic);
+            if(gattCharacteristic.getUuid().equals(UUIDDatabase.UUID_REP0RT)){
+                BluetoothLeService.addRDKCharacteristic(gattCharacteristic);
+                // The report screens need the report IDs to route the reports
+                ReportAttributes.readReportReference(gattCharacteristic);
             }
         }
         BluetoothLeService.enableAllRDKCharacteristics();
@@ -414,7 +433,7 @@ public class RemoteControlEmulatorFragment extends Fragment {
 //                                    Toast.LENGTH_LONG).show();
                             showNotifationFailedAlertMessage();
                             BluetoothLeService.mEnableRDKNotificationFlag=false;
-                            BluetoothLeService.mRDKCharacteristics.clear();
+                            BluetoothLeService.clearRDKCharacteristics();
                           }
                     });
                 }
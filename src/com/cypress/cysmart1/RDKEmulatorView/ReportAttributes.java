@@ -32,6 +32,12 @@
 package com.cypress.cysmart1.RDKEmulatorView;
 
 
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+
+import com.cypress.cysmart1.BLEConnectionServices.BluetoothLeService;
+import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
+
 import java.util.HashMap;
 
 /**
@@ -136,4 +142,39 @@ public class ReportAttributes {
         }
 
     }
+
+    /**
+     * Reads the report reference descriptor of a report characteristic unless
+     * its value is already cached
+     *
+     * @param characteristic
+     */
+    public static void readReportReference(BluetoothGattCharacteristic characteristic) {
+        BluetoothGattDescriptor descriptor = characteristic.getDescriptor(
+                UUIDDatabase.UUID_REPORT_REFERENCE);
+        if (descriptor != null && descriptor.getValue() == null) {
+            BluetoothLeService.readDescriptor(descriptor);
+        }
+    }
+
+    /**
+     * Report reference ID of a report characteristic, taken from the cached
+     * value of its report reference descriptor
+     *
+     * @param characteristic
+     * @return null until the descriptor has been read, see
+     * {@link #readReportReference(BluetoothGattCharacteristic)}
+     */
+    public static String getReportReferenceID(BluetoothGattCharacteristic characteristic) {
+        BluetoothGattDescriptor descriptor = characteristic.getDescriptor(
+                UUIDDatabase.UUID_REPORT_REFERENCE);
+        if (descriptor == null) {
+            return null;
+        }
+        byte[] array = descriptor.getValue();
+        if (array == null || array.length != 2) {
+            return null;
+        }
+        return lookupReportReferenceID("" + array[0]);
+    }
 }
@@ -34,10 +34,9 @@
 package com.cypress.cysmart1.RDKEmulatorView;
 
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v4.app.Fragment;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -46,8 +45,10 @@ import android.widget.Button;
 import android.widget.TextView;
 
 import com.cypress.cysmart1.BLEConnectionServices.BluetoothLeService;
-import com.cypress.cysmart1.CommonUtils.Constants;
+import com.cypress.cysmart1.BLEConnectionServices.GattEventBus;
+import com.cypress.cysmart1.BLEConnectionServices.GattNotificationEvent;
 import com.cypress.cysmart1.CommonUtils.Logger;
+import com.cypress.cysmart1.CommonUtils.UUIDDatabase;
 import com.cypress.cysmart1.CommonUtils.Utils;
 import com.cypress.cysmart1.R;
 
@@ -93,53 +94,46 @@ public class TrackpadEmulatorFragment extends Fragment {
     private boolean mLeftClicked = false;
     private boolean mRightClicked = false;
     /**
-     * BroadcastReceiver for receiving the GATT server status
+     * Receives the HID report notifications through the GattEventBus
      */
-    private final BroadcastReceiver mGattUpdateReceiver = new BroadcastReceiver() {
+    private final GattEventBus.GattEventSubscriber mReportSubscriber =
+            new GattEventBus.GattEventSubscriber() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            final String action = intent.getAction();
-            Bundle extras = intent.getExtras();
-            // GATT Data available
-            if (BluetoothLeService.ACTION_DATA_AVAILABLE.equals(action)) {
+        public void onGattNotification(GattNotificationEvent event) {
+            /**
+             * Byte information send through BLE received here
+             */
+            byte[] array = event.getValue();
+            String reportReference = ReportAttributes
+                    .getReportReferenceID(event.getCharacteristic());
+            /**
+             * Report reference descriptor received
+             */
+            if (reportReference != null) {
                 /**
-                 * Byte information send through BLE received here
+                 * Mouse report reference data received
                  */
-                if (extras.containsKey(Constants.EXTRA_BYTE_VALUE)) {
-                    byte[] array = intent
-                            .getByteArrayExtra(Constants.EXTRA_BYTE_VALUE);
+                if (reportReference.equalsIgnoreCase(ReportAttributes.
+                        MOUSE_REPORT_REFERENCE_STRING)) {
                     /**
-                     * Report reference descriptor received
+                     * Update the value in the UI
                      */
-                    if (extras.containsKey(Constants.EXTRA_DESCRIPTOR_REPORT_REFERENCE_ID)) {
-                        String reportReference = intent.getStringExtra
-                                (Constants.EXTRA_DESCRIPTOR_REPORT_REFERENCE_ID);
-                        /**
-                         * Mouse report reference data received
-                         */
-                        if (reportReference.equalsIgnoreCase(ReportAttributes.
-                                MOUSE_REPORT_REFERENCE_STRING)) {
-                            /**
-                             * Update the value in the UI
-                             */
-                            displayData(array);
-                        }
-                        /**
-                         * Keyboard report reference data received
-                         */
-                        else if (reportReference.equalsIgnoreCase(ReportAttributes.
-                                KEYBOARD_REPORT_REFERENCE_STRING)) {
-                            Logger.e("KEYBOARD_KEYCODE");
-                            displayKeycode(array);
-                        } else {
-                            /**
-                             * Converting the received voice data to HEX value
-                             * Update the value in the UI
-                             */
-                            String hexValue = getHexValue(array);
-                            updateKeyCodeValues(hexValue);
-                        }
-                    }
+                    displayData(array);
+                }
+                /**
+                 * Keyboard report reference data received
+                 */
+                else if (reportReference.equalsIgnoreCase(ReportAttributes.
+                        KEYBOARD_REPORT_REFERENCE_STRING)) {
+                    Logger.e("KEYBOARD_KEYCODE");
+                    displayKeycode(array);
+                } else {
+                    /**
+                     * Converting the received voice data to HEX value
+                     * Update the value in the UI
+                     */
+                    String hexValue = getHexValue(array);
+                    updateKeyCodeValues(hexValue);
                 }
             }
         }
@@ -188,21 +182,22 @@ public class TrackpadEmulatorFragment extends Fragment {
                 mMouseZZValue = 0;
             }
         });
+        GattEventBus.subscribe(UUIDDatabase.UUID_REP0RT,
+                BluetoothLeService.getmBluetoothDeviceAddress(),
+                new Handler(Looper.getMainLooper()), mReportSubscriber, false, true);
         return rootView;
     }
 
     @Override
     public void onResume() {
         super.onResume();
-        getActivity().registerReceiver(mGattUpdateReceiver,
-                Utils.makeGattUpdateIntentFilter());
         Utils.setUpActionBar(getActivity(),
                 getResources().getString(R.string.rdk_emulator_view));
     }
 
     @Override
     public void onDestroy() {
-        getActivity().unregisterReceiver(mGattUpdateReceiver);
+        GattEventBus.unsubscribe(mReportSubscriber);
         super.onDestroy();
     }
 
@@ -0,0 +1,315 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.OTAFirmwareUpdate;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Bootloader running in memory, answering the {@link BootLoaderCommands}
+ * frames the way the device does: enter, get flash size, send data, program
+ * row, verify row, verify checksum and exit. Frame checksums are checked and
+ * built with {@link BootLoaderUtils#calculateCheckSum2} for either checksum
+ * type. The flash is kept across sessions so resumed and incremental updates
+ * can be exercised. Used by {@link OTAEmulatedLink} to run the OTA engine
+ * without a board.
+ */
+class OTABootloaderEmulator {
+
+    private static final int START_OF_PACKET = 0x01;
+    private static final int HEADER_SIZE = 4;
+    private static final int FOOTER_SIZE = 3;
+
+    /**
+     * Status codes, as named by {@link BootLoaderResponse#getStatusName()}
+     */
+    static final int CYRET_SUCCESS = 0x00;
+    static final int CYRET_ERR_LENGTH = 0x03;
+    static final int CYRET_ERR_DATA = 0x04;
+    static final int CYRET_ERR_CMD = 0x05;
+    static final int CYRET_ERR_CHECKSUM = 0x08;
+    static final int CYRET_ERR_ARRAY = 0x09;
+    static final int CYRET_ERR_ROW = 0x0A;
+    static final int CYRET_ERR_ACTIVE = 0x0D;
+
+    private static final byte[] BOOTLOADER_VERSION = new byte[]{0x1E, 0x01, 0x01};
+
+    private final byte[] mSiliconId;
+    private final byte mSiliconRev;
+    private final int mCheckSumType;
+    private final int mArrayCount;
+    private final int mStartRow;
+    private final int mEndRow;
+
+    /**
+     * Programmed rows by array id and row number
+     */
+    private final HashMap<Integer, byte[]> mFlash = new HashMap<Integer, byte[]>();
+    private byte[] mRowBuffer = new byte[0];
+    private boolean mActive;
+    private boolean mExited;
+
+    private int mFramesProcessed;
+    private int mFramesRejected;
+    private int mRowsProgrammed;
+
+    /**
+     * @param siliconId    silicon id as in the file header, eight hex digits
+     * @param siliconRev   silicon revision as in the file header, two hex digits
+     * @param checkSumType packet checksum type, 0 for the 2's complement sum,
+     *                     otherwise CRC-16
+     * @param arrayCount   flash arrays
+     * @param startRow     first row of the bootloadable area of each array
+     * @param endRow       last row of the bootloadable area of each array
+     */
+    OTABootloaderEmulator(String siliconId, String siliconRev, int checkSumType,
+                          int arrayCount, int startRow, int endRow) {
+        this.mSiliconId = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            mSiliconId[i] = (byte) Integer.parseInt(siliconId.substring(i * 2, i * 2 + 2), 16);
+        }
+        this.mSiliconRev = (byte) Integer.parseInt(siliconRev, 16);
+        this.mCheckSumType = checkSumType;
+        this.mArrayCount = arrayCount;
+        this.mStartRow = startRow;
+        this.mEndRow = endRow;
+    }
+
+    /**
+     * Handles one command frame
+     *
+     * @param frame
+     * @return the response frame, or null for the exit bootloader command
+     * which resets the device without answering
+     */
+    byte[] process(byte[] frame) {
+        mFramesProcessed++;
+        if (frame.length < HEADER_SIZE + FOOTER_SIZE
+                || (frame[0] & 0xFF) != START_OF_PACKET
+                || (frame[frame.length - 1] & 0xFF) != BootLoaderCommands.PACKET_END) {
+            return reject(CYRET_ERR_DATA);
+        }
+        int dataLength = (frame[2] & 0xFF) | ((frame[3] & 0xFF) << 8);
+        if (frame.length != HEADER_SIZE + dataLength + FOOTER_SIZE) {
+            return reject(CYRET_ERR_LENGTH);
+        }
+        if (getCheckSum(frame, frame.length) != ((frame[frame.length - 3] & 0xFF)
+                | ((frame[frame.length - 2] & 0xFF) << 8))) {
+            return reject(CYRET_ERR_CHECKSUM);
+        }
+        int command = frame[1] & 0xFF;
+        if (command == BootLoaderCommands.ENTER_BOOTLOADER) {
+            mActive = true;
+            mExited = false;
+            mRowBuffer = new byte[0];
+            byte[] data = new byte[8];
+            System.arraycopy(mSiliconId, 0, data, 0, 4);
+            data[4] = mSiliconRev;
+            System.arraycopy(BOOTLOADER_VERSION, 0, data, 5, 3);
+            return buildResponse(CYRET_SUCCESS, data);
+        }
+        if (!mActive) {
+            return reject(CYRET_ERR_ACTIVE);
+        }
+        switch (command) {
+            case BootLoaderCommands.GET_FLASH_SIZE: {
+                if (dataLength != 1) {
+                    return reject(CYRET_ERR_LENGTH);
+                }
+                if ((frame[HEADER_SIZE] & 0xFF) >= mArrayCount) {
+                    return reject(CYRET_ERR_ARRAY);
+                }
+                return buildResponse(CYRET_SUCCESS, new byte[]{(byte) mStartRow,
+                        (byte) (mStartRow >> 8), (byte) mEndRow, (byte) (mEndRow >> 8)});
+            }
+            case BootLoaderCommands.SEND_DATA: {
+                int length = mRowBuffer.length;
+                mRowBuffer = Arrays.copyOf(mRowBuffer, length + dataLength);
+                System.arraycopy(frame, HEADER_SIZE, mRowBuffer, length, dataLength);
+                return buildResponse(CYRET_SUCCESS, new byte[0]);
+            }
+            case BootLoaderCommands.PROGRAM_ROW: {
+                if (dataLength < 3) {
+                    return reject(CYRET_ERR_LENGTH);
+                }
+                int status = checkRow(frame);
+                if (status != CYRET_SUCCESS) {
+                    mRowBuffer = new byte[0];
+                    return reject(status);
+                }
+                int length = mRowBuffer.length;
+                byte[] row = Arrays.copyOf(mRowBuffer, length + dataLength - 3);
+                System.arraycopy(frame, HEADER_SIZE + 3, row, length, dataLength - 3);
+                mFlash.put(getRowKey(frame), row);
+                mRowBuffer = new byte[0];
+                mRowsProgrammed++;
+                return buildResponse(CYRET_SUCCESS, new byte[0]);
+            }
+            case BootLoaderCommands.VERIFY_ROW: {
+                if (dataLength != 3) {
+                    return reject(CYRET_ERR_LENGTH);
+                }
+                int status = checkRow(frame);
+                byte[] row = mFlash.get(getRowKey(frame));
+                if (status == CYRET_SUCCESS && row == null) {
+                    status = CYRET_ERR_ROW;
+                }
+                if (status != CYRET_SUCCESS) {
+                    return reject(status);
+                }
+                int arrayId = frame[HEADER_SIZE] & 0xFF;
+                int rowNumber = (frame[HEADER_SIZE + 1] & 0xFF)
+                        | ((frame[HEADER_SIZE + 2] & 0xFF) << 8);
+                byte[] checkSumVerify = new byte[]{
+                        (byte) computeRowCheckSum(arrayId, rowNumber, row),
+                        (byte) arrayId, (byte) rowNumber, (byte) (rowNumber >> 8),
+                        (byte) row.length, (byte) (row.length >> 8)};
+                return buildResponse(CYRET_SUCCESS, new byte[]{(byte)
+                        BootLoaderUtils.calculateCheckSumVerifyRow(6, checkSumVerify)});
+            }
+            case BootLoaderCommands.VERIFY_CHECK_SUM:
+                return buildResponse(CYRET_SUCCESS,
+                        new byte[]{(byte) (mFlash.isEmpty() ? 0 : 1)});
+            case BootLoaderCommands.EXIT_BOOTLOADER:
+                mActive = false;
+                mExited = true;
+                return null;
+            default:
+                return reject(CYRET_ERR_CMD);
+        }
+    }
+
+    /**
+     * Writes a row to the flash as if a previous update programmed it
+     *
+     * @param arrayId
+     * @param rowNumber
+     * @param data
+     */
+    void preloadRow(int arrayId, int rowNumber, byte[] data) {
+        mFlash.put((arrayId << 16) | rowNumber, data.clone());
+    }
+
+    /**
+     * @return the row data, or null if it was never programmed
+     */
+    byte[] getRow(int arrayId, int rowNumber) {
+        return mFlash.get((arrayId << 16) | rowNumber);
+    }
+
+    void eraseFlash() {
+        mFlash.clear();
+    }
+
+    boolean isExited() {
+        return mExited;
+    }
+
+    int getFramesProcessed() {
+        return mFramesProcessed;
+    }
+
+    int getFramesRejected() {
+        return mFramesRejected;
+    }
+
+    int getRowsProgrammed() {
+        return mRowsProgrammed;
+    }
+
+    /**
+     * Checksum of a .cyacd row record: 2's complement of the sum of the array
+     * id, row number, data length and data bytes
+     *
+     * @param arrayId
+     * @param rowNumber
+     * @param data
+     * @return the checksum byte
+     */
+    static int computeRowCheckSum(int arrayId, int rowNumber, byte[] data) {
+        int sum = arrayId + (rowNumber & 0xFF) + ((rowNumber >> 8) & 0xFF)
+                + (data.length & 0xFF) + ((data.length >> 8) & 0xFF);
+        for (byte b : data) {
+            sum += b & 0xFF;
+        }
+        return (1 + ~sum) & 0xFF;
+    }
+
+    private int checkRow(byte[] frame) {
+        if ((frame[HEADER_SIZE] & 0xFF) >= mArrayCount) {
+            return CYRET_ERR_ARRAY;
+        }
+        int rowNumber = (frame[HEADER_SIZE + 1] & 0xFF) | ((frame[HEADER_SIZE + 2] & 0xFF) << 8);
+        if (rowNumber < mStartRow || rowNumber > mEndRow) {
+            return CYRET_ERR_ROW;
+        }
+        return CYRET_SUCCESS;
+    }
+
+    private static int getRowKey(byte[] frame) {
+        return ((frame[HEADER_SIZE] & 0xFF) << 16) | (frame[HEADER_SIZE + 1] & 0xFF)
+                | ((frame[HEADER_SIZE + 2] & 0xFF) << 8);
+    }
+
+    /**
+     * Checksum of a frame the way the command builders compute it, with the
+     * checksum and end of packet bytes still zero
+     */
+    private int getCheckSum(byte[] frame, int frameLength) {
+        byte[] unsigned = Arrays.copyOf(frame, frameLength);
+        unsigned[frameLength - 3] = 0;
+        unsigned[frameLength - 2] = 0;
+        unsigned[frameLength - 1] = 0;
+        return BootLoaderUtils.calculateCheckSum2(mCheckSumType, frameLength - FOOTER_SIZE,
+                unsigned) & 0xFFFF;
+    }
+
+    private byte[] reject(int status) {
+        mFramesRejected++;
+        return buildResponse(status, new byte[0]);
+    }
+
+    private byte[] buildResponse(int status, byte[] data) {
+        byte[] response = new byte[HEADER_SIZE + data.length + FOOTER_SIZE];
+        response[0] = START_OF_PACKET;
+        response[1] = (byte) status;
+        response[2] = (byte) data.length;
+        response[3] = (byte) (data.length >> 8);
+        System.arraycopy(data, 0, response, HEADER_SIZE, data.length);
+        int checkSum = getCheckSum(response, response.length);
+        response[response.length - 3] = (byte) checkSum;
+        response[response.length - 2] = (byte) (checkSum >> 8);
+        response[response.length - 1] = (byte) BootLoaderCommands.PACKET_END;
+        return response;
+    }
+}
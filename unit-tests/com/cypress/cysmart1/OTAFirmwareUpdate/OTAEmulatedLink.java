@@ -0,0 +1,278 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+package com.cypress.cysmart1.OTAFirmwareUpdate;
+
+import android.bluetooth.BluetoothGatt;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * {@link OTALink} delivering the frames to an {@link OTABootloaderEmulator}
+ * instead of the bootloader characteristic, so the {@link OTAFirmwareWrite}
+ * retries and timeouts run unchanged. Time is simulated: a write takes one
+ * packet latency per ATT packet of the negotiated MTU, its notification
+ * likewise, and every packet may be lost. A lost write completes with a GATT
+ * error, a lost notification never arrives. Runs on the calling thread;
+ * {@link #run()} returns once nothing is left to do.
+ */
+class OTAEmulatedLink implements OTALink {
+
+    /**
+     * ATT header of a write or notification
+     */
+    private static final int ATT_HEADER_SIZE = 3;
+    /**
+     * Status of a write the device did not acknowledge
+     */
+    static final int GATT_ERROR = 0x85;
+    static final String DEVICE_ADDRESS = "00:A0:50:00:00:01";
+
+    private final OTABootloaderEmulator mEmulator;
+    private final int mPayloadSize;
+    private final long mPacketLatency;
+    private final double mPacketLossRate;
+    private final Random mRandom;
+    private final PriorityQueue<Event> mEvents = new PriorityQueue<Event>();
+    /**
+     * Completion status forced on a write, by write number
+     */
+    private final HashMap<Integer, Integer> mWriteStatuses = new HashMap<Integer, Integer>();
+    private Device mDevice;
+
+    private long mTime;
+    private long mEventSequence;
+    private int mWrites;
+    private int mDisconnectAfter = -1;
+    private int mResponsesLost;
+
+    /**
+     * @param emulator       bootloader answering the frames
+     * @param mtu            negotiated ATT MTU
+     * @param packetLatency  simulated time of one packet, in milliseconds
+     * @param packetLossRate probability of losing a packet, 0 to 1
+     * @param seed           seed of the packet loss, for repeatable runs
+     */
+    OTAEmulatedLink(OTABootloaderEmulator emulator, int mtu, long packetLatency,
+                    double packetLossRate, long seed) {
+        this.mEmulator = emulator;
+        this.mPayloadSize = mtu - ATT_HEADER_SIZE;
+        this.mPacketLatency = packetLatency;
+        this.mPacketLossRate = packetLossRate;
+        this.mRandom = new Random(seed);
+    }
+
+    /**
+     * Must be set before the first write
+     *
+     * @param device
+     */
+    void setDevice(Device device) {
+        this.mDevice = device;
+    }
+
+    /**
+     * Refuses every write once the given number of writes was made, as a
+     * disconnected device does
+     *
+     * @param writes
+     */
+    void disconnectAfter(int writes) {
+        this.mDisconnectAfter = writes;
+    }
+
+    /**
+     * Completes a write with the given status instead of delivering it
+     *
+     * @param write  number of the write, from 1
+     * @param status
+     */
+    void setWriteStatus(int write, int status) {
+        mWriteStatuses.put(write, status);
+    }
+
+    /**
+     * Runs the simulation until no event is left
+     */
+    void run() {
+        Event event;
+        while ((event = mEvents.poll()) != null) {
+            mTime = event.mTime;
+            event.run();
+        }
+    }
+
+    @Override
+    public boolean write(final byte[] frame, final WriteListener listener) {
+        if (mDisconnectAfter >= 0 && mWrites >= mDisconnectAfter) {
+            return false;
+        }
+        mWrites++;
+        int packets = getPacketCount(frame.length);
+        long writeTime = mTime + packets * mPacketLatency;
+        Integer forcedStatus = mWriteStatuses.get(mWrites);
+        final int status = forcedStatus != null ? forcedStatus
+                : (isLost(packets) ? GATT_ERROR : BluetoothGatt.GATT_SUCCESS);
+        schedule(writeTime, new Runnable() {
+            @Override
+            public void run() {
+                if (status == BluetoothGatt.GATT_SUCCESS) {
+                    onFrameWritten(frame);
+                }
+                listener.onWriteComplete(status, 0, 0);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public void writeExit(final byte[] frame) {
+        mWrites++;
+        schedule(mTime + getPacketCount(frame.length) * mPacketLatency, new Runnable() {
+            @Override
+            public void run() {
+                mEmulator.process(frame);
+                mDevice.onExitCommandWritten();
+            }
+        });
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delay) {
+        schedule(mTime + delay, task);
+    }
+
+    @Override
+    public void removeCallbacks(Runnable task) {
+        Iterator<Event> iterator = mEvents.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().mRunnable == task) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return simulated time since the link was created, in milliseconds
+     */
+    @Override
+    public long getTime() {
+        return mTime;
+    }
+
+    @Override
+    public String getDeviceAddress() {
+        return DEVICE_ADDRESS;
+    }
+
+    int getWrites() {
+        return mWrites;
+    }
+
+    int getResponsesLost() {
+        return mResponsesLost;
+    }
+
+    private void onFrameWritten(byte[] frame) {
+        final byte[] response = mEmulator.process(frame);
+        if (response == null) {
+            return;
+        }
+        int packets = getPacketCount(response.length);
+        if (isLost(packets)) {
+            mResponsesLost++;
+            return;
+        }
+        schedule(mTime + packets * mPacketLatency, new Runnable() {
+            @Override
+            public void run() {
+                mDevice.onResponse(response);
+            }
+        });
+    }
+
+    private int getPacketCount(int length) {
+        return (length + mPayloadSize - 1) / mPayloadSize;
+    }
+
+    private boolean isLost(int packets) {
+        for (int i = 0; i < packets; i++) {
+            if (mRandom.nextDouble() < mPacketLossRate) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void schedule(long time, Runnable runnable) {
+        mEvents.add(new Event(time, mEventSequence++, runnable));
+    }
+
+    /**
+     * Receives what the emulated device sends back
+     */
+    interface Device {
+        void onResponse(byte[] value);
+
+        void onExitCommandWritten();
+    }
+
+    /**
+     * Events at the same time run in the order they were scheduled
+     */
+    private static class Event implements Comparable<Event> {
+        private final long mTime;
+        private final long mSequence;
+        private final Runnable mRunnable;
+
+        Event(long time, long sequence, Runnable runnable) {
+            this.mTime = time;
+            this.mSequence = sequence;
+            this.mRunnable = runnable;
+        }
+
+        void run() {
+            mRunnable.run();
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            if (mTime != other.mTime) {
+                return mTime < other.mTime ? -1 : 1;
+            }
+            return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright Cypress Semiconductor Corporation, 2014-2014-2015 All rights reserved.
+ * 
+ * This software, associated documentation and materials ("Software") is
+ * owned by Cypress Semiconductor Corporation ("Cypress") and is
+ * protected by and subject to worldwide patent protection (UnitedStates and foreign), United States copyright laws and international
+ * treaty provisions. Therefore, unless otherwise specified in a separate license agreement between you and Cypress, this Software
+ * must be treated like any other copyrighted material. Reproduction,
+ * modification, translation, compilation, or representation of this
+ * Software in any other form (e.g., paper, magnetic, optical, silicon)
+ * is prohibited without Cypress's express written permission.
+ * 
+ * Disclaimer: THIS SOFTWARE IS PROVIDED AS-IS, WITH NO WARRANTY OF ANY
+ * KIND, EXPRESS OR IMPLIED, INCLUDING, BUT NOT LIMITED TO,
+ * NONINFRINGEMENT, IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE. Cypress reserves the right to make changes
+ * to the Software without notice. Cypress does not assume any liability
+ * arising out of the application or use of Software or any product or
+ * circuit described in the Software. Cypress does not authorize its
+ * products for use as critical components in any products where a
+ * malfunction or failure may reasonably be expected to result in
+ * significant injury or death ("High Risk Product"). By including
+ * Cypress's product in a High Risk Product, the manufacturer of such
+ * system or application assumes all risk of such use and in doing so
+ * indemnifies Cypress against all liability.
+ * 
+ * Use of this Software may be limited by and subject to the applicable
+ * Cypress software license agreement.
+ * 
+ * 
+ */
+
+
+package com.cypress.cysmart1.OTAFirmwareUpdate;
+
+import com.cypress.cysmart1.BLEConnectionServices.GattOperation;
+import com.cypress.cysmart1.DataModelClasses.OTAFlashRowModel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the OTA engine against the {@link OTABootloaderEmulator} over an
+ * {@link OTAEmulatedLink}, without a phone or a board: the frames are written
+ * by the {@link OTAFirmwareWrite}, the protocol is driven by an
+ * {@link OTADeviceUpdater} and an interrupted update is resumed from the
+ * checkpoint its {@link OTASession} saved.
+ */
+public class OTAEmulatedTransferTest {
+
+    private static final String SILICON_ID = "04C81193";
+    private static final String SILICON_REV = "11";
+    private static final String CHECK_SUM_TYPE = "00";
+    private static final String FILE_PATH = "emulated.cyacd";
+    private static final String FILE_HASH = "0123456789abcdef";
+    private static final int ARRAY_ID = 0;
+    private static final int START_ROW = 0x20;
+    private static final int ROW_COUNT = 64;
+    private static final int ROW_SIZE = 128;
+    private static final int MTU = 23;
+    private static final long PACKET_LATENCY = 8;
+
+    private List<OTAFlashRowModel> mRows;
+    private OTAPacketStream mPacketStream;
+    private OTABootloaderEmulator mEmulator;
+    private MemoryCheckpointStore mCheckpointStore;
+
+    @Before
+    public void setUp() {
+        mRows = createImage(ROW_COUNT, ROW_SIZE, 1);
+        mPacketStream = OTAPacketStream.compile(mRows, CHECK_SUM_TYPE, MTU);
+        mEmulator = new OTABootloaderEmulator(SILICON_ID, SILICON_REV,
+                OTAFirmwareWrite.parseCheckSumType(CHECK_SUM_TYPE), ARRAY_ID + 1,
+                START_ROW, START_ROW + ROW_COUNT - 1);
+        mCheckpointStore = new MemoryCheckpointStore();
+    }
+
+    @Test
+    public void updateProgramsEveryRow() {
+        Run run = new Run(newSession(), newLink(0, 1), false);
+        run.start(-1);
+
+        assertTrue(run.mFailure, run.mCompleted);
+        assertTrue(mEmulator.isExited());
+        assertEquals(ROW_COUNT, mEmulator.getRowsProgrammed());
+        assertFlashHoldsImage();
+        assertNull(mCheckpointStore.load());
+    }
+
+    @Test
+    public void failedWriteIsWrittenAgain() {
+        OTAEmulatedLink link = newLink(0, 1);
+        link.setWriteStatus(5, OTAEmulatedLink.GATT_ERROR);
+        Run run = new Run(newSession(), link, false);
+        run.start(-1);
+
+        assertTrue(run.mFailure, run.mCompleted);
+        assertEquals(1, run.mFirmwareWrite.getTransferStats().getWriteRetries());
+        assertFlashHoldsImage();
+    }
+
+    @Test
+    public void writeFailingEveryAttemptFailsTransfer() {
+        OTAEmulatedLink link = newLink(0, 1);
+        for (int write = 5; write < 5 + OTAFirmwareWrite.MAX_WRITE_ATTEMPTS; write++) {
+            link.setWriteStatus(write, OTAEmulatedLink.GATT_ERROR);
+        }
+        Run run = new Run(newSession(), link, false);
+        run.start(-1);
+
+        assertFalse(run.mCompleted);
+        assertEquals("write failed with status " + OTAEmulatedLink.GATT_ERROR, run.mFailure);
+    }
+
+    @Test
+    public void writeTimeoutIsNotWrittenAgain() {
+        OTAEmulatedLink link = newLink(0, 1);
+        link.setWriteStatus(5, GattOperation.STATUS_TIMEOUT);
+        Run run = new Run(newSession(), link, false);
+        run.start(-1);
+
+        assertFalse(run.mCompleted);
+        assertEquals("write timed out", run.mFailure);
+        assertEquals(5, link.getWrites());
+    }
+
+    @Test
+    public void interruptedUpdateResumesFromCheckpoint() {
+        OTAEmulatedLink link = newLink(0, 1);
+        link.disconnectAfter(100);
+        Run run = new Run(newSession(), link, false);
+        run.start(-1);
+
+        assertFalse(run.mCompleted);
+        assertEquals("not connected", run.mFailure);
+        OTASession.Checkpoint checkpoint = mCheckpointStore.load();
+        assertNotNull(checkpoint);
+        assertEquals(OTAEmulatedLink.DEVICE_ADDRESS, checkpoint.getDeviceAddress());
+        assertEquals(FILE_PATH, checkpoint.getFilePath());
+        assertEquals(FILE_HASH, checkpoint.getFileHash());
+        assertEquals(ARRAY_ID, checkpoint.getArrayId());
+        assertTrue(checkpoint.getRowNumber() > 0 && checkpoint.getRowNumber() < ROW_COUNT - 1);
+
+        //Resumed by a new session over the checkpoint, as after a restart of the app
+        OTASession session = newSession();
+        int rowsProgrammed = mEmulator.getRowsProgrammed();
+        Run resumed = new Run(session, newLink(0, 2), false);
+        resumed.start(session.getCheckpoint().getRowNumber());
+
+        assertTrue(resumed.mFailure, resumed.mCompleted);
+        assertEquals(ROW_COUNT - checkpoint.getRowNumber() - 1,
+                mEmulator.getRowsProgrammed() - rowsProgrammed);
+        assertFlashHoldsImage();
+        assertNull(mCheckpointStore.load());
+    }
+
+    @Test
+    public void resumeProgramsCheckpointRowMissingFromFlash() {
+        OTAEmulatedLink link = newLink(0, 1);
+        link.disconnectAfter(100);
+        new Run(newSession(), link, false).start(-1);
+        OTASession.Checkpoint checkpoint = mCheckpointStore.load();
+        assertNotNull(checkpoint);
+        //The flash was erased since, every row from the checkpoint is programmed
+        mEmulator.eraseFlash();
+        int rowsProgrammed = mEmulator.getRowsProgrammed();
+
+        Run resumed = new Run(newSession(), newLink(0, 2), false);
+        resumed.start(checkpoint.getRowNumber());
+
+        assertTrue(resumed.mFailure, resumed.mCompleted);
+        assertEquals(ROW_COUNT - checkpoint.getRowNumber(),
+                mEmulator.getRowsProgrammed() - rowsProgrammed);
+    }
+
+    @Test
+    public void incrementalUpdateOnlyProgramsChangedRows() {
+        int changed = 0;
+        for (int i = 0; i < ROW_COUNT; i++) {
+            byte[] data = mRows.get(i).mData.clone();
+            if (i % 8 == 3) {
+                data[0] ^= 0x5A;
+                changed++;
+            }
+            mEmulator.preloadRow(ARRAY_ID, START_ROW + i, data);
+        }
+        int rowsProgrammed = mEmulator.getRowsProgrammed();
+        Run run = new Run(newSession(), newLink(0, 1), true);
+        run.start(-1);
+
+        assertTrue(run.mFailure, run.mCompleted);
+        assertEquals(changed, mEmulator.getRowsProgrammed() - rowsProgrammed);
+        assertEquals(ROW_COUNT - changed,
+                run.mFirmwareWrite.getTransferStats().getRowsUnchanged());
+        assertFlashHoldsImage();
+    }
+
+    /**
+     * Soak run over a lossy link: lost writes are written again by the
+     * {@link OTAFirmwareWrite}, a lost response fails the attempt and the next
+     * attempt resumes from the checkpoint
+     */
+    @Test
+    public void lossyUpdateCompletesByResuming() {
+        Random random = new Random(7);
+        int attempts = 0;
+        boolean completed = false;
+        int responseTimeouts = 0;
+        while (!completed && attempts < 20) {
+            attempts++;
+            OTASession session = newSession();
+            OTASession.Checkpoint checkpoint = session.getCheckpoint();
+            Run run = new Run(session, newLink(0.01, random.nextLong()), false);
+            run.start(checkpoint != null ? checkpoint.getRowNumber() : -1);
+            completed = run.mCompleted;
+            if ("no response from the bootloader".equals(run.mFailure)) {
+                responseTimeouts++;
+            }
+        }
+
+        assertTrue(completed);
+        assertTrue(attempts > 1);
+        assertTrue(responseTimeouts > 0);
+        //Each attempt programs the row it was interrupted in at most once more
+        assertTrue(mEmulator.getRowsProgrammed() <= ROW_COUNT + attempts);
+        assertFlashHoldsImage();
+        assertNull(mCheckpointStore.load());
+    }
+
+    private OTASession newSession() {
+        OTASession session = new OTASession();
+        session.setCheckpointStore(mCheckpointStore);
+        return session;
+    }
+
+    private OTAEmulatedLink newLink(double packetLossRate, long seed) {
+        return new OTAEmulatedLink(mEmulator, MTU, PACKET_LATENCY, packetLossRate, seed);
+    }
+
+    private void assertFlashHoldsImage() {
+        for (int i = 0; i < ROW_COUNT; i++) {
+            assertArrayEquals("row " + i, mRows.get(i).mData,
+                    mEmulator.getRow(ARRAY_ID, START_ROW + i));
+        }
+    }
+
+    /**
+     * Rows of random data with valid row checksums
+     *
+     * @param rowCount
+     * @param rowSize
+     * @param seed
+     * @return
+     */
+    private static List<OTAFlashRowModel> createImage(int rowCount, int rowSize, long seed) {
+        Random random = new Random(seed);
+        List<OTAFlashRowModel> rows = new ArrayList<OTAFlashRowModel>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            int rowNumber = START_ROW + i;
+            OTAFlashRowModel model = new OTAFlashRowModel();
+            model.mArrayId = ARRAY_ID;
+            // Row number bytes in swapped order, as CustomFileReader stores them
+            model.mRowNo = String.format("%02X%02X", rowNumber & 0xFF, (rowNumber >> 8) & 0xFF);
+            model.mDataLength = rowSize;
+            model.mData = new byte[rowSize];
+            random.nextBytes(model.mData);
+            model.mRowCheckSum = OTABootloaderEmulator.computeRowCheckSum(ARRAY_ID, rowNumber,
+                    model.mData);
+            rows.add(model);
+        }
+        return rows;
+    }
+
+    /**
+     * One attempt of the update, wired the way the batch update wires a device
+     */
+    private class Run implements OTAEmulatedLink.Device, OTADeviceUpdater.Transport,
+            OTADeviceUpdater.Listener, OTAFirmwareWrite.OnTransportErrorListener {
+        private final OTAEmulatedLink mLink;
+        private final OTAFirmwareWrite mFirmwareWrite;
+        private final OTADeviceUpdater mUpdater;
+        private boolean mCompleted;
+        private String mFailure;
+
+        Run(OTASession session, OTAEmulatedLink link, boolean incremental) {
+            this.mLink = link;
+            mLink.setDevice(this);
+            mFirmwareWrite = new OTAFirmwareWrite(link);
+            mFirmwareWrite.setOnTransportErrorListener(this);
+            mFirmwareWrite.startTransfer(MTU);
+            mUpdater = new OTADeviceUpdater(mPacketStream, SILICON_ID, SILICON_REV, session,
+                    this, this);
+            mUpdater.setIncremental(incremental);
+        }
+
+        /**
+         * Runs the attempt until it completes or fails
+         *
+         * @param resumeRow row of the checkpoint, or -1
+         */
+        void start(int resumeRow) {
+            mUpdater.start(OTAEmulatedLink.DEVICE_ADDRESS, FILE_PATH, FILE_HASH, resumeRow);
+            mLink.run();
+        }
+
+        @Override
+        public void onResponse(byte[] value) {
+            mFirmwareWrite.onResponseReceived();
+            mUpdater.onResponse(value);
+        }
+
+        @Override
+        public void onExitCommandWritten() {
+            mUpdater.onExitCommandWritten();
+        }
+
+        @Override
+        public void writeCommand(byte[] frame) {
+            mFirmwareWrite.writeCommand(frame, false);
+        }
+
+        @Override
+        public void writeExitCommand(byte[] frame) {
+            mFirmwareWrite.writeCommand(frame, true);
+        }
+
+        @Override
+        public void onTransportError(String message) {
+            mUpdater.fail(message);
+        }
+
+        @Override
+        public void onRowVerified(OTADeviceUpdater updater, int rowsDone, int rowCount,
+                                  boolean unchanged) {
+            mFirmwareWrite.getTransferStats().onRowVerified(unchanged, mLink.getTime());
+        }
+
+        @Override
+        public void onUpdateComplete(OTADeviceUpdater updater) {
+            mCompleted = true;
+        }
+
+        @Override
+        public void onUpdateFailed(OTADeviceUpdater updater, String message) {
+            mFailure = message;
+        }
+    }
+
+    private static class MemoryCheckpointStore implements OTASession.CheckpointStore {
+        private OTASession.Checkpoint mCheckpoint;
+
+        @Override
+        public void save(OTASession.Checkpoint checkpoint) {
+            mCheckpoint = checkpoint;
+        }
+
+        @Override
+        public OTASession.Checkpoint load() {
+            return mCheckpoint;
+        }
+
+        @Override
+        public void clear() {
+            mCheckpoint = null;
+        }
+    }
+}